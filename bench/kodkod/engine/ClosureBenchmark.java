@@ -0,0 +1,131 @@
+package kodkod.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.ast.Formula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.config.Options;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@linkplain Options.ClosureEncoding closure encodings} on models whose
+ * translation is dominated by transitive closures:  a ring through all nodes, a rooted
+ * DAG, and a graph over four layers in which only the middle layers can be inside a path.
+ * Each invocation translates and solves the model with SAT4J.  The size of the CNF is
+ * reported next to the time, as the number of gate variables and clauses.  JMH sums these
+ * counters over the measurement iterations; the raw data of each iteration in the JSON
+ * results holds the counts of a single invocation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ClosureBenchmark {
+
+	@Param({ "ring", "dag", "layers" })
+	public String model;
+
+	@Param({ "10", "20", "40" })
+	public int size;
+
+	@Param({ "SQUARING", "PRUNED_SQUARING", "WARSHALL" })
+	public Options.ClosureEncoding encoding;
+
+	private Formula formula;
+	private Bounds bounds;
+	private Solver solver;
+
+	/**
+	 * The size of the CNF produced by each invocation.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Cnf {
+		public long gateVariables, clauses;
+	}
+
+	@Setup
+	public void setUp() {
+		final List<String> atoms = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			atoms.add("n" + i);
+		}
+		final Universe u = new Universe(atoms);
+		final TupleFactory f = u.factory();
+		final Relation node = Relation.unary("Node"), next = Relation.binary("next");
+		bounds = new Bounds(u);
+		bounds.boundExactly(node, f.allOf(1));
+
+		if (model.equals("ring")) {
+			// every node is a function of next, and every node reaches every other one
+			final Variable x = Variable.unary("x");
+			bounds.bound(next, f.allOf(2));
+			formula = next.function(node, node).and(node.in(x.join(next.closure())).forAll(x.oneOf(node)));
+		} else if (model.equals("dag")) {
+			// an acyclic graph in which every node is reachable from the first one
+			final Relation root = Relation.unary("root");
+			bounds.boundExactly(root, f.setOf(u.atom(0)));
+			bounds.bound(next, f.allOf(2));
+			formula = next.closure().intersection(Relation.IDEN).no()
+					.and(node.in(root.join(next.reflexiveClosure())));
+		} else if (model.equals("layers")) {
+			// edges only between consecutive layers, and every node of the last layer
+			// is reachable from some node of the first
+			final Relation first = Relation.unary("First"), last = Relation.unary("Last");
+			final int width = Math.max(1, size / 4);
+			final TupleSet edges = f.noneOf(2), firsts = f.noneOf(1), lasts = f.noneOf(1);
+			for (int i = 0; i < size; i++) {
+				final int layer = Math.min(3, i / width);
+				if (layer == 0) firsts.add(f.tuple(u.atom(i)));
+				if (layer == 3) lasts.add(f.tuple(u.atom(i)));
+				for (int j = 0; j < size; j++) {
+					if (Math.min(3, j / width) == layer + 1) {
+						edges.add(f.tuple(u.atom(i), u.atom(j)));
+					}
+				}
+			}
+			bounds.boundExactly(first, firsts);
+			bounds.boundExactly(last, lasts);
+			bounds.bound(next, edges);
+			formula = last.in(first.join(next.closure())).and(next.count().lte(IntConstant.constant(size)));
+		} else {
+			throw new IllegalArgumentException("unknown model: " + model);
+		}
+
+		solver = new Solver();
+		solver.options().setSolver(SATFactory.DefaultSAT4J);
+		solver.options().setBitwidth(8);
+		solver.options().setClosureEncoding(encoding);
+	}
+
+	@Benchmark
+	public Solution solve(Cnf cnf) {
+		final Solution s = solver.solve(formula, bounds);
+		cnf.gateVariables = s.stats().variables() - s.stats().primaryVariables();
+		cnf.clauses = s.stats().clauses();
+		return s;
+	}
+}
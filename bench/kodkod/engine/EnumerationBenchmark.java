@@ -0,0 +1,116 @@
+package kodkod.engine;
+
+import java.util.Iterator;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.config.Options;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@linkplain Options.Blocking blocking clauses} used by
+ * {@link Solver#solveAll(Formula, Bounds)} on enumeration jobs.  Each invocation
+ * enumerates all solutions of a model with SAT4J and with symmetry breaking turned
+ * off, so that only the blocking clauses remove solutions.  The number of solutions
+ * and the number of clauses added while enumerating are reported next to the time,
+ * summed over the measurement iterations; the JSON results also hold them per iteration,
+ * that is, per enumeration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EnumerationBenchmark {
+
+	/** tasks: every task has at least one worker; graphs: symmetric, irreflexive graphs without isolated nodes */
+	@Param({ "tasks", "graphs" })
+	public String model;
+
+	@Param({ "3", "4" })
+	public int size;
+
+	@Param({ "MODEL", "IMPLICANT", "ORBIT" })
+	public Options.Blocking blocking;
+
+	private Formula formula;
+	private Bounds bounds;
+	private Solver solver;
+
+	/**
+	 * The number of solutions and of blocking clauses produced by each invocation.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Enumeration {
+		public long solutions, blockingClauses;
+	}
+
+	@Setup
+	public void setUp() {
+		final String[] atoms = new String[2 * size];
+		for (int i = 0; i < size; i++) {
+			atoms[i] = "t" + i;
+			atoms[size + i] = "w" + i;
+		}
+		final Universe u = new Universe((Object[]) atoms);
+		final TupleFactory f = u.factory();
+		final Relation task = Relation.unary("Task");
+		final Variable t = Variable.unary("t");
+		bounds = new Bounds(u);
+		bounds.boundExactly(task, f.range(f.tuple("t0"), f.tuple("t" + (size - 1))));
+
+		if (model.equals("tasks")) {
+			// only one assignment per task matters
+			final Relation worker = Relation.unary("Worker"), assign = Relation.binary("assign");
+			bounds.boundExactly(worker, f.range(f.tuple("w0"), f.tuple("w" + (size - 1))));
+			bounds.bound(assign, bounds.upperBound(task).product(bounds.upperBound(worker)));
+			formula = t.join(assign).some().forAll(t.oneOf(task));
+		} else if (model.equals("graphs")) {
+			final Relation edge = Relation.binary("edge");
+			bounds.bound(edge, bounds.upperBound(task).product(bounds.upperBound(task)));
+			formula = edge.eq(edge.transpose()).and(edge.intersection(Relation.IDEN).no())
+					.and(t.join(edge).some().forAll(t.oneOf(task)));
+		} else {
+			throw new IllegalArgumentException("unknown model: " + model);
+		}
+
+		solver = new Solver();
+		solver.options().setSolver(SATFactory.DefaultSAT4J);
+		solver.options().setSymmetryBreaking(0);
+		solver.options().setBlocking(blocking);
+	}
+
+	@Benchmark
+	public long enumerate(Enumeration enumeration) {
+		long solutions = 0, firstClauses = -1, lastClauses = 0;
+		for (Iterator<Solution> sols = solver.solveAll(formula, bounds); sols.hasNext(); ) {
+			final Solution s = sols.next();
+			if (firstClauses < 0) firstClauses = s.stats().clauses();
+			lastClauses = s.stats().clauses();
+			if (s.sat()) solutions++;
+		}
+		enumeration.solutions = solutions;
+		enumeration.blockingClauses = lastClauses - firstClauses;
+		return solutions;
+	}
+}
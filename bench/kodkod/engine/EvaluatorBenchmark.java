@@ -0,0 +1,108 @@
+package kodkod.engine;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.IntExpression;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.config.Options;
+import kodkod.instance.Instance;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@linkplain Evaluator.Engine evaluation engines} on a random graph
+ * instance:  a formula with nested quantifiers, a closure, and an objective-like sum.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class EvaluatorBenchmark {
+
+	@Param({ "TUPLES", "CIRCUITS" })
+	public Evaluator.Engine engine;
+
+	@Param({ "20", "40" })
+	public int size;
+
+	private Evaluator evaluator;
+	private Formula formula;
+	private Expression expression;
+	private IntExpression objective;
+
+	@Setup
+	public void setUp() {
+		final List<Object> atoms = new ArrayList<Object>(size + 8);
+		for (int i = 0; i < size; i++) {
+			atoms.add("n" + i);
+		}
+		for (int i = 0; i < 8; i++) {
+			atoms.add(i);
+		}
+		final Universe universe = new Universe(atoms);
+		final TupleFactory f = universe.factory();
+		final Relation node = Relation.unary("Node"), edge = Relation.binary("edge"), weight = Relation.binary("weight");
+		final Random random = new Random(size);
+		final TupleSet nodes = f.range(f.tuple("n0"), f.tuple("n" + (size - 1)));
+		final TupleSet edges = f.noneOf(2), weights = f.noneOf(2);
+		for (int i = 0; i < size; i++) {
+			for (int j = 0; j < size; j++) {
+				if (random.nextInt(size) < 2) edges.add(f.tuple("n" + i, "n" + j));
+			}
+			weights.add(f.tuple("n" + i, random.nextInt(8)));
+		}
+		final Instance instance = new Instance(universe);
+		instance.add(node, nodes);
+		instance.add(edge, edges);
+		instance.add(weight, weights);
+		for (int i = 0; i < 8; i++) {
+			instance.add(i, f.setOf(i));
+		}
+
+		final Options options = new Options();
+		options.setBitwidth(12);
+		evaluator = new Evaluator(instance, options, engine);
+
+		final Variable x = Variable.unary("x"), y = Variable.unary("y");
+		formula = x.join(edge).intersection(y.join(edge)).some()
+				.forSome(y.oneOf(node.difference(x))).forAll(x.oneOf(node));
+		expression = edge.closure().intersection(Expression.IDEN.union(edge.join(edge)));
+		objective = x.join(weight).sum().multiply(x.join(edge).count()).sum(x.oneOf(node));
+	}
+
+	@Benchmark
+	public boolean formula() {
+		return evaluator.evaluate(formula);
+	}
+
+	@Benchmark
+	public TupleSet expression() {
+		return evaluator.evaluate(expression);
+	}
+
+	@Benchmark
+	public int objective() {
+		return evaluator.evaluate(objective);
+	}
+}
@@ -0,0 +1,135 @@
+package kodkod.engine;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.config.Options;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares the {@linkplain Options.SymmetryPredicate symmetry breaking predicates} on
+ * enumeration:  each invocation translates a model once and enumerates all of its
+ * solutions with SAT4J.  The graphs model has symmetric, irreflexive graphs over
+ * interchangeable nodes; the pairs model is a partial instance whose symmetries are
+ * only found by the automorphism search.  The number of clauses in the first CNF and
+ * the number of solutions are reported next to the time, summed over the measurement
+ * iterations; the JSON results also hold them per iteration, that is, per enumeration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SymmetryBenchmark {
+
+	@Param({ "graphs", "pairs" })
+	public String model;
+
+	@Param({ "4", "5", "6" })
+	public int size;
+
+	@Param({ "LEX_LEADER", "SHATTER" })
+	public Options.SymmetryPredicate predicate;
+
+	private Formula formula;
+	private Bounds bounds;
+	private Solver solver;
+
+	/**
+	 * The size of the first CNF and the number of solutions found by each invocation.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Enumeration {
+		public long clauses, solutions;
+	}
+
+	@Setup
+	public void setUp() {
+		final Variable x = Variable.unary("x"), y = Variable.unary("y");
+		if (model.equals("graphs")) {
+			// every node has a neighbor; all symmetries are permutations of a single class
+			final Relation node = Relation.unary("Node"), edge = Relation.binary("edge");
+			final List<String> atoms = new ArrayList<String>(size);
+			for (int i = 0; i < size; i++) {
+				atoms.add("n" + i);
+			}
+			final Universe u = new Universe(atoms);
+			final TupleFactory f = u.factory();
+			bounds = new Bounds(u);
+			bounds.boundExactly(node, f.allOf(1));
+			bounds.bound(edge, f.allOf(2));
+			formula = edge.eq(edge.transpose()).and(edge.intersection(Relation.IDEN).no())
+					.and(x.join(edge).some().forAll(x.oneOf(node)));
+		} else if (model.equals("pairs")) {
+			// each task is paired with its own worker, which splits the atoms into singleton
+			// classes, so only the automorphism search sees that exchanging two pairs is a symmetry
+			final Relation task = Relation.unary("Task"), worker = Relation.unary("Worker");
+			final Relation assign = Relation.binary("assign"), conflict = Relation.binary("conflict");
+			final List<String> atoms = new ArrayList<String>(2 * size);
+			for (int i = 0; i < size; i++) {
+				atoms.add("t" + i);
+				atoms.add("w" + i);
+			}
+			final Universe u = new Universe(atoms);
+			final TupleFactory f = u.factory();
+			final TupleSet tasks = f.noneOf(1), workers = f.noneOf(1), pairing = f.noneOf(2);
+			for (int i = 0; i < size; i++) {
+				tasks.add(f.tuple("t" + i));
+				workers.add(f.tuple("w" + i));
+				pairing.add(f.tuple("t" + i, "w" + i));
+			}
+			bounds = new Bounds(u);
+			bounds.boundExactly(task, tasks);
+			bounds.boundExactly(worker, workers);
+			bounds.bound(assign, pairing);
+			bounds.bound(conflict, tasks.product(tasks));
+			formula = conflict.eq(conflict.transpose())
+					.and(conflict.intersection(Relation.IDEN).no())
+					.and(x.join(assign).some().and(y.join(assign).some()).implies(x.product(y).in(conflict).not())
+							.forAll(x.oneOf(task).and(y.oneOf(task))));
+		} else {
+			throw new IllegalArgumentException("unknown model: " + model);
+		}
+
+		solver = new Solver();
+		solver.options().setSolver(SATFactory.DefaultSAT4J);
+		solver.options().setSymmetryPredicate(predicate);
+	}
+
+	@Benchmark
+	public long enumerate(Enumeration enumeration) {
+		long clauses = -1, solutions = 0;
+		for (Iterator<Solution> sols = solver.solveAll(formula, bounds); sols.hasNext(); ) {
+			final Solution s = sols.next();
+			if (clauses < 0) clauses = s.stats().clauses();
+			if (s.sat()) solutions++;
+		}
+		enumeration.clauses = clauses;
+		enumeration.solutions = solutions;
+		return solutions;
+	}
+}
@@ -0,0 +1,140 @@
+package kodkod.engine.bool;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.engine.config.Options;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.Ints;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures {@link BooleanMatrix#dot(BooleanMatrix)} and {@link BooleanMatrix#closure()}
+ * on square matrices that mix constants and variables, and the creation of gates by
+ * the circuit factory ({@link CBCFactory}) behind {@link BooleanFactory}.  Every
+ * invocation works on a fresh factory, so that gates are built rather than found
+ * in the factory's caches.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class BooleanBenchmark {
+
+	@Param({ "16", "32" })
+	public int size;
+
+	/** The fraction of cells that are TRUE; the others are variables with probability 1/4 */
+	@Param({ "0.0", "0.1", "0.5" })
+	public double constants;
+
+	private BooleanMatrix matrix;
+	private int[] ops, lhs, rhs;
+
+	@Setup(Level.Trial)
+	public void setUpGates() {
+		final Random random = new Random(size);
+		final int gates = size * size * 4;
+		ops = new int[gates];
+		lhs = new int[gates];
+		rhs = new int[gates];
+		for (int i = 0; i < gates; i++) {
+			ops[i] = random.nextInt(3);
+			lhs[i] = random.nextInt(size + i);
+			rhs[i] = random.nextInt(size + i);
+		}
+	}
+
+	/**
+	 * The input of the closure benchmark, which is also parameterized by the encoding.
+	 */
+	@State(Scope.Thread)
+	public static class ClosureInput {
+		@Param({ "SQUARING", "PRUNED_SQUARING", "WARSHALL" })
+		public Options.ClosureEncoding encoding;
+
+		private BooleanMatrix matrix;
+
+		@Setup(Level.Invocation)
+		public void setUp(BooleanBenchmark benchmark) {
+			final Options options = new Options();
+			options.setClosureEncoding(encoding);
+			matrix = benchmark.matrix(options);
+		}
+	}
+
+	@Setup(Level.Invocation)
+	public void setUpMatrix() {
+		matrix = matrix(new Options());
+	}
+
+	private BooleanMatrix matrix(Options options) {
+		final Random random = new Random(size);
+		final BooleanFactory factory = BooleanFactory.factory(size * size, options);
+		final Dimensions dims = Dimensions.square(size, 2);
+		final IntSet all = Ints.bestSet(dims.capacity()), trues = Ints.bestSet(dims.capacity());
+		for (int i = 0; i < dims.capacity(); i++) {
+			final double r = random.nextDouble();
+			if (r < constants) {
+				all.add(i);
+				trues.add(i);
+			} else if (r < constants + (1 - constants) / 4) {
+				all.add(i);
+			}
+		}
+		final BooleanMatrix m = factory.matrix(dims, all, trues);
+		for (int i = 0; i < dims.capacity(); i++) {
+			if (all.contains(i) && !trues.contains(i)) {
+				m.set(i, factory.variable(i + 1));
+			}
+		}
+		return m;
+	}
+
+	@Benchmark
+	public BooleanMatrix dot() {
+		return matrix.dot(matrix);
+	}
+
+	@Benchmark
+	public BooleanMatrix closure(ClosureInput input) {
+		return input.matrix.closure();
+	}
+
+	@Benchmark
+	public BooleanValue gates() {
+		final BooleanFactory factory = BooleanFactory.factory(size, new Options());
+		final BooleanValue[] values = new BooleanValue[size + ops.length];
+		for (int i = 0; i < size; i++) {
+			values[i] = factory.variable(i + 1);
+		}
+		for (int i = 0; i < ops.length; i++) {
+			final BooleanValue l = values[lhs[i]], r = values[rhs[i]];
+			switch (ops[i]) {
+			case 0:
+				values[size + i] = factory.and(l, r.negation());
+				break;
+			case 1:
+				values[size + i] = factory.or(l, r);
+				break;
+			default:
+				values[size + i] = factory.ite(l, r, values[(lhs[i] + rhs[i]) % (size + i)]);
+			}
+		}
+		return values[values.length - 1];
+	}
+}
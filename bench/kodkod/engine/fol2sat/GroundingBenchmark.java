@@ -0,0 +1,100 @@
+package kodkod.engine.fol2sat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.config.Options;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the translation of wide top-level quantifiers with and without
+ * {@linkplain Options#groundingGrain() split grounding}.  The formula says that
+ * a relation is transitive:  a single universal quantifier over all atoms whose body
+ * contains two nested quantifiers.  It is translated sequentially, or with several
+ * threads that each ground 8 tuples of the outer quantifier at a time, into a SAT4J
+ * instance.  The number of variables and clauses is reported next to the time.  Like all
+ * auxiliary counters, they are summed over the measurement iterations, and the JSON results
+ * hold the counts of a single translation in the raw data of each iteration.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class GroundingBenchmark {
+
+	@Param({ "60", "100", "140" })
+	public int size;
+
+	/** The number of translation threads; a single thread grounds the whole quantifier at once */
+	@Param({ "1", "2", "4", "8" })
+	public int threads;
+
+	private Formula formula;
+	private Bounds bounds;
+	private Options options;
+
+	/**
+	 * The size of the CNF produced by each invocation.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Cnf {
+		public long variables, clauses;
+	}
+
+	@Setup
+	public void setUp() {
+		final List<String> atoms = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			atoms.add("n" + i);
+		}
+		final Universe u = new Universe(atoms);
+		final TupleFactory f = u.factory();
+		final Relation node = Relation.unary("Node"), edge = Relation.binary("edge");
+		bounds = new Bounds(u);
+		bounds.boundExactly(node, f.allOf(1));
+		bounds.bound(edge, f.allOf(2));
+
+		final Variable x = Variable.unary("x"), y = Variable.unary("y"), z = Variable.unary("z");
+		final Formula body = x.product(y).in(edge).implies(
+				y.product(z).in(edge).implies(x.product(z).in(edge)).forAll(z.oneOf(node)));
+		formula = body.forAll(y.oneOf(node)).forAll(x.oneOf(node));
+
+		options = new Options();
+		options.setSolver(SATFactory.DefaultSAT4J);
+		options.setSymmetryBreaking(0);
+		options.setTranslationThreads(threads);
+		options.setGroundingGrain(threads == 1 ? 0 : 8);
+	}
+
+	@Benchmark
+	public int translate(Cnf cnf) {
+		final Translation.Whole transl = Translator.translate(formula, bounds, options);
+		cnf.variables = transl.cnf().numberOfVariables();
+		cnf.clauses = transl.cnf().numberOfClauses();
+		transl.cnf().free();
+		return (int) cnf.clauses;
+	}
+}
@@ -0,0 +1,146 @@
+package kodkod.engine.fol2sat;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.ast.Formula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.bool.BooleanFormula;
+import kodkod.engine.bool.BooleanValue;
+import kodkod.engine.config.AbstractReporter;
+import kodkod.engine.config.Options;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+import kodkod.util.nodes.AnnotatedNode;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the stages of the translation pipeline on representative formula shapes:
+ * the whole of {@link Translator#translate(Formula, Bounds, Options)}, the FOL to boolean
+ * step ({@link FOL2BoolTranslator}), the boolean to CNF step ({@link Bool2CNFTranslator}),
+ * and the generation of symmetry breaking predicates ({@link SymmetryBreaker}).  The
+ * CNF is sent to a solver that only counts clauses, so solving is not measured.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TranslationBenchmark {
+
+	/** join: a chain of joins; quantifier: nested quantifiers; closure: reachability; cardinality: integer constraints */
+	@Param({ "join", "quantifier", "closure", "cardinality" })
+	public String shape;
+
+	@Param({ "8", "16" })
+	public int size;
+
+	private Formula formula;
+	private Bounds bounds;
+	private Options options;
+	private AnnotatedNode<Formula> annotated;
+	private BooleanFormula circuit;
+	private int maxPrimaryVar;
+
+	/**
+	 * A SATSolver that keeps count of the clauses it is given and discards them.
+	 */
+	private static final class CountingSolver implements SATSolver {
+		int vars, clauses;
+		public int numberOfVariables() { return vars; }
+		public int numberOfClauses() { return clauses; }
+		public void addVariables(int numVars) { vars += numVars; }
+		public boolean addClause(int[] lits) { clauses++; return true; }
+		public boolean solve() { throw new UnsupportedOperationException(); }
+		public boolean solve(int[] assumptions) { throw new UnsupportedOperationException(); }
+		public int[] failedAssumptions() { throw new UnsupportedOperationException(); }
+		public boolean valueOf(int variable) { throw new UnsupportedOperationException(); }
+		public void free() {}
+	}
+
+	private static final SATFactory COUNTING = new SATFactory() {
+		public SATSolver instance() { return new CountingSolver(); }
+		public String toString() { return "Counting"; }
+	};
+
+	@Setup
+	public void setUp() {
+		final List<String> atoms = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			atoms.add("n" + i);
+		}
+		final Universe universe = new Universe(atoms);
+		final TupleFactory f = universe.factory();
+		final Relation node = Relation.unary("Node"), next = Relation.binary("next");
+		final Variable x = Variable.unary("x"), y = Variable.unary("y");
+
+		bounds = new Bounds(universe);
+		bounds.boundExactly(node, f.allOf(1));
+		bounds.bound(next, f.allOf(2));
+
+		if (shape.equals("join")) {
+			formula = next.join(next).join(next).intersection(next.transpose()).some()
+					.and(next.join(next).in(next));
+		} else if (shape.equals("quantifier")) {
+			formula = x.product(y).in(next).and(y.join(next).eq(x.join(next)).not())
+					.forSome(y.oneOf(node.difference(x))).forAll(x.oneOf(node));
+		} else if (shape.equals("closure")) {
+			formula = node.in(x.join(next.closure())).forAll(x.oneOf(node))
+					.and(next.function(node, node));
+		} else if (shape.equals("cardinality")) {
+			formula = next.count().eq(node.count())
+					.and(x.join(next).count().lte(IntConstant.constant(2)).forAll(x.oneOf(node)));
+		} else {
+			throw new IllegalArgumentException("unknown shape: " + shape);
+		}
+
+		options = new Options();
+		options.setSolver(COUNTING);
+		options.setBitwidth(8);
+		annotated = AnnotatedNode.annotateRoots(formula);
+
+		final LeafInterpreter interpreter = LeafInterpreter.exact(bounds, options, false);
+		final BooleanValue value = FOL2BoolTranslator.translate(annotated, interpreter);
+		circuit = value instanceof BooleanFormula ? (BooleanFormula) value : null;
+		maxPrimaryVar = interpreter.factory().maxVariable();
+	}
+
+	@Benchmark
+	public Translation translate() {
+		return Translator.translate(formula, bounds, options);
+	}
+
+	@Benchmark
+	public BooleanValue fol2bool() {
+		return FOL2BoolTranslator.translate(annotated, LeafInterpreter.exact(bounds, options, false));
+	}
+
+	@Benchmark
+	public int bool2cnf() {
+		return circuit == null ? 0 : Bool2CNFTranslator.translate(circuit, maxPrimaryVar, COUNTING).numberOfClauses();
+	}
+
+	@Benchmark
+	public BooleanValue symmetryBreaking() {
+		final SymmetryBreaker breaker = new SymmetryBreaker(bounds, new AbstractReporter() {});
+		return breaker.generateSBP(LeafInterpreter.exact(bounds, options, false), options);
+	}
+}
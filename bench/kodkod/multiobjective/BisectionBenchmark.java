@@ -0,0 +1,136 @@
+package kodkod.multiobjective;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+import java.util.concurrent.TimeUnit;
+
+import kodkod.ast.Formula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.Relation;
+import kodkod.engine.Solution;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+import kodkod.multiobjective.Testmodels.items_12_metrics_3;
+import kodkod.multiobjective.algorithms.AlgorithmFactory;
+import kodkod.multiobjective.algorithms.MultiObjectiveAlgorithm;
+import kodkod.multiobjective.concurrency.SolutionNotifier;
+import kodkod.multiobjective.statistics.StatKey;
+import kodkod.multiobjective.statistics.Stats;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Compares {@linkplain AlgorithmFactory#BGIA bisection} with {@linkplain AlgorithmFactory#IGIA
+ * incremental guided improvement} on the items_12_metrics_3 test model and on two-objective item
+ * selections on which improvement steps may be small.  Each invocation finds the whole Pareto
+ * front with SAT4J.  The number of Pareto points, the number of SAT calls, and the number of
+ * those calls that were bisection steps are reported next to the time.  These are summed over
+ * the measurement iterations, each of which is a single run, so the raw data in the JSON results
+ * holds them per run.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class BisectionBenchmark {
+
+	@Param({ "IGIA", "BGIA" })
+	public String algorithm;
+
+	/** items_12_metrics_3, or budget_n for a selection of at most n/2 out of n items */
+	@Param({ "items_12_metrics_3", "budget_16", "budget_32", "budget_48" })
+	public String problem;
+
+	private AlgorithmFactory factory;
+	private MultiObjectiveProblem instance;
+
+	/**
+	 * The front and the SAT calls of each invocation.
+	 */
+	@State(Scope.Thread)
+	@AuxCounters(AuxCounters.Type.EVENTS)
+	public static class Calls {
+		public long paretoPoints, satCalls, bisectionCalls;
+	}
+
+	private static final SolutionNotifier IGNORE = new SolutionNotifier() {
+		public void tell(MeasuredSolution s) {}
+		public void tell(Solution s, MetricPoint values) {}
+		public void exception(Throwable e) {
+			throw new RuntimeException(e);
+		}
+		public void done() {}
+	};
+
+	@Setup
+	public void setUp() throws ReflectiveOperationException {
+		factory = (AlgorithmFactory) AlgorithmFactory.class.getField(algorithm).get(null);
+		if (problem.equals("items_12_metrics_3")) {
+			instance = new items_12_metrics_3().getProblem();
+		} else if (problem.startsWith("budget_")) {
+			instance = budget(Integer.parseInt(problem.substring("budget_".length())));
+		} else {
+			throw new IllegalArgumentException("unknown problem: " + problem);
+		}
+	}
+
+	// Selects at most half of the items against two competing objectives:  maximize #(chosen & A)
+	// and maximize #(chosen & B), where A and B split the items in two.  Every point on the front
+	// spends the whole budget, but an improvement step may add as little as one item.
+	private static MultiObjectiveProblem budget(int size) {
+		final List<String> atoms = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			atoms.add("i" + i);
+		}
+		final Universe universe = new Universe(atoms);
+		final TupleFactory f = universe.factory();
+		final Relation item = Relation.unary("Item"), a = Relation.unary("A"), b = Relation.unary("B");
+		final Relation chosen = Relation.unary("chosen");
+		final Bounds bounds = new Bounds(universe);
+		bounds.boundExactly(item, f.allOf(1));
+		bounds.boundExactly(a, f.range(f.tuple("i0"), f.tuple("i" + (size / 2 - 1))));
+		bounds.boundExactly(b, f.range(f.tuple("i" + (size / 2)), f.tuple("i" + (size - 1))));
+		bounds.bound(chosen, f.allOf(1));
+
+		final TreeSet<Objective> objectives = new TreeSet<Objective>();
+		objectives.add(Objective.newMaxObjective("maximize[#(chosen & A)]", chosen.intersection(a).count()));
+		objectives.add(Objective.newMaxObjective("maximize[#(chosen & B)]", chosen.intersection(b).count()));
+
+		int bitWidth = 2;
+		while ((1 << (bitWidth - 1)) <= size) {
+			bitWidth++;
+		}
+		final Formula formula = chosen.in(item).and(chosen.count().lte(IntConstant.constant(size / 2)));
+		return new MultiObjectiveProblem(bounds, bitWidth, formula, objectives);
+	}
+
+	@Benchmark
+	public long solve(Calls calls) {
+		final MultiObjectiveOptions options = new MultiObjectiveOptions();
+		options.getKodkodOptions().setSolver(SATFactory.DefaultSAT4J);
+		options.setAllSolutionsPerPoint(false);
+		final MultiObjectiveAlgorithm solver = factory.instance(options);
+		solver.multiObjectiveSolve(instance, IGNORE);
+		final Stats stats = solver.getStats();
+		calls.paretoPoints = stats.get(StatKey.OPTIMAL_METRIC_POINTS);
+		calls.satCalls = stats.get(StatKey.REGULAR_SAT_CALL) + stats.get(StatKey.REGULAR_UNSAT_CALL);
+		calls.bisectionCalls = stats.get(StatKey.BISECTION_SAT_CALL) + stats.get(StatKey.BISECTION_UNSAT_CALL);
+		return calls.satCalls;
+	}
+}
@@ -0,0 +1,78 @@
+package kodkod.multiobjective;
+
+import java.util.concurrent.TimeUnit;
+
+import kodkod.engine.Solution;
+import kodkod.engine.config.Options;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.multiobjective.Testmodels.items_12_metrics_3;
+import kodkod.multiobjective.Testmodels.rooks_3_metrics_2;
+import kodkod.multiobjective.algorithms.AlgorithmFactory;
+import kodkod.multiobjective.concurrency.SolutionNotifier;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures complete multi-objective runs of the {@linkplain AlgorithmFactory algorithms}
+ * on the rooks_3_metrics_2 and items_12_metrics_3 test models, whose objectives are sums
+ * of integer atoms and cardinalities, respectively, with each {@linkplain Options.IntEncoding
+ * integer encoding}.  Each invocation finds the whole Pareto front,
+ * so the benchmark reports the time of single runs.  The runs use MiniSat, which
+ * PGIA requires for its checkpointed translation.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+@Fork(1)
+public class MultiObjectiveBenchmark {
+
+	/** The name of a field of {@link AlgorithmFactory} */
+	@Param({ "GIA", "IGIA", "PGIA" })
+	public String algorithm;
+
+	@Param({ "rooks", "items" })
+	public String model;
+
+	@Param({ "TWOSCOMPLEMENT", "UNARY_COUNTERS" })
+	public Options.IntEncoding intEncoding;
+
+	private AlgorithmFactory factory;
+	private MultiObjectiveProblem problem;
+
+	private static final SolutionNotifier IGNORE = new SolutionNotifier() {
+		public void tell(MeasuredSolution s) {}
+		public void tell(Solution s, MetricPoint values) {}
+		public void exception(Throwable e) {
+			throw new RuntimeException(e);
+		}
+		public void done() {}
+	};
+
+	@Setup
+	public void setUp() throws ReflectiveOperationException {
+		factory = (AlgorithmFactory) AlgorithmFactory.class.getField(algorithm).get(null);
+		problem = (model.equals("rooks") ? new rooks_3_metrics_2() : new items_12_metrics_3()).getProblem();
+	}
+
+	@Benchmark
+	public int solve() {
+		final MultiObjectiveOptions options = new MultiObjectiveOptions();
+		options.getKodkodOptions().setSolver(SATFactory.MiniSat);
+		options.getKodkodOptions().setIntEncoding(intEncoding);
+		options.setAllSolutionsPerPoint(false);
+		factory.instance(options).multiObjectiveSolve(problem, IGNORE);
+		return options.getThreads();
+	}
+}
@@ -0,0 +1,118 @@
+package kodkod.util.ints;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Measures the basic operations of {@link IntBitSet} and {@link IntTreeSet} on
+ * random sets of a given density.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class IntSetBenchmark {
+
+	@Param({ "bitset", "tree" })
+	public String impl;
+
+	@Param({ "4096" })
+	public int capacity;
+
+	/** The fraction of [0..capacity) that is in each set */
+	@Param({ "0.05", "0.5" })
+	public double density;
+
+	private int[] elements, probes;
+	private IntSet s0, s1;
+
+	private IntSet empty() {
+		return impl.equals("bitset") ? new IntBitSet(capacity) : new IntTreeSet();
+	}
+
+	private IntSet random(Random random) {
+		final IntSet s = empty();
+		for (int i = 0; i < capacity; i++) {
+			if (random.nextDouble() < density) {
+				s.add(i);
+			}
+		}
+		return s;
+	}
+
+	@Setup
+	public void setUp() {
+		final Random random = new Random(capacity);
+		s0 = random(random);
+		s1 = random(random);
+		elements = s0.toArray();
+		for (int i = elements.length - 1; i > 0; i--) {
+			final int j = random.nextInt(i + 1), tmp = elements[i];
+			elements[i] = elements[j];
+			elements[j] = tmp;
+		}
+		probes = new int[capacity];
+		for (int i = 0; i < capacity; i++) {
+			probes[i] = random.nextInt(capacity);
+		}
+	}
+
+	@Benchmark
+	public IntSet add() {
+		final IntSet s = empty();
+		for (int i : elements) {
+			s.add(i);
+		}
+		return s;
+	}
+
+	@Benchmark
+	public int contains() {
+		int found = 0;
+		for (int i : probes) {
+			if (s0.contains(i)) {
+				found++;
+			}
+		}
+		return found;
+	}
+
+	@Benchmark
+	public int iterate() {
+		int sum = 0;
+		for (IntIterator itr = s0.iterator(); itr.hasNext();) {
+			sum += itr.next();
+		}
+		return sum;
+	}
+
+	@Benchmark
+	public IntSet union() {
+		final IntSet s = empty();
+		s.addAll(s0);
+		s.addAll(s1);
+		return s;
+	}
+
+	@Benchmark
+	public IntSet intersection() {
+		final IntSet s = empty();
+		s.addAll(s0);
+		s.retainAll(s1);
+		return s;
+	}
+}
@@ -73,6 +73,30 @@ JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_CryptoMiniSat_addClause
 	return solverPtr->okay();
 }
 
+/*
+ * Class:     kodkod_engine_satlab_CryptoMiniSat
+ * Method:    addClauses
+ * Signature: (JLjava/nio/IntBuffer;I)I
+ */
+JNIEXPORT jint JNICALL Java_kodkod_engine_satlab_CryptoMiniSat_addClauses
+(JNIEnv * env, jobject, jlong solver, jobject clauses, jint length) {
+	jint* buf = (jint*) env->GetDirectBufferAddress(clauses);
+	Solver* solverPtr = ((Solver*)solver);
+	vec<Lit> lits;
+	jint added = 0;
+	for(int i = 0; i < length; ++i) {
+		int lit = *(buf+i);
+		if (lit == 0) {
+			solverPtr->addClause(lits);
+			if (solverPtr->okay()) added++;
+			lits.clear();
+		} else {
+			lits.push((lit > 0) ?  Lit(lit-1, false) : Lit(-lit-1, true));
+		}
+	}
+	return added;
+}
+
 /*
  * Class:     kodkod_engine_satlab_CryptoMiniSat
  * Method:    solve
@@ -83,6 +107,54 @@ JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_CryptoMiniSat_solve
 	return ((Solver*)solver)->solve()==l_True;
 }
 
+/*
+ * Class:     kodkod_engine_satlab_CryptoMiniSat
+ * Method:    solveAssuming
+ * Signature: (J[I)Z
+ */
+JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_CryptoMiniSat_solveAssuming
+(JNIEnv * env, jobject, jlong solver, jintArray assumptions) {
+	jsize length = env->GetArrayLength(assumptions);
+	jint* buf = env->GetIntArrayElements(assumptions, JNI_FALSE);
+	vec<Lit> lits;
+	for(int i = 0; i < length; ++i) {
+		int var = *(buf+i);
+		lits.push((var > 0) ?  Lit(var-1, false) : Lit(-var-1, true));
+	}
+	env->ReleaseIntArrayElements(assumptions, buf, JNI_ABORT);
+	return ((Solver*)solver)->solve(lits)==l_True;
+}
+
+/*
+ * Class:     kodkod_engine_satlab_CryptoMiniSat
+ * Method:    failedAssumptions
+ * Signature: (J)[I
+ */
+JNIEXPORT jintArray JNICALL Java_kodkod_engine_satlab_CryptoMiniSat_failedAssumptions
+(JNIEnv * env, jobject, jlong solver) {
+	Solver* solverPtr = (Solver*) solver;
+	// the final conflict is a clause over the negations of the failed assumptions
+	const int length = solverPtr->conflict.size();
+	jintArray failed = env->NewIntArray(length);
+	jint* buf = env->GetIntArrayElements(failed, JNI_FALSE);
+	for(int i = 0; i < length; ++i) {
+		Lit lit = solverPtr->conflict[i];
+		*(buf+i) = lit.sign() ? lit.var()+1 : -(lit.var()+1);
+	}
+	env->ReleaseIntArrayElements(failed, buf, 0);
+	return failed;
+}
+
+/*
+ * Class:     kodkod_engine_satlab_CryptoMiniSat
+ * Method:    setInterrupt
+ * Signature: (JZ)V
+ */
+JNIEXPORT void JNICALL Java_kodkod_engine_satlab_CryptoMiniSat_setInterrupt
+(JNIEnv *, jobject, jlong solver, jboolean interrupt) {
+	((Solver*)solver)->needToInterrupt = interrupt;
+}
+
 /*
  * Class:     kodkod_engine_satlab_CryptoMiniSat
  * Method:    valueOf
@@ -39,6 +39,14 @@ JNIEXPORT void JNICALL Java_kodkod_engine_satlab_CryptoMiniSat_addVariables
 JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_CryptoMiniSat_addClause
   (JNIEnv *, jobject, jlong, jintArray);
 
+/*
+ * Class:     kodkod_engine_satlab_CryptoMiniSat
+ * Method:    addClauses
+ * Signature: (JLjava/nio/IntBuffer;I)I
+ */
+JNIEXPORT jint JNICALL Java_kodkod_engine_satlab_CryptoMiniSat_addClauses
+  (JNIEnv *, jobject, jlong, jobject, jint);
+
 /*
  * Class:     kodkod_engine_satlab_CryptoMiniSat
  * Method:    solve
@@ -47,6 +55,30 @@ JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_CryptoMiniSat_addClause
 JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_CryptoMiniSat_solve
   (JNIEnv *, jobject, jlong);
 
+/*
+ * Class:     kodkod_engine_satlab_CryptoMiniSat
+ * Method:    solveAssuming
+ * Signature: (J[I)Z
+ */
+JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_CryptoMiniSat_solveAssuming
+  (JNIEnv *, jobject, jlong, jintArray);
+
+/*
+ * Class:     kodkod_engine_satlab_CryptoMiniSat
+ * Method:    failedAssumptions
+ * Signature: (J)[I
+ */
+JNIEXPORT jintArray JNICALL Java_kodkod_engine_satlab_CryptoMiniSat_failedAssumptions
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     kodkod_engine_satlab_CryptoMiniSat
+ * Method:    setInterrupt
+ * Signature: (JZ)V
+ */
+JNIEXPORT void JNICALL Java_kodkod_engine_satlab_CryptoMiniSat_setInterrupt
+  (JNIEnv *, jobject, jlong, jboolean);
+
 /*
  * Class:     kodkod_engine_satlab_CryptoMiniSat
  * Method:    valueOf
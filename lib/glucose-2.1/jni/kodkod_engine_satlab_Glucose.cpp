@@ -65,6 +65,30 @@ JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_Glucose_addClause
 	return solverPtr->okay();
 }
 
+/*
+ * Class:     kodkod_engine_satlab_Glucose
+ * Method:    addClauses
+ * Signature: (JLjava/nio/IntBuffer;I)I
+ */
+JNIEXPORT jint JNICALL Java_kodkod_engine_satlab_Glucose_addClauses
+(JNIEnv * env, jobject, jlong solver, jobject clauses, jint length) {
+	jint* buf = (jint*) env->GetDirectBufferAddress(clauses);
+	Solver* solverPtr = ((Solver*)solver);
+	vec<Lit> lits;
+	jint added = 0;
+	for(int i = 0; i < length; ++i) {
+		int lit = *(buf+i);
+		if (lit == 0) {
+			solverPtr->addClause(lits);
+			if (solverPtr->okay()) added++;
+			lits.clear();
+		} else {
+			lits.push((lit > 0) ?  mkLit(lit-1) : ~mkLit(-lit-1));
+		}
+	}
+	return added;
+}
+
 /*
  * Class:     kodkod_engine_satlab_Glucose
  * Method:    solve
@@ -76,6 +100,57 @@ JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_Glucose_solve
 	return ((Solver*)solver)->solve();
 }
 
+/*
+ * Class:     kodkod_engine_satlab_Glucose
+ * Method:    solveAssuming
+ * Signature: (J[I)Z
+ */
+JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_Glucose_solveAssuming
+(JNIEnv * env, jobject, jlong solver, jintArray assumptions) {
+	jsize length = env->GetArrayLength(assumptions);
+	jint* buf = env->GetIntArrayElements(assumptions, JNI_FALSE);
+	vec<Lit> lits;
+	for(int i = 0; i < length; ++i) {
+		int var = *(buf+i);
+		lits.push((var > 0) ?  mkLit(var-1) : ~mkLit(-var-1));
+	}
+	env->ReleaseIntArrayElements(assumptions, buf, JNI_ABORT);
+	return ((Solver*)solver)->solve(lits);
+}
+
+/*
+ * Class:     kodkod_engine_satlab_Glucose
+ * Method:    failedAssumptions
+ * Signature: (J)[I
+ */
+JNIEXPORT jintArray JNICALL Java_kodkod_engine_satlab_Glucose_failedAssumptions
+(JNIEnv * env, jobject, jlong solver) {
+	Solver* solverPtr = (Solver*) solver;
+	// the final conflict is a clause over the negations of the failed assumptions
+	const int length = solverPtr->conflict.size();
+	jintArray failed = env->NewIntArray(length);
+	jint* buf = env->GetIntArrayElements(failed, JNI_FALSE);
+	for(int i = 0; i < length; ++i) {
+		Lit lit = solverPtr->conflict[i];
+		*(buf+i) = sign(lit) ? var(lit)+1 : -(var(lit)+1);
+	}
+	env->ReleaseIntArrayElements(failed, buf, 0);
+	return failed;
+}
+
+/*
+ * Class:     kodkod_engine_satlab_Glucose
+ * Method:    setInterrupt
+ * Signature: (JZ)V
+ */
+JNIEXPORT void JNICALL Java_kodkod_engine_satlab_Glucose_setInterrupt
+(JNIEnv *, jobject, jlong solver, jboolean interrupt) {
+	if (interrupt)
+		((Solver*)solver)->interrupt();
+	else
+		((Solver*)solver)->clearInterrupt();
+}
+
 /*
  * Class:     kodkod_engine_satlab_Glucose
  * Method:    valueOf
@@ -62,6 +62,25 @@ JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_Lingeling_addClause
 	return JNI_TRUE;
 }
 
+/*
+ * Class:     kodkod_engine_satlab_Lingeling
+ * Method:    addClauses
+ * Signature: (JLjava/nio/IntBuffer;I)I
+ */
+JNIEXPORT jint JNICALL Java_kodkod_engine_satlab_Lingeling_addClauses
+  (JNIEnv * env, jobject obj, jlong lgl, jobject clauses, jint length) {
+	jint* buf = (jint*) (*env)->GetDirectBufferAddress(env, clauses);
+	LGL* lglPtr = (LGL*)lgl;
+	jint added = 0;
+	int i;
+	for(i = 0; i < length; i++) {
+		int lit = *(buf+i);
+		lgladd (lglPtr, lit);
+		if (lit == 0) added++;
+	}
+	return added;
+}
+
 /*
  * Class:     kodkod_engine_satlab_Lingeling
  * Method:    solve
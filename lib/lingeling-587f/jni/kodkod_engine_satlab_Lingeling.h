@@ -39,6 +39,14 @@ JNIEXPORT void JNICALL Java_kodkod_engine_satlab_Lingeling_addVariables
 JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_Lingeling_addClause
   (JNIEnv *, jobject, jlong, jintArray);
 
+/*
+ * Class:     kodkod_engine_satlab_Lingeling
+ * Method:    addClauses
+ * Signature: (JLjava/nio/IntBuffer;I)I
+ */
+JNIEXPORT jint JNICALL Java_kodkod_engine_satlab_Lingeling_addClauses
+  (JNIEnv *, jobject, jlong, jobject, jint);
+
 /*
  * Class:     kodkod_engine_satlab_Lingeling
  * Method:    solve
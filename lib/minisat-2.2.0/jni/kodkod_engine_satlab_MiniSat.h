@@ -47,6 +47,14 @@ JNIEXPORT void JNICALL Java_kodkod_engine_satlab_MiniSat_addVariables
 JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_MiniSat_addClause
   (JNIEnv *, jobject, jlong, jintArray);
 
+/*
+ * Class:     kodkod_engine_satlab_MiniSat
+ * Method:    addClauses
+ * Signature: (JLjava/nio/IntBuffer;I)I
+ */
+JNIEXPORT jint JNICALL Java_kodkod_engine_satlab_MiniSat_addClauses
+  (JNIEnv *, jobject, jlong, jobject, jint);
+
 /*
  * Class:     kodkod_engine_satlab_MiniSat
  * Method:    solve
@@ -55,6 +63,30 @@ JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_MiniSat_addClause
 JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_MiniSat_solve
   (JNIEnv *, jobject, jlong);
 
+/*
+ * Class:     kodkod_engine_satlab_MiniSat
+ * Method:    solveAssuming
+ * Signature: (J[I)Z
+ */
+JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_MiniSat_solveAssuming
+  (JNIEnv *, jobject, jlong, jintArray);
+
+/*
+ * Class:     kodkod_engine_satlab_MiniSat
+ * Method:    failedAssumptions
+ * Signature: (J)[I
+ */
+JNIEXPORT jintArray JNICALL Java_kodkod_engine_satlab_MiniSat_failedAssumptions
+  (JNIEnv *, jobject, jlong);
+
+/*
+ * Class:     kodkod_engine_satlab_MiniSat
+ * Method:    setInterrupt
+ * Signature: (JZ)V
+ */
+JNIEXPORT void JNICALL Java_kodkod_engine_satlab_MiniSat_setInterrupt
+  (JNIEnv *, jobject, jlong, jboolean);
+
 /*
  * Class:     kodkod_engine_satlab_MiniSat
  * Method:    valueOf
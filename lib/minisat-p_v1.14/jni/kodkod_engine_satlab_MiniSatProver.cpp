@@ -90,6 +90,44 @@ JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_MiniSatProver_solve
    return ((Solver*)solver)->solve();
   }
 
+/*
+ * Class:     kodkod_engine_satlab_MiniSatProver
+ * Method:    solveAssuming
+ * Signature: (J[I)Z
+ */
+JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_MiniSatProver_solveAssuming
+  (JNIEnv * env, jobject, jlong solver, jintArray assumptions) {
+    jsize length = env->GetArrayLength(assumptions);
+    jint* buf = env->GetIntArrayElements(assumptions, JNI_FALSE);
+    vec<Lit> lits;
+    for(int i = 0; i < length; ++i) {
+        int var = *(buf+i);
+        lits.push((var > 0) ? Lit(var-1) : ~Lit(-var-1));
+    }
+    env->ReleaseIntArrayElements(assumptions, buf, JNI_ABORT);
+    return ((Solver*)solver)->solve(lits);
+  }
+
+/*
+ * Class:     kodkod_engine_satlab_MiniSatProver
+ * Method:    failedAssumptions
+ * Signature: (J)[I
+ */
+JNIEXPORT jintArray JNICALL Java_kodkod_engine_satlab_MiniSatProver_failedAssumptions
+  (JNIEnv * env, jobject, jlong solver) {
+    Solver* solverPtr = (Solver*) solver;
+    // the final conflict is a clause over the negations of the failed assumptions
+    const int length = solverPtr->conflict.size();
+    jintArray failed = env->NewIntArray(length);
+    jint* buf = env->GetIntArrayElements(failed, JNI_FALSE);
+    for(int i = 0; i < length; ++i) {
+        Lit lit = solverPtr->conflict[i];
+        *(buf+i) = sign(lit) ? var(lit)+1 : -(var(lit)+1);
+    }
+    env->ReleaseIntArrayElements(failed, buf, 0);
+    return failed;
+  }
+
 /*
  * Class:     kodkod_engine_satlab_MiniSatProver
  * Method:    valueOf
@@ -100,63 +138,156 @@ JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_MiniSatProver_valueOf
   return ((Solver*)solver)->model[var-1]==l_True;
  }
 
+// Returns the number of bytes in the varint encoding of v.
+static inline int varintSize(unsigned int v) {
+	int size = 1;
+	while (v & ~0x7Fu) {
+		v >>= 7;
+		size++;
+	}
+	return size;
+}
+
+/*
+ * Computes the number of clauses in a resolution trace and the number of bytes 
+ * in its encoding, so that the trace can be stored without regrowing the sink.
+ */
+struct TraceSizer : public ProofTraverser {
+	jboolean record;
+	jlong bytes;
+	jint clauses;
+	
+	TraceSizer(jboolean recordAxioms) {
+		record = recordAxioms;
+		bytes = 0;
+		clauses = 0;
+	}
+	
+	void root (const vec<Lit>& c) {
+		const int n = record ? c.size() : 0;
+		bytes += varintSize(n << 1);
+		for(int i = 0, prev = 0; i < n; i++) {
+			const int v = var(c[i]) + 1;
+			bytes += varintSize(((v - prev) << 1) | (sign(c[i]) ? 1 : 0));
+			prev = v;
+		}
+		clauses++;
+	}
+	
+	void chain  (const vec<ClauseId>& cs, const vec<Var>& xs) {
+		bytes += varintSize((cs.size() << 1) | 1);
+		for(int i = 0; i < cs.size(); i++) {
+			bytes += varintSize(clauses - cs[i]);
+		}
+		clauses++;
+	}
+	
+	void deleted(ClauseId c) {}
+	void done() {}
+};
+
+/*
+ * Streams a resolution trace into a kodkod.engine.satlab.TraceBuffer, one direct 
+ * buffer chunk at a time.  Each chunk holds whole clauses, encoded as varints as 
+ * specified by TraceBuffer:  a header (n << 1 | kind) followed by n integers, 
+ * which are the delta-encoded literals of a root clause (kind 0) or the distances 
+ * back to the antecedents of a resolvent (kind 1).
+ */
 struct TraceGenerator : public ProofTraverser {
 	JNIEnv* env;
-	jobjectArray trace;
+	jobject sink;
+	jmethodID flush;
 	jboolean record;
-	int idx, offset;
+	jbyte* buf;
+	jlong capacity, pos;
+	int idx;
+	bool failed;
 	
-	TraceGenerator(JNIEnv* environment, jboolean recordAxioms, jint goal, int nVars) { 
+	TraceGenerator(JNIEnv* environment, jboolean recordAxioms, jobject traceSink) { 
 	  	idx = 0; 
-	  	offset = nVars+1;
 	  	env = environment;
 	  	record = recordAxioms;
-	  	trace = (jobjectArray)env->NewObjectArray(goal+1, env->FindClass("[I"), NULL);
+	  	sink = traceSink;
+	  	flush = env->GetMethodID(env->GetObjectClass(sink), "flush", "(II)Ljava/nio/ByteBuffer;");
+	  	buf = NULL;
+	  	capacity = pos = 0;
+	  	failed = (flush == NULL);
+	}
+	
+	// Hands the filled part of the current chunk to the sink, and gets a 
+	// chunk with room for at least the given number of bytes, if needed.
+	bool reserve(jlong required) {
+		if (failed) return false;
+		if (buf != NULL && capacity - pos >= required) return true;
+		jobject chunk = env->CallObjectMethod(sink, flush, (jint) pos, (jint) required);
+		if (env->ExceptionCheck() || chunk == NULL) {
+			failed = true;
+			return false;
+		}
+		buf = (jbyte*) env->GetDirectBufferAddress(chunk);
+		capacity = env->GetDirectBufferCapacity(chunk);
+		env->DeleteLocalRef(chunk);
+		pos = 0;
+		return true;
+	}
+	
+	void put(unsigned int v) {
+		while (v & ~0x7Fu) {
+			buf[pos++] = (jbyte) ((v & 0x7F) | 0x80);
+			v >>= 7;
+		}
+		buf[pos++] = (jbyte) v;
 	}
 	
 	void root (const vec<Lit>& c) {
-		if (record) {	
-			jintArray lits = env->NewIntArray(c.size());
-			jint* data = env->GetIntArrayElements(lits, JNI_FALSE);
-			for(int i = 0; i < c.size(); i++) {
-				data[i] = toDimacs(c[i]);
+		const int n = record ? c.size() : 0;
+		if (reserve(5 * ((jlong) n + 1))) {
+			put(n << 1);
+			for(int i = 0, prev = 0; i < n; i++) {
+				const int v = var(c[i]) + 1;
+				put(((v - prev) << 1) | (sign(c[i]) ? 1 : 0));
+				prev = v;
 			}
-			env->ReleaseIntArrayElements(lits, data, 0); 
-			env->SetObjectArrayElement(trace, idx, lits);
-			env->DeleteLocalRef(lits);
 		}
 		idx++;
 	}
 	
 	void chain  (const vec<ClauseId>& cs, const vec<Var>& xs) {
-        jintArray ante = env->NewIntArray(cs.size());
-        jint* data = env->GetIntArrayElements(ante, JNI_FALSE);
-        data[0] = cs[0] + offset;
-        for(int i = 1; i< cs.size(); i++) {
-        	data[i] = cs[i];
-        }
-        env->ReleaseIntArrayElements(ante, data, 0);
-        env->SetObjectArrayElement(trace, idx, ante);
-        env->DeleteLocalRef(ante);
+		if (reserve(5 * ((jlong) cs.size() + 1))) {
+			put((cs.size() << 1) | 1);
+			for(int i = 0; i < cs.size(); i++) {
+				put(idx - cs[i]);
+			}
+		}
 		idx++;
 	}
 	
 	void deleted(ClauseId c) {}
-	void done() {}
+	
+	void done() {
+		if (!failed) {
+			env->CallObjectMethod(sink, flush, (jint) pos, (jint) 0);
+			buf = NULL;
+		}
+	}
 	
 };
 
 /*
  * Class:     kodkod_engine_satlab_MiniSatProver
  * Method:    trace
- * Signature: (JZ)[Ljava/lang/Object;
+ * Signature: (JZLkodkod/engine/satlab/TraceBuffer;)V
  */
-JNIEXPORT jobjectArray JNICALL Java_kodkod_engine_satlab_MiniSatProver_trace
-  (JNIEnv * env, jobject, jlong solver, jboolean recordAxioms) {
+JNIEXPORT void JNICALL Java_kodkod_engine_satlab_MiniSatProver_trace
+  (JNIEnv * env, jobject, jlong solver, jboolean recordAxioms, jobject sink) {
     Solver* solverPtr = ((Solver*) solver);
     Proof* proof = solverPtr->proof;
-  	TraceGenerator tgen = TraceGenerator(env, recordAxioms, proof->last(), solverPtr->nVars());
+    TraceSizer sizer = TraceSizer(recordAxioms);
+    proof->traverse(sizer);
+    jmethodID reserve = env->GetMethodID(env->GetObjectClass(sink), "reserve", "(JI)V");
+    if (reserve == NULL) return;
+    env->CallVoidMethod(sink, reserve, sizer.bytes, sizer.clauses);
+    if (env->ExceptionCheck()) return;
+  	TraceGenerator tgen = TraceGenerator(env, recordAxioms, sink);
     proof->traverse(tgen);
-    return tgen.trace;
   }
-
@@ -47,6 +47,22 @@ JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_MiniSatProver_addClause
 JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_MiniSatProver_solve
   (JNIEnv *, jobject, jlong);
 
+/*
+ * Class:     kodkod_engine_satlab_MiniSatProver
+ * Method:    solveAssuming
+ * Signature: (J[I)Z
+ */
+JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_MiniSatProver_solveAssuming
+  (JNIEnv *, jobject, jlong, jintArray);
+
+/*
+ * Class:     kodkod_engine_satlab_MiniSatProver
+ * Method:    failedAssumptions
+ * Signature: (J)[I
+ */
+JNIEXPORT jintArray JNICALL Java_kodkod_engine_satlab_MiniSatProver_failedAssumptions
+  (JNIEnv *, jobject, jlong);
+
 /*
  * Class:     kodkod_engine_satlab_MiniSatProver
  * Method:    valueOf
@@ -58,10 +74,10 @@ JNIEXPORT jboolean JNICALL Java_kodkod_engine_satlab_MiniSatProver_valueOf
 /*
  * Class:     kodkod_engine_satlab_MiniSatProver
  * Method:    trace
- * Signature: (JZ)[[I
+ * Signature: (JZLkodkod/engine/satlab/TraceBuffer;)V
  */
-JNIEXPORT jobjectArray JNICALL Java_kodkod_engine_satlab_MiniSatProver_trace
-  (JNIEnv *, jobject, jlong, jboolean);
+JNIEXPORT void JNICALL Java_kodkod_engine_satlab_MiniSatProver_trace
+  (JNIEnv *, jobject, jlong, jboolean, jobject);
 
 #ifdef __cplusplus
 }
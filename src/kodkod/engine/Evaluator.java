@@ -29,6 +29,7 @@ import kodkod.engine.bool.Int;
 import kodkod.engine.config.Options;
 import kodkod.engine.fol2sat.Translator;
 import kodkod.instance.Instance;
+import kodkod.instance.TupleFactory;
 import kodkod.instance.TupleSet;
 
 /**
@@ -45,13 +46,21 @@ import kodkod.instance.TupleSet;
  * is an Options object with different integer settings than o,
  * e.evalate(f) may return false. </p>
  *
+ * <p>By default, formulas and expressions are evaluated {@linkplain Engine#TUPLES directly}
+ * over the tuples in the instance.  The {@linkplain Engine#CIRCUITS circuit} engine
+ * translates them to boolean circuits over constants instead; the two engines
+ * produce the same values.  The direct engine falls back to circuits when the 
+ * indices of some tuples are too large for an int. </p>
+ *
  * @specfield options: Options
  * @specfield instance: Instance
+ * @specfield engine: Engine
  * @author Emina Torlak
  */
 public final class Evaluator {
 	private final Instance instance;
 	private final Options options;
+	private final Engine engine;
 
 	/**
 	 * Constructs a new Evaluator for the given instance, using a
@@ -65,13 +74,23 @@ public final class Evaluator {
 
 	/**
 	 * Constructs a new Evaluator for the given instance and options
-	 * @ensures this.instance' = instance && this.options' = options
+	 * @ensures this.instance' = instance && this.options' = options && this.engine' = Engine.TUPLES
 	 * @throws NullPointerException  instance = null || options = null
 	 */
 	public Evaluator(Instance instance, Options options) {
-		if (instance==null || options==null) throw new NullPointerException();
+		this(instance, options, Engine.TUPLES);
+	}
+
+	/**
+	 * Constructs a new Evaluator for the given instance, options and engine
+	 * @ensures this.instance' = instance && this.options' = options && this.engine' = engine
+	 * @throws NullPointerException  instance = null || options = null || engine = null
+	 */
+	public Evaluator(Instance instance, Options options, Engine engine) {
+		if (instance==null || options==null || engine==null) throw new NullPointerException();
 		this.instance = instance;
 		this.options = options;
+		this.engine = engine;
 	}
 
 	/**
@@ -80,6 +99,12 @@ public final class Evaluator {
 	 */
 	public Options options() { return options; }
 
+	/**
+	 * Returns the engine used by this evaluator.
+	 * @return this.engine
+	 */
+	public Engine engine() { return engine; }
+
 	/**
 	 * Returns this.instance.  Any modifications to the returned object
 	 * will be reflected in the behavior of the evaluate methods.
@@ -99,6 +124,13 @@ public final class Evaluator {
 	 */
 	public boolean evaluate(Formula formula){
 		if (formula == null) throw new NullPointerException("formula");
+		if (engine==Engine.TUPLES) {
+			try {
+				return Translator.evaluateDirectly(formula, instance, options);
+			} catch (CapacityExceededException e) {
+				// some tuple indices do not fit into an int, so evaluate with circuits
+			}
+		}
 		return (Translator.evaluate(formula, instance, options)).booleanValue();
 	}
 
@@ -113,8 +145,17 @@ public final class Evaluator {
 	 */
 	public TupleSet evaluate(Expression expression){
 		if (expression == null) throw new NullPointerException("expression");
+		if (engine==Engine.TUPLES) {
+			try {
+				return Translator.evaluateDirectly(expression, instance, options);
+			} catch (CapacityExceededException e) {
+				// some tuple indices do not fit into an int, so evaluate with circuits
+			}
+		}
 		final BooleanMatrix sol = Translator.evaluate(expression,instance,options);
-		return instance.universe().factory().setOf(expression.arity(), sol.denseIndices());
+		final TupleFactory f = instance.universe().factory();
+		return sol.dimensions().isLongIndexed() ? 
+				f.setOf(expression.arity(), sol.longDenseIndices()) : f.setOf(expression.arity(), sol.denseIndices());
 	}
 
 	/**
@@ -128,6 +169,13 @@ public final class Evaluator {
 	 */
 	public int evaluate(IntExpression intExpr) {
 		if (intExpr == null) throw new NullPointerException("intexpression");
+		if (engine==Engine.TUPLES) {
+			try {
+				return Translator.evaluateDirectly(intExpr, instance, options);
+			} catch (CapacityExceededException e) {
+				// some tuple indices do not fit into an int, so evaluate with circuits
+			}
+		}
 		final Int sol = Translator.evaluate(intExpr, instance, options);
 //		System.out.println(sol);
 		return sol.value();
@@ -148,4 +196,19 @@ public final class Evaluator {
 	public String toString() {
 		return options + "\n" + instance;
 	}
+
+	/**
+	 * The ways in which an evaluator computes the values of formulas and expressions.
+	 */
+	public static enum Engine {
+		/**
+		 * Computes the values directly, as sets of tuples and integers.
+		 */
+		TUPLES,
+		/**
+		 * Translates formulas and expressions to boolean circuits over constants
+		 * and reads the values off the circuits.
+		 */
+		CIRCUITS
+	}
 }
@@ -21,8 +21,24 @@
  */
 package kodkod.engine;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+import kodkod.ast.Decl;
 import kodkod.ast.Formula;
+import kodkod.ast.QuantifiedFormula;
+import kodkod.ast.Relation;
+import kodkod.ast.operator.Multiplicity;
+import kodkod.ast.operator.Quantifier;
 import kodkod.engine.config.Options;
+import kodkod.engine.config.Options.Instantiation;
 import kodkod.engine.fol2sat.HigherOrderDeclException;
 import kodkod.engine.fol2sat.SymmetryDetector;
 import kodkod.engine.fol2sat.Translation;
@@ -32,7 +48,12 @@ import kodkod.engine.satlab.SATAbortedException;
 import kodkod.engine.satlab.SATFactory;
 import kodkod.engine.satlab.SATSolver;
 import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
 import kodkod.instance.Universe;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.IntTreeSet;
+import kodkod.util.nodes.Nodes;
 
 /** 
  * A computational engine for solving a sequence of related relational
@@ -58,18 +79,19 @@ import kodkod.instance.Universe;
  * </p>
  * 
  * <p>
- * To simplify the implementation, an {@linkplain IncrementalSolver} currently places
- * the following restriction on the sequence of bounds passed to its {@linkplain #solve(Formula, Bounds)} method:   
- * the equivalence classes on the {@linkplain Universe universe} of interpretation that are 
- * induced by the initial bounds <code>b0</code> must refine the equivalence classes induced by all subsequent bounds.  
- * In particular, let <code>{ s0, ..., sn }</code> be the coarsest partition of <code>b0.universe</code> such 
- * that every tupleset in <code>b0.lowerBound</code>, <code>b0.upperBound</code>, and 
- * <code>b0.intBound</code> can be expressed as a union of cross-products of sets drawn from 
- * <code>{ s0, ..., sn }</code>. Then, for each bound <code>bi</code> with which the solver's 
- * {@linkplain #solve(Formula, Bounds) solve} method is called in the future, it must also be the case that 
+ * An {@linkplain IncrementalSolver} breaks the symmetries of the problems passed to it 
+ * with a lex-leader predicate that is kept apart from the problem clauses.  If the bounds 
+ * <code>bi</code> passed to a subsequent call split some of the equivalence classes of atoms
+ * that the predicate was generated for, the predicate is retracted and a new one is generated 
+ * for the refined classes.  Symmetries can also be broken, however, by tightening the bounds of  
+ * relations constrained by the {@linkplain kodkod.ast.RelationPredicate total ordering and acyclic predicates}
+ * of a solved formula, and this cannot be undone.  So the solver places the following restriction on the 
+ * sequence of bounds passed to its {@linkplain #solve(Formula, Bounds)} method:   
+ * let <code>{ s0, ..., sn }</code> be the equivalence classes of atoms in <code>b0.universe</code> whose 
+ * symmetries have been broken in this way by the time <code>bi</code> is passed to the solver.  Then, 
  * each tupleset in <code>bi.lowerBound</code>, <code>bi.upperBound</code> and 
- * <code>bi.intBound</code> can be expressed in the same way, as a union of cross-products of sets drawn from 
- * <code>{ s0, ..., sn }</code>. </p>  
+ * <code>bi.intBound</code> must be expressible as a union of cross-products of sets that, for each 
+ * <code>si</code> in <code>{ s0, ..., sn }</code>, either contain <code>si</code> or are disjoint from it. </p>  
  * 
  * <p>
  * The above requirement can be satisfied by making sure that <code>b0</code>
@@ -77,11 +99,30 @@ import kodkod.instance.Universe;
  * on all other relations that will ever be introduced can be expressed as a union of cross-products of 
  * a subset of <code>b0</code>'s lower/upper bounds on <code>{ r0, ..., rn }</code>.  One can think of the bounds on 
  * <code>{ r0, ..., rn }</code> as representing sorts or types, and every relation's bounds should be 
- * expressible in terms of these types.  Note that having each atom in the universe appear in a lower/upper 
- * bound by itself (e.g., <code>b0.lowerBound[ri] = b0.upperBound[ri] = {&lt;ai&gt;}</code>) will trivially satisfy 
- * this requirement, but it is better to group related atoms into sets to enable symmetry breaking.
+ * expressible in terms of these types.  It is better to group related atoms into as few sets as possible, 
+ * since every split of a set leads to the regeneration of the symmetry breaking predicate. 
+ * </p>
+ *  
+ * <p>
+ * A formula can also be solved {@linkplain #solveAssuming(Formula, Bounds) temporarily}, in 
+ * conjunction with the formulas added so far but without being added to them.  This makes it 
+ * possible to explore a sequence of related queries (e.g., progressively tighter bounds on an 
+ * objective) without retranslating the base problem and without losing the clauses learned 
+ * by the SAT solver.  All solutions to such a query can be {@linkplain #solveAllAssuming(List, Bounds) enumerated} 
+ * in the same way.  
  * </p>
  *  
+ * <p>
+ * If {@linkplain Options#instantiation() opt.instantiation} is {@linkplain Instantiation#LAZY LAZY}, 
+ * the top-level universally quantified conjuncts of the formulas passed to the {@linkplain #solve(Formula, Bounds) solve} 
+ * method are not translated up front.  Instead, each candidate solution found by the SAT solver is checked against 
+ * them, and the instances that it violates are added to the SAT solver with 
+ * {@link Translator#translateInstances(QuantifiedFormula, List, kodkod.engine.fol2sat.Translation.Incremental)}, 
+ * until a candidate satisfies them all or the SAT solver reports UNSAT.  These conjuncts stay in 
+ * this.formulas, so the candidates found by later calls to {@code solve} and {@code solveAssuming} are checked
+ * against them as well.
+ * </p>
+ * 
  * <p>We additionally require {@linkplain Options#logTranslation() opt.logTranslation} to be 
  * {@linkplain Options#setLogTranslation(int) disabled} and {@linkplain Options#solver() opt.solver} 
  * to specify an {@linkplain SATFactory#incremental() incremental} SAT solver.  Note that these 
@@ -102,9 +143,13 @@ import kodkod.instance.Universe;
  * @author Emina Torlak 
  */
 public final class IncrementalSolver implements KodkodSolver {
+	/* the largest number of violated instances of a lazily instantiated formula that are added per candidate solution */
+	private static final int MAX_INSTANCES = 64;
 	private final Options options;
+	private final List<QuantifiedFormula> lazy;
 	private Translation.Incremental translation;
 	private Boolean outcome;
+	private Set<Formula> failed;
 	
 	/**
 	 * Initializes the solver with the given options.
@@ -113,6 +158,7 @@ public final class IncrementalSolver implements KodkodSolver {
 	 */
 	private IncrementalSolver(Options options) { 
 		this.options = options;
+		this.lazy = new ArrayList<QuantifiedFormula>();
 		this.outcome = null;
 	}
 	
@@ -163,34 +209,15 @@ public final class IncrementalSolver implements KodkodSolver {
 		if (outcome != null && translation==null) 
 			throw new IllegalStateException("Cannot use this solver since a prior call to solve(...) resulted in an exception.");
 		
+		failed = null;
 		final Solution solution;
 		try {			
 			final long startTransl = System.currentTimeMillis();
-			translation = translation==null ? Translator.translateIncremental(f, b, options) : Translator.translateIncremental(f, b, translation);
+			final Formula eager = options.instantiation()==Instantiation.LAZY ? deferInstantiation(f) : f;
+			translation = translation==null ? Translator.translateIncremental(eager, b, options) : Translator.translateIncremental(eager, b, translation);
 			final long endTransl = System.currentTimeMillis();
 			
-			if (translation.trivial()) {
-				final Statistics stats = new Statistics(translation, endTransl - startTransl, 0);
-				if (translation.cnf().solve()) {
-					solution = Solution.triviallySatisfiable(stats, translation.interpret());
-				} else {
-					solution = Solution.triviallyUnsatisfiable(stats, null);
-				}	
-			} else {
-				final SATSolver cnf = translation.cnf();
-				
-				translation.options().reporter().solvingCNF(translation.numPrimaryVariables(), cnf.numberOfVariables(), cnf.numberOfClauses());
-				final long startSolve = System.currentTimeMillis();
-				final boolean sat = cnf.solve();
-				final long endSolve = System.currentTimeMillis();
-
-				final Statistics stats = new Statistics(translation, endTransl - startTransl, endSolve - startSolve);
-				if (sat) {
-					solution = Solution.satisfiable(stats, translation.interpret());
-				} else { 
-					solution = Solution.unsatisfiable(stats, null);
-				}
-			}
+			solution = solve(new int[0], endTransl - startTransl);
 		} catch (SATAbortedException sae) {
 			free();
 			throw new AbortedException(sae);		
@@ -209,6 +236,406 @@ public final class IncrementalSolver implements KodkodSolver {
 		return solution;
 	}
 
+	/**
+	 * Solves the conjunction of {@code this.formulas} and {@code f} with respect to {@code this.bounds + b}, 
+	 * without adding {@code f} to {@code this.formulas}.  The translation of {@code f} is guarded by a fresh 
+	 * variable that is assumed to be true for the duration of this call only, after which the guard is 
+	 * permanently falsified.  Everything the underlying SAT solver has learned so far is therefore retained 
+	 * across calls to this method, and an UNSAT outcome does not make the solver unusable unless it is 
+	 * due to {@code this.formulas} alone.  The bindings in 
+	 * {@code b}, on the other hand, are added to {@code this.bounds} just as they are by 
+	 * {@link #solve(Formula, Bounds)}, and they are subject to the same restrictions.  This solver should 
+	 * not be used again if a call to this method results in an exception.
+	 * @requires this.{@link #usable() usable}()
+	 * @requires f.*components & Relation in (this.bounds + b).relations
+	 * @requires some this.bounds => this.bounds.universe = b.universe && no b.intBound && no (this.bounds.relations & b.relations)
+	 * @requires some this.bounds => 
+	 *            all s: {@link SymmetryDetector#partition(Bounds) partition}(this.bounds) |  
+	 * 				some p: {@link SymmetryDetector#partition(Bounds) partition}(b) | 
+	 * 				   s.elements in p.elements
+	 * @ensures this.formulas' = this.formulas
+	 * @ensures some this.bounds =>
+	 *            (this.bounds.relations' = this.bounds.relations + b.relations &&
+	 *             this.bounds.upperBound' = this.bounds.upperBound + b.upperBound &&
+	 *             this.bounds.lowerBound' = this.bounds.lowerBound + b.lowerBound) else
+	 *            (this.bounds' = bounds)
+	 * @return some sol: Solution | sol.instance() = null => 
+	 *              UNSAT(this.formulas + f, this.bounds', this.options) else 
+	 *              sol.instance() in MODELS(Formula.and(this.formulas + f), this.bounds', this.options)
+	 * @throws IllegalStateException a prior call returned an UNSAT solution or resulted in an exception
+	 * @throws NullPointerException  any of the arguments are null
+	 * @throws UnboundLeafException  the formula refers to an undeclared variable or a relation not mapped by this.bounds + b
+	 * @throws HigherOrderDeclException  the formula contains a higher order declaration
+	 * @throws IllegalArgumentException any of the remaining preconditions on {@code f} and {@code b} are violated
+	 * @throws AbortedException this solving task has been aborted
+	 * @see Translator#translateIncrementalGuarded(Formula, Bounds, kodkod.engine.fol2sat.Translation.Incremental)
+	 */
+	public Solution solveAssuming(Formula f, Bounds b) throws HigherOrderDeclException, UnboundLeafException, AbortedException {
+		return solveAssuming(Collections.singletonList(f), b);
+	}
+
+	/**
+	 * Solves the conjunction of {@code this.formulas} and {@code fs} with respect to {@code this.bounds + b}, 
+	 * without adding {@code fs} to {@code this.formulas}.  Each formula in {@code fs} is guarded by its own 
+	 * fresh variable, so that, if the outcome is UNSAT, the formulas that were found to be inconsistent with 
+	 * {@code this.formulas} can be obtained by calling {@link #failedAssumptions()}.  In all other respects, 
+	 * this method behaves like {@link #solveAssuming(Formula, Bounds)}.  Note that some SAT solvers (e.g., 
+	 * {@linkplain SATFactory#Lingeling Lingeling}) can only be asked to assume one formula at a time.
+	 * @requires this.{@link #usable() usable}()
+	 * @requires fs.elements.*components & Relation in (this.bounds + b).relations
+	 * @requires some this.bounds => this.bounds.universe = b.universe && no b.intBound && no (this.bounds.relations & b.relations)
+	 * @requires some this.bounds => 
+	 *            all s: {@link SymmetryDetector#partition(Bounds) partition}(this.bounds) |  
+	 * 				some p: {@link SymmetryDetector#partition(Bounds) partition}(b) | 
+	 * 				   s.elements in p.elements
+	 * @ensures this.formulas' = this.formulas
+	 * @ensures some this.bounds =>
+	 *            (this.bounds.relations' = this.bounds.relations + b.relations &&
+	 *             this.bounds.upperBound' = this.bounds.upperBound + b.upperBound &&
+	 *             this.bounds.lowerBound' = this.bounds.lowerBound + b.lowerBound) else
+	 *            (this.bounds' = bounds)
+	 * @return some sol: Solution | sol.instance() = null => 
+	 *              UNSAT(this.formulas + fs.elements, this.bounds', this.options) else 
+	 *              sol.instance() in MODELS(Formula.and(this.formulas + fs.elements), this.bounds', this.options)
+	 * @throws IllegalStateException a prior call returned an UNSAT solution or resulted in an exception
+	 * @throws NullPointerException  any of the arguments are null
+	 * @throws UnboundLeafException  a formula refers to an undeclared variable or a relation not mapped by this.bounds + b
+	 * @throws HigherOrderDeclException  a formula contains a higher order declaration
+	 * @throws IllegalArgumentException any of the remaining preconditions on {@code fs} and {@code b} are violated
+	 * @throws AbortedException this solving task has been aborted
+	 * @see #failedAssumptions()
+	 * @see Translator#translateIncrementalGuarded(Formula, Bounds, kodkod.engine.fol2sat.Translation.Incremental)
+	 */
+	public Solution solveAssuming(List<Formula> fs, Bounds b) throws HigherOrderDeclException, UnboundLeafException, AbortedException {
+		if (outcome==Boolean.FALSE)
+			throw new IllegalStateException("Cannot use this solver since a prior call to solve(...) produced an UNSAT solution.");
+
+		if (outcome != null && translation==null) 
+			throw new IllegalStateException("Cannot use this solver since a prior call to solve(...) resulted in an exception.");
+		
+		failed = null;
+		final Solution solution;
+		try {			
+			final long startTransl = System.currentTimeMillis();
+			final Map<Integer, Formula> guarded = new LinkedHashMap<Integer, Formula>();
+			final int[] guards = assume(fs, b, guarded);
+			final long endTransl = System.currentTimeMillis();
+			
+			solution = solve(guards, endTransl - startTransl);
+			retract(solution, guards, guarded);
+		} catch (SATAbortedException sae) {
+			free();
+			throw new AbortedException(sae);		
+		} catch (RuntimeException e) {
+			free();
+			throw e;
+		}
+		
+		if (failed != null && failed.isEmpty()) { 
+			// this.formulas are unsatisfiable on their own
+			outcome = Boolean.FALSE;
+			free();
+		} else if (outcome == null) {
+			outcome = Boolean.TRUE;
+		}
+		
+		return solution;
+	}
+	
+	/**
+	 * Returns an iterator over all solutions to the conjunction of {@code this.formulas} and {@code fs} with 
+	 * respect to {@code this.bounds + b}, without adding {@code fs} to {@code this.formulas}.  The formulas 
+	 * in {@code fs} are guarded as they are by {@link #solveAssuming(List, Bounds)}, and the clause that 
+	 * eliminates each solution is guarded by one more fresh variable, so that all of them are retracted, 
+	 * together with {@code fs}, once the iterator yields its last solution.  As for {@link Solver#solveAll(Formula, Bounds)}, 
+	 * the last solution is unsatisfiable, and the solutions are pairwise non-isomorphic.  This solver must not be used 
+	 * for anything else until the iterator has been exhausted.  If the iterator is abandoned before that, the 
+	 * clauses it added are never assumed again, and so they constrain no later calls.
+	 * @requires this.{@link #usable() usable}()
+	 * @requires the same as {@link #solveAssuming(List, Bounds)}
+	 * @ensures this.formulas' = this.formulas
+	 * @ensures this.bounds' is updated as by {@link #solveAssuming(List, Bounds)}
+	 * @return an iterator over all solutions to {@code Formula.and(this.formulas + fs.elements)} with respect to 
+	 * {@code this.bounds'}, followed by an unsatisfiable solution
+	 * @throws IllegalStateException a prior call returned an UNSAT solution or resulted in an exception
+	 * @throws NullPointerException  any of the arguments are null
+	 * @throws UnboundLeafException  a formula refers to an undeclared variable or a relation not mapped by this.bounds + b
+	 * @throws HigherOrderDeclException  a formula contains a higher order declaration
+	 * @throws IllegalArgumentException any of the remaining preconditions on {@code fs} and {@code b} are violated
+	 * @throws AbortedException this solving task has been aborted
+	 * @see #solveAssuming(List, Bounds)
+	 */
+	public Iterator<Solution> solveAllAssuming(List<Formula> fs, Bounds b) throws HigherOrderDeclException, UnboundLeafException, AbortedException {
+		if (outcome==Boolean.FALSE)
+			throw new IllegalStateException("Cannot use this solver since a prior call to solve(...) produced an UNSAT solution.");
+
+		if (outcome != null && translation==null) 
+			throw new IllegalStateException("Cannot use this solver since a prior call to solve(...) resulted in an exception.");
+		
+		failed = null;
+		try {
+			return new SolutionIterator(fs, b);
+		} catch (RuntimeException e) {
+			free();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Adds the translation of {@code guard => f} to this.translation, for each formula {@code f} in {@code fs}, 
+	 * and returns the guards in the order of their formulas.  The bounds {@code b} are added to this.translation 
+	 * permanently, with the first formula.
+	 * @ensures this.translation' = this.translation + { guard => f | f in fs.elements } and this.bounds' = this.bounds + b
+	 * @ensures guarded' = guarded + { guard -> f | f in fs.elements }
+	 * @return the guards of the formulas in fs
+	 */
+	private int[] assume(List<Formula> fs, Bounds b, Map<Integer, Formula> guarded) {
+		if (translation==null) {
+			// the bounds are permanent, so they form the base of the translation 
+			translation = Translator.translateIncremental(Formula.TRUE, b, options);
+			b = new Bounds(b.universe());
+		}
+		final int[] guards = new int[fs.size()];
+		for(int i = 0; i < guards.length; i++) { 
+			final Formula f = fs.get(i);
+			translation = Translator.translateIncrementalGuarded(f, b, translation);
+			guards[i] = translation.cnf().numberOfVariables();
+			guarded.put(guards[i], f);
+			b = new Bounds(b.universe());
+		}
+		return guards;
+	}
+	
+	/**
+	 * Retracts the given guards for good.  If the given solution is unsatisfiable, this.failed is set to the 
+	 * guarded formulas that were found to be inconsistent with this.formulas.
+	 * @requires solution is the result of solving this.translation assuming the given guards
+	 * @ensures !this.translation.trivial() => this.translation.cnf.clauses' = this.translation.cnf.clauses + { -guard | guard in guards }
+	 * @ensures !solution.sat() => this.failed' = { f: guarded[this.translation.cnf.failedAssumptions()] }
+	 */
+	private void retract(Solution solution, int[] guards, Map<Integer, Formula> guarded) {
+		// a trivial translation is unsatisfiable at this point, regardless of the guarded formulas, since 
+		// their translation was not trivial; otherwise, we retract them for good
+		final SATSolver cnf = translation.cnf();
+		if (!solution.sat()) {
+			failed = new LinkedHashSet<Formula>();
+			if (!translation.trivial()) {
+				for(int lit : cnf.failedAssumptions()) { 
+					if (guarded.containsKey(lit))
+						failed.add(guarded.get(lit));
+				}
+			}
+		}
+		if (!translation.trivial()) {
+			for(int guard : guards) { 
+				cnf.addClause(new int[] { -guard });
+			}
+		}
+	}
+	
+	/**
+	 * An iterator over the solutions to this.formulas and a list of assumed formulas.
+	 * @see IncrementalSolver#solveAllAssuming(List, Bounds)
+	 */
+	private final class SolutionIterator implements Iterator<Solution> {
+		private final Map<Integer, Formula> guarded;
+		/* the guards of the assumed formulas, followed by the guard of the blocking clauses */
+		private final int[] guards;
+		private long translTime;
+		private boolean first, done;
+		
+		/**
+		 * Adds the given formulas and bounds to this.translation, guarded by fresh variables.
+		 */
+		SolutionIterator(List<Formula> fs, Bounds b) {
+			final long startTransl = System.currentTimeMillis();
+			final List<Formula> assumed = new ArrayList<Formula>(fs);
+			assumed.add(Formula.TRUE);
+			this.guarded = new LinkedHashMap<Integer, Formula>();
+			this.guards = assume(assumed, b, guarded);
+			guarded.remove(guards[guards.length-1]);
+			this.translTime = System.currentTimeMillis() - startTransl;
+			this.first = true;
+			this.done = false;
+		}
+		
+		/**
+		 * Returns true if there is another solution.
+		 * @see java.util.Iterator#hasNext()
+		 */
+		public boolean hasNext() { return !done; }
+		
+		/**
+		 * Returns the next solution if any.
+		 * @see java.util.Iterator#next()
+		 */
+		public Solution next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			final Solution solution;
+			try {
+				solution = solve(guards, translTime);
+				translTime = 0;
+				if (solution.sat()) {
+					block();
+				} else {
+					retract(solution, guards, guarded);
+					done = true;
+				}
+			} catch (SATAbortedException sae) {
+				free();
+				throw new AbortedException(sae);		
+			} catch (RuntimeException e) {
+				free();
+				throw e;
+			}
+			
+			if (done && first && failed.isEmpty()) {
+				// this.formulas are unsatisfiable on their own
+				outcome = Boolean.FALSE;
+				free();
+			} else if (outcome == null) {
+				outcome = Boolean.TRUE;
+			}
+			if (done && !first) {
+				// the last solution is unsatisfiable because of the blocking clauses, not the assumed formulas
+				failed = null;
+			}
+			first = false;
+			return solution;
+		}
+		
+		/**
+		 * Adds to this.translation the negation of the current model of its primary relational variables, 
+		 * guarded by the last of this.guards.
+		 */
+		private void block() {
+			final SATSolver cnf = translation.cnf();
+			final IntSet vars = new IntTreeSet();
+			for(Relation r : translation.bounds().relations()) {
+				vars.addAll(translation.primaryVariables(r));
+			}
+			final int[] clause = new int[vars.size() + 1];
+			clause[0] = -guards[guards.length-1];
+			int i = 1;
+			for(IntIterator itr = vars.iterator(); itr.hasNext(); ) {
+				final int var = itr.next();
+				clause[i++] = cnf.valueOf(var) ? -var : var;
+			}
+			cnf.addClause(clause);
+		}
+		
+		/** @throws UnsupportedOperationException */
+		public void remove() { throw new UnsupportedOperationException(); }
+	}
+	
+	/**
+	 * Solves this.translation, assuming the given guards and its symmetry breaking predicate, if any. 
+	 * If this.options.instantiation is LAZY, the instances of this.lazy that are violated by each 
+	 * solution are added to this.translation, and the translation is solved again, until a solution 
+	 * violates none of them or there are no more solutions.
+	 * @requires this.translation.trivial() => no guards
+	 * @return a solution to this.translation, assuming the given guards, which satisfies this.lazy, or 
+	 * an unsatisfiable solution if there is none
+	 */
+	private Solution solve(int[] guards, long translTime) {
+		long solveTime = 0;
+		while(true) {
+			final boolean trivial = translation.trivial();
+			final SATSolver cnf = translation.cnf();
+			final boolean sat;
+			if (trivial) {
+				sat = cnf.solve();
+			} else {
+				// the symmetry breaking predicate preserves satisfiability, so it is assumed but never reported as failed
+				final int sbp = translation.sbpGuard();
+				final int[] assumptions = new int[sbp==0 ? guards.length : guards.length + 1];
+				System.arraycopy(guards, 0, assumptions, 0, guards.length);
+				if (sbp != 0) assumptions[guards.length] = sbp;
+
+				translation.options().reporter().solvingCNF(translation.numPrimaryVariables(), cnf.numberOfVariables(), cnf.numberOfClauses());
+				final long startSolve = System.currentTimeMillis();
+				sat = assumptions.length==0 ? cnf.solve() : cnf.solve(assumptions);
+				solveTime += System.currentTimeMillis() - startSolve;
+			}
+			
+			if (!sat) {
+				final Statistics stats = new Statistics(translation, translTime, solveTime);
+				return trivial ? Solution.triviallyUnsatisfiable(stats, null) : Solution.unsatisfiable(stats, null);
+			}
+			
+			final Instance instance = translation.interpret();
+			final long startTransl = System.currentTimeMillis();
+			final boolean refined = instantiate(instance);
+			translTime += System.currentTimeMillis() - startTransl;
+			if (!refined) {
+				final Statistics stats = new Statistics(translation, translTime, solveTime);
+				return trivial ? Solution.triviallySatisfiable(stats, instance) : Solution.satisfiable(stats, instance);
+			}
+		}
+	}
+	
+	/**
+	 * Adds to this.translation the instances of this.lazy that are violated by the given instance, 
+	 * at most {@link #MAX_INSTANCES} per formula, and returns true if there were any.  
+	 * @ensures this.translation' = this.translation + the instances of this.lazy that are false in the given instance
+	 * @return some f: this.lazy | !evaluate(f, instance)
+	 */
+	private boolean instantiate(Instance instance) {
+		boolean refined = false;
+		for(QuantifiedFormula formula : lazy) {
+			final List<int[]> violated = Translator.counterexamples(formula, instance, options, MAX_INSTANCES);
+			if (!violated.isEmpty()) {
+				translation = Translator.translateInstances(formula, violated, translation);
+				refined = true;
+				// a trivial translation has to be solved again before it can be extended
+				if (translation.trivial()) break;
+			}
+		}
+		return refined;
+	}
+	
+	/**
+	 * Adds the top-level conjuncts of the given formula that can be instantiated lazily to this.lazy, 
+	 * and returns the conjunction of the remaining ones.  A conjunct can be instantiated lazily if 
+	 * it is a universally quantified formula whose declarations all have multiplicity one.
+	 * @ensures this.lazy' = this.lazy + { q: Nodes.roots(f) & QuantifiedFormula | q.quantifier = ALL && q.decls.multiplicity = ONE }
+	 * @return Formula.and(Nodes.roots(f) - this.lazy')
+	 */
+	private Formula deferInstantiation(Formula f) {
+		final List<Formula> eager = new ArrayList<Formula>();
+		ROOTS : for(Formula root : Nodes.roots(f)) {
+			if (root instanceof QuantifiedFormula && ((QuantifiedFormula) root).quantifier()==Quantifier.ALL) {
+				final QuantifiedFormula formula = (QuantifiedFormula) root;
+				for(Decl decl : formula.decls()) {
+					if (decl.multiplicity()!=Multiplicity.ONE) {
+						eager.add(root);
+						continue ROOTS;
+					}
+				}
+				lazy.add(formula);
+			} else {
+				eager.add(root);
+			}
+		}
+		return Formula.and(eager);
+	}
+	
+	/**
+	 * Returns the formulas, among those passed to the last call to {@code solveAssuming}, that were found 
+	 * to be inconsistent with {@code this.formulas}.  The returned set is not necessarily minimal, and it is 
+	 * empty only if the last call's outcome did not depend on any of the assumed formulas.  
+	 * @requires the last call to this solver was to {@link #solveAssuming(List, Bounds)} or 
+	 * {@link #solveAssuming(Formula, Bounds)}, and it returned an UNSAT solution 
+	 * @return some failed: set Formula | failed in fs.elements && UNSAT(this.formulas + failed, this.bounds, this.options), 
+	 *         where fs are the formulas passed to the last call to {@code solveAssuming}
+	 * @throws IllegalStateException  the last call to this solver was not an unsatisfiable call to {@code solveAssuming}
+	 */
+	public Set<Formula> failedAssumptions() { 
+		if (failed==null)
+			throw new IllegalStateException("The last call to this solver was not an unsatisfiable call to solveAssuming(...).");
+		return Collections.unmodifiableSet(failed);
+	}
+
 	/**
 	 * Returns true iff this solver has neither returned an UNSAT solution so far
 	 * nor thrown an exception during solving.
@@ -34,6 +34,7 @@ import kodkod.ast.visitor.AbstractVoidVisitor;
 import kodkod.engine.fol2sat.RecordFilter;
 import kodkod.engine.fol2sat.TranslationLog;
 import kodkod.engine.fol2sat.TranslationRecord;
+import kodkod.engine.fol2sat.VariableFilter;
 import kodkod.engine.satlab.ReductionStrategy;
 import kodkod.engine.satlab.ResolutionTrace;
 import kodkod.engine.satlab.SATProver;
@@ -78,12 +79,7 @@ final class ResolutionBasedProof extends Proof {
 	 */
 	private Set<Formula>  connectedCore(final IntSet coreVars) {
 		final Set<Formula> coreNodes = new IdentityHashSet<Formula>();
-		final RecordFilter filter = new RecordFilter() {
-			public boolean accept(Node node, Formula translated, int literal, Map<Variable,TupleSet> env) {
-				return coreVars.contains(StrictMath.abs(literal));
-			}
-		};
-		for(Iterator<TranslationRecord> itr = log().replay(filter); itr.hasNext(); ) {
+		for(Iterator<TranslationRecord> itr = log().replay(new VariableFilter(coreVars)); itr.hasNext(); ) {
 			coreNodes.add(itr.next().translated());
 		}
 		final Set<Formula> connected = new IdentityHashSet<Formula>();
@@ -118,11 +114,11 @@ final class ResolutionBasedProof extends Proof {
 	 */
 	public final Iterator<TranslationRecord> core() { 
 		if (coreFilter == null) {
-			coreFilter = new RecordFilter() {
-				final IntSet coreVariables = StrategyUtils.coreVars(solver.proof());
-				final Set<Formula> coreNodes = connectedCore(coreVariables);
+			final IntSet coreVariables = StrategyUtils.coreVars(solver.proof());
+			final Set<Formula> coreNodes = connectedCore(coreVariables);
+			coreFilter = new VariableFilter(coreVariables) {
 				public boolean accept(Node node, Formula translated, int literal, Map<Variable,TupleSet> env) {
-					return coreNodes.contains(translated) && coreVariables.contains(StrictMath.abs(literal));
+					return coreNodes.contains(translated) && super.accept(node, translated, literal, env);
 				}
 			};
 		}
@@ -135,13 +131,11 @@ final class ResolutionBasedProof extends Proof {
 	 */
 	public final Map<Formula, Node> highLevelCore() {
 		if (coreRoots == null) { 
-			final RecordFilter unitFilter = new RecordFilter() {
-				final IntSet coreUnits = StrategyUtils.coreUnits(solver.proof());
-				final Set<Formula> roots = log().roots();
+			final Set<Formula> roots = log().roots();
+			final RecordFilter unitFilter = new VariableFilter(StrategyUtils.coreUnits(solver.proof())) {
 				public boolean accept(Node node, Formula translated, int literal, Map<Variable, TupleSet> env) {
-					return roots.contains(translated) && coreUnits.contains(Math.abs(literal));
+					return roots.contains(translated) && super.accept(node, translated, literal, env);
 				}
-				
 			};
 			coreRoots = new LinkedHashMap<Formula, Node>();
 			final IntSet seenUnits = new IntTreeSet();
@@ -109,7 +109,9 @@ public final class Solver implements KodkodSolver {
 	 * {@linkplain Instance instance} of the given problem or, optionally, a {@linkplain Proof proof} of
 	 * its unsatisfiability. An unsatisfiability
 	 * proof will be constructed iff {@code this.options.solver} specifies a {@linkplain SATProver} and
-	 * {@code this.options.logTranslation > 0}.
+	 * {@code this.options.logTranslation > 0}.  If {@code this.options.instantiation} is 
+	 * {@linkplain Options.Instantiation#LAZY LAZY}, the problem is solved with an {@link IncrementalSolver}, 
+	 * which instantiates the top-level universally quantified conjuncts of the formula lazily.
 	 *
 	 * @return some sol:  {@link Solution} |
 	 *           some sol.instance() =>
@@ -120,6 +122,8 @@ public final class Solver implements KodkodSolver {
 	 * @throws UnboundLeafException  the formula contains an undeclared variable or a relation not mapped by the given bounds
 	 * @throws HigherOrderDeclException  the formula contains a higher order declaration that cannot
 	 * be skolemized, or it can be skolemized but {@code this.options.skolemDepth} is insufficiently large
+	 * @throws IllegalArgumentException  this.options.instantiation = LAZY and this.options.solver is not incremental 
+	 * or this.options.logTranslation > 0
 	 * @throws AbortedException  this solving task was aborted
 	 * @see Options
 	 * @see Solution
@@ -128,6 +132,15 @@ public final class Solver implements KodkodSolver {
 	 */
 	public Solution solve(Formula formula, Bounds bounds) throws HigherOrderDeclException, UnboundLeafException, AbortedException {
 
+		if (options.instantiation()==Options.Instantiation.LAZY) {
+			final IncrementalSolver solver = IncrementalSolver.solver(options);
+			try {
+				return solver.solve(formula, bounds);
+			} finally {
+				solver.free();
+			}
+		}
+		
 		final long startTransl = System.currentTimeMillis();
 
 		try {
@@ -157,11 +170,16 @@ public final class Solver implements KodkodSolver {
 	 * to prove the formula's unsatisfiability.
 	 * If the operation is successful, the method returns an iterator over n Solution objects. The outcome
 	 * of the first n-1 solutions is SAT or trivially SAT, and the outcome of the nth solution is UNSAT
-	 * or tirivally  UNSAT.  Note that an unsatisfiability
+	 * or tirivally  UNSAT.  If this.options.blocking is not {@linkplain Options.Blocking#MODEL MODEL}, each of the 
+	 * first n-1 solutions stands for a set of instances, as specified by this.options.blocking, and
+	 * the iterator returns one instance from each set.  Note that an unsatisfiability
 	 * proof will be constructed for the last solution iff this.options specifies the use of a core extracting SATSolver.
 	 * Additionally, the CNF variables in the proof can be related back to the nodes in the given formula
 	 * iff this.options has variable tracking enabled.  Translation logging also requires that
 	 * there are no subnodes in the given formula that are both syntactically shared and contain free variables.
+	 * The value of this.options.instantiation is ignored:  the formula is always translated 
+	 * {@linkplain Options.Instantiation#EAGER eagerly}, since every solution must satisfy all instances of 
+	 * its universally quantified conjuncts before it is blocked.
 	 *
 	 * @return an iterator over all the Solutions to the formula with respect to the given bounds
 	 * @throws NullPointerException  formula = null || bounds = null
@@ -297,8 +315,8 @@ public final class Solver implements KodkodSolver {
 		public void remove() { throw new UnsupportedOperationException(); }
 
 		/**
-		 * Solves {@code translation.cnf} and adds the negation of the
-		 * found model to the set of clauses.  The latter has the
+		 * Solves {@code translation.cnf} and adds the {@linkplain Translation.Whole#blockingClauses() blocking clauses} 
+		 * for the found model to the set of clauses.  The latter has the
 		 * effect of forcing the solver to come up with the next solution
 		 * or return UNSAT. If {@code this.translation.cnf.solve()} is false,
 		 * sets {@code this.translation} to null.
@@ -325,12 +343,10 @@ public final class Solver implements KodkodSolver {
 			if (isSat) {
 				// extract the current solution; can't use the sat(..) method because it frees the sat solver
 				sol = Solution.satisfiable(stats, transl.interpret());
-				// add the negation of the current model to the solver
-				final int[] notModel = new int[primaryVars];
-				for(int i = 1; i <= primaryVars; i++) {
-					notModel[i-1] = cnf.valueOf(i) ? -i : i;
+				// add the negation of the current model (or of the part of it specified by the options) to the solver
+				for(int[] clause : transl.blockingClauses()) {
+					cnf.addClause(clause);
 				}
-				cnf.addClause(notModel);
 			} else {
 				sol = unsat(transl, stats); // this also frees up solver resources, if any
 				translation = null; // unsat, no more solutions
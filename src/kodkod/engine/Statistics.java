@@ -35,17 +35,28 @@ public final class Statistics {
 	
 	private final int vars, pVars, clauses;
 	private final long translation, solving; 
+	private final long memoHits, memoMisses;
 	
 	/**
 	 * Constructs a new Statistics object using the provided values.
 	 */
 	Statistics(int primaryVariables, int variables, int clauses, 
 			   long translationTime, long solvingTime) {
+		this(primaryVariables, variables, clauses, translationTime, solvingTime, 0, 0);
+	}
+	
+	/**
+	 * Constructs a new Statistics object using the provided values.
+	 */
+	private Statistics(int primaryVariables, int variables, int clauses, 
+			   long translationTime, long solvingTime, long memoHits, long memoMisses) {
 		this.pVars = primaryVariables;
 		this.vars = variables;
 		this.clauses = clauses;
 		this.translation = translationTime;
 		this.solving = solvingTime;
+		this.memoHits = memoHits;
+		this.memoMisses = memoMisses;
 	}
 	
 	/**
@@ -53,7 +64,8 @@ public final class Statistics {
 	 */
 	Statistics(Translation translation, long translationTime, long solvingTime) { 
 		this(translation.numPrimaryVariables(), translation.cnf().numberOfVariables(), 
-				translation.cnf().numberOfClauses(), translationTime, solvingTime);
+				translation.cnf().numberOfClauses(), translationTime, solvingTime,
+				translation.memoHits(), translation.memoMisses());
 	}
 	
 	/**
@@ -108,6 +120,28 @@ public final class Statistics {
 		return solving;
 	}
 	
+	/**
+	 * Returns the number of times that the translation of a shared 
+	 * or quantified subformula of this.formula was reused for the same 
+	 * binding of its free variables.
+	 * @return the number of translation cache hits
+	 * @see kodkod.engine.fol2sat.Translation#memoHits()
+	 */
+	public long memoHits() {
+		return memoHits;
+	}
+	
+	/**
+	 * Returns the number of times that a shared or quantified 
+	 * subformula of this.formula had to be translated because its 
+	 * translation was not cached for the current binding of its free variables.
+	 * @return the number of translation cache misses
+	 * @see kodkod.engine.fol2sat.Translation#memoMisses()
+	 */
+	public long memoMisses() {
+		return memoMisses;
+	}
+	
 	/**
 	 * Returns a string representation of this
 	 * Statistics object.
@@ -127,6 +161,11 @@ public final class Statistics {
 		ret.append("translation time: ");
 		ret.append(translation);
 		ret.append(" ms").append(NEW_LINE);
+		ret.append("translation cache: ");
+		ret.append(memoHits);
+		ret.append(" hits, ");
+		ret.append(memoMisses);
+		ret.append(" misses").append(NEW_LINE);
 		ret.append("solving time: ");
 		ret.append(solving);
 		ret.append(" ms");
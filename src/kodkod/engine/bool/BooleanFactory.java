@@ -25,11 +25,15 @@ import static kodkod.engine.bool.Operator.AND;
 import static kodkod.engine.bool.Operator.OR;
 
 import java.util.Collection;
+import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.Map;
 
 import kodkod.engine.config.Options;
+import kodkod.engine.config.Options.ClosureEncoding;
 import kodkod.engine.config.Options.IntEncoding;
 import kodkod.util.ints.IntSet;
+import kodkod.util.ints.LongSet;
 
 
 /**
@@ -39,6 +43,7 @@ import kodkod.util.ints.IntSet;
  * @specfield comparisonDepth: int // the depth to which circuits should be checked for equality 
  * @specfield intEncoding: {@link IntEncoding} // the encoding used for generating integers ({@link #integer(int)}
  * @specfield bitwidth: int // the bitwidth used for integer computations
+ * @specfield closureEncoding: {@link ClosureEncoding} // the encoding used for {@link BooleanMatrix#closure() closures}
  * @specfield components: set {@link BooleanValue}
  * @invariant {@link BooleanConstant} in components
  * @invariant no f1, f2: BooleanFactory | f1 != f2 => f1.components & f2.components = {@link BooleanConstant}
@@ -57,22 +62,40 @@ public abstract class BooleanFactory {
 	/** The bitwidth used for integer computations */
 	final int bitwidth;
 	
+	/** The encoding used for transitive closures */
+	private final ClosureEncoding closureEncoding;
+	
 	/**
 	 * Constructs a boolean factory with the given number of input variables.  Gates are
 	 * checked for semantic equality down to the given depth.  Integers are represented
-	 * using the given number of bits.
+	 * using the given number of bits, and closures with the given encoding.
 	 * @requires 0 <= numVars < Integer.MAX_VALUE
-	 * @requires checkToDepth >= 0 && bitwidth > 0
+	 * @requires checkToDepth >= 0 && bitwidth > 0 && closureEncoding != null
 	 * @ensures #this.components' = numInputVariables && this.components' in BooleanVariable 
-	 * @ensures this.bitwidth' = bitwidth
+	 * @ensures this.bitwidth' = bitwidth && this.closureEncoding' = closureEncoding
 	 * @ensures this.comparisonDepth' = comparisonDepth
 	 */
-	private BooleanFactory(int numVars, int comparisonDepth, int bitwidth) {
+	private BooleanFactory(int numVars, int comparisonDepth, int bitwidth, ClosureEncoding closureEncoding) {
 		this.circuits = new CBCFactory(numVars, 1<<comparisonDepth);
 		this.bitwidth = bitwidth;
+		this.closureEncoding = closureEncoding;
 		this.numVars = numVars;
 	}
 	
+	/**
+	 * Constructs a boolean factory with the same variables, comparison depth, 
+	 * bitwidth and closure encoding as the given factory, but none of its gates.
+	 * @ensures this.components' = base.components & (BooleanVariable + BooleanConstant)
+	 * @ensures this.bitwidth' = base.bitwidth && this.comparisonDepth' = base.comparisonDepth
+	 * @ensures this.closureEncoding' = base.closureEncoding
+	 */
+	private BooleanFactory(BooleanFactory base) {
+		this.circuits = new CBCFactory(base.circuits);
+		this.bitwidth = base.bitwidth;
+		this.closureEncoding = base.closureEncoding;
+		this.numVars = base.numVars;
+	}
+	
 	/**
 	 * Returns a boolean factory, initialized to contain the given number
 	 * of boolean variables.  
@@ -86,6 +109,7 @@ public abstract class BooleanFactory {
 	 *                              BooleanConstant in f.components && f.components in BooleanVariable + BooleanConstant &&
 	 *                              f.comparisonDepth = options.sharing && 
 	 *                              f.bitwidth = options.bitwidth && f.intEncoding = options.intEncoding && 
+	 *                              f.closureEncoding = options.closureEncoding &&
 	 *                              (all i: [1..numVars] | one f.components.label & i }}
 	 * @throws IllegalArgumentException  numVars < 0 || numVars = Integer.MAX_VALUE
 	 * @throws NullPointerException  options = null
@@ -93,7 +117,9 @@ public abstract class BooleanFactory {
 	public static BooleanFactory factory(int numVars, Options options) {
 		switch(options.intEncoding()) {
 		case TWOSCOMPLEMENT : 
-			return new TwosComplementFactory(numVars, options.sharing(), options.bitwidth()); 
+			return new TwosComplementFactory(numVars, options.sharing(), options.bitwidth(), options.closureEncoding()); 
+		case UNARY_COUNTERS : 
+			return new UnaryCountersFactory(numVars, options.sharing(), options.bitwidth(), options.closureEncoding()); 
 		default :
 			throw new IllegalArgumentException("unknown encoding: " + options.intEncoding());
 		}
@@ -111,6 +137,70 @@ public abstract class BooleanFactory {
 		return factory(0, options);
 	}
 	
+	/**
+	 * Returns a new factory that shares this factory's variables, comparison depth, 
+	 * bitwidth and integer encoding, but none of its gates.  A fork and the factory it 
+	 * was forked from can be used concurrently, on separate threads, provided that no
+	 * variables are added to either one.  Values created by the fork can be brought
+	 * back into this factory with {@link #adopt(BooleanValue)}.
+	 * @return {f: BooleanFactory | f.components = this.components & (BooleanVariable + BooleanConstant) &&
+	 *                              f.comparisonDepth = this.comparisonDepth && 
+	 *                              f.bitwidth = this.bitwidth && f.intEncoding = this.intEncoding }
+	 */
+	public abstract BooleanFactory fork();
+	
+	/**
+	 * Returns a value from this.components that has the same meaning as the given value, 
+	 * which may have been created by another factory.  Any variables in the given 
+	 * value must be variables of this factory, which is the case for all values created
+	 * by a {@linkplain #fork() fork} of this factory.
+	 * @requires (v.*inputs & BooleanVariable).label in (this.components & BooleanVariable).label
+	 * @return {v': BooleanValue | [[v']] = [[v]] && v' in this.components }
+	 * @ensures this.components' = this.components + v'.*inputs
+	 */
+	public final BooleanValue adopt(BooleanValue v) {
+		return v.op()==Operator.CONST ? v : ((BooleanFormula)v).accept(new Adopter(), null);
+	}
+	
+	/**
+	 * Rebuilds circuits from other factories in this factory.  Each gate
+	 * is rebuilt once, no matter how many times it is reached.
+	 */
+	private final class Adopter implements BooleanVisitor<BooleanValue, Object> {
+		private final Map<BooleanFormula, BooleanValue> adopted = new IdentityHashMap<BooleanFormula, BooleanValue>();
+		
+		public BooleanValue visit(MultiGate multigate, Object arg) {
+			BooleanValue ret = adopted.get(multigate);
+			if (ret==null) {
+				final BooleanAccumulator acc = BooleanAccumulator.treeGate(multigate.op());
+				for(BooleanFormula input : multigate) {
+					if (acc.add(input.accept(this, arg))==acc.op().shortCircuit())
+						break;
+				}
+				ret = accumulate(acc);
+				adopted.put(multigate, ret);
+			}
+			return ret;
+		}
+		
+		public BooleanValue visit(ITEGate ite, Object arg) {
+			BooleanValue ret = adopted.get(ite);
+			if (ret==null) {
+				ret = ite(ite.input(0).accept(this, arg), ite.input(1).accept(this, arg), ite.input(2).accept(this, arg));
+				adopted.put(ite, ret);
+			}
+			return ret;
+		}
+		
+		public BooleanValue visit(NotGate negation, Object arg) {
+			return not(negation.input(0).accept(this, arg));
+		}
+		
+		public BooleanValue visit(BooleanVariable variable, Object arg) {
+			return variable(variable.label());
+		}
+	}
+	
 	/**
 	 * Returns the depth (from the root) to which components are checked for 
 	 * semantic equality during gate construction.
@@ -138,6 +228,12 @@ public abstract class BooleanFactory {
 	 */
 	public final int bitwidth() { return bitwidth; }
 	
+	/**
+	 * Returns the encoding used by the matrices of this factory to compute closures.
+	 * @return this.closureEncoding
+	 */
+	public final ClosureEncoding closureEncoding() { return closureEncoding; }
+	
 	/**
 	 * Returns the encoding used by this factory to represent integers.
 	 * @return this.intEncoding
@@ -418,6 +514,25 @@ public abstract class BooleanFactory {
 		}
 	
 	}
+	
+	/**
+	 * Returns a BooleanMatrix <tt>m</tt> with the given long-indexed dimensions, this
+	 * as its factory, and the indices from the set <tt>trueIndices</tt> initialized
+	 * to TRUE.  The entries of <tt>m</tt> must be accessed through its long-indexed methods.
+	 * @requires d.isLongIndexed()
+	 * @return { m: BooleanMatrix |  m.factory = this && m.dimensions = dims && 
+	 *           m.elements = [0..d.capacity()-1] ->one FALSE ++ indices->TRUE }
+	 * @throws IllegalArgumentException  trueIndices !in [0..d.capacity()) || !d.isLongIndexed()
+	 * @throws NullPointerException  d = null || trueIndices = null	 	 
+	 */
+	public final BooleanMatrix matrix(Dimensions d, LongSet trueIndices) {
+		if (!d.isLongIndexed()) throw new IllegalArgumentException(d + " is not long-indexed.");
+		if (!trueIndices.isEmpty()) {
+			if (!d.validate(trueIndices.min()) ||	!d.validate(trueIndices.max()))
+				throw new IllegalArgumentException();
+		}
+		return new BooleanMatrix(d, this, trueIndices);
+	}
 		
 	/**
 	 * BooleanFactory that produces TwosComplementInts.
@@ -429,16 +544,33 @@ public abstract class BooleanFactory {
 		/**
 		 * Constructs a boolean factory with the given number of input variables.  Gates are
 		 * checked for semantic equality down to the given depth.  Integers are represented
-		 * using the given number of bits.
+		 * using the given number of bits, and closures with the given encoding.
 		 * @requires 0 <= numVars < Integer.MAX_VALUE
-		 * @requires checkToDepth >= 0 && bitwidth > 0
+		 * @requires checkToDepth >= 0 && bitwidth > 0 && closureEncoding != null
 		 * @ensures #this.components' = numInputVariables && this.components' in BooleanVariable 
-		 * @ensures this.bitwidth' = bitwidth
+		 * @ensures this.bitwidth' = bitwidth && this.closureEncoding' = closureEncoding
 		 * @ensures this.comparisonDepth' = comparisonDepth
 		 * @ensures this.intEncoding' = BINARY
 		 */
-		TwosComplementFactory(int numVars, int comparisonDepth, int bitwidth) {
-			super(numVars, comparisonDepth, bitwidth);
+		TwosComplementFactory(int numVars, int comparisonDepth, int bitwidth, ClosureEncoding closureEncoding) {
+			super(numVars, comparisonDepth, bitwidth, closureEncoding);
+		}
+		
+		/**
+		 * Constructs a boolean factory with the same variables, comparison 
+		 * depth and bitwidth as the given factory, but none of its gates.
+		 */
+		private TwosComplementFactory(TwosComplementFactory base) {
+			super(base);
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * @see kodkod.engine.bool.BooleanFactory#fork()
+		 */
+		@Override
+		public BooleanFactory fork() {
+			return new TwosComplementFactory(this);
 		}
 		/**
 		 * Returns TWOSCOMPLEMENT.
@@ -469,5 +601,77 @@ public abstract class BooleanFactory {
 		}
 		
 	}
+	
+	/**
+	 * A factory that represents cardinalities, and sums of cardinalities and 
+	 * non-negative numbers, as {@link UnaryCounterInt unary counters}, and
+	 * all other integers in two's complement.
+	 */
+	private static final class UnaryCountersFactory extends BooleanFactory {
+
+		/**
+		 * Constructs a boolean factory with the given number of input variables.  Gates are
+		 * checked for semantic equality down to the given depth.  Integers are represented
+		 * using the given number of bits, and closures with the given encoding.
+		 * @requires 0 <= numVars < Integer.MAX_VALUE
+		 * @requires checkToDepth >= 0 && bitwidth > 0 && closureEncoding != null
+		 * @ensures #this.components' = numInputVariables && this.components' in BooleanVariable 
+		 * @ensures this.bitwidth' = bitwidth && this.closureEncoding' = closureEncoding
+		 * @ensures this.comparisonDepth' = comparisonDepth
+		 * @ensures this.intEncoding' = UNARY_COUNTERS
+		 */
+		UnaryCountersFactory(int numVars, int comparisonDepth, int bitwidth, ClosureEncoding closureEncoding) {
+			super(numVars, comparisonDepth, bitwidth, closureEncoding);
+		}
+		
+		/**
+		 * Constructs a boolean factory with the same variables, comparison 
+		 * depth and bitwidth as the given factory, but none of its gates.
+		 */
+		private UnaryCountersFactory(UnaryCountersFactory base) {
+			super(base);
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * @see kodkod.engine.bool.BooleanFactory#fork()
+		 */
+		@Override
+		public BooleanFactory fork() {
+			return new UnaryCountersFactory(this);
+		}
+		
+		/**
+		 * Returns UNARY_COUNTERS.
+		 * @return UNARY_COUNTERS
+		 * @see kodkod.engine.bool.BooleanFactory#intEncoding()
+		 */
+		@Override
+		public IntEncoding intEncoding() {
+			return IntEncoding.UNARY_COUNTERS;
+		}
+		
+		/**
+		 * {@inheritDoc}
+		 * @see kodkod.engine.bool.BooleanFactory#integer(int)
+		 */
+		@Override
+		public Int integer(int number) {
+			return new TwosComplementInt(this, number, BooleanConstant.TRUE);
+		}
+		
+		/**
+		 * Returns a counter for positive numbers up to UnaryCounterInt.capacity(this.bitwidth),
+		 * and a two's complement integer for all other numbers.
+		 * @see kodkod.engine.bool.BooleanFactory#integer(int, kodkod.engine.bool.BooleanValue)
+		 */
+		@Override
+		public Int integer(int number, BooleanValue bit) {
+			if (number > 0 && number <= UnaryCounterInt.capacity(bitwidth))
+				return new UnaryCounterInt(this, number, bit);
+			return new TwosComplementInt(this, number, bit);
+		}
+		
+	}
 }
 
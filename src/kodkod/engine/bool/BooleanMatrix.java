@@ -28,6 +28,7 @@ import static kodkod.engine.bool.Operator.OR;
 
 import java.util.Iterator;
 
+import kodkod.engine.CapacityExceededException;
 import kodkod.util.collections.Containers;
 import kodkod.util.ints.ArraySequence;
 import kodkod.util.ints.HomogenousSequence;
@@ -35,6 +36,10 @@ import kodkod.util.ints.IndexedEntry;
 import kodkod.util.ints.IntIterator;
 import kodkod.util.ints.IntSet;
 import kodkod.util.ints.Ints;
+import kodkod.util.ints.LongIndexedEntry;
+import kodkod.util.ints.LongIterator;
+import kodkod.util.ints.LongSet;
+import kodkod.util.ints.LongTreeSequence;
 import kodkod.util.ints.RangeSequence;
 import kodkod.util.ints.SparseSequence;
 import kodkod.util.ints.TreeSequence;
@@ -56,6 +61,13 @@ import kodkod.util.ints.TreeSequence;
  * If this is the case, an attempt to call {@link #set(int, BooleanValue) }
  * with invalid parameters will cause an IllegalArgumentException or an IndexOutOfBoundsException. </p>
  * 
+ * <p>A matrix whose {@link Dimensions#isLongIndexed() dimensions are long-indexed} stores its
+ * entries in a {@link LongTreeSequence} and can be accessed only through the long-indexed methods
+ * ({@link #get(long)}, {@link #set(long, BooleanValue)}, {@link #longIterator()} and {@link #longDenseIndices()}).  
+ * The operations on such matrices, and on matrices whose results are long-indexed, 
+ * are computed cell by cell, without the specialized representations available 
+ * to smaller matrices.  </p>
+ * 
  * @specfield dimensions: Dimensions
  * @specfield factory: BooleanFactory
  * @specfield elements: [0..dimensions.capacity) -> one factory.components
@@ -67,6 +79,7 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	private final Dimensions dims;
 	private final BooleanFactory factory;
 	private final SparseSequence<BooleanValue> cells;
+	private final LongTreeSequence<BooleanValue> longCells;
 	
 
 	/**  
@@ -81,6 +94,22 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 		this.dims = dimensions;
 		this.factory = factory;
 		this.cells = seq;
+		this.longCells = null;
+	}
+	
+	/**  
+	 * Constructs a new long-indexed matrix with the given dimensions, factory, and entries.
+	 * 
+	 * @requires dimensions != null && factory != null && seq != null
+	 * @requires dimensions.isLongIndexed() && seq.indices() in [0..dimensions.capacity)
+	 * @ensures this.dimensions' = dimensions && this.factory' = factory && 
+	 *          this.elements' = [0..dimensions.capacity)->one FALSE ++ seq
+	 */
+	private BooleanMatrix(Dimensions dimensions, BooleanFactory factory, LongTreeSequence<BooleanValue> seq) {
+		this.dims = dimensions;
+		this.factory = factory;
+		this.cells = null;
+		this.longCells = seq;
 	}
 	
 	/**
@@ -93,8 +122,11 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	private BooleanMatrix(Dimensions d, BooleanFactory f, SparseSequence<BooleanValue> s0, SparseSequence<BooleanValue> s1) {
 		this.dims = d;
 		this.factory = f;
+		this.longCells = null;
 		final Class<?> c0 = s0.getClass(), c1 = s1.getClass();
-		if (c0!=c1 || c0==RangeSequence.class) 
+		if (hybrid(d, s0, s1)) 
+			this.cells = new HybridSequence(d.capacity());
+		else if (c0!=c1 || c0==RangeSequence.class || c0==HybridSequence.class) 
 			this.cells = new RangeSequence<BooleanValue>();
 		else if (c0==HomogenousSequence.class) 
 			this.cells = new HomogenousSequence<BooleanValue>(TRUE, Ints.bestSet(d.capacity())); 
@@ -102,6 +134,26 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 			this.cells = new TreeSequence<BooleanValue>();	
 	}
 	
+	/**
+	 * Returns true if a matrix with the given dimensions, whose elements are computed 
+	 * from the elements stored in s0 and s1, is best backed by a hybrid sequence.
+	 * That is the case when one of the sequences is hybrid, the other is either 
+	 * hybrid or homogenous, the result is no larger than the hybrid operand, and
+	 * the hybrid operand is itself still {@link HybridSequence#dense() dense}.
+	 * @return true if a matrix with the given dimensions, whose elements are computed 
+	 * from the elements stored in s0 and s1, is best backed by a hybrid sequence.
+	 */
+	private static boolean hybrid(Dimensions d, SparseSequence<BooleanValue> s0, SparseSequence<BooleanValue> s1) {
+		final HybridSequence h;
+		if (s0 instanceof HybridSequence && (s1 instanceof HybridSequence || s1 instanceof HomogenousSequence))
+			h = (HybridSequence) s0;
+		else if (s1 instanceof HybridSequence && s0 instanceof HomogenousSequence)
+			h = (HybridSequence) s1;
+		else 
+			return false;
+		return d.capacity() <= h.capacity() && h.dense();
+	}
+	
 	/**
 	 * Constructs a new matrix with the given dimensions and factory, 
 	 * backed by a sparse sequence which can most efficiently hold
@@ -117,24 +169,35 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	private BooleanMatrix(Dimensions d, BooleanMatrix m, BooleanMatrix...rest) {
 		this.dims = d;
 		this.factory = m.factory;
+		this.longCells = null;
 		
-		final Class<?> h = HomogenousSequence.class, t = TreeSequence.class;
+		final Class<?> h = HomogenousSequence.class, t = TreeSequence.class, y = HybridSequence.class;
 		final boolean sameDim = d.equals(m);
 		
 		Class<?> c = m.cells.getClass();
-		int cId = c==h ? 1 : c==t ? 2 : 4;
+		int cId = c==h ? 1 : c==t ? 2 : c==y ? 8 : 4;
+		int hybridCapacity = c==y ? ((HybridSequence) m.cells).capacity() : 0;
+		boolean dense = c!=y || ((HybridSequence) m.cells).dense();
 		
 		for(BooleanMatrix other : rest) { 
 			checkFactory(factory, other.factory);
 			if (sameDim) checkDimensions(d, other.dims);
 			
 			c = other.cells.getClass();
-			cId |= c==h ? 1 : c==t ? 2 : 4;
+			cId |= c==h ? 1 : c==t ? 2 : c==y ? 8 : 4;
+			if (c==y) {
+				hybridCapacity = Math.max(hybridCapacity, ((HybridSequence) other.cells).capacity());
+				dense &= ((HybridSequence) other.cells).dense();
+			}
 		}
 		
 		switch(cId) { 
 		case 1 : this.cells = new HomogenousSequence<BooleanValue>(TRUE, Ints.bestSet(d.capacity())); break;
 		case 2 : this.cells = new TreeSequence<BooleanValue>(); break;
+		case 8 : case 9 : 
+			this.cells = dense && d.capacity() <= hybridCapacity ? 
+					new HybridSequence(d.capacity()) : new RangeSequence<BooleanValue>(); 
+			break;
 		default : this.cells = new RangeSequence<BooleanValue>(); 
 		}
 	}
@@ -150,7 +213,30 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	BooleanMatrix(Dimensions dims, BooleanFactory factory) {
 		this.dims = dims;
 		this.factory = factory;
-		this.cells = new RangeSequence<BooleanValue>();
+		if (dims.isLongIndexed()) {
+			this.cells = null;
+			this.longCells = new LongTreeSequence<BooleanValue>();
+		} else {
+			this.cells = new RangeSequence<BooleanValue>();
+			this.longCells = null;
+		}
+	}
+	
+	/**  
+	 * Constructs a new long-indexed matrix with the given dimensions and factory, 
+	 * and initializes the indices in the given set to TRUE.
+	 * 
+	 * @requires dimensions.isLongIndexed()
+	 * @requires dimensions != null && factory != null && trueIndices != null
+	 * @requires dimensions.validate(trueIndices.min()) && dimensions.validate(trueIndices.max())
+	 * @ensures this.dimensions' = dimensions && this.factory' = factory && 
+	 *          this.elements' = [0..dimensions.capacity)->one FALSE ++ trueIndices -> one TRUE
+	 */
+	BooleanMatrix(Dimensions dims, BooleanFactory factory, LongSet trueIndices) {
+		this(dims, factory);
+		for(LongIterator iter = trueIndices.iterator(); iter.hasNext(); ) {
+			longCells.put(iter.next(), TRUE);
+		}
 	}
 	
 	/**  
@@ -171,9 +257,12 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	BooleanMatrix(Dimensions dims, BooleanFactory factory, IntSet allIndices, IntSet trueIndices) {
 		this.dims = dims;
 		this.factory = factory;
+		this.longCells = null;
 		final int tsize = trueIndices.size(), asize = allIndices.size();
 		if (tsize==asize)
 			this.cells = new HomogenousSequence<BooleanValue>(TRUE, trueIndices);
+		else if (HybridSequence.dense(dims.capacity(), tsize, asize - tsize))
+			this.cells = new HybridSequence(dims.capacity(), trueIndices);
 		else {
 			this.cells = tsize==0 || asize/tsize >= 2 ? new  ArraySequence<BooleanValue>(allIndices) : new RangeSequence<BooleanValue>();
 			for(IntIterator iter = trueIndices.iterator(); iter.hasNext(); ) {
@@ -199,7 +288,7 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
      * Returns the number of non-FALSE entries in this matrix.
      * @return #this.elements.(BooleanValue - FALSE)
      */
-	public final int density() { return cells.size(); }
+	public final int density() { return cells==null ? longCells.size() : cells.size(); }
 	
 	/**
 	 * Returns an IndexedEntry-based view of the non-FALSE entries in this matrix.  The returned
@@ -209,21 +298,82 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	 * c2.index=3 && c.value = c | d.  Calling {@link Iterator#remove()} on the returned iterator has the same effect
 	 * as setting the entry obtained through the last call to {@link Iterator#next()} to FALSE.
 	 * @return an iterator over IndexedEntries representing the non-FALSE entries in this matrix.
+	 * @throws CapacityExceededException  this.dimensions.isLongIndexed()
 	 */
 	public final Iterator<IndexedEntry<BooleanValue>> iterator() {
+		if (cells==null) throw capacityExceeded();
 		return cells.iterator();
 	}
 	
+	/**
+	 * Returns a LongIndexedEntry-based view of the non-FALSE entries in this matrix, 
+	 * in the ascending order of indeces.  Unlike {@link #iterator()}, this method can be 
+	 * called on long-indexed matrices.  
+	 * @return an iterator over LongIndexedEntries representing the non-FALSE entries in this matrix.
+	 */
+	public final Iterator<LongIndexedEntry<BooleanValue>> longIterator() {
+		return longIterator(0, dims.longCapacity()-1);
+	}
+	
+	/**
+	 * Returns an iterator over the non-FALSE entries in this matrix whose indices 
+	 * are between from and to, inclusive, in the ascending order of indices.
+	 * @requires 0 <= from <= to
+	 * @return an iterator over the non-FALSE entries in this matrix whose indices 
+	 * are between from and to
+	 */
+	private Iterator<LongIndexedEntry<BooleanValue>> longIterator(long from, long to) {
+		if (cells==null) return longCells.iterator(from, to);
+		final Iterator<IndexedEntry<BooleanValue>> itr = 
+			cells.iterator((int)from, (int)StrictMath.min(to, Integer.MAX_VALUE));
+		return new Iterator<LongIndexedEntry<BooleanValue>>() {
+			public boolean hasNext() { return itr.hasNext(); }
+			public LongIndexedEntry<BooleanValue> next() { 
+				final IndexedEntry<BooleanValue> e = itr.next();
+				final long index = e.index();
+				final BooleanValue value = e.value();
+				return new LongIndexedEntry<BooleanValue>() {
+					public long index() { return index; }
+					public BooleanValue value() { return value; }
+				};
+			}
+			public void remove() { itr.remove(); }
+		};
+	}
+	
 	/**
 	 * Returns the set of all indices in this matrix that contain
 	 * non-FALSE values.
 	 * @return the set of all indices in this matrix that contain
 	 * non-FALSE values.
+	 * @throws CapacityExceededException  this.dimensions.isLongIndexed()
 	 */
 	public final IntSet denseIndices() {
+		if (cells==null) throw capacityExceeded();
 		return cells.indices();
 	}
 	
+	/**
+	 * Returns the set of all indices in this matrix that contain
+	 * non-FALSE values.  Unlike {@link #denseIndices()}, this method can 
+	 * be called on long-indexed matrices.
+	 * @return the set of all indices in this matrix that contain
+	 * non-FALSE values.
+	 */
+	public final LongSet longDenseIndices() {
+		return cells==null ? Ints.unmodifiableLongSet(longCells.indices()) : Ints.asLongSet(cells.indices());
+	}
+	
+	/**
+	 * Returns a CapacityExceededException for an attempt to index this matrix with ints.
+	 * @return a CapacityExceededException for an attempt to index this matrix with ints.
+	 */
+	private CapacityExceededException capacityExceeded() {
+		final int[] vector = new int[dims.numDimensions()];
+		for(int i = 0; i < vector.length; i++) { vector[i] = dims.dimension(i); }
+		return new CapacityExceededException("Matrix too large for int indices: " + dims, Ints.asIntVector(vector));
+	}
+	
 	/**
 	 * Return FALSE if value is null; otherwise return value itself.
 	 * @return FALSE if value is null; otherwise return value itself.
@@ -240,14 +390,22 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 		return maskNull(cells.get(index));
 	}
 	
+	/**
+	 * Returns the value at the given long index, without checking that the index is in bounds.
+	 * @return this.elements[index]
+	 */
+	private final BooleanValue fastGet(final long index) {
+		return maskNull(cells==null ? longCells.get(index) : cells.get((int)index));
+	}
+	
 	/**
      * Returns the element at the specified index.
      * @return this.elements[index]
      * @throws IndexOutOfBoundsException  index < 0 || index >= this.dimensions.capacity
      */
-	public final BooleanValue get(final int index) {
+	public final BooleanValue get(final long index) {
 		if (!dims.validate(index)) throw new IndexOutOfBoundsException(index + " is not a valid index.");
-		return maskNull(cells.get(index));
+		return fastGet(index);
 	}
 	
 	
@@ -259,6 +417,7 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
      *                              all i: [0..m.dimensions.capacity) | m.elements[i] = !this.elements[i] }
      */
 	public final BooleanMatrix not() {
+		if (cells==null) throw capacityExceeded();
 		final BooleanMatrix negation = new BooleanMatrix(dims, factory, cells, cells);
 		
 		for (int i = 0, max = dims.capacity(); i < max; i++) {
@@ -300,9 +459,24 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	public final BooleanMatrix and(BooleanMatrix  other) {
 		checkFactory(this.factory, other.factory); 
 		checkDimensions(this.dims, other.dims);
+		if (cells==null) return longAnd(other);
 		final BooleanMatrix ret = new BooleanMatrix(dims, factory, cells, other.cells);
 		final SparseSequence<BooleanValue> s1 = other.cells;
 		if (cells.isEmpty() || s1.isEmpty()) return ret;
+		if (hybrid(other, ret)) {
+			final HybridSequence h0 = (HybridSequence) cells, h1 = (HybridSequence) s1;
+			((HybridSequence) ret.cells).and(h0, h1);
+			for(IndexedEntry<BooleanValue> e0 : h0.gates) {
+				BooleanValue v1 = s1.get(e0.index());
+				if (v1!=null)
+					ret.fastSet(e0.index(), factory.and(e0.value(), v1));
+			}
+			for(IndexedEntry<BooleanValue> e1 : h1.gates) {
+				if (h0.isTrue(e1.index()))
+					ret.cells.put(e1.index(), e1.value());
+			}
+			return ret;
+		}
 		for(IndexedEntry<BooleanValue> e0 : cells) {
 			BooleanValue v1 = s1.get(e0.index());
 			if (v1!=null)
@@ -323,6 +497,11 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	 * @throws IllegalArgumentException  some m: others[int] | !m.dimensions.equals(this.dimensions) || m.factory != this.factory
 	 */
 	public final BooleanMatrix and(final BooleanMatrix...others) {
+		if (cells==null) {
+			BooleanMatrix ret = this;
+			for(BooleanMatrix other : others) { ret = ret.and(other); }
+			return ret==this ? clone() : ret;
+		}
 		final BooleanMatrix ret = new BooleanMatrix(dims, this, others);
 		
 		for(IndexedEntry<BooleanValue> cell : cells) {
@@ -350,12 +529,27 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	public final BooleanMatrix or(BooleanMatrix  other) {
 		checkFactory(this.factory, other.factory); 
 		checkDimensions(this.dims, other.dims);
+		if (cells==null) return longOr(other);
 		if (this.cells.isEmpty())
 			return other.clone();
 		else if (other.cells.isEmpty())
 			return this.clone();
 		final BooleanMatrix ret = new BooleanMatrix(dims, factory, cells, other.cells);
 		final SparseSequence<BooleanValue> retSeq = ret.cells;
+		if (hybrid(other, ret)) {
+			final HybridSequence h0 = (HybridSequence) cells, h1 = (HybridSequence) other.cells;
+			((HybridSequence) retSeq).or(h0, h1);
+			for(IndexedEntry<BooleanValue> e0 : h0.gates) {
+				if (h1.isTrue(e0.index())) continue;
+				BooleanValue v1 = h1.gates.get(e0.index());
+				retSeq.put(e0.index(), v1==null ? e0.value() : factory.or(e0.value(), v1));
+			}
+			for(IndexedEntry<BooleanValue> e1 : h1.gates) {
+				if (!h0.containsIndex(e1.index()))
+					retSeq.put(e1.index(), e1.value());
+			}
+			return ret;
+		}
 		for(IndexedEntry<BooleanValue> e0 : cells) {
 			BooleanValue v1 = other.cells.get(e0.index());
 			if (v1==null)
@@ -383,6 +577,11 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	 * @throws IllegalArgumentException  some m: others[int] | !m.dimensions.equals(this.dimensions) || m.factory != this.factory
 	 */
 	public final BooleanMatrix or(final BooleanMatrix... others) {
+		if (cells==null) {
+			BooleanMatrix ret = this;
+			for(BooleanMatrix other : others) { ret = ret.or(other); }
+			return ret==this ? clone() : ret;
+		}
 		final BooleanMatrix ret = new BooleanMatrix(dims, this, others);
 			
 		for(IndexedEntry<BooleanValue> cell : cells) {
@@ -419,11 +618,36 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
      */
 	public final BooleanMatrix cross(final BooleanMatrix other) {
 		checkFactory(this.factory, other.factory);
+		if (cells==null || other.cells==null || dims.cross(other.dims).isLongIndexed()) 
+			return longCross(other);
+		
+		final int ocap = other.dims.capacity();
+		if (cells instanceof HybridSequence && other.cells instanceof HybridSequence) {
+			final HybridSequence h0 = (HybridSequence) cells, h1 = (HybridSequence) other.cells;
+			final long trues = (long)h0.trues() * h1.trues();
+			if (HybridSequence.dense((long)dims.capacity() * ocap, trues, (long)h0.size() * h1.size() - trues)) {
+				final HybridSequence r = new HybridSequence(dims.capacity() * ocap);
+				for(int i = h0.nextTrue(0); i >= 0; i = h0.nextTrue(i+1)) {
+					r.orRange(i * ocap, h1, 0, ocap);
+					for(IndexedEntry<BooleanValue> e1 : h1.gates) {
+						r.put(i * ocap + e1.index(), e1.value());
+					}
+				}
+				for(IndexedEntry<BooleanValue> e0 : h0.gates) {
+					int i = ocap * e0.index();
+					for(IndexedEntry<BooleanValue> e1: h1) {
+						BooleanValue conjunction = factory.and(e0.value(), e1.value());
+						if (conjunction != FALSE)
+							r.put(i + e1.index(), conjunction);
+					}
+				}
+				return new BooleanMatrix(dims.cross(other.dims), factory, r);
+			}
+		}
 		
 		final BooleanMatrix ret =  new BooleanMatrix(dims.cross(other.dims), factory, cells, other.cells);
 		if (cells.isEmpty() || other.cells.isEmpty()) return ret;
 		
-		final int ocap = other.dims.capacity();
 		for(IndexedEntry<BooleanValue> e0 : cells) {
 			int i = ocap * e0.index();
 			for(IndexedEntry<BooleanValue> e1: other.cells) {
@@ -494,10 +718,15 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
      */
 	public final BooleanMatrix cross(final BooleanMatrix...others) {
 		Dimensions retDims = dims;
-		boolean empty = cells.isEmpty();
+		boolean empty = density()==0;
 		for(BooleanMatrix other : others) { 
 			retDims = retDims.cross(other.dims);
-			empty = empty || other.cells.isEmpty();
+			empty = empty || other.density()==0;
+		}
+		if (retDims.isLongIndexed()) {
+			BooleanMatrix ret = this;
+			for(BooleanMatrix other : others) { ret = ret.cross(other); }
+			return ret==this ? clone() : ret;
 		}
 		
 		final BooleanMatrix ret = new BooleanMatrix(retDims, this, others);
@@ -536,6 +765,21 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 		else cells.put(index,formula);
 	}
 	
+	/**
+     * Sets the value at the specified long index to the given value.
+     * It performs no index or null checking.
+     * 
+     * @ensures this.elements'[index] = formula
+     */
+	private final void fastSet(final long index, final BooleanValue formula) {
+		if (cells==null) {
+			if (formula==FALSE) longCells.remove(index);
+			else longCells.put(index,formula);
+		} else {
+			fastSet((int)index, formula);
+		}
+	}
+	
 	/**
      * Returns the dot product of this and other matrix, using conjunction instead of 
      * multiplication and disjunction instead of addition.
@@ -547,13 +791,20 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
      */
 	public final BooleanMatrix dot(final BooleanMatrix other) {  
 		checkFactory(this.factory, other.factory);
+		if (cells==null || other.cells==null || dims.dot(other.dims).isLongIndexed())
+			return longDot(other);
 		
 		final BooleanMatrix ret =  new BooleanMatrix(dims.dot(other.dims), factory, cells, other.cells);
 		if (cells.isEmpty() || other.cells.isEmpty()) return ret;
 		
-		final SparseSequence<BooleanValue> mutableCells = ret.clone().cells;
 		final int b = other.dims.dimension(0); 
 		final int c = other.dims.capacity() / b; 
+		if (hybrid(other, ret)) {
+			hybridDot((HybridSequence) cells, (HybridSequence) other.cells, b, c, ret);
+			return ret;
+		}
+		
+		final SparseSequence<BooleanValue> mutableCells = ret.clone().cells;
 		
 		for(IndexedEntry<BooleanValue> e0 : cells) {
 			int i = e0.index();
@@ -590,6 +841,62 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 		return ret;
 	}
 	
+	/**
+	 * Stores the dot product of the matrices backed by h0 and h1 into ret.  The 
+	 * constant part of the product is computed a word at a time:  for every TRUE
+	 * cell [r, k] of h0, the TRUE cells of the kth row of h1 are or-ed into the rth
+	 * row of the result.  The remaining products are accumulated cell by cell, 
+	 * skipping the cells of the result that are already TRUE.
+	 * @requires ret.cells in HybridSequence && no ret.elements 
+	 * @requires h0 and h1 back matrices whose product has ret's dimensions
+	 * @requires b = the number of rows in h1's matrix && c = the number of cells in each row
+	 * @ensures ret.elements' = h0 * h1
+	 */
+	private final void hybridDot(HybridSequence h0, HybridSequence h1, int b, int c, BooleanMatrix ret) {
+		final HybridSequence r = (HybridSequence) ret.cells;
+		for(int i = h0.nextTrue(0); i >= 0; i = h0.nextTrue(i+1)) {
+			r.orRange((i / b)*c, h1, (i % b)*c, c);
+		}
+		
+		final SparseSequence<BooleanValue> mutableCells = new TreeSequence<BooleanValue>();
+		for(IndexedEntry<BooleanValue> e0 : cells) {
+			final int i = e0.index(), rowHead = (i % b)*c, rowTail = rowHead + c - 1, retHead = (i / b)*c;
+			final BooleanValue iVal = e0.value();
+			// the products of two TRUE cells are already in r
+			final SparseSequence<BooleanValue> row = iVal==TRUE ? h1.gates : h1;
+			for(Iterator<IndexedEntry<BooleanValue>> iter1 = row.iterator(rowHead, rowTail); iter1.hasNext();) {
+				IndexedEntry<BooleanValue> e1 = iter1.next();
+				int k = retHead + e1.index() - rowHead;
+				if (r.isTrue(k)) continue;
+				BooleanValue retVal = factory.and(iVal, e1.value());
+				if (retVal==TRUE) r.setTrue(k);
+				else if (retVal != FALSE) {
+					BooleanValue kVal = mutableCells.get(k);
+					if (kVal==null) {
+						kVal = BooleanAccumulator.treeGate(OR);
+						mutableCells.put(k, kVal);
+					} 
+					((BooleanAccumulator) kVal).add(retVal);
+				}
+			}
+		}
+		
+		// make mutable gates immutable
+		for(IndexedEntry<BooleanValue> e : mutableCells) {
+			if (!r.isTrue(e.index())) {
+				ret.fastSet(e.index(), factory.accumulate((BooleanAccumulator) e.value()));
+			}
+		}
+	}
+	
+	/**
+	 * Returns true if this, other and ret are all backed by hybrid sequences.
+	 * @return this.cells + other.cells + ret.cells in HybridSequence
+	 */
+	private final boolean hybrid(BooleanMatrix other, BooleanMatrix ret) {
+		return cells instanceof HybridSequence && other.cells instanceof HybridSequence && ret.cells instanceof HybridSequence;
+	}
+	
 	/**
 	 * Returns a formula stating that the entries in this matrix are a subset of 
 	 * the entries in the given matrix; i.e. the value of every entry in this matrix
@@ -602,6 +909,13 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	public final BooleanValue subset(BooleanMatrix other) {
 		checkFactory(this.factory, other.factory); checkDimensions(this.dims, other.dims);
 		final BooleanAccumulator a = BooleanAccumulator.treeGate(AND);
+		if (cells==null) {
+			for(LongIndexedEntry<BooleanValue> e0 : longCells) {
+				if (a.add(factory.or(e0.value().negation(), other.fastGet(e0.index())))==FALSE)
+					return FALSE;
+			}
+			return factory.accumulate(a);
+		}
 		for(IndexedEntry<BooleanValue> e0: cells) {
 			if (a.add(factory.or(e0.value().negation(), other.fastGet(e0.index())))==FALSE)
 				return FALSE;
@@ -639,7 +953,14 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	public final BooleanMatrix difference(BooleanMatrix other) {
 		checkFactory(this.factory, other.factory); 
 		checkDimensions(this.dims, other.dims);
-		if (this.cells.isEmpty() || other.cells.isEmpty()) return this.clone();
+		if (this.density()==0 || other.density()==0) return this.clone();
+		if (cells==null) {
+			final BooleanMatrix ret = new BooleanMatrix(dims, factory);
+			for(LongIndexedEntry<BooleanValue> e0 : longCells) {
+				ret.fastSet(e0.index(), factory.and(e0.value(), other.fastGet(e0.index()).negation()));
+			}
+			return ret;
+		}
 		final BooleanMatrix ret = new BooleanMatrix(dims, factory, cells, other.cells);
 		for(IndexedEntry<BooleanValue> e0 : cells) {
 			ret.fastSet(e0.index(), factory.and(e0.value(), other.fastGet(e0.index()).negation()));
@@ -657,28 +978,171 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 		if (dims.numDimensions() != 2 || !dims.isSquare()) {
 			throw new UnsupportedOperationException("#this.diensions != 2 || !this.dimensions.square()");
 		}
-		if (cells.isEmpty())
+		if (density()==0)
 			return clone();
+		if (cells==null) 
+			return squaring(dims.dimension(0));
 		
-//		System.out.println("closure of " + this);
-		BooleanMatrix ret = this;
-	
-		// compute the number of rows in the matrix
-		int rowNum = 0;
-		final int rowFactor = dims.dimension(1);
-		for(IndexedEntry<BooleanValue> rowLead = cells.first(); 
-		    rowLead != null; rowLead = cells.ceil(((rowLead.index()/rowFactor) + 1) * rowFactor)) {
-			rowNum++; 
-		}	
+		if (constantClosure()) {
+			final HybridSequence r = cells instanceof HybridSequence ? 
+					((HybridSequence) cells).clone() : new HybridSequence(dims.capacity(), cells.indices());
+			final int n = dims.dimension(0);
+			// Warshall's algorithm, with each row update done a word at a time
+			for(int k = 0; k < n; k++) {
+				for(int i = r.nextTrue(0); i >= 0; i = r.nextTrue((i / n + 1) * n)) {
+					final int row = i / n;
+					if (row != k && r.isTrue(row * n + k)) {
+						r.orRange(row * n, r, k * n, n);
+					}
+				}
+			}
+			return new BooleanMatrix(dims, factory, r);
+		}
 		
-		// compute closure using iterative squaring
-		for(int i = 1; i < rowNum; i*=2) {
+		switch(factory.closureEncoding()) {
+		case WARSHALL 			: return warshall(pivots());
+		case PRUNED_SQUARING 	: return squaring(maxPathLength());
+		default 				: 
+			// compute the number of rows in the matrix
+			int rowNum = 0;
+			final int rowFactor = dims.dimension(1);
+			for(IndexedEntry<BooleanValue> rowLead = cells.first(); 
+			    rowLead != null; rowLead = cells.ceil(((rowLead.index()/rowFactor) + 1) * rowFactor)) {
+				rowNum++; 
+			}	
+			return squaring(rowNum);
+		}
+	}
+	
+	/**
+	 * Returns the transitive closure of this matrix, computed by iterative squaring
+	 * that covers all paths with at most maxLength edges.
+	 * @requires this.dimensions.numDimensions = 2 && this.dimensions.isSquare()
+	 * @requires no path in this matrix needs more than maxLength edges
+	 * @return { m: BooleanMatrix | m = ^this }
+	 */
+	private final BooleanMatrix squaring(int maxLength) {
+		BooleanMatrix ret = this;
+		for(int i = 1; i < maxLength; i*=2) {
 			ret = ret.or(ret.dot(ret));
 		}
-//		System.out.println(ret);
 		return ret==this ? clone() : ret;
 	}
 	
+	/**
+	 * Returns the atoms that can be the intermediate atoms of a path in this 
+	 * matrix, i.e., the atoms with both a non-empty row and a non-empty column.
+	 * @requires this.dimensions.numDimensions = 2 && this.dimensions.isSquare()
+	 * @return { k: [0..this.dimensions.dimension(0)) | 
+	 *            some this.elements[k*this.dimensions.dimension(0)..(k+1)*this.dimensions.dimension(0)) - FALSE && 
+	 *            some i: [0..this.dimensions.dimension(0)) | this.elements[i*this.dimensions.dimension(0)+k] != FALSE }
+	 */
+	private final IntSet pivots() {
+		final int n = dims.dimension(0);
+		final IntSet rows = Ints.bestSet(n), cols = Ints.bestSet(n);
+		for(IndexedEntry<BooleanValue> e : cells) {
+			rows.add(e.index() / n);
+			cols.add(e.index() % n);
+		}
+		rows.retainAll(cols);
+		return rows;
+	}
+	
+	/**
+	 * Returns an upper bound on the number of edges in the shortest path between any 
+	 * two atoms connected by this matrix.  If the non-FALSE cells of this matrix, minus 
+	 * the diagonal, form an acyclic graph, the bound is the length of its longest path.  
+	 * Otherwise, it is one more than the number of atoms that can lie inside a path.
+	 * @requires this.dimensions.numDimensions = 2 && this.dimensions.isSquare()
+	 * @return an upper bound on the number of edges in the shortest path between any 
+	 * two atoms connected by this matrix
+	 */
+	private final int maxPathLength() {
+		final int n = dims.dimension(0);
+		final int[] inDegree = new int[n];
+		for(IndexedEntry<BooleanValue> e : cells) {
+			final int i = e.index() / n, j = e.index() % n;
+			if (i != j) inDegree[j]++;
+		}
+		// Kahn's algorithm, computing the longest path that ends at each atom
+		final int[] longest = new int[n], queue = new int[n];
+		int head = 0, tail = 0, max = 0;
+		for(int i = 0; i < n; i++) {
+			if (inDegree[i]==0) queue[tail++] = i;
+		}
+		while(head < tail) {
+			final int i = queue[head++];
+			for(Iterator<IndexedEntry<BooleanValue>> iter = cells.iterator(i*n, i*n + n - 1); iter.hasNext(); ) {
+				final int j = iter.next().index() - i*n;
+				if (i == j) continue;
+				longest[j] = Math.max(longest[j], longest[i] + 1);
+				max = Math.max(max, longest[j]);
+				if (--inDegree[j]==0) queue[tail++] = j;
+			}
+		}
+		return tail == n ? max : pivots().size() + 1;
+	}
+	
+	/**
+	 * Returns the transitive closure of this matrix, computed with a layered encoding
+	 * of Warshall's algorithm.  The kth layer or-s the product of the kth column and the 
+	 * kth row into every cell, so only the cells that the layer extends get new gates.
+	 * Since a layer never changes its own row or column, the update is done in place.
+	 * @requires this.dimensions.numDimensions = 2 && this.dimensions.isSquare()
+	 * @requires pivots = this.pivots()
+	 * @return { m: BooleanMatrix | m = ^this }
+	 */
+	private final BooleanMatrix warshall(IntSet pivots) {
+		final BooleanMatrix ret = new BooleanMatrix(dims, factory, cells, cells);
+		for(IndexedEntry<BooleanValue> e : cells) {
+			ret.cells.put(e.index(), e.value());
+		}
+		
+		final int n = dims.dimension(0);
+		final int[] rowIdx = new int[n];
+		final BooleanValue[] rowVal = new BooleanValue[n];
+		for(IntIterator kIter = pivots.iterator(); kIter.hasNext(); ) {
+			final int k = kIter.next();
+			
+			int rowSize = 0;
+			for(Iterator<IndexedEntry<BooleanValue>> iter = ret.cells.iterator(k*n, k*n + n - 1); iter.hasNext(); ) {
+				final IndexedEntry<BooleanValue> e = iter.next();
+				final int j = e.index() - k*n;
+				if (j != k) {
+					rowIdx[rowSize] = j;
+					rowVal[rowSize++] = e.value();
+				}
+			}
+			
+			for(int i = 0; i < n; i++) {
+				final BooleanValue ik = ret.cells.get(i*n + k);
+				if (i == k || ik == null) continue;
+				for(int r = 0; r < rowSize; r++) {
+					final int ij = i*n + rowIdx[r];
+					final BooleanValue old = ret.fastGet(ij);
+					if (old == TRUE) continue;
+					final BooleanValue path = factory.and(ik, rowVal[r]);
+					if (path != FALSE) 
+						ret.fastSet(ij, factory.or(old, path));
+				}
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Returns true if this matrix contains only constants and is dense enough 
+	 * for its closure to be computed on a bitmap.
+	 * @return this.elements[int] in TRUE && HybridSequence.dense(this.dimensions.capacity, #this.elements.TRUE, 0)
+	 */
+	private final boolean constantClosure() {
+		if (cells instanceof HybridSequence) {
+			return ((HybridSequence) cells).gates.isEmpty();
+		} else {
+			return cells instanceof HomogenousSequence && HybridSequence.dense(dims.capacity(), cells.size(), 0);
+		}
+	}
+	
 	/**
      * Returns the transpose of this matrix.
      * 
@@ -686,8 +1150,26 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
      * @throws UnsupportedOperationException  #this.dimensions != 2
      */
 	public final BooleanMatrix transpose() {
+		if (cells==null) {
+			final BooleanMatrix ret = new BooleanMatrix(dims.transpose(), factory);
+			final long rows = dims.dimension(0), cols = dims.dimension(1);
+			for (LongIndexedEntry<BooleanValue> e0 : longCells) {
+				ret.longCells.put((e0.index()%cols)*rows + (e0.index()/cols), e0.value());
+			}
+			return ret;
+		}
 		final BooleanMatrix ret = new BooleanMatrix(dims.transpose(), factory, cells, cells);
 		final int rows = dims.dimension(0), cols = dims.dimension(1);
+		if (cells instanceof HybridSequence && ret.cells instanceof HybridSequence) {
+			final HybridSequence h = (HybridSequence) cells, r = (HybridSequence) ret.cells;
+			for(int i = h.nextTrue(0); i >= 0; i = h.nextTrue(i+1)) {
+				r.setTrue((i%cols)*rows + (i/cols));
+			}
+			for (IndexedEntry<BooleanValue> e0 : h.gates) {
+				r.put((e0.index()%cols)*rows + (e0.index()/cols), e0.value());
+			}
+			return ret;
+		}
 		for (IndexedEntry<BooleanValue> e0 : cells) {
 			ret.cells.put((e0.index()%cols)*rows + (e0.index()/cols), e0.value());
 		}
@@ -709,6 +1191,7 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 		checkDimensions(this.dims, other.dims);
 		if (condition==TRUE) return this.clone();
 		else if (condition==FALSE) return other.clone();
+		if (cells==null) return longChoice(condition, other);
 	
 		final BooleanMatrix ret =  new BooleanMatrix(dims, factory);
 		final SparseSequence<BooleanValue> otherCells = other.cells;
@@ -745,7 +1228,8 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 			throw new IllegalArgumentException("columns.length < 1");
 		
 		final Dimensions rdims = Dimensions.square(dims.dimension(0), rdnum);
-		final BooleanMatrix ret = new BooleanMatrix(rdims, factory, cells, cells);
+		final BooleanMatrix ret = cells==null || rdims.isLongIndexed() ? 
+				new BooleanMatrix(rdims, factory) : new BooleanMatrix(rdims, factory, cells, cells);
 		
 		final int tdnum = dims.numDimensions();
 		final int[] tvector = new int[tdnum];
@@ -778,12 +1262,13 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 						continue PROJECT;
 				}
 			}
-			for(IndexedEntry<BooleanValue> e : cells) {
+			for(Iterator<LongIndexedEntry<BooleanValue>> iter = longIterator(); iter.hasNext(); ) {
+				final LongIndexedEntry<BooleanValue> e = iter.next();
 				dims.convert(e.index(), tvector);
 				for(int j = 0; j < rdnum; j++) {
 					rvector[j] = tvector[StrictMath.abs(ivector[j])];
 				}
-				int rindex = rdims.convert(rvector);
+				final long rindex = rdims.convert(rvector);
 				ret.fastSet(rindex, factory.or(factory.and(e.value(), colVal), ret.fastGet(rindex)));
 			}
 			for(int j = rdnum-1; j >= 0; j--) { // update ivector
@@ -808,9 +1293,9 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	 * @requires 0 <= start < end <= this.dimensions.capacity() 
 	 * @return !this.elements[start] && !this.elements[start+1] && ... && !this.elements[end-1]
 	 */
-	private final BooleanValue nand(int start, int end) {
+	private final BooleanValue nand(long start, long end) {
 		final BooleanAccumulator g = BooleanAccumulator.treeGate(AND);
-		for(Iterator<IndexedEntry<BooleanValue>> iter = cells.iterator(start, end-1); iter.hasNext(); ) {
+		for(Iterator<LongIndexedEntry<BooleanValue>> iter = longIterator(start, end-1); iter.hasNext(); ) {
 			if (g.add(iter.next().value().negation())==FALSE) 
 				return FALSE;
 		}
@@ -835,7 +1320,8 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	public final BooleanMatrix override(BooleanMatrix other) {
 		checkFactory(this.factory, other.factory); 
 		checkDimensions(this.dims, other.dims);
-		if (other.cells.isEmpty()) return this.clone();
+		if (other.density()==0) return this.clone();
+		if (cells==null) return longOverride(other);
 		final BooleanMatrix ret = new BooleanMatrix(dims, factory, cells, other.cells);
 		ret.cells.putAll(other.cells);
 		final int rowLength = dims.capacity() / dims.dimension(0);
@@ -885,7 +1371,7 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	 * @return {i: Int | [[i]] = sum({v: elements[int] | if [[v]] then 1 else 0}) }  
 	 */
 	public final Int cardinality() {
-		return factory.sum(cells.values());
+		return factory.sum(cells==null ? longCells.values() : cells.values());
 	}
 	
 	/**
@@ -895,8 +1381,8 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	 */
 	public final BooleanValue some() {
 		final BooleanAccumulator g = BooleanAccumulator.treeGate(OR);
-		for(IndexedEntry<BooleanValue> e : cells) {
-			if (g.add(e.value())==TRUE) 
+		for(Iterator<LongIndexedEntry<BooleanValue>> iter = longIterator(); iter.hasNext(); ) {
+			if (g.add(iter.next().value())==TRUE) 
 				return TRUE;
 		}
 		return factory.accumulate(g);
@@ -908,16 +1394,17 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	 * @return { f: BooleanValue | f <=> this.one() || this.none() }
 	 */
 	public final BooleanValue lone() {
-		if (cells.isEmpty())
+		if (density()==0)
 			return TRUE; 
 		else {
 			final BooleanAccumulator g = BooleanAccumulator.treeGate(AND);
 			
 			BooleanValue partial = FALSE;
-			for(IndexedEntry<BooleanValue> e: cells) {
-				if (g.add(factory.or(e.value().negation(), partial.negation()))==FALSE)
+			for(Iterator<LongIndexedEntry<BooleanValue>> iter = longIterator(); iter.hasNext(); ) {
+				final BooleanValue v = iter.next().value();
+				if (g.add(factory.or(v.negation(), partial.negation()))==FALSE)
 					return FALSE;
-				partial = factory.or(partial, e.value());
+				partial = factory.or(partial, v);
 			}
 
 			return factory.accumulate(g);
@@ -929,16 +1416,17 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	 * @return { f: BooleanValue | f <=> #this.elements[int] = 1 }
 	 */
 	public final BooleanValue one() {
-		if (cells.isEmpty())
+		if (density()==0)
 			return FALSE; 
 		else {
 			final BooleanAccumulator g = BooleanAccumulator.treeGate(AND);
 			
 			BooleanValue partial = FALSE;
-			for(IndexedEntry<BooleanValue> e: cells) {
-				if (g.add(factory.or(e.value().negation(), partial.negation()))==FALSE)
+			for(Iterator<LongIndexedEntry<BooleanValue>> iter = longIterator(); iter.hasNext(); ) {
+				final BooleanValue v = iter.next().value();
+				if (g.add(factory.or(v.negation(), partial.negation()))==FALSE)
 					return FALSE;
-				partial = factory.or(partial, e.value());
+				partial = factory.or(partial, v);
 			}
 			g.add(partial);
 			return factory.accumulate(g);
@@ -964,13 +1452,141 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
      * @throws IndexOutOfBoundsException  the given index does not belong to the set of indices at which
      * this matrix can store non-FALSE values.
      */
-	public final void set(final int index, final BooleanValue value) {
+	public final void set(final long index, final BooleanValue value) {
 		if (!dims.validate(index)) throw new IndexOutOfBoundsException("index < 0 || index >= this.dimensions.capacity");
 		if (value==null) throw new NullPointerException("formula=null");
-		if (value==FALSE) 
-			cells.remove(index);
-		else 
-			cells.put(index,value);
+		fastSet(index, value);
+	}
+	
+	/**
+	 * Returns the conjunction of this and the given long-indexed matrix.
+	 * @requires this.dimensions = other.dimensions && this.factory = other.factory
+	 * @requires this.dimensions.isLongIndexed()
+	 * @return this.and(other)
+	 */
+	private final BooleanMatrix longAnd(BooleanMatrix other) {
+		final BooleanMatrix ret = new BooleanMatrix(dims, factory);
+		for(LongIndexedEntry<BooleanValue> e0 : longCells) {
+			final BooleanValue v1 = other.longCells.get(e0.index());
+			if (v1!=null)
+				ret.fastSet(e0.index(), factory.and(e0.value(), v1));
+		}
+		return ret;
+	}
+	
+	/**
+	 * Returns the disjunction of this and the given long-indexed matrix.
+	 * @requires this.dimensions = other.dimensions && this.factory = other.factory
+	 * @requires this.dimensions.isLongIndexed()
+	 * @return this.or(other)
+	 */
+	private final BooleanMatrix longOr(BooleanMatrix other) {
+		final BooleanMatrix ret = other.clone();
+		for(LongIndexedEntry<BooleanValue> e0 : longCells) {
+			final BooleanValue v1 = other.longCells.get(e0.index());
+			ret.longCells.put(e0.index(), v1==null ? e0.value() : factory.or(e0.value(), v1));
+		}
+		return ret;
+	}
+	
+	/**
+	 * Returns the cross product of this and the given matrix, when either of them or 
+	 * their product is long-indexed.
+	 * @requires this.factory = other.factory
+	 * @return this.cross(other)
+	 */
+	private final BooleanMatrix longCross(BooleanMatrix other) {
+		final BooleanMatrix ret = new BooleanMatrix(dims.cross(other.dims), factory);
+		final long ocap = other.dims.longCapacity();
+		for(Iterator<LongIndexedEntry<BooleanValue>> iter0 = longIterator(); iter0.hasNext(); ) {
+			final LongIndexedEntry<BooleanValue> e0 = iter0.next();
+			final long i = ocap * e0.index();
+			for(Iterator<LongIndexedEntry<BooleanValue>> iter1 = other.longIterator(); iter1.hasNext(); ) {
+				final LongIndexedEntry<BooleanValue> e1 = iter1.next();
+				ret.fastSet(i + e1.index(), factory.and(e0.value(), e1.value()));
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * Returns the dot product of this and the given matrix, when either of them or 
+	 * their product is long-indexed.
+	 * @requires this.factory = other.factory
+	 * @return this.dot(other)
+	 */
+	private final BooleanMatrix longDot(BooleanMatrix other) {
+		final BooleanMatrix ret = new BooleanMatrix(dims.dot(other.dims), factory);
+		final long b = other.dims.dimension(0), c = other.dims.longCapacity() / b;
+		final LongTreeSequence<BooleanValue> mutableCells = new LongTreeSequence<BooleanValue>();
+		for(Iterator<LongIndexedEntry<BooleanValue>> iter0 = longIterator(); iter0.hasNext(); ) {
+			final LongIndexedEntry<BooleanValue> e0 = iter0.next();
+			final long i = e0.index(), rowHead = (i % b)*c, retHead = (i / b)*c;
+			for(Iterator<LongIndexedEntry<BooleanValue>> iter1 = other.longIterator(rowHead, rowHead + c - 1); iter1.hasNext();) {
+				final LongIndexedEntry<BooleanValue> e1 = iter1.next();
+				final BooleanValue retVal = factory.and(e0.value(), e1.value());
+				if (retVal == FALSE) continue;
+				final long k = retHead + e1.index() - rowHead;
+				BooleanValue kVal = mutableCells.get(k);
+				if (kVal == TRUE) continue;
+				if (retVal == TRUE) mutableCells.put(k, TRUE);
+				else {
+					if (kVal==null) {
+						kVal = BooleanAccumulator.treeGate(OR);
+						mutableCells.put(k, kVal);
+					} 
+					((BooleanAccumulator) kVal).add(retVal);
+				}
+			}
+		}
+		for(LongIndexedEntry<BooleanValue> e : mutableCells) {
+			ret.fastSet(e.index(), e.value()==TRUE ? TRUE : factory.accumulate((BooleanAccumulator) e.value()));
+		}
+		return ret;
+	}
+	
+	/**
+	 * Returns the choice between this and the given long-indexed matrix.
+	 * @requires this.dimensions = other.dimensions && this.factory = other.factory
+	 * @requires this.dimensions.isLongIndexed()
+	 * @return this.choice(condition, other)
+	 */
+	private final BooleanMatrix longChoice(BooleanValue condition, BooleanMatrix other) {
+		final BooleanMatrix ret =  new BooleanMatrix(dims, factory);
+		for(LongIndexedEntry<BooleanValue> e0 : longCells) {
+			final BooleanValue v1 = other.longCells.get(e0.index());
+			if (v1==null)
+				ret.fastSet(e0.index(), factory.and(condition, e0.value()));
+			else
+				ret.fastSet(e0.index(), factory.ite(condition, e0.value(), v1));
+		}
+		for(LongIndexedEntry<BooleanValue> e1 : other.longCells) {
+			if (!longCells.containsIndex(e1.index()))
+				ret.fastSet(e1.index(), factory.and(condition.negation(), e1.value()));
+		}
+		return ret;
+	}
+	
+	/**
+	 * Overrides the values in this long-indexed matrix with those in the given matrix.
+	 * @requires this.dimensions = other.dimensions && this.factory = other.factory
+	 * @requires this.dimensions.isLongIndexed()
+	 * @return this.override(other)
+	 */
+	private final BooleanMatrix longOverride(BooleanMatrix other) {
+		final BooleanMatrix ret = other.clone();
+		final long rowLength = dims.longCapacity() / dims.dimension(0);
+		long row = -1;
+		BooleanValue rowVal = BooleanConstant.TRUE;
+		for(LongIndexedEntry<BooleanValue> e0 : longCells) {
+			final long e0row = e0.index() / rowLength;
+			if (row != e0row) {
+				row = e0row;
+				rowVal = other.nand(row*rowLength, (row+1)*rowLength);
+			}
+			ret.fastSet(e0.index(), factory.or(ret.fastGet(e0.index()), factory.and(e0.value(), rowVal)));
+		}
+		return ret;
 	}
 	
 	/**
@@ -979,6 +1595,7 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 	 *                                    m.elements = copy of this.elements } 
 	 */
 	public BooleanMatrix clone()  {
+		if (cells==null) return new BooleanMatrix(dims, factory, longCells.clone());
 		try {
 			return new BooleanMatrix(dims, factory, cells.clone());
 		} catch (CloneNotSupportedException e) {
@@ -993,7 +1610,7 @@ public final class BooleanMatrix implements Iterable<IndexedEntry<BooleanValue>>
 		final StringBuilder buff = new StringBuilder("dimensions: ");
 		buff.append(dims);
 		buff.append(", elements: ");
-		buff.append(cells);
+		buff.append(cells==null ? longCells : cells);
 		return buff.toString();
 	}	
 }
@@ -96,6 +96,21 @@ final class CBCFactory {
 		cache = new CacheSet[]{new CacheSet<BooleanFormula>(), new CacheSet<BooleanFormula>(), new CacheSet<BooleanFormula>()};
 	}
 	
+	/**
+	 * Constructs a CircuitFactory with the same variables and max comparison parameter
+	 * as the given factory, but none of its gates.  The variables are shared with 
+	 * the given factory rather than copied.
+	 * @ensures this.values' = base.values & BooleanVariable && this.cmpMax' = base.cmpMax
+	 */
+	@SuppressWarnings({"unchecked","rawtypes"}) CBCFactory(CBCFactory base) {
+		this.cmpMax = base.cmpMax;
+		this.label = base.label;
+		this.vars = base.vars.clone();
+		scrap0 = new IdentityHashSet<BooleanFormula>(cmpMax);
+		scrap1 = new IdentityHashSet<BooleanFormula>(cmpMax);
+		cache = new CacheSet[]{new CacheSet<BooleanFormula>(), new CacheSet<BooleanFormula>(), new CacheSet<BooleanFormula>()};
+	}
+	
 	/**
 	 * Returns the cache for gates with the given operator.
 	 * @requires op in AND + OR + ITE
@@ -22,6 +22,7 @@
 package kodkod.engine.bool;
 
 import kodkod.engine.CapacityExceededException;
+import kodkod.util.ints.IntVector;
 import kodkod.util.ints.Ints;
 
 
@@ -31,7 +32,9 @@ import kodkod.util.ints.Ints;
  * Stores information about the size of a matrix.  Specifically,
  * for an n-dimensional matrix n, a Dimensions object is abstractly
  * a vector consisting of n integers; the ith integer in the vector
- * represents the size of the ith dimension of a matrix.
+ * represents the size of the ith dimension of a matrix.  The capacity
+ * of a Dimensions object may not fit into an int, in which case the 
+ * matrices with those dimensions are {@link #isLongIndexed() indexed by longs}.
  * 
  * @specfield n: int
  * @specfield dimensions: [0..n) -> one int
@@ -41,12 +44,12 @@ import kodkod.util.ints.Ints;
  * @author Emina Torlak 
  */
 public abstract class Dimensions {
-	private final int capacity;
+	private final long capacity;
 	
 	/**
 	 * Constructs a Dimensions with the given capacity.
 	 */
-	private Dimensions(int capacity) { 
+	private Dimensions(long capacity) { 
 		this.capacity = capacity;
 	}
 	
@@ -76,7 +79,7 @@ public abstract class Dimensions {
 		int size = dimensions[0];
 		for (int i = 0; i < dimensions.length; i++) {
 			if (dimensions[i] < 1) throw new IllegalArgumentException("Invalid dimension: " + dimensions[i]);
-			capacity *= dimensions[i];
+			capacity = multiply(capacity, dimensions[i], Ints.asIntVector(dimensions));
 			if (size!=dimensions[i]) size = 0;
 		}
 		if (size>0) {
@@ -91,8 +94,50 @@ public abstract class Dimensions {
 	/**
 	 * Returns the capacity of this.
 	 * @return this.capacity
+	 * @throws CapacityExceededException  this.capacity > Integer.MAX_VALUE
 	 */
-	public final int capacity() { return capacity; }
+	public final int capacity() { 
+		if (capacity > Integer.MAX_VALUE) 
+			throw new CapacityExceededException("Matrix too large for int indices: capacity of " + capacity, vector());
+		return (int) capacity; 
+	}
+	
+	/**
+	 * Returns the capacity of this as a long.  Unlike {@link #capacity()}, 
+	 * this method can be called on long-indexed dimensions.
+	 * @return this.capacity
+	 */
+	public final long longCapacity() { return capacity; }
+	
+	/**
+	 * Returns true if the capacity of this does not fit into an int, so 
+	 * that matrices with these dimensions are indexed by longs.
+	 * @return this.capacity > Integer.MAX_VALUE
+	 */
+	public final boolean isLongIndexed() { return capacity > Integer.MAX_VALUE; }
+	
+	/**
+	 * Returns this.dimensions as an IntVector.
+	 * @return this.dimensions
+	 */
+	private IntVector vector() {
+		final int[] dims = new int[numDimensions()];
+		copy(0, dims, 0, dims.length);
+		return Ints.asIntVector(dims);
+	}
+	
+	/**
+	 * Returns the product of the given capacities, or throws a CapacityExceededException 
+	 * if the product does not fit into a long.
+	 * @requires c0 > 0 && c1 > 0
+	 * @return c0 * c1
+	 * @throws CapacityExceededException  c0 * c1 > Long.MAX_VALUE
+	 */
+	private static long multiply(long c0, long c1, IntVector dims) {
+		if (c0 > Long.MAX_VALUE / c1)
+			throw new CapacityExceededException("Matrix too large: requested capacity of " + c0 + "*" + c1, dims);
+		return c0 * c1;
+	}
 	
 	/**
 	 * Returns the size of the ith dimensions
@@ -156,7 +201,7 @@ public abstract class Dimensions {
 			final int[] dims = new int[n];
 			copy(0, dims, 0, n0-1);
 			dim.copy(1, dims, n0-1, n1-1);
-			return new Rectangle(dims, (capacity*dim.capacity) / (drop*drop));
+			return new Rectangle(dims, multiply(capacity / drop, dim.capacity / drop, Ints.asIntVector(dims)));
 		}
 	}
 	
@@ -177,7 +222,7 @@ public abstract class Dimensions {
 			final int[] dims = new int[n0+n1];
 			copy(0, dims, 0, n0);
 			dim.copy(0, dims, n0, n1);
-			return new Rectangle(dims, (long)capacity*(long)dim.capacity);
+			return new Rectangle(dims, multiply(capacity, dim.capacity, Ints.asIntVector(dims)));
 		}
 	}
 	
@@ -194,7 +239,7 @@ public abstract class Dimensions {
 	/**
 	 * @return true if index is positive and less than bound.
 	 */
-	private static boolean positiveBounded(int index, int bound) {
+	private static boolean positiveBounded(long index, long bound) {
 		return 0 <= index && index < bound;
 	}
 	
@@ -204,7 +249,7 @@ public abstract class Dimensions {
 	 * 
 	 * @return 0 <= i < this.capacity
 	 */
-	public final boolean validate(int index) {
+	public final boolean validate(long index) {
 		return positiveBounded(index, capacity);
 	}
 	
@@ -233,7 +278,7 @@ public abstract class Dimensions {
 	 * integer index into a this.dimensions[0]x...xthis.dimensions[n-1] matrix
 	 * @throws IndexOutOfBoundsException  !validate(index)
 	 */
-	public final int[] convert(int index) {
+	public final int[] convert(long index) {
 		final int[] vector = new int[numDimensions()];
 		convert(index, vector);
 		return vector;
@@ -253,17 +298,17 @@ public abstract class Dimensions {
 	 * @throws IllegalArgumentException  vectorIndex.length < this.numDimensions
 	 * @throws IndexOutOfBoundsException  !validate(index)
 	 */
-	public final void convert(int index, int[] vectorIndex) {
+	public final void convert(long index, int[] vectorIndex) {
 		final int length = numDimensions();	
 		if (vectorIndex.length < length)
 			throw new IllegalArgumentException("arrayIndex.length<this.numDimensions");
 		if (!validate(index)) 
 			throw new IndexOutOfBoundsException("index");    
-		int conversionFactor = capacity;
-		int remainder = index;
+		long conversionFactor = capacity;
+		long remainder = index;
 		for (int i = 0; i < length; i++) {
 			conversionFactor = conversionFactor / dimension(i);
-			vectorIndex[i] = remainder / conversionFactor;
+			vectorIndex[i] = (int) (remainder / conversionFactor);
 			remainder = remainder % conversionFactor;
 		}
 	}
@@ -279,13 +324,13 @@ public abstract class Dimensions {
 	 * @throws IndexOutOfBoundsException  some i: [0..n) | index[i] < 0 || 
 	 *                                                      index[i] >= this.dimensions[i]
 	 */
-	public final int convert(int[] vectorIndex) {
+	public final long convert(int[] vectorIndex) {
 		final int length = numDimensions();
 		if (vectorIndex.length < length) {
 			throw new IllegalArgumentException("index.length < this.n");
 		}
-		int intIndex = 0;
-		int conversionFactor = capacity;
+		long intIndex = 0;
+		long conversionFactor = capacity;
 		for(int i = 0; i < length; i++) {
 			int dim = dimension(i);
 			if (!positiveBounded(vectorIndex[i], dim)) throw new IndexOutOfBoundsException("index["+i+"]");    
@@ -328,11 +373,13 @@ public abstract class Dimensions {
 			this.n = n;
 		}
 		
-		static int capacity(int n, int size) { 
-			final long cap = Math.round(Math.pow(size,n));
-			if (cap>Integer.MAX_VALUE || cap<=0) 
-				throw new CapacityExceededException("Matrix too large: requested capacity of " + cap, Ints.nCopies(n, size));
-			return (int)cap;
+		static long capacity(int n, int size) { 
+			final IntVector dims = Ints.nCopies(n, size);
+			long cap = 1;
+			for(int i = 0; i < n; i++) {
+				cap = multiply(cap, size, dims);
+			}
+			return cap;
 		}
 		
 		@Override
@@ -406,8 +453,8 @@ public abstract class Dimensions {
 		 *             capacity = dimensions[0]*dimensions[1]*...*dimensions[dimensions.length-1] 
 		 */
 		Rectangle(int[] dims, long capacity) {
-			super((int)capacity);
-			if (capacity>Integer.MAX_VALUE || capacity<=0) 
+			super(capacity);
+			if (capacity<=0) 
 				throw new CapacityExceededException("Matrix too large: requested capacity of " + capacity, Ints.asIntVector(dims));
 			this.dimensions = dims;
 		}
@@ -438,7 +485,7 @@ public abstract class Dimensions {
 		public Dimensions transpose() {
 			if (numDimensions() != 2) throw new UnsupportedOperationException("n!=2");
 			int[] dims = {dimensions[1], dimensions[0]};
-			return new Rectangle(dims, capacity());
+			return new Rectangle(dims, longCapacity());
 		}
 		
 		/**
@@ -449,7 +496,7 @@ public abstract class Dimensions {
 		public boolean equals(Object o) {
 			if (o instanceof Rectangle) {
 				final Rectangle r = (Rectangle) o;
-				if (dimensions.length != r.dimensions.length || capacity() != r.capacity()) return false;
+				if (dimensions.length != r.dimensions.length || longCapacity() != r.longCapacity()) return false;
 				for (int i = 0; i < dimensions.length;  i++) {
 					if (dimensions[i] != r.dimensions[i]) return false;
 				}
@@ -460,7 +507,7 @@ public abstract class Dimensions {
 		}
 		
 		public int hashCode() {
-			return dimensions.length ^ capacity();
+			return dimensions.length ^ (int) longCapacity();
 		}
 		
 		
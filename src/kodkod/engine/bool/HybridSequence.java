@@ -0,0 +1,441 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.bool;
+
+import static kodkod.engine.bool.BooleanConstant.TRUE;
+
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+import kodkod.util.ints.AbstractSparseSequence;
+import kodkod.util.ints.IndexedEntry;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.TreeSequence;
+
+/**
+ * A sparse sequence of boolean values that keeps its TRUE entries in a bitmap,
+ * and all other entries in a {@link TreeSequence tree sequence}.  The bitmap
+ * lets a {@link BooleanMatrix} combine the constant parts of two matrices
+ * a word at a time, so only the cells that hold gates or variables need to be
+ * visited one by one.
+ *
+ * <p>As with {@link kodkod.util.ints.HomogenousSequence homogenous sequences}, the
+ * iterators over a hybrid sequence may re-use the same IndexedEntry object for
+ * the TRUE entries that they return.</p>
+ *
+ * @specfield capacity: int
+ * @specfield indices: set [0..capacity)
+ * @specfield entries: indices -> one (BooleanValue - BooleanConstant.FALSE)
+ */
+final class HybridSequence extends AbstractSparseSequence<BooleanValue> {
+	/** Bit i of words is set iff this.entries[i] = TRUE. */
+	final long[] words;
+	/** The entries that do not map to TRUE. */
+	final TreeSequence<BooleanValue> gates;
+	private final int capacity;
+	/** The number of bits set in words, or -1 if it needs to be recounted. */
+	private int trues;
+
+	/**
+	 * Constructs an empty hybrid sequence with the given capacity.
+	 * @requires capacity >= 0
+	 * @ensures this.capacity' = capacity && no this.entries'
+	 */
+	HybridSequence(int capacity) {
+		this.capacity = capacity;
+		this.words = new long[(capacity + 63) >>> 6];
+		this.gates = new TreeSequence<BooleanValue>();
+		this.trues = 0;
+	}
+
+	/**
+	 * Constructs a hybrid sequence with the given capacity that maps
+	 * the given indices to TRUE.
+	 * @requires trueIndices in [0..capacity)
+	 * @ensures this.capacity' = capacity && this.entries' = trueIndices->TRUE
+	 */
+	HybridSequence(int capacity, IntSet trueIndices) {
+		this(capacity);
+		for(IntIterator iter = trueIndices.iterator(); iter.hasNext(); ) {
+			final int i = iter.next();
+			words[i >>> 6] |= 1L << i;
+		}
+		this.trues = trueIndices.size();
+	}
+
+	/**
+	 * Copy constructor.
+	 * @ensures constructs a deep copy of the original
+	 */
+	private HybridSequence(HybridSequence original) {
+		this.capacity = original.capacity;
+		this.words = original.words.clone();
+		this.gates = original.gates.clone();
+		this.trues = original.trues;
+	}
+
+	/**
+	 * Returns true if a sequence with the given capacity, the given number
+	 * of TRUE entries, and the given number of other entries is best stored as a
+	 * hybrid sequence.  That is the case when the bitmap takes no more than one word
+	 * per TRUE entry, which is less than a node of a tree or a slot of an array
+	 * sequence would take, and when there are at most eight other entries per TRUE
+	 * entry.  The others live in a tree, and once they outnumber the TRUE entries by
+	 * more than that, the bitmap no longer saves enough work to pay for the extra
+	 * lookup in front of every tree access.
+	 * @return trues > 0 && trues >= capacity / 64 && gates <= 8 * trues
+	 */
+	static boolean dense(long capacity, long trues, long gates) {
+		return trues > 0 && capacity <= Integer.MAX_VALUE && (trues << 6) >= capacity && gates <= (trues << 3);
+	}
+
+	/**
+	 * Returns true if this sequence is still best stored as a hybrid sequence.
+	 * @return dense(this.capacity, #this.entries.TRUE, #(this.entries - this.entries.TRUE))
+	 */
+	boolean dense() {
+		return dense(capacity, trues(), gates.size());
+	}
+
+	/**
+	 * Returns the capacity of this sequence.
+	 * @return this.capacity
+	 */
+	int capacity() { return capacity; }
+
+	/**
+	 * Returns true if the given index is mapped to TRUE.
+	 * @requires 0 <= index < this.capacity
+	 * @return this.entries[index] = TRUE
+	 */
+	boolean isTrue(int index) {
+		return (words[index >>> 6] & (1L << index)) != 0;
+	}
+
+	/**
+	 * Returns the smallest index that is greater than or equal to the given one
+	 * and that is mapped to TRUE, or -1 if there is no such index.
+	 * @requires from >= 0
+	 * @return min({i: [from..this.capacity) | this.entries[i] = TRUE }) or -1
+	 */
+	int nextTrue(int from) {
+		if (from >= capacity) return -1;
+		int w = from >>> 6;
+		long word = words[w] & (-1L << from);
+		while(true) {
+			if (word != 0)
+				return (w << 6) + Long.numberOfTrailingZeros(word);
+			if (++w == words.length)
+				return -1;
+			word = words[w];
+		}
+	}
+
+	/**
+	 * Returns the largest index that is less than or equal to the given one
+	 * and that is mapped to TRUE, or -1 if there is no such index.
+	 * @return max({i: [0..from] | this.entries[i] = TRUE }) or -1
+	 */
+	int previousTrue(int from) {
+		if (from < 0) return -1;
+		if (from >= capacity) from = capacity - 1;
+		int w = from >>> 6;
+		long word = words[w] & (-1L >>> (63 - (from & 63)));
+		while(true) {
+			if (word != 0)
+				return (w << 6) + 63 - Long.numberOfLeadingZeros(word);
+			if (w-- == 0)
+				return -1;
+			word = words[w];
+		}
+	}
+
+	/**
+	 * Maps the given index to TRUE, removing any other value stored there.
+	 * @requires 0 <= index < this.capacity
+	 * @ensures this.entries' = this.entries ++ index->TRUE
+	 */
+	void setTrue(int index) {
+		final long bit = 1L << index;
+		if ((words[index >>> 6] & bit) == 0) {
+			words[index >>> 6] |= bit;
+			if (trues >= 0) trues++;
+			gates.remove(index);
+		}
+	}
+
+	/**
+	 * Sets this bitmap to the conjunction of the bitmaps of s0 and s1, and
+	 * removes all entries that are not TRUE.
+	 * @requires s0.capacity = s1.capacity = this.capacity
+	 * @ensures this.entries' = (s0.entries.TRUE & s1.entries.TRUE)->TRUE
+	 */
+	void and(HybridSequence s0, HybridSequence s1) {
+		final long[] w0 = s0.words, w1 = s1.words;
+		for(int i = 0; i < words.length; i++) {
+			words[i] = w0[i] & w1[i];
+		}
+		gates.clear();
+		trues = -1;
+	}
+
+	/**
+	 * Sets this bitmap to the disjunction of the bitmaps of s0 and s1, and
+	 * removes all entries that are not TRUE.
+	 * @requires s0.capacity = s1.capacity = this.capacity
+	 * @ensures this.entries' = (s0.entries.TRUE + s1.entries.TRUE)->TRUE
+	 */
+	void or(HybridSequence s0, HybridSequence s1) {
+		final long[] w0 = s0.words, w1 = s1.words;
+		for(int i = 0; i < words.length; i++) {
+			words[i] = w0[i] | w1[i];
+		}
+		gates.clear();
+		trues = -1;
+	}
+
+	/**
+	 * Maps to TRUE every index to + i, for 0 <= i < length, such that src maps from + i
+	 * to TRUE.  The bits are copied a word at a time.  Any non-TRUE entries stored at
+	 * the affected indices must be removed by the caller.
+	 * @requires 0 <= from && from + length <= src.capacity
+	 * @requires 0 <= to && to + length <= this.capacity
+	 * @requires src = this => [to..to+length) & [from..from+length) = {}
+	 * @ensures this.entries'.TRUE = this.entries.TRUE +
+	 *   { j: [to..to+length) | src.entries[j - to + from] = TRUE }
+	 */
+	void orRange(int to, HybridSequence src, int from, int length) {
+		final long[] s = src.words;
+		for(int done = 0; done < length; ) {
+			final int at = to + done, shift = at & 63;
+			final int n = Math.min(64 - shift, length - done);
+			long bits = bitsAt(s, from + done);
+			if (n < 64) bits &= (1L << n) - 1;
+			words[at >>> 6] |= bits << shift;
+			done += n;
+		}
+		trues = -1;
+	}
+
+	/**
+	 * Returns the 64 bits of the given bitmap that start at the given position.
+	 * Bits past the end of the bitmap are zero.
+	 */
+	private static long bitsAt(long[] bitmap, int position) {
+		final int w = position >>> 6, offset = position & 63;
+		if (offset == 0)
+			return bitmap[w];
+		final long low = bitmap[w] >>> offset;
+		return w + 1 < bitmap.length ? low | (bitmap[w + 1] << (64 - offset)) : low;
+	}
+
+	/**
+	 * Returns the number of TRUE entries in this sequence.
+	 * @return #this.entries.TRUE
+	 */
+	int trues() {
+		if (trues < 0) {
+			int count = 0;
+			for(long word : words) {
+				count += Long.bitCount(word);
+			}
+			trues = count;
+		}
+		return trues;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.SparseSequence#size()
+	 */
+	public int size() {
+		return trues() + gates.size();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.SparseSequence#clear()
+	 */
+	public void clear() {
+		Arrays.fill(words, 0L);
+		gates.clear();
+		trues = 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @throws IndexOutOfBoundsException  index !in [0..this.capacity)
+	 * @see kodkod.util.ints.SparseSequence#put(int, java.lang.Object)
+	 */
+	public BooleanValue put(int index, BooleanValue value) {
+		if (index < 0 || index >= capacity)
+			throw new IndexOutOfBoundsException(index + " !in [0.." + capacity + ")");
+		if (value==TRUE) {
+			if (isTrue(index)) return TRUE;
+			words[index >>> 6] |= 1L << index;
+			if (trues >= 0) trues++;
+			return gates.remove(index);
+		} else if (isTrue(index)) {
+			words[index >>> 6] &= ~(1L << index);
+			if (trues > 0) trues--;
+			gates.put(index, value);
+			return TRUE;
+		} else {
+			return gates.put(index, value);
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.SparseSequence#get(int)
+	 */
+	public BooleanValue get(int index) {
+		if (index < 0 || index >= capacity) return null;
+		return isTrue(index) ? TRUE : gates.get(index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.SparseSequence#remove(int)
+	 */
+	public BooleanValue remove(int index) {
+		if (index < 0 || index >= capacity) return null;
+		if (isTrue(index)) {
+			words[index >>> 6] &= ~(1L << index);
+			if (trues > 0) trues--;
+			return TRUE;
+		}
+		return gates.remove(index);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.SparseSequence#containsIndex(int)
+	 */
+	public boolean containsIndex(int index) {
+		return index >= 0 && index < capacity && (isTrue(index) || gates.containsIndex(index));
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.SparseSequence#contains(java.lang.Object)
+	 */
+	public boolean contains(Object value) {
+		return value==TRUE ? trues() > 0 : gates.contains(value);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.SparseSequence#iterator(int, int)
+	 */
+	public Iterator<IndexedEntry<BooleanValue>> iterator(int from, int to) {
+		return new HybridIterator(from, to);
+	}
+
+	/**
+	 * Returns a copy of this sparse sequence.  The copy is independent of this
+	 * sequence.
+	 * @return a copy of this sparse sequence.
+	 * @see kodkod.util.ints.SparseSequence#clone()
+	 */
+	public HybridSequence clone() {
+		// ok to clone a final class using a copy constructor
+		return new HybridSequence(this);
+	}
+
+	/**
+	 * An iterator that merges the TRUE entries of a hybrid sequence with
+	 * its other entries, in the order of their indices.
+	 */
+	private final class HybridIterator implements Iterator<IndexedEntry<BooleanValue>>, IndexedEntry<BooleanValue> {
+		private final boolean ascending;
+		private final int end;
+		private Iterator<IndexedEntry<BooleanValue>> gateIter;
+		private IndexedEntry<BooleanValue> nextGate;
+		private int nextTrue, index;
+		private boolean lastWasGate, removable;
+
+		/**
+		 * Constructs an iterator over the entries of this sequence whose indices
+		 * are between from and to.
+		 */
+		HybridIterator(int from, int to) {
+			this.ascending = from <= to;
+			this.end = to;
+			this.gateIter = gates.iterator(from, to);
+			this.nextGate = gateIter.hasNext() ? gateIter.next() : null;
+			this.nextTrue = ascending ? nextTrue(Math.max(from, 0)) : previousTrue(from);
+			if (nextTrue >= 0 && (ascending ? nextTrue > to : nextTrue < to))
+				nextTrue = -1;
+			this.index = Integer.MIN_VALUE;
+			this.removable = false;
+		}
+
+		public boolean hasNext() {
+			return nextTrue >= 0 || nextGate != null;
+		}
+
+		public IndexedEntry<BooleanValue> next() {
+			if (!hasNext()) throw new NoSuchElementException();
+			removable = true;
+			if (nextGate != null && (nextTrue < 0 || (ascending ? nextGate.index() < nextTrue : nextGate.index() > nextTrue))) {
+				final IndexedEntry<BooleanValue> gate = nextGate;
+				nextGate = gateIter.hasNext() ? gateIter.next() : null;
+				lastWasGate = true;
+				index = gate.index();
+				return gate;
+			}
+			lastWasGate = false;
+			index = nextTrue;
+			if (ascending) {
+				nextTrue = nextTrue(nextTrue + 1);
+				if (nextTrue > end) nextTrue = -1;
+			} else {
+				nextTrue = previousTrue(nextTrue - 1);
+				if (nextTrue < end) nextTrue = -1;
+			}
+			return this;
+		}
+
+		public void remove() {
+			if (!removable) throw new IllegalStateException();
+			removable = false;
+			if (lastWasGate) {
+				// deletion may restructure the tree, so the gate iterator is repositioned
+				gates.remove(index);
+				if (nextGate != null) {
+					gateIter = gates.iterator(nextGate.index(), end);
+					nextGate = gateIter.next();
+				}
+			} else {
+				words[index >>> 6] &= ~(1L << index);
+				if (trues > 0) trues--;
+			}
+		}
+
+		public int index() { return index; }
+
+		public BooleanValue value() { return TRUE; }
+	}
+}
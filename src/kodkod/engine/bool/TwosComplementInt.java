@@ -45,7 +45,7 @@ final class TwosComplementInt extends Int {
 	 * @requires bits is well formed
 	 * @ensures this.factory' = factory && this.bits' = bits
 	 */
-	private TwosComplementInt(BooleanFactory factory, BooleanValue[] bits) {
+	TwosComplementInt(BooleanFactory factory, BooleanValue[] bits) {
 		super(factory);
 		this.bits = bits;
 	}
@@ -156,6 +156,8 @@ final class TwosComplementInt extends Int {
 	 */
 	public final BooleanValue eq(Int other) {
 		validate(other);
+		if (other instanceof UnaryCounterInt) 
+			return other.eq(this);
 		final BooleanAccumulator cmp = BooleanAccumulator.treeGate(AND);
 		for(int i = 0, width = StrictMath.max(width(), other.width()); i < width; i++) {
 			if (cmp.add(factory.iff(bit(i), other.bit(i)))==FALSE)
@@ -169,6 +171,8 @@ final class TwosComplementInt extends Int {
 	 * @see kodkod.engine.bool.Int#lt(kodkod.engine.bool.Int)
 	 */
 	public final BooleanValue lt(Int other) {
+		if (other instanceof UnaryCounterInt) 
+			return other.gt(this);
 		final BooleanValue leq = lte(other);
 		final BooleanAccumulator acc = BooleanAccumulator.treeGate(OR);
 		for(int i = 0, width = StrictMath.max(width(), other.width()); i < width; i++) {
@@ -184,6 +188,8 @@ final class TwosComplementInt extends Int {
 	@Override
 	public BooleanValue lte(Int other) {
 		validate(other);
+		if (other instanceof UnaryCounterInt) 
+			return other.gte(this);
 		final BooleanAccumulator cmp = BooleanAccumulator.treeGate(Operator.AND);
 		final int last = StrictMath.max(width(), other.width())-1;
 		cmp.add(factory.implies(other.bit(last), bit(last)));
@@ -203,6 +209,8 @@ final class TwosComplementInt extends Int {
 	@Override
 	public Int plus(Int other) {
 		validate(other);
+		if (other instanceof UnaryCounterInt) 
+			return other.plus(this);
 		final int width = StrictMath.min(StrictMath.max(width(), other.width()) + 1, factory.bitwidth);
 		final BooleanValue[] plus = new BooleanValue[width];
 		BooleanValue carry = FALSE;
@@ -0,0 +1,531 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.bool;
+
+import static kodkod.engine.bool.BooleanConstant.FALSE;
+import static kodkod.engine.bool.BooleanConstant.TRUE;
+import static kodkod.engine.bool.Operator.AND;
+import static kodkod.engine.bool.Operator.OR;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A non-negative count in unary (order) representation:  the kth output of
+ * a counter is true iff the count is at least k+1.  Counters are added with
+ * odd-even merging networks, so the outputs of a sum are the sorted outputs of
+ * its summands.  A counter has fewer outputs than the largest integer of
+ * factory.bitwidth bits, so its count never overflows:  sums that could overflow
+ * are computed with {@link TwosComplementInt two's complement} adders instead.
+ *
+ * <p>Comparing a counter to a constant yields a single output literal (or the
+ * conjunction of two, for equality).  Since the gates of the merging networks
+ * are shared by the factory, rebuilding a sum of counters yields the same outputs,
+ * so a tighter bound on a count amounts to one more output literal.  All other
+ * operations convert the counter to two's complement first.</p>
+ *
+ * @specfield outputs: [0..max] -> one BooleanValue // sorted: outputs[i+1] => outputs[i]
+ * @invariant #outputs <= capacity(factory.bitwidth)
+ */
+final class UnaryCounterInt extends Int {
+	/**
+	 * The largest number of outputs of a counter, regardless of the bitwidth.
+	 */
+	private static final int MAX_OUTPUTS = 1<<12;
+
+	private final BooleanValue[] outputs;
+	private TwosComplementInt binary;
+
+	/**
+	 * Constructs a counter out of the given factory and outputs.
+	 * @requires outputs are sorted
+	 * @ensures this.factory' = factory && this.outputs' = outputs
+	 */
+	private UnaryCounterInt(BooleanFactory factory, BooleanValue[] outputs) {
+		super(factory);
+		this.outputs = outputs;
+	}
+
+	/**
+	 * Constructs a counter that represents either 0 or the given number, depending on
+	 * the value of the given bit.
+	 * @requires 0 < number <= capacity(factory.bitwidth) && bit in factory.components
+	 * @ensures this.factory' = factory && this.outputs' = [0..number) -> bit
+	 */
+	UnaryCounterInt(BooleanFactory factory, int number, BooleanValue bit) {
+		super(factory);
+		this.outputs = new BooleanValue[number];
+		Arrays.fill(outputs, bit);
+	}
+
+	/**
+	 * Returns the largest number of outputs of a counter whose count is 
+	 * represented with the given number of bits.
+	 * @return min(MAX_OUTPUTS, 2^(bitwidth-1) - 1)
+	 */
+	static int capacity(int bitwidth) {
+		return (int) StrictMath.min(MAX_OUTPUTS, (1L<<(bitwidth-1)) - 1);
+	}
+
+	/**
+	 * Returns the value that is true iff this count is at least k.
+	 * @return k <= 0 => TRUE, k > #this.outputs => FALSE, this.outputs[k-1]
+	 */
+	private BooleanValue atLeast(long k) {
+		return k <= 0 ? TRUE : k > outputs.length ? FALSE : outputs[(int)k-1];
+	}
+
+	/**
+	 * Returns the value that is true iff this count is in the range [lo..hi].
+	 * @requires lo <= hi
+	 * @return atLeast(lo) && !atLeast(hi+1)
+	 */
+	private BooleanValue within(long lo, long hi) {
+		return factory.and(atLeast(lo), atLeast(hi+1).negation());
+	}
+
+	/**
+	 * Returns the value that is true iff this count is in the range [lo..hi].
+	 * @return the value that is true iff lo <= #(this.outputs & TRUE) <= hi
+	 */
+	private BooleanValue among(long lo, long hi) {
+		lo = StrictMath.max(lo, 0);
+		hi = StrictMath.min(hi, outputs.length);
+		return lo > hi ? FALSE : within(lo, hi);
+	}
+
+	/**
+	 * Returns the two's complement representation of this counter.
+	 * The ith bit of a count is set iff the count is in one of the ranges
+	 * [j*2^(i+1) + 2^i .. (j+1)*2^(i+1) - 1].
+	 * @return a TwosComplementInt that represents the same integer as this
+	 */
+	private TwosComplementInt binary() {
+		if (binary==null) {
+			final int max = outputs.length;
+			final int width = max==0 ? 1 : StrictMath.min(33 - Integer.numberOfLeadingZeros(max), factory.bitwidth);
+			final BooleanValue[] bits = new BooleanValue[width];
+			for(int i = 0; i < width; i++) {
+				final long step = 1L<<i;
+				final BooleanAccumulator acc = BooleanAccumulator.treeGate(OR);
+				for(long lo = step; lo <= max; lo += step<<1) {
+					acc.add(within(lo, lo + step - 1));
+				}
+				bits[i] = factory.accumulate(acc);
+			}
+			binary = new TwosComplementInt(factory, bits);
+		}
+		return binary;
+	}
+
+	/**
+	 * Returns the outputs of a sorting network over the concatenation of the
+	 * given sorted sequences, which have the same length, a power of 2.
+	 * @requires a.length = b.length = 2^k for some k && a and b are sorted
+	 * @return sorted outputs of an odd-even merging network over a and b
+	 */
+	private BooleanValue[] merge(BooleanValue[] a, BooleanValue[] b) {
+		final int n = a.length;
+		if (n==1)
+			return new BooleanValue[] { factory.or(a[0], b[0]), factory.and(a[0], b[0]) };
+		final int half = n>>1;
+		final BooleanValue[] aEven = new BooleanValue[half], aOdd = new BooleanValue[half];
+		final BooleanValue[] bEven = new BooleanValue[half], bOdd = new BooleanValue[half];
+		for(int i = 0; i < half; i++) {
+			aEven[i] = a[2*i];
+			aOdd[i] = a[2*i+1];
+			bEven[i] = b[2*i];
+			bOdd[i] = b[2*i+1];
+		}
+		final BooleanValue[] v = merge(aEven, bEven), w = merge(aOdd, bOdd);
+		final BooleanValue[] ret = new BooleanValue[2*n];
+		ret[0] = v[0];
+		ret[2*n-1] = w[n-1];
+		for(int i = 0; i < n-1; i++) {
+			ret[2*i+1] = factory.or(v[i+1], w[i]);
+			ret[2*i+2] = factory.and(v[i+1], w[i]);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the outputs of this counter padded with FALSE to the given length.
+	 * @requires length >= #this.outputs
+	 */
+	private BooleanValue[] padded(int length) {
+		final BooleanValue[] ret = Arrays.copyOf(outputs, length);
+		Arrays.fill(ret, outputs.length, length, FALSE);
+		return ret;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#bit(int)
+	 */
+	@Override
+	BooleanValue bit(int i) {
+		return binary().bit(i);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#twosComplementBits()
+	 */
+	@Override
+	public List<BooleanValue> twosComplementBits() {
+		return binary().twosComplementBits();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#width()
+	 */
+	@Override
+	public int width() {
+		return binary().width();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#isConstant()
+	 */
+	@Override
+	public boolean isConstant() {
+		for(BooleanValue output : outputs) {
+			if (output!=TRUE && output!=FALSE)
+				return false;
+		}
+		return true;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#value()
+	 */
+	@Override
+	public int value() {
+		int count = 0;
+		for(BooleanValue output : outputs) {
+			if (output==TRUE) count++;
+			else if (output!=FALSE)
+				throw new IllegalStateException(this + " is not constant.");
+		}
+		return count;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#eq(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public BooleanValue eq(Int other) {
+		validate(other);
+		if (other.isConstant()) {
+			final int value = other.value();
+			return among(value, value);
+		} else if (other instanceof UnaryCounterInt) {
+			final UnaryCounterInt that = (UnaryCounterInt) other;
+			final BooleanAccumulator cmp = BooleanAccumulator.treeGate(AND);
+			for(int k = 1, max = StrictMath.max(outputs.length, that.outputs.length); k <= max; k++) {
+				if (cmp.add(factory.iff(atLeast(k), that.atLeast(k)))==FALSE)
+					return FALSE;
+			}
+			return factory.accumulate(cmp);
+		}
+		return binary().eq(other);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#lte(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public BooleanValue lte(Int other) {
+		validate(other);
+		if (other.isConstant()) {
+			return among(Integer.MIN_VALUE, other.value());
+		} else if (other instanceof UnaryCounterInt) {
+			final UnaryCounterInt that = (UnaryCounterInt) other;
+			final BooleanAccumulator cmp = BooleanAccumulator.treeGate(AND);
+			for(int k = 1; k <= outputs.length; k++) {
+				if (cmp.add(factory.implies(atLeast(k), that.atLeast(k)))==FALSE)
+					return FALSE;
+			}
+			return factory.accumulate(cmp);
+		}
+		return binary().lte(other);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#lt(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public BooleanValue lt(Int other) {
+		validate(other);
+		if (other.isConstant()) {
+			return among(Integer.MIN_VALUE, (long)other.value() - 1);
+		} else if (other instanceof UnaryCounterInt) {
+			final UnaryCounterInt that = (UnaryCounterInt) other;
+			final BooleanAccumulator cmp = BooleanAccumulator.treeGate(AND);
+			for(int k = 1; k <= outputs.length + 1; k++) {
+				if (cmp.add(factory.implies(atLeast(k-1), that.atLeast(k)))==FALSE)
+					return FALSE;
+			}
+			return factory.accumulate(cmp);
+		}
+		return binary().lt(other);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#gte(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public BooleanValue gte(Int other) {
+		validate(other);
+		if (other.isConstant()) {
+			return among(other.value(), Integer.MAX_VALUE);
+		}
+		return other.lte(other instanceof UnaryCounterInt ? this : binary());
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#gt(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public BooleanValue gt(Int other) {
+		validate(other);
+		if (other.isConstant()) {
+			return among((long)other.value() + 1, Integer.MAX_VALUE);
+		}
+		return other.lt(other instanceof UnaryCounterInt ? this : binary());
+	}
+
+	/**
+	 * Returns the sum of this and the given Int.  Two counters are added with an
+	 * odd-even merging network, and a non-negative constant is added by prepending
+	 * TRUE outputs to this.  Sums that could overflow, and sums with any other Int,
+	 * are computed in two's complement.
+	 * @see kodkod.engine.bool.Int#plus(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public Int plus(Int other) {
+		validate(other);
+		if (other instanceof UnaryCounterInt) {
+			final UnaryCounterInt that = (UnaryCounterInt) other;
+			final int size = outputs.length + that.outputs.length;
+			if (outputs.length==0) return that;
+			if (that.outputs.length==0) return this;
+			if (size <= capacity(factory.bitwidth)) {
+				final int length = Integer.highestOneBit(StrictMath.max(outputs.length, that.outputs.length)-1)<<1;
+				final BooleanValue[] merged = merge(padded(StrictMath.max(1, length)), that.padded(StrictMath.max(1, length)));
+				return new UnaryCounterInt(factory, Arrays.copyOf(merged, size));
+			}
+		} else if (other.isConstant()) {
+			final int value = other.value();
+			if (value==0) return this;
+			if (value > 0 && outputs.length + value <= capacity(factory.bitwidth)) {
+				final BooleanValue[] sum = new BooleanValue[outputs.length + value];
+				Arrays.fill(sum, 0, value, TRUE);
+				System.arraycopy(outputs, 0, sum, value, outputs.length);
+				return new UnaryCounterInt(factory, sum);
+			}
+		}
+		return binary().plus(other);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#plus(kodkod.engine.bool.Int[])
+	 */
+	@Override
+	public Int plus(Int... others) {
+		final Int[] ints = new Int[others.length+1];
+		ints[0] = this;
+		System.arraycopy(others, 0, ints, 1, others.length);
+		for(int part = ints.length; part > 1; part -= part/2) {
+			final int max = part-1;
+			for(int i = 0; i < max; i += 2) {
+				ints[i/2] = ints[i].plus(ints[i+1]);
+			}
+			if (max%2==0) { // even max => odd number of entries
+				ints[max/2] = ints[max];
+			}
+		}
+		return ints[0];
+	}
+
+	/**
+	 * Returns an Int that evaluates to this if the condition is true, otherwise it
+	 * evaluates to the given Int.  The choice between this and a counter (or zero)
+	 * is a counter.
+	 * @see kodkod.engine.bool.Int#choice(kodkod.engine.bool.BooleanValue, kodkod.engine.bool.Int)
+	 */
+	@Override
+	public Int choice(BooleanValue condition, Int other) {
+		validate(other);
+		if (other instanceof UnaryCounterInt) {
+			final UnaryCounterInt that = (UnaryCounterInt) other;
+			final BooleanValue[] choice = new BooleanValue[StrictMath.max(outputs.length, that.outputs.length)];
+			for(int k = 1; k <= choice.length; k++) {
+				choice[k-1] = factory.ite(condition, atLeast(k), that.atLeast(k));
+			}
+			return new UnaryCounterInt(factory, choice);
+		} else if (other.isConstant() && other.value()==0) {
+			final BooleanValue[] choice = new BooleanValue[outputs.length];
+			for(int k = 0; k < choice.length; k++) {
+				choice[k] = factory.and(condition, outputs[k]);
+			}
+			return new UnaryCounterInt(factory, choice);
+		}
+		return binary().choice(condition, other);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#multiply(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public Int multiply(Int other) { return binary().multiply(other); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#multiply(kodkod.engine.bool.Int[])
+	 */
+	@Override
+	public Int multiply(Int... others) { return binary().multiply(others); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#minus(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public Int minus(Int other) { return binary().minus(other); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#divide(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public Int divide(Int other) { return binary().divide(other); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#modulo(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public Int modulo(Int other) { return binary().modulo(other); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#and(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public Int and(Int other) { return binary().and(other); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#and(kodkod.engine.bool.Int[])
+	 */
+	@Override
+	public Int and(Int... others) { return binary().and(others); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#or(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public Int or(Int other) { return binary().or(other); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#or(kodkod.engine.bool.Int[])
+	 */
+	@Override
+	public Int or(Int... others) { return binary().or(others); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#xor(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public Int xor(Int other) { return binary().xor(other); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#shl(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public Int shl(Int other) { return binary().shl(other); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#shr(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public Int shr(Int other) { return binary().shr(other); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#sha(kodkod.engine.bool.Int)
+	 */
+	@Override
+	public Int sha(Int other) { return binary().sha(other); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#negate()
+	 */
+	@Override
+	public Int negate() { return binary().negate(); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#not()
+	 */
+	@Override
+	public Int not() { return binary().not(); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#abs()
+	 */
+	@Override
+	public Int abs() { return binary().abs(); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.bool.Int#sgn()
+	 */
+	@Override
+	public Int sgn() { return binary().sgn(); }
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "u" + Arrays.toString(outputs);
+	}
+}
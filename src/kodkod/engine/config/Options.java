@@ -21,6 +21,7 @@
  */
 package kodkod.engine.config;
 
+import kodkod.engine.fol2sat.TranslationCache;
 import kodkod.engine.satlab.SATFactory;
 import kodkod.util.ints.IntRange;
 import kodkod.util.ints.Ints;
@@ -33,36 +34,57 @@ import kodkod.util.ints.Ints;
  * @specfield solver: SATFactory // SAT solver factory to use
  * @specfield reporter: Reporter // reporter to use
  * @specfield symmetryBreaking: int // the amount of symmetry breaking to perform
+ * @specfield symmetryPredicate: SymmetryPredicate // the kind of symmetry breaking predicate to generate
+ * @specfield blocking: Blocking // the clauses that eliminate each enumerated solution
+ * @specfield instantiation: Instantiation // when the instances of top-level universal quantifiers are translated
  * @specfield sharing: int // the depth to which circuits should be checked for equivalence during translation
  * @specfield intEncoding: IntEncoding // encoding to use for translating int expressions
  * @specfield bitwidth: int // the bitwidth to use for integer representation / arithmetic
+ * @specfield closureEncoding: ClosureEncoding // encoding to use for translating transitive closures
  * @specfield skolemDepth: int // skolemization depth
  * @specfield logTranslation: [0..2] // log translation events, default is 0 (no logging)
  * @specfield coreGranularity: [0..3] // unsat core granularity, default is 0 (only top-level conjuncts are considered)
+ * @specfield translationCache: lone TranslationCache // cache of translations, default is none (no caching)
+ * @specfield translationThreads: int // number of threads used to translate top-level conjuncts, default is 1
+ * @specfield groundingGrain: int // number of tuples grounded by a translation task for a top-level quantifier, default is 0 (no splitting)
  * @author Emina Torlak
  */
 public final class Options implements Cloneable {
 	private Reporter reporter = new AbstractReporter(){};
 	private SATFactory solver = SATFactory.DefaultSAT4J;
 	private int symmetryBreaking = 20;
+	private SymmetryPredicate symmetryPredicate = SymmetryPredicate.LEX_LEADER;
+	private Blocking blocking = Blocking.MODEL;
+	private Instantiation instantiation = Instantiation.EAGER;
 	private IntEncoding intEncoding = IntEncoding.TWOSCOMPLEMENT;
 	private int bitwidth = 4;
+	private ClosureEncoding closureEncoding = ClosureEncoding.SQUARING;
 	private int sharing = 3;
 	private int skolemDepth = 0;
 	private int logTranslation = 0;
 	private int coreGranularity = 0;
+	private TranslationCache translationCache = null;
+	private int translationThreads = 1;
+	private int groundingGrain = 0;
 
 	/**
 	 * Constructs an Options object initialized with default values.
 	 * @ensures this.solver' = SATFactory.DefaultSAT4J
 	 *          this.reporter' is silent (no messages reported)
 	 *          this.symmetryBreaking' = 20
+	 *          this.symmetryPredicate' = LEX_LEADER
+	 *          this.blocking' = MODEL
+	 *          this.instantiation' = EAGER
 	 *          this.sharing' = 3
 	 *          this.intEncoding' = BINARY
 	 *          this.bitwidth' = 4
+	 *          this.closureEncoding' = SQUARING
 	 *          this.skolemDepth' = 0
 	 *          this.logTranslation' = 0
 	 *          this.coreGranularity' = 0
+	 *          no this.translationCache'
+	 *          this.translationThreads' = 1
+	 *          this.groundingGrain' = 0
 	 */
 	public Options() {}
 
@@ -118,9 +140,9 @@ public final class Options implements Cloneable {
 
 	/**
 	 * Returns the integer encoding that will be used for translating {@link kodkod.ast.IntExpression int nodes}.
-	 * The default is BINARY representation, which allows negative numbers.  UNARY representation is best suited to
-	 * problems with small scopes, in which cardinalities are only compared (and possibly added to each other or
-	 * non-negative numbers).
+	 * The default is TWOSCOMPLEMENT representation, which allows negative numbers.  UNARY_COUNTERS representation
+	 * is best suited to problems in which cardinalities are mostly compared (and possibly added to each other or
+	 * non-negative numbers), such as problems with count objectives.
 	 * @return this.intEncoding
 	 */
 	public IntEncoding intEncoding() {
@@ -171,6 +193,27 @@ public final class Options implements Cloneable {
 		return intEncoding.range(bitwidth);
 	}
 
+	/**
+	 * Returns the encoding that will be used for translating transitive closures.
+	 * The default is SQUARING, which builds the closure of an n-row matrix with 
+	 * log(n) rounds of matrix multiplication.  WARSHALL produces fewer gates on 
+	 * relations over large universes, at the cost of deeper circuits.
+	 * @return this.closureEncoding
+	 */
+	public ClosureEncoding closureEncoding() {
+		return closureEncoding;
+	}
+
+	/**
+	 * Sets the closureEncoding option to the given value.
+	 * @ensures this.closureEncoding' = encoding
+	 * @throws NullPointerException  encoding = null
+	 */
+	public void setClosureEncoding(ClosureEncoding encoding) {
+		if (encoding==null) throw new NullPointerException();
+		this.closureEncoding = encoding;
+	}
+
 	/**
 	 * Returns the 'amount' of symmetry breaking to perform.
 	 * If a non-symmetric solver is chosen for this.solver,
@@ -196,6 +239,74 @@ public final class Options implements Cloneable {
 		this.symmetryBreaking = symmetryBreaking;
 	}
 
+	/**
+	 * Returns the kind of symmetry breaking predicate to generate.  The default is
+	 * LEX_LEADER.  SHATTER produces the same constraints with fewer clauses, and 
+	 * AUTOMORPHISMS also breaks symmetries of the bounds that do not 
+	 * permute the atoms of a single symmetry class.
+	 * @return this.symmetryPredicate
+	 */
+	public SymmetryPredicate symmetryPredicate() {
+		return symmetryPredicate;
+	}
+
+	/**
+	 * Sets the symmetryPredicate option to the given value.
+	 * @ensures this.symmetryPredicate' = predicate
+	 * @throws NullPointerException  predicate = null
+	 */
+	public void setSymmetryPredicate(SymmetryPredicate predicate) {
+		if (predicate==null) throw new NullPointerException();
+		this.symmetryPredicate = predicate;
+	}
+
+	/**
+	 * Returns the kind of clauses that {@link kodkod.engine.Solver#solveAll(kodkod.ast.Formula, kodkod.instance.Bounds)}
+	 * uses to eliminate each solution before searching for the next one.  The default is MODEL, 
+	 * which enumerates every solution.  IMPLICANT and ORBIT enumerate fewer solutions, 
+	 * with shorter clauses, by eliminating all solutions that agree with the current one on 
+	 * the tuples that it needs to satisfy the formula, or that are isomorphic to those.
+	 * @return this.blocking
+	 */
+	public Blocking blocking() {
+		return blocking;
+	}
+
+	/**
+	 * Sets the blocking option to the given value.
+	 * @ensures this.blocking' = blocking
+	 * @throws NullPointerException  blocking = null
+	 */
+	public void setBlocking(Blocking blocking) {
+		if (blocking==null) throw new NullPointerException();
+		this.blocking = blocking;
+	}
+
+	/**
+	 * Returns the time at which the instances of top-level universally quantified formulas 
+	 * are translated by {@link kodkod.engine.Solver#solve(kodkod.ast.Formula, kodkod.instance.Bounds)} 
+	 * and {@link kodkod.engine.IncrementalSolver#solve(kodkod.ast.Formula, kodkod.instance.Bounds)}.  
+	 * The default is EAGER, which translates all instances up front.  LAZY translates only the 
+	 * instances that are violated by the candidate solutions found by the SAT solver, which requires 
+	 * an {@linkplain SATFactory#incremental() incremental} solver and no translation logging.  
+	 * {@link kodkod.engine.Solver#solveAll(kodkod.ast.Formula, kodkod.instance.Bounds)} ignores this 
+	 * option and always translates all instances up front.
+	 * @return this.instantiation
+	 */
+	public Instantiation instantiation() {
+		return instantiation;
+	}
+
+	/**
+	 * Sets the instantiation option to the given value.
+	 * @ensures this.instantiation' = instantiation
+	 * @throws NullPointerException  instantiation = null
+	 */
+	public void setInstantiation(Instantiation instantiation) {
+		if (instantiation==null) throw new NullPointerException();
+		this.instantiation = instantiation;
+	}
+
 	/**
 	 * Returns the depth to which circuits are checked for equivalence during translation.
 	 * The default depth is 3, and the minimum allowed depth is 1.  Increasing the sharing
@@ -288,10 +399,78 @@ public final class Options implements Cloneable {
 		this.coreGranularity = coreGranularity;
 	}
 
+	/**
+	 * Returns the cache from which whole translations are served, or null if
+	 * translations are not cached.  The default is null.  A cache is consulted only
+	 * when translation logging is off.
+	 * @return this.translationCache
+	 * @see TranslationCache
+	 */
+	public TranslationCache translationCache() {
+		return translationCache;
+	}
+
+	/**
+	 * Sets the translation cache.  A null value disables caching.
+	 * @ensures this.translationCache' = translationCache
+	 */
+	public void setTranslationCache(TranslationCache translationCache) {
+		this.translationCache = translationCache;
+	}
+
+	/**
+	 * Returns the number of threads used to translate the top-level conjuncts of a formula
+	 * to boolean circuits.  The default is 1, which means that the conjuncts are translated 
+	 * sequentially.  With more than one thread, each conjunct is translated independently,
+	 * so subcircuits that are common to several conjuncts are built once per conjunct and 
+	 * merged afterwards.  The resulting circuit is the same for any number of threads greater
+	 * than 1.  Conjuncts are always translated sequentially when translation logging is on.
+	 * @return this.translationThreads
+	 */
+	public int translationThreads() {
+		return translationThreads;
+	}
+
+	/**
+	 * Sets the number of threads used to translate top-level conjuncts.
+	 * @requires translationThreads > 0
+	 * @ensures this.translationThreads' = translationThreads
+	 * @throws IllegalArgumentException  translationThreads < 1
+	 */
+	public void setTranslationThreads(int translationThreads) {
+		checkRange(translationThreads, 1, Integer.MAX_VALUE);
+		this.translationThreads = translationThreads;
+	}
+
+	/**
+	 * Returns the number of tuples for which a single translation task grounds a top-level 
+	 * quantified formula.  The default is 0, which means that each top-level conjunct is 
+	 * translated by a single task.  When this value is positive and this.translationThreads 
+	 * is greater than 1, a top-level quantified conjunct whose first declaration ranges over 
+	 * more than groundingGrain tuples is split into tasks that ground it for groundingGrain 
+	 * consecutive tuples each, and the tasks are performed concurrently.  The resulting 
+	 * circuit is the same for any number of threads greater than 1.
+	 * @return this.groundingGrain
+	 */
+	public int groundingGrain() {
+		return groundingGrain;
+	}
+
+	/**
+	 * Sets the number of tuples for which a single translation task grounds a top-level quantified formula.
+	 * @requires groundingGrain >= 0
+	 * @ensures this.groundingGrain' = groundingGrain
+	 * @throws IllegalArgumentException  groundingGrain < 0
+	 */
+	public void setGroundingGrain(int groundingGrain) {
+		checkRange(groundingGrain, 0, Integer.MAX_VALUE);
+		this.groundingGrain = groundingGrain;
+	}
+
 	/**
 	 * Returns a shallow copy of this Options object.  In particular,
-	 * the returned options shares the same {@linkplain #reporter()}
-	 * and {@linkplain #solver()} factory objects as this Options.
+	 * the returned options shares the same {@linkplain #reporter()},
+	 * {@linkplain #solver()} factory and {@linkplain #translationCache()} objects as this Options.
 	 * @return a shallow copy of this Options object.
 	 */
 	public Options clone() {
@@ -300,11 +479,18 @@ public final class Options implements Cloneable {
 		c.setReporter(reporter);
 		c.setBitwidth(bitwidth);
 		c.setIntEncoding(intEncoding);
+		c.setClosureEncoding(closureEncoding);
 		c.setSharing(sharing);
 		c.setSymmetryBreaking(symmetryBreaking);
+		c.setSymmetryPredicate(symmetryPredicate);
+		c.setBlocking(blocking);
+		c.setInstantiation(instantiation);
 		c.setSkolemDepth(skolemDepth);
 		c.setLogTranslation(logTranslation);
 		c.setCoreGranularity(coreGranularity);
+		c.setTranslationCache(translationCache);
+		c.setTranslationThreads(translationThreads);
+		c.setGroundingGrain(groundingGrain);
 		return c;
 	}
 
@@ -323,16 +509,30 @@ public final class Options implements Cloneable {
 		b.append(intEncoding);
 		b.append("\n bitwidth: ");
 		b.append(bitwidth);
+		b.append("\n closureEncoding: ");
+		b.append(closureEncoding);
 		b.append("\n sharing: ");
 		b.append(sharing);
 		b.append("\n symmetryBreaking: ");
 		b.append(symmetryBreaking);
+		b.append("\n symmetryPredicate: ");
+		b.append(symmetryPredicate);
+		b.append("\n blocking: ");
+		b.append(blocking);
+		b.append("\n instantiation: ");
+		b.append(instantiation);
 		b.append("\n skolemDepth: ");
 		b.append(skolemDepth);
 		b.append("\n logTranslation: ");
 		b.append(logTranslation);
 		b.append("\n coreGranularity: ");
 		b.append(coreGranularity);
+		b.append("\n translationCache: ");
+		b.append(translationCache);
+		b.append("\n translationThreads: ");
+		b.append(translationThreads);
+		b.append("\n groundingGrain: ");
+		b.append(groundingGrain);
 		return b.toString();
 	}
 
@@ -356,6 +556,28 @@ public final class Options implements Cloneable {
 				final int shift = bitwidth-1;
 				return Ints.range(-1<<shift, (1<<shift)-1);
 			}
+		},
+		/**
+		 * Two's-complement encoding in which cardinalities, and sums
+		 * of cardinalities and non-negative numbers that cannot overflow, 
+		 * are represented as unary counters:  sorted outputs of odd-even merging networks,
+		 * the kth of which is true iff the count is at least k.  Comparing
+		 * such a sum to a constant reduces to (usually) a single output,
+		 * and since the networks are shared by the circuit factory,
+		 * tightening a bound on the sum does not rebuild it.  This makes
+		 * the encoding well suited to count objectives, which are repeatedly
+		 * compared to better values.  Counters are converted to two's
+		 * complement for all other operations, so the meaning of every
+		 * int expression is the same as under TWOSCOMPLEMENT.  Maximum allowed
+		 * bitwidth for this encoding is 32 bits.
+		 */
+		UNARY_COUNTERS {
+			@Override
+			int maxAllowedBitwidth() { return 32; }
+			@Override
+			IntRange range(int bitwidth) {
+				return TWOSCOMPLEMENT.range(bitwidth);
+			}
 		};
 
 		/**
@@ -374,4 +596,108 @@ public final class Options implements Cloneable {
 		abstract IntRange range(int bitwidth) ;
 	}
 
+	/**
+	 * Encoding options for the translation of 
+	 * {@link kodkod.ast.operator.ExprOperator#CLOSURE transitive closures}.
+	 */
+	public static enum ClosureEncoding {
+		/**
+		 * Iterative squaring:  the closure of a matrix m with n non-empty rows is 
+		 * computed as m + m.m + ... in ceil(log2(n)) rounds of matrix multiplication.
+		 */
+		SQUARING,
+		/**
+		 * Iterative squaring that bounds the number of rounds by the length of the 
+		 * longest path that the upper bound allows.  When the upper bound is acyclic, 
+		 * that is the length of its longest path.  Otherwise, it is one more than the 
+		 * number of atoms with both a non-empty row and a non-empty column in the upper
+		 * bound.  Produces the same circuit as SQUARING, minus the rounds that could 
+		 * not find any new paths.
+		 */
+		PRUNED_SQUARING,
+		/**
+		 * Warshall's algorithm, encoded in layers:  the kth layer adds the paths whose 
+		 * intermediate atoms are among the first k candidate atoms.  A cell is rebuilt 
+		 * only when the layer extends it, so all other gates are shared between layers, 
+		 * and atoms with an empty row or column in the upper bound are skipped.  
+		 */
+		WARSHALL
+	}
+
+	/**
+	 * Symmetry breaking predicates.  Each predicate is a conjunction of lex-leader 
+	 * constraints, one per generator of the broken symmetries, that compare at most 
+	 * {@link Options#symmetryBreaking()} primary variables.
+	 */
+	public static enum SymmetryPredicate {
+		/**
+		 * Lex-leader constraints for the transpositions of consecutive atoms in each
+		 * symmetry class.  The equality of each prefix is encoded with biconditionals.
+		 */
+		LEX_LEADER,
+		/**
+		 * The constraints of LEX_LEADER, encoded as in Shatter:  given that each 
+		 * compared pair is ordered whenever its prefix is equal, the equality of the
+		 * pair reduces to a single disjunction, which takes half as many clauses as 
+		 * a biconditional.
+		 */
+		SHATTER,
+		/**
+		 * The constraints of SHATTER, together with constraints for the automorphisms 
+		 * of the bounds that exchange atoms of different singleton symmetry classes, 
+		 * such as the simultaneous exchange of a1 with a2 and b1 with b2 in a relation 
+		 * bounded above by {&lt;a1, b1&gt;, &lt;a2, b2&gt;}.  The automorphisms are found 
+		 * with a bounded search, so only some of them may be broken.
+		 */
+		AUTOMORPHISMS
+	}
+
+	/**
+	 * Clauses that eliminate an enumerated solution.
+	 * @see kodkod.engine.Solver#solveAll(kodkod.ast.Formula, kodkod.instance.Bounds)
+	 */
+	public static enum Blocking {
+		/**
+		 * The negation of the solution's values for all primary variables.  Every 
+		 * solution is enumerated.
+		 */
+		MODEL,
+		/**
+		 * The negation of an implicant of the translated formula that agrees with 
+		 * the solution: the primary variables whose values the solution needs to satisfy 
+		 * the formula.  Each enumerated solution stands for all instances that agree 
+		 * with it on those variables.
+		 */
+		IMPLICANT,
+		/**
+		 * The clause of IMPLICANT and its images under the permutations of atoms that 
+		 * preserve the bounds.  Each enumerated solution also stands for the instances 
+		 * that are isomorphic to the ones it stands for under IMPLICANT.  The number of
+		 * images blocked for each solution is bounded.
+		 */
+		ORBIT
+	}
+
+	/**
+	 * The time at which the instances of a top-level universally quantified formula 
+	 * {@code all x1: X1, ..., xn: Xn | F}, whose declarations are all of multiplicity one, 
+	 * are translated.
+	 * @see kodkod.engine.Solver#solve(kodkod.ast.Formula, kodkod.instance.Bounds)
+	 * @see kodkod.engine.IncrementalSolver#solve(kodkod.ast.Formula, kodkod.instance.Bounds)
+	 */
+	public static enum Instantiation {
+		/**
+		 * All instances are translated up front, with the rest of the formula. 
+		 */
+		EAGER,
+		/**
+		 * The formula is left out of the initial translation, and its instances are 
+		 * added to the translation incrementally:  whenever the SAT solver finds a 
+		 * candidate solution, the formula is evaluated against it, and the instances 
+		 * that the candidate violates are translated and added to the solver, until 
+		 * the solver finds a solution that violates none of them or reports UNSAT.  
+		 */
+		LAZY
+	}
+
 }
@@ -0,0 +1,403 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.fol2sat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Set;
+
+import kodkod.ast.Relation;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleSet;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+
+/**
+ * Finds symmetries of a Bounds object that are not permutations of the
+ * classes computed by the {@link SymmetryDetector}.  The detector treats the
+ * bounds as a colored hypergraph, with one edge color for the lower bound
+ * of each relation and one for the rest of its upper bound, and searches for
+ * automorphisms of that hypergraph with the usual individualization-refinement
+ * scheme:  atoms are colored by iterated refinement of their incidence signatures,
+ * and the leaves of the search tree are compared against the leaf of the first path.
+ * Every candidate permutation is checked against the bounds before it is returned.
+ *
+ * <p>The search moves only the atoms that make up singleton classes of the
+ * given partition and that are not bound to integers; all other atoms are
+ * fixed.  The returned permutations therefore generate a subgroup of the
+ * symmetries that the partition misses, such as the simultaneous exchange
+ * of a1 with a2 and b1 with b2 in a relation bounded above by
+ * {&lt;a1, b1&gt;, &lt;a2, b2&gt;}.  The search gives up after a
+ * bounded number of refinements, so the subgroup may not be complete.</p>
+ */
+final class AutomorphismDetector {
+	/* the maximum number of atom occurrences in the bounds that the detector will index */
+	private static final int MAX_OCCURRENCES = 1<<22;
+
+	private final int usize;
+	/* tuples[i] holds the atoms of the tuples in the ith tupleset, flattened; sets[i] is its index view */
+	private final int[][] tuples;
+	private final int[] arities;
+	private final IntSet[] sets;
+	/* the number of occurrences of each atom in this.tuples */
+	private final int[] degree;
+	private int budget;
+
+	/**
+	 * Constructs a new detector for the given tuplesets.
+	 */
+	private AutomorphismDetector(int usize, List<TupleSet> sets) {
+		this.usize = usize;
+		this.tuples = new int[sets.size()][];
+		this.arities = new int[sets.size()];
+		this.sets = new IntSet[sets.size()];
+		this.degree = new int[usize];
+		for(int i = 0; i < this.sets.length; i++) {
+			final TupleSet s = sets.get(i);
+			final int arity = s.arity();
+			final int[] flat = new int[s.size()*arity];
+			int pos = 0;
+			for(IntIterator iter = s.indexView().iterator(); iter.hasNext(); pos += arity) {
+				for(int j = arity-1, tuple = iter.next(); j >= 0; j--, tuple /= usize) {
+					flat[pos+j] = tuple % usize;
+					degree[tuple % usize]++;
+				}
+			}
+			this.tuples[i] = flat;
+			this.arities[i] = arity;
+			this.sets[i] = s.indexView();
+		}
+		this.budget = Math.max(256, 16*usize);
+	}
+
+	/**
+	 * Returns permutations of bounds.universe that preserve all lower, upper and integer
+	 * bounds in the given bounds, fix every atom that is either bound to an integer or contained
+	 * in a non-singleton class of the given partition, and are not the identity.  The
+	 * permutations are given as arrays that map each atom index to its image.
+	 * @requires symmetries = {@link SymmetryDetector#partition(Bounds) partition}(bounds)
+	 * @return some perms: List<int[]> | all p: perms[int] |
+	 *          p is a non-identity automorphism of bounds that fixes bounds.ints and all atoms in
+	 *          { s: symmetries | s.size() > 1 }.ints
+	 */
+	static List<int[]> generators(Bounds bounds, Set<IntSet> symmetries) {
+		final int usize = bounds.universe().size();
+		final int[] initial = new int[usize];
+		int free = usize;
+		for(IntSet sym : symmetries) {
+			if (sym.size() > 1) {
+				for(IntIterator atoms = sym.iterator(); atoms.hasNext(); ) {
+					initial[atoms.next()] = -1;
+					free--;
+				}
+			}
+		}
+		for(IntIterator ints = bounds.ints().iterator(); ints.hasNext(); ) {
+			final int atom = bounds.exactBound(ints.next()).indexView().min();
+			if (initial[atom]==0) {
+				initial[atom] = -1;
+				free--;
+			}
+		}
+		if (free < 2) return Collections.emptyList();
+
+		final List<TupleSet> sets = new ArrayList<TupleSet>(bounds.relations().size()*2);
+		long occurrences = 0;
+		for(Relation r : bounds.relations()) {
+			final TupleSet lower = bounds.lowerBound(r), upper = bounds.upperBound(r);
+			if (upper.isLongIndexed()) return Collections.emptyList();
+			final TupleSet rest = upper.clone();
+			rest.removeAll(lower);
+			sets.add(lower);
+			sets.add(rest);
+			occurrences += (long) upper.size() * r.arity();
+		}
+		if (occurrences > MAX_OCCURRENCES) return Collections.emptyList();
+
+		// the fixed atoms get their own colors, ordered by index; the free ones share color 0
+		for(int i = 0, color = 1; i < usize; i++) {
+			if (initial[i] < 0) initial[i] = color++;
+		}
+		return new AutomorphismDetector(usize, sets).search(initial);
+	}
+
+	/**
+	 * Searches for automorphisms that respect the given coloring.
+	 * @return non-identity automorphisms of this.sets that respect the given coloring
+	 */
+	private List<int[]> search(int[] initial) {
+		final List<int[]> generators = new ArrayList<int[]>();
+
+		// compute the first path, individualizing the least atom of the first non-singleton cell at each level
+		final List<int[]> path = new ArrayList<int[]>();
+		final List<Integer> chosen = new ArrayList<Integer>();
+		for(int[] coloring = refine(initial); coloring != null; ) {
+			path.add(coloring);
+			final int cell = targetCell(coloring);
+			if (cell < 0) break;
+			final int atom = first(coloring, cell);
+			chosen.add(atom);
+			coloring = refine(individualize(coloring, atom));
+		}
+		if (path.size() < 2 || budget <= 0) return generators;
+		final int[] leaf = path.get(path.size()-1);
+		if (targetCell(leaf) >= 0) return generators; // ran out of budget
+		final int[] labeling = labeling(leaf);
+
+		final int[] orbits = new int[usize];
+		for(int i = 0; i < usize; i++) { orbits[i] = i; }
+
+		// explore the siblings of the first path, bottom up, skipping those in the orbit of the path's atom
+		for(int level = chosen.size()-1; level >= 0 && budget > 0; level--) {
+			final int[] coloring = path.get(level);
+			final int v = chosen.get(level);
+			final int cell = coloring[v];
+			for(int w = 0; w < usize && budget > 0; w++) {
+				if (coloring[w]!=cell || find(orbits, w)==find(orbits, v)) continue;
+				final int[] perm = descend(refine(individualize(coloring, w)), level+1, path, labeling);
+				if (perm != null) {
+					generators.add(perm);
+					for(int i = 0; i < usize; i++) {
+						orbits[find(orbits, i)] = find(orbits, perm[i]);
+					}
+				}
+			}
+		}
+		return generators;
+	}
+
+	/**
+	 * Searches the subtree rooted at the given coloring for a leaf that is equivalent
+	 * to the leaf of the first path, and returns the automorphism that maps the latter
+	 * to the former, or null if there is no such leaf.
+	 * @requires coloring is at the given depth of the search tree
+	 */
+	private int[] descend(int[] coloring, int depth, List<int[]> path, int[] labeling) {
+		if (coloring==null || depth >= path.size() || !compatible(coloring, path.get(depth))) return null;
+		final int cell = targetCell(coloring);
+		if (cell < 0) {
+			final int[] perm = new int[usize];
+			final int[] image = labeling(coloring);
+			for(int i = 0; i < usize; i++) {
+				perm[labeling[i]] = image[i];
+			}
+			return isAutomorphism(perm) ? perm : null;
+		}
+		for(int w = 0; w < usize && budget > 0; w++) {
+			if (coloring[w]!=cell) continue;
+			final int[] perm = descend(refine(individualize(coloring, w)), depth+1, path, labeling);
+			if (perm != null) return perm;
+		}
+		return null;
+	}
+
+	/**
+	 * Returns true if the given colorings have the same number of atoms of each color.
+	 * @return true if the given colorings have the same number of atoms of each color.
+	 */
+	private boolean compatible(int[] c0, int[] c1) {
+		final int[] count = new int[usize];
+		for(int i = 0; i < usize; i++) {
+			count[c0[i]]++;
+			count[c1[i]]--;
+		}
+		for(int i = 0; i < usize; i++) {
+			if (count[i]!=0) return false;
+		}
+		return true;
+	}
+
+	/**
+	 * Returns true if the given permutation maps every tupleset in this.sets onto itself.
+	 * @return all i: [0..this.sets.length) | perm(this.sets[i]) = this.sets[i]
+	 */
+	private boolean isAutomorphism(int[] perm) {
+		for(int i = 0; i < sets.length; i++) {
+			final int[] flat = tuples[i];
+			final int arity = arities[i];
+			for(int pos = 0; pos < flat.length; pos += arity) {
+				int image = 0;
+				for(int j = 0; j < arity; j++) {
+					image = image * usize + perm[flat[pos+j]];
+				}
+				if (!sets[i].contains(image)) return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Returns the color of the first non-singleton cell of the given coloring, or -1 if it is discrete.
+	 * @return the color of the first non-singleton cell of the given coloring, or -1 if it is discrete.
+	 */
+	private int targetCell(int[] coloring) {
+		final int[] count = new int[usize];
+		for(int c : coloring) { count[c]++; }
+		for(int c = 0; c < usize; c++) {
+			if (count[c] > 1) return c;
+		}
+		return -1;
+	}
+
+	/**
+	 * Returns the least atom with the given color.
+	 * @return min { i: int | coloring[i] = color }
+	 */
+	private static int first(int[] coloring, int color) {
+		for(int i = 0; ; i++) {
+			if (coloring[i]==color) return i;
+		}
+	}
+
+	/**
+	 * Returns the atoms of the given discrete coloring, ordered by color.
+	 * @requires coloring is discrete
+	 * @return the inverse of coloring
+	 */
+	private int[] labeling(int[] coloring) {
+		final int[] labeling = new int[usize];
+		for(int i = 0; i < usize; i++) {
+			labeling[coloring[i]] = i;
+		}
+		return labeling;
+	}
+
+	/**
+	 * Returns the coloring obtained by giving the specified atom a color of its own,
+	 * just before the other atoms in its cell.
+	 * @return the coloring obtained by individualizing the given atom
+	 */
+	private static int[] individualize(int[] coloring, int atom) {
+		final int[] result = new int[coloring.length];
+		final int cell = coloring[atom];
+		for(int i = 0; i < coloring.length; i++) {
+			result[i] = coloring[i] < cell || i==atom ? coloring[i] : coloring[i]+1;
+		}
+		return result;
+	}
+
+	/**
+	 * Refines the given coloring until it is equitable.  The refined colors depend only on
+	 * the structure of this.sets and on the given colors, not on the indices of the atoms.
+	 * Returns null if the refinement budget has been exhausted.
+	 * @return an equitable refinement of the given coloring, or null if the budget has been exhausted
+	 */
+	private int[] refine(int[] coloring) {
+		if (budget-- <= 0) return null;
+		final long[][] signatures = new long[usize][];
+		for(int i = 0; i < usize; i++) {
+			signatures[i] = new long[degree[i]];
+		}
+		final int[] fill = new int[usize];
+
+		for(int cells = cells(coloring); ; ) {
+			Arrays.fill(fill, 0);
+			for(int i = 0; i < tuples.length; i++) {
+				final int[] flat = tuples[i];
+				final int arity = arities[i];
+				for(int pos = 0; pos < flat.length; pos += arity) {
+					long hash = i + 1;
+					for(int j = 0; j < arity; j++) {
+						hash = mix(hash, coloring[flat[pos+j]]);
+					}
+					for(int j = 0; j < arity; j++) {
+						final int atom = flat[pos+j];
+						signatures[atom][fill[atom]++] = mix(hash, j);
+					}
+				}
+			}
+			for(long[] signature : signatures) {
+				Arrays.sort(signature);
+			}
+
+			final int[] current = coloring;
+			final Integer[] atoms = new Integer[usize];
+			for(int i = 0; i < usize; i++) { atoms[i] = i; }
+			final Comparator<Integer> cmp = new Comparator<Integer>() {
+				public int compare(Integer o1, Integer o2) {
+					final int ccmp = current[o1] - current[o2];
+					return ccmp != 0 ? ccmp : compareSignatures(signatures[o1], signatures[o2]);
+				}
+			};
+			Arrays.sort(atoms, cmp);
+
+			final int[] refined = new int[usize];
+			int color = 0;
+			for(int i = 1; i < usize; i++) {
+				if (cmp.compare(atoms[i-1], atoms[i]) != 0) color++;
+				refined[atoms[i]] = color;
+			}
+			if (color+1==cells) return refined;
+			cells = color+1;
+			coloring = refined;
+		}
+	}
+
+	/**
+	 * Returns the number of distinct colors in the given coloring.
+	 * @return #coloring[int]
+	 */
+	private int cells(int[] coloring) {
+		final boolean[] used = new boolean[usize];
+		int cells = 0;
+		for(int c : coloring) {
+			if (!used[c]) {
+				used[c] = true;
+				cells++;
+			}
+		}
+		return cells;
+	}
+
+	/**
+	 * Compares the given sorted signatures by length and then lexicographically.
+	 */
+	private static int compareSignatures(long[] s0, long[] s1) {
+		if (s0.length!=s1.length) return s0.length - s1.length;
+		for(int i = 0; i < s0.length; i++) {
+			if (s0[i]!=s1[i]) return s0[i] < s1[i] ? -1 : 1;
+		}
+		return 0;
+	}
+
+	/**
+	 * Combines the given hash with the given value.
+	 */
+	private static long mix(long hash, long value) {
+		long h = (hash ^ (value + 0x9E3779B97F4A7C15L)) * 0xBF58476D1CE4E5B9L;
+		return h ^ (h >>> 31);
+	}
+
+	/**
+	 * Returns the representative of the given atom's orbit.
+	 */
+	private static int find(int[] orbits, int atom) {
+		while(orbits[atom]!=atom) {
+			orbits[atom] = orbits[orbits[atom]];
+			atom = orbits[atom];
+		}
+		return atom;
+	}
+}
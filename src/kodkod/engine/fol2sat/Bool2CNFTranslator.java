@@ -25,12 +25,15 @@ import static kodkod.engine.bool.Operator.AND;
 import kodkod.engine.bool.BooleanConstant;
 import kodkod.engine.bool.BooleanFactory;
 import kodkod.engine.bool.BooleanFormula;
+import kodkod.engine.bool.BooleanValue;
 import kodkod.engine.bool.BooleanVariable;
 import kodkod.engine.bool.BooleanVisitor;
 import kodkod.engine.bool.ITEGate;
 import kodkod.engine.bool.MultiGate;
 import kodkod.engine.bool.NotGate;
 import kodkod.engine.bool.Operator;
+import kodkod.engine.satlab.BatchedSolver;
+import kodkod.engine.satlab.ClauseArena;
 import kodkod.engine.satlab.SATFactory;
 import kodkod.engine.satlab.SATSolver;
 import kodkod.engine.satlab.CheckpointableSolver;
@@ -140,7 +143,27 @@ abstract class Bool2CNFTranslator implements BooleanVisitor<int[], Object> {
 		return translator.translate(circuit, maxPrimaryVar);
 	}
 
+	/**
+	 * Updates the given Bool2CNFTranslator with the translation of the formula {@code guard => circuit}.
+	 * The behavior of this method is undefined if it is called 
+	 * after translator.solver has returned UNSAT. The {@code maxPrimaryVar} parameter is required 
+	 * to contain the maximum label of any primary variable allocated during translation from FOL to boolean, 
+	 * including the guard.
+	 * @requires circuit in translator.factory.components
+	 * @requires guard in translator.factory.components.label && 0 < guard <= maxPrimaryVar
+	 * @requires maxPrimaryVar = translator.factory.maxVariable()
+	 * @ensures max(translator.cnf.variables') = max((circuit in BooleanConstant => 0 else abs(circuit.label)), translator.cnf.variables, maxPrimaryVar) && 
+	 *          translator.cnf.clauses in translator.cnf.clauses' && 
+	 *          [[translator.cnf.clauses']] = [[translator.cnf.clauses]] && [[guard => circuit]]
+	 * @return translator
+	 */
+	static Bool2CNFTranslator translateIncremental(final BooleanValue circuit, final int guard, final int maxPrimaryVar, final Bool2CNFTranslator translator) {
+		return translator.translate(circuit, guard, maxPrimaryVar);
+	}
+	
 	private final SATSolver solver;
+	/* buffers the clauses for this.solver, if it accepts them in batches; null otherwise */
+	private final ClauseArena arena;
 	private final IntSet visited;
 	private final int[] unaryClause = new int[1];
 	private final int[] binaryClause = new int[2];
@@ -156,6 +179,7 @@ abstract class Bool2CNFTranslator implements BooleanVisitor<int[], Object> {
 	 */
 	private Bool2CNFTranslator(SATSolver solver) {
 		this.solver = solver;
+		this.arena = solver instanceof BatchedSolver ? new ClauseArena() : null;
 		this.visited = new IntTreeSet();
 		this.visitedCheckpoints = new Stack<IntSet>();
 	}
@@ -184,11 +208,47 @@ abstract class Bool2CNFTranslator implements BooleanVisitor<int[], Object> {
 			}
 			for(BooleanFormula input : circuit) { 
 				unaryClause[0] = input.label();
-				solver.addClause(unaryClause);
+				addClause(unaryClause);
 			}
 		} else {
-			solver.addClause(circuit.accept(this, null));
+			addClause(circuit.accept(this, null));
+		}
+		flush();
+		return this;
+	}
+	
+	/**
+	 * Applies this translator to the formula {@code guard => circuit}, adding its translation 
+	 * to this.solver, and returns the translator.  If the circuit is a conjunction, its inputs 
+	 * are guarded individually rather than through a fresh gate for the implication.
+	 * @requires circuit in this.factory.components
+	 * @requires 0 < guard <= maxPrimaryVar = this.factory.maxPrimaryVariable()
+	 * @ensures this.solver.variables' = this.solver.variables + 
+	 *   { i: int | solver.numberOfVariables() < i <= max((circuit in BooleanConstant => 0 else abs(circuit.label)), maxPrimaryVar) }
+	 * @effects this.solver.clauses' = this.solver.clauses + CNF(guard => circuit)
+	 * @return this
+	 */
+	private Bool2CNFTranslator translate(BooleanValue circuit, int guard, int maxPrimaryVar) {
+		final int maxLabel = circuit.op()==Operator.CONST ? 0 : Math.abs(circuit.label());
+		final int newVars = Math.max(maxLabel, maxPrimaryVar) - solver.numberOfVariables();
+		if (newVars > 0)
+			solver.addVariables(newVars);
+		
+		if (circuit==BooleanConstant.FALSE) {
+			addClause(clause(-guard));
+		} else if (circuit.op()==Operator.AND) { 
+			final BooleanFormula formula = (BooleanFormula) circuit;
+			for(BooleanFormula input : formula) { 
+				input.accept(this, null);
+			}
+			for(BooleanFormula input : formula) { 
+				addClause(clause(-guard, input.label()));
+			}
+		} else if (circuit!=BooleanConstant.TRUE) {
+			final int lit = ((BooleanFormula) circuit).accept(this, null)[0];
+			addClause(clause(-guard, lit));
 		}
+		flush();
 		return this;
 	}
 	
@@ -212,6 +272,31 @@ abstract class Bool2CNFTranslator implements BooleanVisitor<int[], Object> {
 	 */
 	boolean negative(int label) { return true; }
 	
+	/**
+	 * Adds the given clause to this.solver, through this.arena if this.solver accepts 
+	 * clauses in batches.  The clauses in the arena reach the solver when the arena 
+	 * fills up or when the translation is {@linkplain #flush() flushed}.
+	 * @ensures this.solver.clauses' = this.solver.clauses + lits (eventually)
+	 */
+	private final void addClause(int[] lits) {
+		if (arena==null) {
+			solver.addClause(lits);
+		} else if (!arena.add(lits)) {
+			flush();
+			if (!arena.add(lits)) // larger than the arena
+				solver.addClause(lits);
+		}
+	}
+	
+	/**
+	 * Hands the clauses buffered in this.arena, if any, to this.solver.
+	 * @ensures this.arena != null => (this.solver.clauses' = this.solver.clauses + this.arena.clauses && no this.arena.clauses')
+	 */
+	private final void flush() {
+		if (arena != null) 
+			((BatchedSolver) solver).addClauses(arena);
+	}
+	
 	/** @return 0->lit */
 	private final int[] clause(int lit) { 
 		unaryClause[0] = lit;
@@ -253,7 +338,7 @@ abstract class Bool2CNFTranslator implements BooleanVisitor<int[], Object> {
 			for(BooleanFormula input : multigate) {
 				int iLit = input.accept(this, arg)[0];
 				if (p) {
-					solver.addClause(clause(iLit * sgn, output));
+					addClause(clause(iLit * sgn, output));
 				}
 				if (n) { 
 					lastClause[i++] = iLit * -sgn;
@@ -261,7 +346,7 @@ abstract class Bool2CNFTranslator implements BooleanVisitor<int[], Object> {
 			}
 			if (n) {
 				lastClause[i] = oLit * sgn;
-				solver.addClause(lastClause);
+				addClause(lastClause);
 			}
 		}
 		return clause(oLit);        
@@ -284,16 +369,16 @@ abstract class Bool2CNFTranslator implements BooleanVisitor<int[], Object> {
 			final int e = itegate.input(2).accept(this, arg)[0];
 			final boolean p = positive(oLit), n = negative(oLit);
 			if (p) {
-				solver.addClause(clause(-i, t, -oLit));
-				solver.addClause(clause(i, e, -oLit));
+				addClause(clause(-i, t, -oLit));
+				addClause(clause(i, e, -oLit));
 				// redundant clause that strengthens unit propagation
-				solver.addClause(clause(t, e, -oLit));
+				addClause(clause(t, e, -oLit));
 			}
 			if (n) {
-				solver.addClause(clause(-i, -t, oLit));	
-				solver.addClause(clause(i, -e, oLit));
+				addClause(clause(-i, -t, oLit));	
+				addClause(clause(i, -e, oLit));
 				// redundant clause that strengthens unit propagation
-				solver.addClause(clause(-t, -e, oLit));
+				addClause(clause(-t, -e, oLit));
 			}	
 		}
 		return clause(oLit);
@@ -22,6 +22,8 @@
 package kodkod.engine.fol2sat;
 
 import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
@@ -29,6 +31,9 @@ import kodkod.ast.Node;
 import kodkod.ast.Variable;
 import kodkod.engine.bool.BooleanConstant;
 import kodkod.engine.bool.BooleanMatrix;
+import kodkod.engine.bool.BooleanValue;
+import kodkod.engine.bool.Int;
+import kodkod.util.ints.IndexedEntry;
 import kodkod.util.nodes.AnnotatedNode;
 
 
@@ -37,21 +42,47 @@ import kodkod.util.nodes.AnnotatedNode;
  * In particular it determines which translations
  * to cache, when to throw them out of the cache, etc. 
  * 
+ * <p>The translations of a node with free variables are memoized for 
+ * several bindings of those variables at once, so that a shared subformula 
+ * that is reached under alternating bindings (e.g. the body of a predicate 
+ * invoked from nested quantifiers) is translated only once per binding.  
+ * The memo table of each node is bounded by {@link #MAX_WEIGHT}, and 
+ * the least recently used translations are evicted first.</p>
+ * 
  * @specfield node: Node // node being translated
  * @specfield cached: node.*children  // the nodes whose translations are cached
  * @specfield cache: cached -> (Object ->lone Environment)
+ * @specfield hits, misses: long // number of successful and failed lookups of the nodes in this.cached
  * @author Emina Torlak
  */
 final class FOL2BoolCache {
+	/**
+	 * The maximum total weight of the translations memoized for a single node.  
+	 * The weight of a matrix is its density plus one, the weight of an Int is 
+	 * its width, and the weight of a boolean value is one.
+	 */
+	static final int MAX_WEIGHT = 1 << 12;
+	
 	private final Map<Node,Record> cache;
+	private long hits, misses;
 	
 	/**
 	 * Constructs a new translation cache for the given annotated node.
 	 * @ensures this.node' = annotated.node 
 	 */
 	FOL2BoolCache(AnnotatedNode<? extends Node> annotated) {
-		final CacheCollector collector = new CacheCollector(annotated.sharedNodes());
-		annotated.node().accept(collector);
+		this(annotated.node(), annotated.sharedNodes());
+	}
+	
+	/**
+	 * Constructs a new translation cache for the given node, whose 
+	 * descendants in the given set are shared.
+	 * @requires sharedNodes contains all shared descendants of node
+	 * @ensures this.node' = node
+	 */
+	FOL2BoolCache(Node node, Set<Node> sharedNodes) {
+		final CacheCollector collector = new CacheCollector(sharedNodes);
+		node.accept(collector);
 
 		this.cache = new IdentityHashMap<Node, Record>(collector.cache().size());
 		for(Map.Entry<Node, Set<Variable>> e :  collector.cache().entrySet()) {
@@ -62,6 +93,46 @@ final class FOL2BoolCache {
 				this.cache.put(e.getKey(), new MultiVarRecord(freeVars));
 		}
 	}
+	
+	/**
+	 * Returns the number of lookups of cached nodes that returned a translation.
+	 * @return this.hits
+	 */
+	long hits() { return hits; }
+	
+	/**
+	 * Returns the number of lookups of cached nodes that returned null.
+	 * @return this.misses
+	 */
+	long misses() { return misses; }
+	
+	/**
+	 * Accumulates the {@linkplain FOL2BoolCache#hits() hits} and {@linkplain FOL2BoolCache#misses() misses}
+	 * of the caches used to translate a formula, possibly on several threads.
+	 * @specfield hits, misses: long
+	 */
+	static final class Counter {
+		private long hits, misses;
+		
+		/**
+		 * Adds the hits and misses of the given cache to this counter.
+		 * @ensures this.hits' = this.hits + cache.hits && this.misses' = this.misses + cache.misses
+		 */
+		synchronized void add(FOL2BoolCache cache) {
+			hits += cache.hits;
+			misses += cache.misses;
+		}
+		
+		/**
+		 * @return this.hits
+		 */
+		synchronized long hits() { return hits; }
+		
+		/**
+		 * @return this.misses
+		 */
+		synchronized long misses() { return misses; }
+	}
 
 	
 	/**
@@ -74,7 +145,11 @@ final class FOL2BoolCache {
 	@SuppressWarnings("unchecked")
 	<T> T lookup(Node node, Environment<BooleanMatrix> env) {
 		final Record info = cache.get(node);
-		return info==null ? null : (T) info.get(env);
+		if (info==null) return null;
+		final Object translation = info.get(env);
+		if (translation==null) misses++;
+		else hits++;
+		return (T) translation;
 	}
 	
 	/**
@@ -180,47 +255,95 @@ final class FOL2BoolCache {
 	}
 	
 	/**
-	 * A TranslationInfo for a node with one or more free variables. 
+	 * A TranslationInfo for a node with one or more free variables, which 
+	 * memoizes the translations of the node for several bindings of its 
+	 * free variables.  The translations are keyed by the tuple indices of 
+	 * the variables' bindings, packed into a single long, and the least recently 
+	 * used ones are evicted once their total weight exceeds {@link FOL2BoolCache#MAX_WEIGHT}.  
+	 * Bindings whose indices cannot be packed (because they are not singletons,
+	 * or their packing overflows a long) are not memoized.
+	 * @specfield memo: long -> lone Object
 	 */
 	private static final class MultiVarRecord extends Record {
 		final Variable[] vars;
-		final int[] tuples;
+		final LinkedHashMap<Long,Object> memo;
+		int weight;
 		
 		/**
 		 * Constructs a translation unit for a node which
 		 * has the given set of free variables.
 		 * @ensures this.freeVariables' = vars &&
-		 *          no this.translation' 
+		 *          no this.translation' && no this.memo'
 		 */
 		MultiVarRecord(Set<Variable> freeVariables) {
 			this.vars = freeVariables.toArray(new Variable[freeVariables.size()]);
-			this.tuples = new int[freeVariables.size()];
+			this.memo = new LinkedHashMap<Long,Object>(16, .75f, true);
+			this.weight = 0;
+		}
+		
+		/**
+		 * Returns the packed tuple indices of the bindings of this.vars in 
+		 * the given environment, or -1 if they cannot be packed.
+		 * @return packed tuple indices of the bindings of this.vars in e, or -1
+		 */
+		private long key(Environment<BooleanMatrix> e) {
+			long key = 0;
+			for(Variable var : vars) {
+				final BooleanMatrix varVal = e.lookup(var);
+				if (varVal.density()!=1 || varVal.dimensions().isLongIndexed()) return -1;
+				final IndexedEntry<BooleanValue> entry = varVal.iterator().next();
+				if (entry.value()!=BooleanConstant.TRUE) return -1;
+				final long capacity = varVal.dimensions().capacity();
+				if (key > (Long.MAX_VALUE - entry.index()) / capacity) return -1;
+				key = key * capacity + entry.index();
+			}
+			return key;
+		}
+		
+		/**
+		 * Returns the weight of the given translation.
+		 * @return weight of the given translation
+		 */
+		private static int weight(Object transl) {
+			if (transl instanceof BooleanMatrix) 
+				return ((BooleanMatrix) transl).density() + 1;
+			else if (transl instanceof Int)
+				return ((Int) transl).width();
+			else 
+				return 1;
 		}
 		
 		/**
 		 * @see kodkod.engine.fol2sat.FOL2BoolCache.Record#get(kodkod.engine.fol2sat.Environment)
 		 */
 		Object get(Environment<BooleanMatrix> e) {
-			if (translation==null) return null;
-			for(int i = 0; i < vars.length; i++) {
-				if (e.lookup(vars[i]).get(tuples[i])!=BooleanConstant.TRUE)
-					return null;
-			}
-			return translation;
+			if (memo.isEmpty()) return null;
+			final long key = key(e);
+			return key < 0 ? null : memo.get(key);
 		}
 		
 		/**
+		 * Memoizes the given translation for the bindings of this.vars in the given 
+		 * environment, and evicts the least recently used translations, other than
+		 * the given one, until the weight of this.memo is at most {@link FOL2BoolCache#MAX_WEIGHT}.
 		 * @see kodkod.engine.fol2sat.FOL2BoolCache.Record#set(java.lang.Object, kodkod.engine.fol2sat.Environment)
 		 */
 		void set(Object transl, Environment<BooleanMatrix> env) {
-			translation = transl;
-			for(int i = 0; i < vars.length; i++) {
-				final BooleanMatrix varVal = env.lookup(vars[i]);
-				tuples[i] = varVal.iterator().next().index();
-				if (transl==varVal) { 
-					translation = varVal.clone();
+			final long key = key(env);
+			if (key < 0) return;
+			for(Variable var : vars) {
+				if (transl==env.lookup(var)) { 
+					transl = ((BooleanMatrix) transl).clone();
+					break;
 				}
 			}
+			weight += weight(transl);
+			final Object old = memo.put(key, transl);
+			if (old != null) weight -= weight(old);
+			for(Iterator<Object> itr = memo.values().iterator(); weight > MAX_WEIGHT && memo.size() > 1; ) {
+				weight -= weight(itr.next());
+				itr.remove();
+			}
 		}
 		
 		/**
@@ -228,15 +351,12 @@ final class FOL2BoolCache {
 		 */
 		public String toString() {
 			final StringBuilder b = new StringBuilder("{");
-			b.append(String.valueOf(translation));
-			for(int i = 0; i < vars.length; i++)
-			{			
-				b.append(" (");
+			for(int i = 0; i < vars.length; i++) {
+				if (i > 0) b.append(", ");
 				b.append(vars[i]);
-				b.append(", ");
-				b.append(tuples[i]);
-				b.append(")");
 			}
+			b.append(": ");
+			b.append(memo);
 			b.append("}");
 			return b.toString();
 		}
@@ -25,6 +25,12 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
 
 import kodkod.ast.BinaryExpression;
 import kodkod.ast.BinaryFormula;
@@ -65,6 +71,7 @@ import kodkod.ast.operator.FormulaOperator;
 import kodkod.ast.operator.Multiplicity;
 import kodkod.ast.operator.Quantifier;
 import kodkod.ast.visitor.ReturnVisitor;
+import kodkod.engine.AbortedException;
 import kodkod.engine.bool.BooleanAccumulator;
 import kodkod.engine.bool.BooleanConstant;
 import kodkod.engine.bool.BooleanFactory;
@@ -99,11 +106,241 @@ abstract class FOL2BoolTranslator implements ReturnVisitor<BooleanMatrix, Boolea
 	 * @throws HigherOrderDeclException  annotated.node contains a higher order declaration
 	 * @throws UnboundLeafException  annotated.node refers to an undeclared variable 
 	 **/
-	@SuppressWarnings("unchecked")
 	static final <T> T translate(AnnotatedNode<? extends Node> annotated, LeafInterpreter interpreter) {
+		return translate(annotated, interpreter, (FOL2BoolCache.Counter) null);
+	}
+	
+	/**
+	 * Translates the given annotated formula or expression into a boolean
+	 * formula or matrix, using the provided interpreter, and adds the hits and 
+	 * misses of the translation cache to the given counter, if any. 
+	 * @requires interpreter.relations = AnnotatedNode.relations(annotated)
+	 * @return {@link #translate(AnnotatedNode, LeafInterpreter)}
+	 * @ensures memo != null => memo.hits' >= memo.hits && memo.misses' >= memo.misses
+	 * @throws HigherOrderDeclException  annotated.node contains a higher order declaration
+	 * @throws UnboundLeafException  annotated.node refers to an undeclared variable 
+	 **/
+	@SuppressWarnings("unchecked")
+	static final <T> T translate(AnnotatedNode<? extends Node> annotated, LeafInterpreter interpreter, FOL2BoolCache.Counter memo) {
 		final FOL2BoolCache cache = new FOL2BoolCache(annotated);
 		final FOL2BoolTranslator translator = new FOL2BoolTranslator(cache, interpreter) {};
-		return (T) annotated.node().accept(translator);
+		final T ret = (T) annotated.node().accept(translator);
+		if (memo != null) memo.add(cache);
+		return ret;
+	}
+
+	/**
+	 * Translates the given annotated formula into a boolean value, using the provided interpreter, 
+	 * by translating its top-level conjuncts concurrently on at most the given number of threads.
+	 * If grain is positive, the grounding of each top-level quantified conjunct whose first 
+	 * declaration ranges over more than grain tuples is also split into tasks, each of which 
+	 * grounds the conjunct for grain consecutive tuples of that declaration.  
+	 * Each task is performed by its own {@linkplain LeafInterpreter#fork() fork} of the 
+	 * interpreter, so the translations share no state, and the results are 
+	 * {@linkplain BooleanFactory#adopt(BooleanValue) adopted} by interpreter.factory in the order 
+	 * in which the conjuncts occur in annotated.node, and in the order of the tuples of a split 
+	 * declaration.  As a result, the returned circuit and the labels of its gates do not depend 
+	 * on the scheduling of the threads or on their number.
+	 * The hits and misses of the translation caches are added to the given counter, if any.
+	 * @requires interpreter.relations = AnnotatedNode.relations(annotated)
+	 * @requires threads > 0 && grain >= 0
+	 * @return a boolean value that is the meaning of the given annotated formula with respect to the given interpreter
+	 * @throws HigherOrderDeclException  annotated.node contains a higher order declaration
+	 * @throws UnboundLeafException  annotated.node refers to an undeclared variable 
+	 * @throws AbortedException  the calling thread was interrupted while waiting for the translation to finish
+	 **/
+	static final BooleanValue translate(final AnnotatedNode<Formula> annotated, final LeafInterpreter interpreter, int threads, final int grain, final FOL2BoolCache.Counter memo) {
+		if (threads < 2) 
+			return translate(annotated, interpreter, memo);
+		final Set<Formula> conjuncts = Nodes.conjuncts(annotated.node());
+		final int[] slices = new int[conjuncts.size()];
+		int tasks = 0, i = 0;
+		for(Formula conjunct : conjuncts) {
+			slices[i] = grain > 0 ? slices(conjunct, annotated.sharedNodes(), interpreter, grain) : 1;
+			tasks += slices[i++];
+		}
+		if (tasks < 2)
+			return translate(annotated, interpreter, memo);
+		
+		final ExecutorService executor = new ForkJoinPool(StrictMath.min(threads, tasks));
+		try {
+			final List<List<Future<BooleanValue>>> translations = new ArrayList<List<Future<BooleanValue>>>(conjuncts.size());
+			i = 0;
+			for(final Formula conjunct : conjuncts) { 
+				final List<Future<BooleanValue>> parts = new ArrayList<Future<BooleanValue>>(slices[i]);
+				if (slices[i]==1) {
+					parts.add(executor.submit(new Callable<BooleanValue>() {
+						public BooleanValue call() {
+							final FOL2BoolCache cache = new FOL2BoolCache(conjunct, annotated.sharedNodes());
+							final BooleanValue ret = conjunct.accept(new FOL2BoolTranslator(cache, interpreter.fork()) {});
+							if (memo != null) memo.add(cache);
+							return ret;
+						}
+					}));
+				} else {
+					for(int slice = 0; slice < slices[i]; slice++) {
+						final int from = slice * grain;
+						parts.add(executor.submit(new Callable<BooleanValue>() {
+							public BooleanValue call() {
+								final FOL2BoolCache cache = new FOL2BoolCache(conjunct, annotated.sharedNodes());
+								final FOL2BoolTranslator translator = new FOL2BoolTranslator(cache, interpreter.fork()) {};
+								final BooleanValue ret = translator.ground((QuantifiedFormula) conjunct, from, from + grain);
+								if (memo != null) memo.add(cache);
+								return ret;
+							}
+						}));
+					}
+				}
+				translations.add(parts);
+				i++;
+			}
+			final BooleanFactory factory = interpreter.factory();
+			final BooleanAccumulator acc = BooleanAccumulator.treeGate(Operator.AND);
+			i = 0;
+			for(Formula conjunct : conjuncts) { 
+				final List<Future<BooleanValue>> parts = translations.get(i++);
+				final BooleanValue translation;
+				if (parts.size()==1) {
+					translation = factory.adopt(parts.get(0).get());
+				} else {
+					final Operator.Nary op = ((QuantifiedFormula) conjunct).quantifier()==Quantifier.ALL ? Operator.AND : Operator.OR;
+					final BooleanAccumulator ranges = BooleanAccumulator.treeGate(op);
+					for(Future<BooleanValue> part : parts) {
+						if (ranges.add(factory.adopt(part.get()))==op.shortCircuit())
+							break;
+					}
+					translation = factory.accumulate(ranges);
+				}
+				if (acc.add(translation)==BooleanConstant.FALSE)
+					break;
+			}
+			return factory.accumulate(acc);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new AbortedException("interrupted during translation", e);
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof RuntimeException) 
+				throw (RuntimeException) cause;
+			else if (cause instanceof Error)
+				throw (Error) cause;
+			else 
+				throw new IllegalStateException(cause);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Returns the number of tasks that ground the given top-level conjunct, when each 
+	 * task grounds it for at most grain tuples of its first declaration.  A conjunct that 
+	 * is not a quantified formula is translated by a single task.
+	 * @requires grain > 0
+	 * @return conjunct in QuantifiedFormula => 
+	 *           ceil(#translate(conjunct.decls.get(0).expression).elements / grain), 1
+	 */
+	private static int slices(Formula conjunct, Set<Node> sharedNodes, LeafInterpreter interpreter, int grain) {
+		if (!(conjunct instanceof QuantifiedFormula)) 
+			return 1;
+		final Decl decl = ((QuantifiedFormula) conjunct).decls().get(0);
+		final FOL2BoolTranslator translator = new FOL2BoolTranslator(new FOL2BoolCache(decl, sharedNodes), interpreter.fork()) {};
+		final int tuples = translator.visit(decl).density();
+		return StrictMath.max(1, (tuples + grain - 1) / grain);
+	}
+
+	/**
+	 * Translates the conjunction of the instances of the given annotated formula in which 
+	 * the given variables are bound to the tuples with the given indices, using the provided interpreter.  
+	 * The instances are translated with a single cache, so the translations of their shared 
+	 * subformulas are reused whenever the subformulas' free variables are bound to the same tuples.  
+	 * The hits and misses of the cache are added to the given counter, if any.
+	 * @requires interpreter.relations = AnnotatedNode.relations(annotated)
+	 * @requires freeVariables(annotated.node) in vars[int]
+	 * @requires all b: bindings[int] | b.length = vars.length && 
+	 *            all i: [0..vars.length) | 0 <= b[i] < interpreter.universe.size^vars[i].arity
+	 * @return the conjunction of the meanings of annotated.node, with vars bound to the tuples in each of 
+	 * the given bindings, with respect to the given interpreter
+	 * @throws HigherOrderDeclException  annotated.node contains a higher order declaration
+	 * @throws UnboundLeafException  annotated.node refers to an undeclared variable 
+	 **/
+	static final BooleanValue instantiate(AnnotatedNode<Formula> annotated, Variable[] vars, List<int[]> bindings, LeafInterpreter interpreter, FOL2BoolCache.Counter memo) {
+		final BooleanFactory factory = interpreter.factory();
+		final int usize = interpreter.universe().size();
+		final BooleanMatrix[] groundValues = new BooleanMatrix[vars.length];
+		Environment<BooleanMatrix> env = Environment.empty();
+		for(int i = 0; i < vars.length; i++) {
+			groundValues[i] = factory.matrix(Dimensions.square(usize, vars[i].arity()));
+			env = env.extend(vars[i], groundValues[i]);
+		}
+		final FOL2BoolCache cache = new FOL2BoolCache(annotated);
+		final FOL2BoolTranslator translator = new FOL2BoolTranslator(cache, interpreter, env) {};
+		final BooleanAccumulator acc = BooleanAccumulator.treeGate(Operator.AND);
+		for(int[] binding : bindings) {
+			for(int i = 0; i < vars.length; i++) 
+				groundValues[i].set(binding[i], BooleanConstant.TRUE);
+			final BooleanValue instance = annotated.node().accept(translator);
+			for(int i = 0; i < vars.length; i++) 
+				groundValues[i].set(binding[i], BooleanConstant.FALSE);
+			if (acc.add(instance)==BooleanConstant.FALSE)
+				break;
+		}
+		if (memo != null) memo.add(cache);
+		return factory.accumulate(acc);
+	}
+
+	/**
+	 * Returns at most limit bindings of the variables declared by the given annotated, universally
+	 * quantified formula for which its body translates to FALSE with respect to the given exact interpreter.
+	 * Each binding consists of the indices of the tuples bound to the declared variables, in the order
+	 * of their declarations.  Unlike {@link TupleEvaluator}, this method represents the values of
+	 * the formula's subexpressions with boolean matrices, whose indices may exceed the range of an int.
+	 * @requires interpreter.relations = AnnotatedNode.relations(annotated)
+	 * @requires annotated.node.quantifier = ALL && limit > 0
+	 * @requires interpreter is exact, so every relation translates to a matrix of constants
+	 * @return bindings of annotated.node.decls for which annotated.node.formula is FALSE, in evaluation order
+	 * @throws HigherOrderDeclException  annotated.node contains a higher order declaration
+	 * @throws UnboundLeafException  annotated.node refers to an undeclared variable
+	 * @throws kodkod.engine.CapacityExceededException  the index of some tuple in the value of a declaration does not fit into an int
+	 */
+	static final List<int[]> counterexamples(AnnotatedNode<QuantifiedFormula> annotated, LeafInterpreter interpreter, int limit) {
+		final Decls decls = annotated.node().decls();
+		final BooleanFactory factory = interpreter.factory();
+		final int usize = interpreter.universe().size();
+		final BooleanMatrix[] groundValues = new BooleanMatrix[decls.size()];
+		Environment<BooleanMatrix> env = Environment.empty();
+		for(int i = 0; i < groundValues.length; i++) {
+			final Variable var = decls.get(i).variable();
+			groundValues[i] = factory.matrix(Dimensions.square(usize, var.arity()));
+			env = env.extend(var, groundValues[i]);
+		}
+		final FOL2BoolTranslator translator = new FOL2BoolTranslator(new FOL2BoolCache(annotated), interpreter, env) {};
+		final List<int[]> ret = new ArrayList<int[]>();
+		counterexamples(translator, annotated.node(), groundValues, 0, new int[groundValues.length], limit, ret);
+		return ret;
+	}
+
+	/**
+	 * Adds to ret the bindings of the variables declared by formula.decls[currentDecl..], extended with the
+	 * given bindings of formula.decls[0..currentDecl), for which formula.formula translates to FALSE,
+	 * until ret contains limit bindings.  The variable declared by formula.decls[i] is bound to groundValues[i].
+	 * @requires all i: [0..currentDecl) | groundValues[i].elements = binding[i] -> TRUE
+	 * @ensures ret.elements' = ret.elements + { b: int[] | b[0..currentDecl) = binding[0..currentDecl) &&
+	 *            formula.formula(b) = FALSE } && #ret' <= limit
+	 */
+	private static void counterexamples(FOL2BoolTranslator translator, QuantifiedFormula formula, BooleanMatrix[] groundValues,
+			int currentDecl, int[] binding, int limit, List<int[]> ret) {
+		if (currentDecl==groundValues.length) {
+			if (formula.formula().accept(translator)==BooleanConstant.FALSE)
+				ret.add(binding.clone());
+			return;
+		}
+		final BooleanMatrix declValue = translator.visit(formula.decls().get(currentDecl));
+		for(IntIterator itr = declValue.denseIndices().iterator(); itr.hasNext() && ret.size() < limit; ) {
+			binding[currentDecl] = itr.next();
+			groundValues[currentDecl].set(binding[currentDecl], BooleanConstant.TRUE);
+			counterexamples(translator, formula, groundValues, currentDecl+1, binding, limit, ret);
+			groundValues[currentDecl].set(binding[currentDecl], BooleanConstant.FALSE);
+		}
 	}
 
 	/**
@@ -113,10 +350,11 @@ abstract class FOL2BoolTranslator implements ReturnVisitor<BooleanMatrix, Boolea
 	 * @requires annotated.source[annotated.sourceSensitiveRoots()] = Nodes.roots(annotated.source[annotated.node])
 	 * @return BooleanAccumulator that is the meaning of the given annotated formula with respect to the given interpreter
 	 * @ensures log.records' contains the translation events that occurred while generating the returned value
+	 * @ensures memo != null => memo.hits' >= memo.hits && memo.misses' >= memo.misses
 	 * @throws HigherOrderDeclException  annotated.node contains a higher order declaration
 	 * @throws UnboundLeafException  annotated.node refers to an undeclared variable 
 	 **/
-	static final BooleanAccumulator translate(final AnnotatedNode<Formula> annotated, LeafInterpreter interpreter, final TranslationLogger logger) {
+	static final BooleanAccumulator translate(final AnnotatedNode<Formula> annotated, LeafInterpreter interpreter, final TranslationLogger logger, FOL2BoolCache.Counter memo) {
 		final FOL2BoolCache cache = new FOL2BoolCache(annotated);
 		final FOL2BoolTranslator translator = new FOL2BoolTranslator(cache, interpreter) {
 			BooleanValue cache(Formula formula, BooleanValue translation) {
@@ -130,6 +368,7 @@ abstract class FOL2BoolTranslator implements ReturnVisitor<BooleanMatrix, Boolea
 			acc.add(root.accept(translator));
 		}
 		logger.close();
+		if (memo != null) memo.add(cache);
 		return acc;
 	}
 	
@@ -582,6 +821,44 @@ abstract class FOL2BoolTranslator implements ReturnVisitor<BooleanMatrix, Boolea
 
 	}
 
+	/**
+	 * Translates the instances of the given quantified formula in which its first variable
+	 * is bound to the tuples at positions from through to-1 of the translation of its first declaration.  
+	 * The result is the conjunction (if the formula is universal) or the disjunction (if it 
+	 * is existential) of those instances, so that the translation of the formula is the 
+	 * conjunction or disjunction of the translations of the consecutive ranges of its tuples.
+	 * @requires 0 <= from < to
+	 * @return let q = quantFormula.quantifier, decl = quantFormula.decls.get(0) | 
+	 *           {@link #all(Decls, Formula, int, BooleanValue, BooleanAccumulator) all} or 
+	 *           {@link #some(Decls, Formula, int, BooleanValue, BooleanAccumulator) some}
+	 *           of quantFormula restricted to the tuples [from..to) of translate(decl)
+	 */
+	private BooleanValue ground(QuantifiedFormula quantFormula, int from, int to) {
+		final boolean all = quantFormula.quantifier()==Quantifier.ALL;
+		final BooleanFactory factory = interpreter.factory();
+		final BooleanAccumulator acc = BooleanAccumulator.treeGate(all ? Operator.AND : Operator.OR);
+		
+		final Decls decls = quantFormula.decls();
+		final Decl decl = decls.get(0);
+		final BooleanMatrix declTransl = visit(decl);
+		final BooleanMatrix groundValue = factory.matrix(declTransl.dimensions());
+		env = env.extend(decl.variable(), groundValue);
+		int position = 0;
+		for(IndexedEntry<BooleanValue> entry : declTransl) {
+			if (position >= to || acc.isShortCircuited()) break;
+			if (position++ < from) continue;
+			groundValue.set(entry.index(), BooleanConstant.TRUE);
+			if (all) 
+				all(decls, quantFormula.formula(), 1, factory.not(entry.value()), acc);
+			else 
+				some(decls, quantFormula.formula(), 1, entry.value(), acc);
+			groundValue.set(entry.index(), BooleanConstant.FALSE);	
+		}
+		env = env.parent();
+		
+		return factory.accumulate(acc);
+	}
+
 	/** 
 	 * Calls lookup(quantFormula) and returns the cached value, if any.  
 	 * If a translation has not been cached, translates the formula,
@@ -21,18 +21,20 @@
  */
 package kodkod.engine.fol2sat;
 
-import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
-import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.File;
-import java.io.FileInputStream;
-import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.List;
 import java.util.Map;
 import java.util.NoSuchElementException;
 import java.util.Set;
@@ -49,13 +51,17 @@ import kodkod.instance.TupleFactory;
 import kodkod.instance.TupleSet;
 import kodkod.util.collections.Containers;
 import kodkod.util.collections.FixedMap;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
 import kodkod.util.ints.Ints;
 import kodkod.util.nodes.AnnotatedNode;
 import kodkod.util.nodes.Nodes;
 
 /**
  * A file-based translation logger that logs translation events
- * to a temporary file.
+ * to a temporary file.  The length of each record depends on the number
+ * of free variables of its formula, and the log is memory-mapped and its 
+ * records read in place through an index of their offsets.
  * @specfield originalFormula: Formula // the {@linkplain Solver#solve(Formula, kodkod.instance.Bounds) original} formula, provided by the user
  * @specfield originalBounds: Bounds // the {@linkplain Solver#solve(Formula, kodkod.instance.Bounds) original} bounds, provided by the user
  * @specfield formula: Formula // desugaring of this.formula that was translated
@@ -71,6 +77,7 @@ final class FileLogger extends TranslationLogger {
 	private final File file;
 	private DataOutputStream out;
 	private final Bounds bounds;
+	private int size;
 	/**
 	 * Constructs a new file logger from the given annotated formula.
 	 * @ensures this.formula' = annotated.node
@@ -103,6 +110,7 @@ final class FileLogger extends TranslationLogger {
 			}
 		}
 		this.bounds = bounds.unmodifiableView();
+		this.size = 0;
 	}
 	
 	/**
@@ -143,7 +151,10 @@ final class FileLogger extends TranslationLogger {
 	/**
 	 * Records the translation of the source of the 
 	 * given transformed formula to the given boolean value 
-	 * in the specified environment.
+	 * in the specified environment.  Each record is written 
+	 * as the index of f in the log map, the label of v, and the 
+	 * indices of the atoms bound to f's free variables, so its
+	 * length is determined by its first int.
 	 * @requires some this.transforms.f
 	 * @ensures this.records' = this.records + this.transforms.f -> translation -> freeVariables(f)<:env
 	 * @throws IllegalArgumentException  no this.transforms.f
@@ -167,6 +178,7 @@ final class FileLogger extends TranslationLogger {
 		} catch (IOException e) {
 			throw new RuntimeException(e);
 		}
+		size++;
 	}
 
 	/**
@@ -174,7 +186,7 @@ final class FileLogger extends TranslationLogger {
 	 */
 	@Override
 	TranslationLog log() {
-		return new FileLog(annotated, logMap, file, bounds);
+		return new FileLog(annotated, logMap, file, bounds, size);
 	}
 	
 	/**
@@ -185,7 +197,12 @@ final class FileLogger extends TranslationLogger {
 	}
 
 	/**
-	 * A file-based translation log, written by a FileLogger.
+	 * A file-based translation log, written by a FileLogger.  The log file 
+	 * is memory-mapped on the first replay, when the offsets of its records are 
+	 * also recorded.  Replays with a {@linkplain VariableFilter}
+	 * go through an index from variables to the records whose literals they label, 
+	 * which is also built on demand, so they read only the candidate records rather
+	 * than the whole file.
 	 * @author Emina Torlak
 	 */
 	private static final class FileLog extends TranslationLog {
@@ -195,22 +212,33 @@ final class FileLogger extends TranslationLogger {
 	    private final Variable[][] freeVars;
 	    private final File file;
 	    private final Bounds bounds;
+	    private final int size;
+	    private ByteBuffer[] segments;
+	    /* The record at position i starts at offsets[i] in segments[j], where
+	     * j is the last segment such that firsts[j] <= i. */
+	    private int[] firsts, offsets;
+	    /* The records whose literals are labeled by the variable v are 
+	     * records[starts[v]..starts[v+1]), in the increasing order of positions.
+	     * The records whose literals are constants are stored in constants. */
+	    private int[] starts, records, constants;
 	   
 	    /**
 	     * Constructs a new file log for the sources of the given annotated formula,
 	     * using the provided fixed map, file, and tuplefactory.
 	     * @requires all f: annotated.node.*children & Formula | logMap.get(f) = freeVariables(f)
 	     * @requires the file was written by a FileLogger using the given map
+	     * @requires the file contains the given number of records
 	     */
-	    FileLog(AnnotatedNode<Formula> annotated, FixedMap<Formula, Variable[]> logMap, File file, Bounds bounds) {
+	    FileLog(AnnotatedNode<Formula> annotated, FixedMap<Formula, Variable[]> logMap, File file, Bounds bounds, int size) {
 	    	this.file = file;
 	    	this.bounds = bounds;
 	    	this.roots = Nodes.conjuncts(annotated.node());
+	    	this.size = size;
 	    	
-	    	final int size = logMap.entrySet().size();
-	    	this.original = new Node[size];
-	    	this.translated = new Formula[size];
-	    	this.freeVars = new Variable[size][];
+	    	final int mapSize = logMap.entrySet().size();
+	    	this.original = new Node[mapSize];
+	    	this.translated = new Formula[mapSize];
+	    	this.freeVars = new Variable[mapSize][];
 	    	int index = 0;
 	    	for(Map.Entry<Formula, Variable[]> e : logMap.entrySet()) {
 	    		translated[index] = e.getKey();
@@ -240,69 +268,191 @@ final class FileLogger extends TranslationLogger {
 	     */
 	    public Bounds bounds() { return bounds; }
 	    
+	    /**
+	     * Maps the log file into memory, if it has not been mapped already, 
+	     * and returns the mapped segments.  Each segment holds whole records, 
+	     * and their offsets are recorded in this.firsts and this.offsets.
+	     * @return the memory-mapped segments of the log file
+	     */
+	    private synchronized ByteBuffer[] segments() { 
+	    	if (segments==null) { 
+	    		try {
+	    			final RandomAccessFile raf = new RandomAccessFile(file, "r");
+	    			try { 
+	    				final FileChannel channel = raf.getChannel();
+	    				final long length = channel.size();
+	    				final List<ByteBuffer> mapped = new ArrayList<ByteBuffer>();
+	    				final List<Integer> firsts = new ArrayList<Integer>();
+	    				final int[] offsets = new int[size];
+	    				ByteBuffer segment = null;
+	    				long base = 0, pos = 0;
+	    				for(int i = 0; i < size; i++) { 
+	    					if (segment==null || pos + 8 > base + segment.capacity() || 
+	    						pos + recordLength(segment.getInt((int)(pos - base))) > base + segment.capacity()) { 
+	    						base = pos;
+	    						segment = channel.map(FileChannel.MapMode.READ_ONLY, base, StrictMath.min(Integer.MAX_VALUE, length - base));
+	    						mapped.add(segment);
+	    						firsts.add(i);
+	    					}
+	    					offsets[i] = (int)(pos - base);
+	    					pos += recordLength(segment.getInt(offsets[i]));
+	    				}
+	    				final int[] starts = new int[firsts.size()];
+	    				for(int j = 0; j < starts.length; j++) { 
+	    					starts[j] = firsts.get(j);
+	    				}
+	    				this.firsts = starts;
+	    				this.offsets = offsets;
+	    				segments = mapped.toArray(new ByteBuffer[mapped.size()]);
+	    			} finally { 
+	    				raf.close();
+	    			}
+	    		} catch (IOException e) {
+	    			throw new RuntimeException(e);
+	    		}
+	    	}
+	    	return segments;
+	    }
+	    
+	    /**
+	     * Returns the length, in bytes, of a record for the formula with the given index.
+	     * @return (2 + #this.freeVars[index]) * 4
+	     */
+	    private int recordLength(int index) { 
+	    	return (2 + freeVars[index].length) << 2;
+	    }
+	    
+	    /**
+	     * Returns the index of the segment that holds the record at the given position.
+	     * @requires this.segments != null && 0 <= record < this.size
+	     * @return the index of the segment that holds the record at the given position
+	     */
+	    private int segmentOf(int record) { 
+	    	if (firsts.length==1) return 0;
+	    	final int pos = Arrays.binarySearch(firsts, record);
+	    	return pos >= 0 ? pos : -pos - 2;
+	    }
+	    
+	    /**
+	     * Returns the literal of the record at the given position.
+	     * @requires this.segments != null && 0 <= record < this.size
+	     * @return the literal of the record at the given position
+	     */
+	    private int literal(int record) { 
+	    	return segments[segmentOf(record)].getInt(offsets[record] + 4);
+	    }
+	    
+	    /**
+	     * Builds the variable-to-record index for this log, if it has not been built already.
+	     * @ensures this.starts, this.records and this.constants index the records in this log 
+	     * by the variables that label their literals
+	     */
+	    private synchronized void index() { 
+	    	if (starts!=null) return;
+	    	segments();
+	    	int maxVar = 0, constCount = 0;
+	    	for(int i = 0; i < size; i++) {
+	    		final int var = StrictMath.abs(literal(i));
+	    		if (var==Integer.MAX_VALUE) constCount++;
+	    		else maxVar = StrictMath.max(maxVar, var);
+	    	}
+	    	final int[] starts = new int[maxVar + 2];
+	    	final int[] records = new int[size - constCount];
+	    	final int[] constants = new int[constCount];
+	    	for(int i = 0; i < size; i++) {
+	    		final int var = StrictMath.abs(literal(i));
+	    		if (var!=Integer.MAX_VALUE) starts[var+1]++;
+	    	}
+	    	for(int v = 1; v < starts.length; v++) { 
+	    		starts[v] += starts[v-1];
+	    	}
+	    	final int[] next = starts.clone();
+	    	for(int i = 0, c = 0; i < size; i++) {
+	    		final int var = StrictMath.abs(literal(i));
+	    		if (var==Integer.MAX_VALUE) constants[c++] = i;
+	    		else records[next[var]++] = i;
+	    	}
+	    	this.records = records;
+	    	this.constants = constants;
+	    	this.starts = starts;
+	    }
+	    
+	    /**
+	     * Returns the positions of the records whose literals are labeled by 
+	     * the given variables, in the increasing order.
+	     * @return positions of the records whose literals are labeled by 
+	     * the given variables, in the increasing order
+	     */
+	    private int[] lookup(IntSet vars) { 
+	    	index();
+	    	int count = 0;
+	    	for(IntIterator itr = vars.iterator(); itr.hasNext(); ) { 
+	    		final int var = itr.next();
+	    		if (var==Integer.MAX_VALUE) count += constants.length;
+	    		else if (var > 0 && var < starts.length - 1) count += starts[var+1] - starts[var];
+	    	}
+	    	final int[] ret = new int[count];
+	    	int pos = 0;
+	    	for(IntIterator itr = vars.iterator(); itr.hasNext(); ) { 
+	    		final int var = itr.next();
+	    		if (var==Integer.MAX_VALUE) { 
+	    			System.arraycopy(constants, 0, ret, pos, constants.length);
+	    			pos += constants.length;
+	    		} else if (var > 0 && var < starts.length - 1) {
+	    			final int length = starts[var+1] - starts[var];
+	    			System.arraycopy(records, starts[var], ret, pos, length);
+	    			pos += length;
+	    		}
+	    	}
+	    	Arrays.sort(ret);
+	    	return ret;
+	    }
+	    
 		/**
 		 * {@inheritDoc}
 		 * @see kodkod.engine.fol2sat.TranslationLog#replay(kodkod.engine.fol2sat.RecordFilter)
 		 */
 		public Iterator<TranslationRecord> replay(final RecordFilter filter) {
-			try {	
-				return new Iterator<TranslationRecord>() {
-					final TupleFactory factory = bounds.universe().factory();
-					final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
-					final MutableRecord current = new MutableRecord(), next = new MutableRecord();
-					long remaining = file.length();
-								
-					public boolean hasNext() {
-						while(remaining > 0 && next.node == null) {
-							try {
-								final long indexLiteral = in.readLong();
-								final int literal = (int) (indexLiteral);
-								final int index = (int) (indexLiteral>>>32);
-								final Variable[] freeVars = FileLog.this.freeVars[index];
-								final Map<Variable,TupleSet> env;
-								if (freeVars.length==0) {
-									env = Collections.emptyMap();
-								} else {
-									env = new FixedMap<Variable,TupleSet>(freeVars);
-									for(int i = 0; i < freeVars.length; i++) {
-										env.put(freeVars[i], factory.setOf(1, Ints.singleton(in.readInt())));
-									}
-								}
-								if (filter.accept(original[index], translated[index], literal, env)) {
-									next.setAll(original[index], translated[index], literal, env);
-								}
-								remaining -= (8 + (freeVars.length << 2));
-								
-							} catch (IOException e) {
-								throw new RuntimeException(e);
+			final ByteBuffer[] segments = segments();
+			final int[] positions = (filter instanceof VariableFilter) ? lookup(((VariableFilter)filter).variables()) : null;
+			return new Iterator<TranslationRecord>() {
+				final TupleFactory factory = bounds.universe().factory();
+				final MutableRecord current = new MutableRecord(), next = new MutableRecord();
+				final int end = positions==null ? size : positions.length;
+				int cursor = 0;
+							
+				public boolean hasNext() {
+					while(cursor < end && next.node == null) {
+						final int record = positions==null ? cursor : positions[cursor];
+						cursor++;
+						final ByteBuffer segment = segments[segmentOf(record)];
+						final int offset = offsets[record];
+						final int index = segment.getInt(offset);
+						final int literal = segment.getInt(offset + 4);
+						final Variable[] freeVars = FileLog.this.freeVars[index];
+						final Map<Variable,TupleSet> env;
+						if (freeVars.length==0) {
+							env = Collections.emptyMap();
+						} else {
+							env = new FixedMap<Variable,TupleSet>(freeVars);
+							for(int i = 0; i < freeVars.length; i++) {
+								env.put(freeVars[i], factory.setOf(1, Ints.singleton(segment.getInt(offset + 8 + (i << 2)))));
 							}
 						}
-						if (next.node==null) {
-							try {
-								in.close();
-							} catch (IOException e) {
-								throw new RuntimeException(e);
-							}
-							return false;
-						} else {
-							return true;
+						if (filter.accept(original[index], translated[index], literal, env)) {
+							next.setAll(original[index], translated[index], literal, env);
 						}
 					}
+					return next.node != null;
+				}
 
-					public TranslationRecord next() {
-						if (!hasNext()) throw new NoSuchElementException();
-						return current.setAll(next);
-					}
+				public TranslationRecord next() {
+					if (!hasNext()) throw new NoSuchElementException();
+					return current.setAll(next);
+				}
 
-					public void remove() {	throw new UnsupportedOperationException(); }
-					
-					protected final void finalize() {
-						try { in.close(); } catch (IOException e) { /* unused */ }
-					}
-				};
-			} catch (FileNotFoundException e) {
-				throw new RuntimeException(e);
-			}	
+				public void remove() {	throw new UnsupportedOperationException(); }
+			};
 		}		
 	}
 	
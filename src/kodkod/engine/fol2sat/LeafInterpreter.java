@@ -41,6 +41,8 @@ import kodkod.util.ints.IntIterator;
 import kodkod.util.ints.IntRange;
 import kodkod.util.ints.IntSet;
 import kodkod.util.ints.Ints;
+import kodkod.util.ints.LongIterator;
+import kodkod.util.ints.LongSet;
 import kodkod.util.ints.SparseSequence;
 
 /** 
@@ -177,6 +179,18 @@ final class LeafInterpreter {
 		return maxLit - minVar;
 	}
 	
+	/**
+	 * Returns an interpreter with the same bindings as this one, whose factory is a
+	 * {@linkplain BooleanFactory#fork() fork} of this.factory.  The returned interpreter
+	 * can be used concurrently with this one, as long as neither is extended.
+	 * @return some l: LeafInterpreter | l.universe = this.universe && l.relations = this.relations && 
+	 *           l.ints = this.ints && l.lbounds = this.lbounds && l.ubounds = this.ubounds && 
+	 *           l.ibounds = this.ibounds && l.vars = this.vars && l.factory = this.factory.fork()
+	 */
+	final LeafInterpreter fork() {
+		return new LeafInterpreter(universe, lowers, uppers, ints, factory.fork(), vars);
+	}
+	
 	/**
 	 * Returns this.factory.
 	 * @return this.factory.
@@ -257,10 +271,13 @@ final class LeafInterpreter {
 	public final BooleanMatrix interpret(Relation r) {
 		if (!lowers.containsKey(r))
 			throw new UnboundLeafException("Unbound relation: ", r);
+		final Dimensions dims = Dimensions.square(universe().size(), r.arity());
+		if (dims.isLongIndexed()) 
+			return interpretLong(r, dims);
 		final IntSet lowerBound = lowers.get(r).indexView();
 		final IntSet upperBound = uppers.get(r).indexView();
 		
-		final BooleanMatrix m = factory.matrix(Dimensions.square(universe().size(), r.arity()), upperBound, lowerBound);
+		final BooleanMatrix m = factory.matrix(dims, upperBound, lowerBound);
 		
 		if (upperBound.size() > lowerBound.size()) {
 			int varId = vars.get(r).min();
@@ -273,6 +290,30 @@ final class LeafInterpreter {
 		return m;
 	}
 	
+	/**
+	 * Returns the interpretation of the given relation, whose dimensions are 
+	 * too large to be indexed with ints.
+	 * @requires r in this.relations && dims = Dimensions.square(this.universe.size(), r.arity())
+	 * @requires dims.isLongIndexed()
+	 * @return this.interpret(r)
+	 */
+	private BooleanMatrix interpretLong(Relation r, Dimensions dims) {
+		final LongSet lowerBound = lowers.get(r).longIndexView();
+		final LongSet upperBound = uppers.get(r).longIndexView();
+		
+		final BooleanMatrix m = factory.matrix(dims, lowerBound);
+		
+		if (upperBound.size() > lowerBound.size()) {
+			int varId = vars.get(r).min();
+			for (LongIterator indeces = upperBound.iterator(); indeces.hasNext();) {
+				long tupleIndex = indeces.next();
+				if (!lowerBound.contains(tupleIndex))  
+					m.set(tupleIndex, factory.variable(varId++));
+			}
+		}
+		return m;
+	}
+	
 	/**
 	 * Returns a {@link kodkod.engine.bool.BooleanMatrix matrix} m of 
 	 * {@link kodkod.engine.bool.BooleanValue boolean formulas} representing
@@ -64,6 +64,7 @@ import kodkod.engine.bool.BooleanMatrix;
 import kodkod.engine.config.Options;
 import kodkod.engine.config.Reporter;
 import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
 import kodkod.instance.TupleSet;
 import kodkod.util.nodes.AnnotatedNode;
 
@@ -349,7 +350,9 @@ abstract class Skolemizer extends AbstractReplacer {
 			matrixBound = nonSkolems.get(i).upperBound.cross(matrixBound);
 		}
 
-		final TupleSet skolemBound = bounds.universe().factory().setOf(arity, matrixBound.denseIndices());
+		final TupleFactory f = bounds.universe().factory();
+		final TupleSet skolemBound = matrixBound.dimensions().isLongIndexed() ? 
+				f.setOf(arity, matrixBound.longDenseIndices()) : f.setOf(arity, matrixBound.denseIndices());
 		bounds.bound(skolem, skolemBound);
 
 		return skolemExpr;
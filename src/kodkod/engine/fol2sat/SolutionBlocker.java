@@ -0,0 +1,349 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.fol2sat;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import kodkod.ast.Relation;
+import kodkod.engine.bool.BooleanFormula;
+import kodkod.engine.bool.Operator;
+import kodkod.engine.config.Options.Blocking;
+import kodkod.engine.satlab.SATSolver;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleSet;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+
+/**
+ * Computes the clauses that eliminate the current model of a whole translation
+ * from its solver, as specified by the translation's {@linkplain Blocking blocking} option.
+ *
+ * <p>An implicant of the translated circuit is a set of primary literals whose every
+ * completion satisfies the circuit.  The implicant of a model is computed by justifying the
+ * value of each gate from the root down:  a gate whose value is determined by one of its inputs
+ * (such as a false conjunction) is justified by one such input, preferably one that is already
+ * part of the justification, and all other gates are justified by all of their inputs.  The
+ * resulting implicant is not necessarily minimal, but it omits the literals that the model
+ * does not need to satisfy the circuit.</p>
+ *
+ * <p>The orbit of an implicant is the set of its images under the permutations of
+ * atoms that preserve the translation's bounds:  the permutations of each symmetry class
+ * of the bounds, and the {@linkplain AutomorphismDetector automorphisms} that exchange atoms of
+ * different singleton classes.  At most {@value #MAX_IMAGES} images are blocked for each model.</p>
+ *
+ * @specfield translation: Translation.Whole
+ * @specfield circuit: BooleanFormula // translation of translation.originalFormula, or null if not available
+ */
+final class SolutionBlocker {
+	/* the maximum number of images of an implicant that will be blocked */
+	static final int MAX_IMAGES = 256;
+
+	private final Translation.Whole translation;
+	private final BooleanFormula circuit;
+	private final int maxPrimaryVar;
+
+	/* lazily computed data for orbit blocking */
+	private List<int[]> generators;
+	private int usize;
+	private int[] owner;          // owner[v] is the index of the relation that owns the primary variable v
+	private int[] arities, mins;  // the arity and the least primary variable of each relation
+	private int[][] tuples;       // tuples[i] holds the indices of the tuples in upper-lower of the ith relation, in order
+
+	/**
+	 * Constructs a solution blocker for the given translation and circuit.
+	 * @ensures this.translation' = translation && this.circuit' = circuit
+	 */
+	SolutionBlocker(Translation.Whole translation, BooleanFormula circuit) {
+		this.translation = translation;
+		this.circuit = circuit;
+		this.maxPrimaryVar = translation.numPrimaryVariables();
+	}
+
+	/**
+	 * Returns the clauses that eliminate the current model of this.translation.cnf
+	 * as specified by this.translation.options.blocking.  If this.circuit is null,
+	 * the implicant of the current model is the model itself.
+	 * @requires this.translation.cnf.solve() has returned true, and no clauses have been added since
+	 * @return this.translation.options.blocking = MODEL || no this.circuit =>
+	 *          { the negation of the current model },
+	 *         this.translation.options.blocking = IMPLICANT =>
+	 *          { the negation of an implicant of the current model },
+	 *         { the negations of the images of an implicant of the current model }
+	 */
+	List<int[]> blockingClauses() {
+		final Blocking blocking = translation.options().blocking();
+		final SATSolver cnf = translation.cnf();
+		final int[] implicant;
+		if (blocking==Blocking.MODEL || circuit==null) {
+			implicant = new int[maxPrimaryVar];
+			for(int i = 1; i <= maxPrimaryVar; i++) {
+				implicant[i-1] = cnf.valueOf(i) ? i : -i;
+			}
+		} else {
+			implicant = new Justifier(cnf).justify(circuit);
+		}
+		final int[] clause = new int[implicant.length];
+		for(int i = 0; i < implicant.length; i++) {
+			clause[i] = -implicant[i];
+		}
+		return blocking==Blocking.ORBIT ? orbit(clause) : Collections.singletonList(clause);
+	}
+
+	/**
+	 * Returns the images of the given clause under the permutations of atoms that preserve
+	 * this.translation.bounds, starting with the clause itself.
+	 * @return the first MAX_IMAGES images of the given clause, in breadth-first order
+	 */
+	private List<int[]> orbit(int[] clause) {
+		if (generators==null) generators();
+		final List<int[]> images = new ArrayList<int[]>();
+		images.add(clause);
+		if (generators.isEmpty()) return images;
+
+		final Set<Image> seen = new HashSet<Image>();
+		seen.add(new Image(clause));
+		for(int i = 0; i < images.size() && images.size() < MAX_IMAGES; i++) {
+			final int[] image = images.get(i);
+			for(int[] perm : generators) {
+				final int[] next = new int[image.length];
+				for(int j = 0; j < image.length; j++) {
+					final int lit = image[j];
+					next[j] = lit < 0 ? -permute(-lit, perm) : permute(lit, perm);
+				}
+				if (seen.add(new Image(next))) {
+					images.add(next);
+					if (images.size()==MAX_IMAGES) break;
+				}
+			}
+		}
+		return images;
+	}
+
+	/**
+	 * Returns the primary variable to which the given permutation of atoms maps the given variable.
+	 * @requires perm preserves this.translation.bounds
+	 * @return the primary variable to which the given permutation of atoms maps the given variable.
+	 */
+	private int permute(int var, int[] perm) {
+		final int rel = owner[var];
+		int image = 0;
+		for(int i = arities[rel]-1, tuple = tuples[rel][var-mins[rel]], u = 1; i >= 0; i--, tuple /= usize, u *= usize) {
+			image += perm[tuple % usize] * u;
+		}
+		return mins[rel] + Arrays.binarySearch(tuples[rel], image);
+	}
+
+	/**
+	 * Computes the generators of the permutations that preserve this.translation.bounds,
+	 * as well as the map from primary variables to tuples.
+	 * @ensures this.generators' = the transpositions of consecutive atoms in each symmetry class of this.translation.bounds +
+	 *                              AutomorphismDetector.generators(this.translation.bounds, partition(this.translation.bounds))
+	 */
+	private void generators() {
+		final Bounds bounds = translation.bounds();
+		final Set<IntSet> symmetries = SymmetryDetector.partition(bounds);
+		this.usize = bounds.universe().size();
+		this.generators = new ArrayList<int[]>();
+		for(IntSet sym : symmetries) {
+			final IntIterator atoms = sym.iterator();
+			for(int prev = atoms.next(); atoms.hasNext(); ) {
+				final int cur = atoms.next();
+				final int[] perm = identity(usize);
+				perm[prev] = cur;
+				perm[cur] = prev;
+				generators.add(perm);
+				prev = cur;
+			}
+		}
+		generators.addAll(AutomorphismDetector.generators(bounds, symmetries));
+		if (generators.isEmpty()) return;
+
+		final List<Relation> relations = new ArrayList<Relation>();
+		for(Relation r : bounds.relations()) {
+			if (!translation.primaryVariables(r).isEmpty()) {
+				if (bounds.upperBound(r).isLongIndexed()) {
+					generators.clear();
+					return;
+				}
+				relations.add(r);
+			}
+		}
+		this.owner = new int[maxPrimaryVar+1];
+		this.arities = new int[relations.size()];
+		this.mins = new int[relations.size()];
+		this.tuples = new int[relations.size()][];
+		for(int i = 0; i < arities.length; i++) {
+			final Relation r = relations.get(i);
+			final IntSet vars = translation.primaryVariables(r);
+			final TupleSet free = bounds.upperBound(r).clone();
+			free.removeAll(bounds.lowerBound(r));
+			arities[i] = r.arity();
+			mins[i] = vars.min();
+			tuples[i] = free.indexView().toArray();
+			for(IntIterator iter = vars.iterator(); iter.hasNext(); ) {
+				owner[iter.next()] = i;
+			}
+		}
+	}
+
+	/**
+	 * Returns the identity permutation of [0..size).
+	 */
+	private static int[] identity(int size) {
+		final int[] perm = new int[size];
+		for(int i = 0; i < size; i++) { perm[i] = i; }
+		return perm;
+	}
+
+	/**
+	 * A clause, compared by its set of literals.
+	 */
+	private static final class Image {
+		private final int[] literals;
+
+		Image(int[] clause) {
+			this.literals = clause.clone();
+			Arrays.sort(literals);
+		}
+
+		public boolean equals(Object o) {
+			return o instanceof Image && Arrays.equals(literals, ((Image) o).literals);
+		}
+
+		public int hashCode() { return Arrays.hashCode(literals); }
+	}
+
+	/**
+	 * Computes an implicant of a circuit that is consistent with the current model of a solver.
+	 */
+	private static final class Justifier {
+		private final SATSolver cnf;
+		/* values[l] is 0 if the formula with label l has not been evaluated, 1 if it is false, and 2 if it is true */
+		private byte[] values;
+		/* justified[l] is true if the formula with label l has been justified */
+		private boolean[] justified;
+		private final List<Integer> implicant = new ArrayList<Integer>();
+
+		Justifier(SATSolver cnf) {
+			this.cnf = cnf;
+		}
+
+		/**
+		 * Returns an implicant of the given circuit that is consistent with the current model of this.cnf.
+		 * @requires the current model of this.cnf satisfies the given circuit
+		 * @return an implicant of the given circuit that is consistent with the current model of this.cnf
+		 */
+		int[] justify(BooleanFormula circuit) {
+			final int size = StrictMath.abs(circuit.label())+1;
+			this.values = new byte[size];
+			this.justified = new boolean[size];
+			justify(circuit, true);
+			final int[] result = new int[implicant.size()];
+			for(int i = 0; i < result.length; i++) {
+				result[i] = implicant.get(i);
+			}
+			return result;
+		}
+
+		/**
+		 * Returns the value of the given formula in the current model of this.cnf.
+		 */
+		private boolean value(BooleanFormula f) {
+			final int label = f.label();
+			if (label < 0) return !value(f.input(0));
+			if (values[label]==0) {
+				final boolean value;
+				final Operator op = f.op();
+				if (op==Operator.VAR) {
+					value = cnf.valueOf(label);
+				} else if (op==Operator.ITE) {
+					value = value(f.input(0)) ? value(f.input(1)) : value(f.input(2));
+				} else {
+					final boolean and = op==Operator.AND;
+					boolean v = and;
+					for(BooleanFormula input : f) {
+						if (value(input)!=and) {
+							v = !and;
+							break;
+						}
+					}
+					value = v;
+				}
+				values[label] = (byte) (value ? 2 : 1);
+			}
+			return values[label]==2;
+		}
+
+		/**
+		 * Returns true if the given formula is a variable or the negation of a variable.
+		 */
+		private static boolean literal(BooleanFormula f) {
+			return f.op()==Operator.VAR || (f.label() < 0 && f.input(0).op()==Operator.VAR);
+		}
+
+		/**
+		 * Adds to this.implicant the primary literals that justify the given value of the given formula.
+		 * @requires value(f) = value
+		 */
+		private void justify(BooleanFormula f, boolean value) {
+			final int label = f.label();
+			if (label < 0) {
+				justify(f.input(0), !value);
+				return;
+			}
+			if (justified[label]) return;
+			justified[label] = true;
+			final Operator op = f.op();
+			if (op==Operator.VAR) {
+				implicant.add(value ? label : -label);
+			} else if (op==Operator.ITE) {
+				final boolean cond = value(f.input(0));
+				justify(f.input(0), cond);
+				justify(f.input(cond ? 1 : 2), value);
+			} else if (value==(op==Operator.AND)) {
+				// a true conjunction or a false disjunction needs all of its inputs
+				for(BooleanFormula input : f) {
+					justify(input, value);
+				}
+			} else {
+				// a false conjunction or a true disjunction needs one input with the same value
+				BooleanFormula choice = null;
+				for(BooleanFormula input : f) {
+					if (value(input)==value) {
+						if (justified[StrictMath.abs(input.label())]) {
+							choice = input;
+							break;
+						}
+						if (choice==null || (!literal(choice) && literal(input)))
+							choice = input;
+					}
+				}
+				justify(choice, value);
+			}
+		}
+	}
+}
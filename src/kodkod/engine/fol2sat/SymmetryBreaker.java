@@ -30,6 +30,7 @@ import java.util.Collections;
 import java.util.Comparator;
 import java.util.IdentityHashMap;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -45,6 +46,7 @@ import kodkod.engine.bool.BooleanMatrix;
 import kodkod.engine.bool.BooleanValue;
 import kodkod.engine.bool.Operator;
 import kodkod.engine.config.Options;
+import kodkod.engine.config.Options.SymmetryPredicate;
 import kodkod.engine.config.Reporter;
 import kodkod.instance.Bounds;
 import kodkod.instance.TupleFactory;
@@ -56,7 +58,8 @@ import kodkod.util.ints.Ints;
 /**
  * Breaks symmetries for a given problem.  Symmetries
  * are broken for total orders, acyclic relations, and 
- * via a generic lex-leader predicate.
+ * via a generic lex-leader predicate, which may also cover
+ * automorphisms of the bounds found by the {@link AutomorphismDetector}.
  * 
  * @specfield bounds: Bounds // problem bounds
  * @specfield symmetries: set IntSet 
@@ -87,6 +90,14 @@ final class SymmetryBreaker {
 //		System.out.println(symmetries);
 	}
 	
+	/**
+	 * Returns a copy of this.symmetries.
+	 * @return a copy of this.symmetries
+	 */
+	Set<IntSet> symmetries() { 
+		return new LinkedHashSet<IntSet>(symmetries);
+	}
+	
 	/**
 	 * Breaks matrix symmetries on the relations in this.bounds that are constrained by  
 	 * the total ordering and acyclic predicates, drawn from preds.values(), that make up the 
@@ -153,6 +164,10 @@ final class SymmetryBreaker {
 	/**
 	 * Generates a lex leader symmetry breaking predicate for this.symmetries 
 	 * (if any), using the specified leaf interpreter and options.symmetryBreaking.
+	 * The predicate is encoded as specified by options.symmetryPredicate; in particular, 
+	 * if options.symmetryPredicate is AUTOMORPHISMS, the predicate also breaks the 
+	 * {@linkplain AutomorphismDetector automorphisms} of this.bounds that exchange atoms 
+	 * of different singleton classes in this.symmetries.
 	 * It also invokes options.reporter().generatingSBP() if a non-constant predicate
 	 * is generated.
 	 * @requires interpreter.relations in this.bounds.relations
@@ -162,8 +177,12 @@ final class SymmetryBreaker {
 	final BooleanValue generateSBP(LeafInterpreter interpreter, Options options) {
 		final int predLength = options.symmetryBreaking();
 		if (symmetries.isEmpty() || predLength==0) return BooleanConstant.TRUE;
+		final List<int[]> automorphisms = options.symmetryPredicate()==SymmetryPredicate.AUTOMORPHISMS ? 
+				AutomorphismDetector.generators(bounds, symmetries) : Collections.<int[]>emptyList();
+		if (symmetries.size()==usize && automorphisms.isEmpty()) return BooleanConstant.TRUE; // only trivial symmetries
 		options.reporter().generatingSBP();
 		
+		final boolean compact = options.symmetryPredicate()!=SymmetryPredicate.LEX_LEADER;
 		final List<RelationParts> relParts = relParts();
 		final BooleanFactory factory = interpreter.factory();
 		final BooleanAccumulator sbp = BooleanAccumulator.treeGate(Operator.AND);
@@ -194,12 +213,32 @@ final class SymmetryBreaker {
 					}
 				}
 								
-				sbp.add(leq(factory, original, permuted));
+				sbp.add(compact ? compactLeq(factory, original, permuted) : leq(factory, original, permuted));
 				original.clear();
 				permuted.clear();
 				prevIndex = curIndex;
 			}
 		}
+		
+		// the automorphisms are compared over the same ordering of primary variables as the transpositions
+		for(int[] perm : automorphisms) {
+			for(Iterator<RelationParts> rIter = relParts.iterator(); rIter.hasNext() && original.size() < predLength;) {
+				Relation r = rIter.next().relation;
+				BooleanMatrix m = interpreter.interpret(r);
+				for(IndexedEntry<BooleanValue> entry : m) {
+					int permIndex = permutation(r.arity(), entry.index(), perm);
+					BooleanValue permValue = m.get(permIndex);
+					if (permIndex==entry.index() || atSameIndex(original, permValue, permuted, entry.value()))
+						continue;
+					
+					original.add(entry.value());
+					permuted.add(permValue);
+				}
+			}
+			sbp.add(compactLeq(factory, original, permuted));
+			original.clear();
+			permuted.clear();
+		}
 		symmetries.clear(); // no symmetries left to break (this is conservative)
 		return factory.accumulate(sbp);
 	}
@@ -256,6 +295,27 @@ final class SymmetryBreaker {
 		return f.accumulate(cmp);
 	}
 	
+	/**
+	 * Returns a BooleanValue that is true iff the string of bits
+	 * represented by l0 is lexicographically less than or equal
+	 * to the string of bits reprented by l1.  The circuit is 
+	 * equivalent to {@linkplain #leq(BooleanFactory, List, List) leq(f, l0, l1)}, 
+	 * but it encodes the equality of the ith bits as l0[i] || !l1[i], which
+	 * is implied by l0[i] = l1[i] and implies it whenever l0[i] => l1[i]. 
+	 * @requires l0.size()==l1.size()
+	 * @return a circuit that compares l0 and l1
+	 */
+	private static final BooleanValue compactLeq(BooleanFactory f, List<BooleanValue> l0, List<BooleanValue> l1) {
+		final BooleanAccumulator cmp = BooleanAccumulator.treeGate(Operator.AND);
+		BooleanValue prevEquals = BooleanConstant.TRUE;
+		for(int i = 0, last = l0.size()-1; i <= last; i++) {
+			cmp.add(f.implies(prevEquals, f.implies(l0.get(i), l1.get(i))));
+			if (i < last) 
+				prevEquals = f.and(prevEquals, f.or(l0.get(i), f.not(l1.get(i))));
+		}
+		return f.accumulate(cmp);
+	}
+	
 	/**
 	 * Let t be the tuple represent by the given arity and tupleIndex.
 	 * This method returns the tuple index of the tuple t' such t'
@@ -279,6 +339,22 @@ final class SymmetryBreaker {
 		return permIndex;
 	}
 	
+	/**
+	 * Let t be the tuple represent by the given arity and tupleIndex.
+	 * This method returns the tuple index of the tuple t' such t'
+	 * is equal to t with each atom a replaced by perm[a].
+	 * @requires perm is a permutation of [0..this.usize)
+	 * @return the index of the tuple to which the given permutation
+	 * maps the tuple specified by arity and tupleIndex
+	 */
+	private final int permutation(int arity, int tupleIndex, int[] perm) {
+		int permIndex = 0;
+		for(int u = 1; arity > 0; arity--, tupleIndex /= usize, u *= usize ) {
+			permIndex += perm[tupleIndex%usize] * u;
+		}
+		return permIndex;
+	}
+	
 	/**
 	 * Returns true if there is some index i such that l0[i] = v0 and l1[i] = v1.
 	 * @requires l0.size()=l1.size()
@@ -386,7 +462,7 @@ final class SymmetryBreaker {
 		final Relation first = total.first(), last = total.last(), ordered = total.ordered(), relation = total.relation();
 		final IntSet domain = bounds.upperBound(ordered).indexView();		
 	
-		if (symmetricColumnPartitions(ordered)!=null && 
+		if (symmetricColumnPartitions(ordered)!=null && !bounds.upperBound(relation).isLongIndexed() && 
 			bounds.upperBound(first).indexView().contains(domain.min()) && 
 			bounds.upperBound(last).indexView().contains(domain.max())) {
 			
@@ -458,6 +534,7 @@ final class SymmetryBreaker {
 	 *         null
 	 */
 	private final IntSet[] symmetricColumnPartitions(Relation r) {
+		if (bounds.upperBound(r).isLongIndexed()) return null;
 		final IntSet upper = bounds.upperBound(r).indexView();
 		if (upper.isEmpty()) return null;
 		
@@ -122,11 +122,27 @@ public final class SymmetryDetector {
 		// refine the partitions based on the upper/lower bounds for each relation
 		for(TupleSet s : sort(bounds)) {
 			if (parts.size()==usize) return;
+			if (s.isLongIndexed()) {
+				discretize();
+				return;
+			}
 			refinePartitions(s.indexView(), s.arity(), range2domain);			
 		}
 		
 	}
 	
+	/**
+	 * Refines this.parts into singletons.  This is the (trivially sound) partition used 
+	 * when some bound is too large to be indexed with ints.
+	 * @ensures this.parts' = { s: IntSet | one s.ints && s.ints in [0..this.bounds.universe.size()) }
+	 */
+	private void discretize() {
+		parts.clear();
+		for(int i = 0; i < usize; i++) { 
+			parts.add(oneOf(usize, i));
+		}
+	}
+	
 	/**
 	 * Returns an array that contains unique non-empty tuplesets in the given bounds, 
 	 * sorted in the order of increasing size.
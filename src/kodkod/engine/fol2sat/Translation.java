@@ -21,12 +21,15 @@
  */
 package kodkod.engine.fol2sat;
 
+import java.util.Collections;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.Stack;
 
 import kodkod.ast.Relation;
 import kodkod.engine.bool.BooleanConstant;
+import kodkod.engine.bool.BooleanFormula;
 import kodkod.engine.config.Options;
 import kodkod.engine.satlab.SATSolver;
 import kodkod.instance.Bounds;
@@ -37,6 +40,9 @@ import kodkod.util.ints.IndexedEntry;
 import kodkod.util.ints.IntIterator;
 import kodkod.util.ints.IntSet;
 import kodkod.util.ints.Ints;
+import kodkod.util.ints.LongIterator;
+import kodkod.util.ints.LongSet;
+import kodkod.util.ints.LongTreeSet;
 
 /**
  * Stores the translation of a Kodkod problem to CNF.  A problem consists of 
@@ -69,6 +75,7 @@ public abstract class Translation {
 
 	private final Bounds bounds;
 	private final Options options;
+	private long memoHits, memoMisses;
 	
 	/**
 	 * Creates a translation using the given bounds and options.   
@@ -93,6 +100,31 @@ public abstract class Translation {
 	 */
 	public final Options options() { return options; }
 	
+	/**
+	 * Returns the number of times that the translation of a shared or quantified 
+	 * subformula was reused, for the same binding of its free variables, while 
+	 * generating this translation (including any incremental updates).
+	 * @return number of translation cache hits during the generation of this
+	 */
+	public final long memoHits() { return memoHits; }
+	
+	/**
+	 * Returns the number of times that a shared or quantified subformula had to 
+	 * be translated because its translation was not cached for the current binding 
+	 * of its free variables, while generating this translation (including any incremental updates).
+	 * @return number of translation cache misses during the generation of this
+	 */
+	public final long memoMisses() { return memoMisses; }
+	
+	/**
+	 * Adds the given numbers of translation cache hits and misses to this translation.
+	 * @ensures this.memoHits' = this.memoHits + hits && this.memoMisses' = this.memoMisses + misses
+	 */
+	final void countMemo(long hits, long misses) {
+		this.memoHits += hits;
+		this.memoMisses += misses;
+	}
+	
 	/** 
 	 * Returns the set of primary variables that represent
 	 * the tuples in the given relation.  If no variables were allocated
@@ -167,6 +199,10 @@ public abstract class Translation {
 		}
 		for(Relation r : bounds.relations()) {
 			TupleSet lower = bounds.lowerBound(r);
+			if (lower.isLongIndexed()) {
+				instance.add(r, interpretLong(r, solver, f));
+				continue;
+			}
 			IntSet indices = Ints.bestSet(lower.capacity());
 			indices.addAll(lower.indexView());
 			IntSet vars = primaryVariables(r);
@@ -184,6 +220,26 @@ public abstract class Translation {
 		return instance;
 	}
 	
+	/**
+	 * Returns the value of the given relation, whose tuples are too 
+	 * numerous to be indexed with ints, in the current solution.
+	 * @requires this.bounds.lowerBound(r).isLongIndexed() && solver = this.cnf() && f = this.bounds.universe.factory
+	 * @return this.interpret().tuples(r)
+	 */
+	private TupleSet interpretLong(Relation r, SATSolver solver, TupleFactory f) {
+		final LongSet indices = new LongTreeSet(bounds.lowerBound(r).longIndexView());
+		final IntSet vars = primaryVariables(r);
+		if (!vars.isEmpty()) {
+			int lit = vars.min();
+			for(LongIterator iter = bounds.upperBound(r).longIndexView().iterator(); iter.hasNext();) {
+				final long index = iter.next();
+				if (!indices.contains(index) && solver.valueOf(lit++))
+					indices.add(index);
+			}
+		}
+		return f.setOf(r.arity(), indices);
+	}
+	
 	/**
 	 * A {@linkplain Whole whole} translation stores the complete CNF of encoding 
 	 * of a given problem.  Unlike an {@link Incremental incremental} translation, 
@@ -207,6 +263,8 @@ public abstract class Translation {
 		private final Map<Relation, IntSet> primaryVarUsage;
 		private final TranslationLog log;
 		private final int maxPrimaryVar;
+		private BooleanFormula circuit;
+		private SolutionBlocker blocker;
 		
 		/**
 		 * Creates a whole translation using the given bounds, options, solver, var map, and log.
@@ -219,11 +277,25 @@ public abstract class Translation {
 		 *          this.options' = options && this.log' = log && this.vars' = varUsage
 		 */
 		Whole(Bounds bounds, Options options, SATSolver solver, Map<Relation, IntSet> varUsage, int maxPrimaryVar, TranslationLog log) {
+			this(bounds, options, solver, varUsage, maxPrimaryVar, log, null);
+		}
+		
+		/**
+		 * Creates a whole translation using the given bounds, options, solver, var map, and log, 
+		 * which computes its {@linkplain #blockingClauses() blocking clauses} from the given circuit.
+		 * 
+		 * @requires circuit = null || the clauses of solver encode circuit 
+		 * @requires the remaining arguments are as specified by {@link #Whole(Bounds, Options, SATSolver, Map, int, TranslationLog)}
+		 * @ensures this.solver' = solver &&  this.bounds' = bounds &&
+		 *          this.options' = options && this.log' = log && this.vars' = varUsage
+		 */
+		Whole(Bounds bounds, Options options, SATSolver solver, Map<Relation, IntSet> varUsage, int maxPrimaryVar, TranslationLog log, BooleanFormula circuit) {
 			super(bounds, options);
 			this.solver = solver;
 			this.log = log;
 			this.maxPrimaryVar = maxPrimaryVar;
 			this.primaryVarUsage = varUsage;
+			this.circuit = circuit;
 		}
 
 		/**
@@ -256,6 +328,33 @@ public abstract class Translation {
 		 * @return translation log for this translation, if one was generated, or null otherwise 
 		 */
 		public TranslationLog log() { return log; }
+		
+		/**
+		 * Returns the circuit from which this translation was produced, if it is 
+		 * needed for computing blocking clauses and has not been handed to a blocker 
+		 * yet.  Otherwise returns null.
+		 * @return this.circuit
+		 */
+		BooleanFormula circuit() { return circuit; }
+		
+		/**
+		 * Returns the clauses that eliminate the current model of this.cnf, 
+		 * as specified by {@code this.options.blocking}.  If the circuit from which 
+		 * this translation was produced is not available (e.g. because the translation 
+		 * was loaded from a {@linkplain Options#translationCache() cache}), the clauses are 
+		 * computed as if the implicant of the current model was the model itself.
+		 * @requires this.cnf.solve() has returned true, and no clauses have been added since
+		 * @return the clauses that eliminate the current model of this.cnf, as 
+		 * specified by {@code this.options.blocking}
+		 * @see Options.Blocking
+		 */
+		public List<int[]> blockingClauses() {
+			if (blocker==null) {
+				blocker = new SolutionBlocker(this, circuit);
+				circuit = null; // held by the blocker
+			}
+			return blocker.blockingClauses();
+		}
 	}
 
 	/**
@@ -273,10 +372,22 @@ public abstract class Translation {
 	 * {@link Translator} class.
 	 * </p>
 	 * 
-	 * @specfield symmetries: set IntSet  // partition of the universe into equivalence classes induced this.originalBounds
+	 * <p>
+	 * The lex-leader symmetry breaking predicate of an incremental translation is guarded by a 
+	 * {@linkplain #sbpGuard() variable} that must be assumed true whenever {@linkplain #cnf() this.cnf} is solved.  
+	 * This lets the predicate be retracted and regenerated when the bounds of a later increment refine the 
+	 * equivalence classes that it was generated for.  The symmetries that were broken by tightening the bounds 
+	 * of totally ordered or acyclic relations cannot be retracted, so the bounds of later increments must 
+	 * not refine them.
+	 * </p>
+	 * 
+	 * @specfield symmetries: set IntSet  // equivalence classes whose symmetries were broken by tightening this.bounds
+	 * @specfield sbpSymmetries: set IntSet  // equivalence classes whose symmetries are broken by the guarded predicate
+	 * @specfield sbpGuard: int  // the guard of the symmetry breaking predicate, or 0 if there is no such predicate
 	 *
 	 * @invariant this.options.logTranslation = 0 && this.options.solver.incremental()
-	 * @invariant this.symmetries = {@linkplain SymmetryDetector#partition(Bounds) partition}(this.originalBounds)	
+	 * @invariant this.symmetries in {@linkplain SymmetryDetector#partition(Bounds) partition}(this.originalBounds)	
+	 * @invariant this.sbpGuard = 0 => no this.sbpSymmetries
 	 *            
 	 * @see Translator#translateIncremental(kodkod.ast.Formula, Bounds, Options)
 	 * @see Translator#translateIncremental(kodkod.ast.Formula, Bounds, Translation.Incremental)
@@ -299,30 +410,61 @@ public abstract class Translation {
 		 */
 		private final Bool2CNFTranslator incrementer;
 		private final Set<IntSet> symmetries;
+		private Set<IntSet> sbpSymmetries;
+		private int sbpGuard;
 		
 		/**
-		 * Creates an Incremental translation using the given bounds, options, symmetries of the original bounds, 
-		 * translator and interpreter.  This constructor assumes that the symmetries induced by {@code bounds} refine 
-		 * the {@code originalSymmetries}, which were obtained from the original problem bounds.
+		 * Creates an Incremental translation using the given bounds, options, broken symmetries, 
+		 * translator and interpreter.  This constructor assumes that {@code brokenSymmetries} are those 
+		 * equivalence classes of the original problem bounds whose symmetries were broken by tightening 
+		 * the given bounds.  
 		 * @requires options.logTranslation = 0 && options.solver.incremental()
 		 * @requires translator.solver was constructed by calling options.solver.instance()
-		 * @requires all s : SymmetryDetector.partition(bounds) | some p : originalSymmetries | s.ints in p.ints
-		 * @ensures this.bounds' = bounds && this.options' = options  && this.symmetries' = originalSymmetries &&
-		 *         this.incrementer' = incrementer  && this.interpreter' = interpreter
+		 * @ensures this.bounds' = bounds && this.options' = options  && this.symmetries' = brokenSymmetries &&
+		 *         this.incrementer' = incrementer  && this.interpreter' = interpreter && 
+		 *         this.sbpGuard' = 0 && no this.sbpSymmetries'
 		 */
-		Incremental(Bounds bounds, Options options, Set<IntSet> originalSymmetries, LeafInterpreter interpreter, Bool2CNFTranslator translator) {
+		Incremental(Bounds bounds, Options options, Set<IntSet> brokenSymmetries, LeafInterpreter interpreter, Bool2CNFTranslator translator) {
 			super(bounds, options);
 			this.interpreter = interpreter;
 			this.incrementer = translator;
-			this.symmetries = originalSymmetries;
+			this.symmetries = brokenSymmetries;
+			this.sbpSymmetries = Collections.emptySet();
+			this.sbpGuard = 0;
 		}
 		
 		/**
-		 * Returns the symmetries induced by the original bounds.
+		 * Returns the symmetries that were broken by tightening this.bounds.
 		 * @return this.symmetries
 		 */
 		Set<IntSet> symmetries() { return symmetries; }
 		
+		/**
+		 * Returns the symmetries broken by the guarded symmetry breaking predicate.
+		 * @return this.sbpSymmetries
+		 */
+		Set<IntSet> sbpSymmetries() { return sbpSymmetries; }
+		
+		/**
+		 * Returns the label of the variable that guards the symmetry breaking predicate
+		 * of this translation, or 0 if there is no such predicate.  If the label is not 0, it
+		 * must be assumed true whenever {@linkplain #cnf() this.cnf} is solved for the 
+		 * predicate to take effect.  
+		 * @return this.sbpGuard
+		 */
+		public int sbpGuard() { return sbpGuard; }
+		
+		/**
+		 * Sets the guard of this translation's symmetry breaking predicate,
+		 * and the symmetries broken by it, to the given values.
+		 * @requires guard = 0 => no sbpSymmetries
+		 * @ensures this.sbpGuard' = guard && this.sbpSymmetries' = sbpSymmetries
+		 */
+		void setSBP(int guard, Set<IntSet> sbpSymmetries) {
+			this.sbpGuard = guard;
+			this.sbpSymmetries = sbpSymmetries;
+		}
+		
 		/**
 		 * Returns this.interpreter.
 		 * @return this.interpreter
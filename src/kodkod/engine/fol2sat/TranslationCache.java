@@ -0,0 +1,736 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.fol2sat;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import kodkod.ast.BinaryExpression;
+import kodkod.ast.BinaryFormula;
+import kodkod.ast.BinaryIntExpression;
+import kodkod.ast.ComparisonFormula;
+import kodkod.ast.ConstantExpression;
+import kodkod.ast.ConstantFormula;
+import kodkod.ast.Decl;
+import kodkod.ast.Decls;
+import kodkod.ast.ExprToIntCast;
+import kodkod.ast.Formula;
+import kodkod.ast.IntComparisonFormula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.IntToExprCast;
+import kodkod.ast.LeafExpression;
+import kodkod.ast.MultiplicityFormula;
+import kodkod.ast.NaryExpression;
+import kodkod.ast.NaryFormula;
+import kodkod.ast.NaryIntExpression;
+import kodkod.ast.Node;
+import kodkod.ast.ProjectExpression;
+import kodkod.ast.QuantifiedFormula;
+import kodkod.ast.Relation;
+import kodkod.ast.RelationPredicate;
+import kodkod.ast.UnaryExpression;
+import kodkod.ast.UnaryIntExpression;
+import kodkod.ast.Variable;
+import kodkod.ast.visitor.AbstractVoidVisitor;
+import kodkod.engine.config.Options;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.util.ints.ArrayIntVector;
+import kodkod.util.ints.IndexedEntry;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.Ints;
+
+/**
+ * A content-addressed cache of {@linkplain Translation.Whole whole translations}.
+ * A problem is identified by a structural fingerprint of its formula, bounds and
+ * the options that affect translation, so a problem that is constructed anew, with
+ * fresh relations and variables, shares its entry with every other problem of the
+ * same shape.  Each entry stores the CNF of a problem and the mapping from its
+ * primary variables to relations.  Entries are kept in memory, up to a given number
+ * of them, with the least recently used entries evicted first.  If a directory is
+ * given, entries are also stored on disk, in a compact binary format, so that they
+ * survive the virtual machine.
+ *
+ * <p>A cache hit skips translation entirely:  the stored CNF is loaded into a fresh
+ * instance of the caller's solver, and the stored variable mapping is rebased onto
+ * the caller's relations.  Problems with translation logging enabled are never
+ * cached, since their logs refer to the nodes of a particular formula.  A cache
+ * may be shared by several {@link Options} objects and threads.</p>
+ *
+ * @specfield capacity: int // maximum number of entries kept in memory
+ * @specfield directory: lone File // directory in which entries are stored on disk
+ * @specfield hits, misses: int
+ * @see Options#setTranslationCache(TranslationCache)
+ */
+public final class TranslationCache {
+	private static final int MAGIC = 0x4b4b5443; // KKTC
+	private static final int VERSION = 1;
+	private static final String SUFFIX = ".kkt";
+
+	private final int capacity;
+	private final File directory;
+	private final Map<String, Entry> memory;
+	private int hits, misses;
+
+	/**
+	 * Constructs an in-memory cache that holds at most the given number of translations.
+	 * @requires capacity >= 0
+	 * @ensures this.capacity' = capacity && no this.directory' && this.hits' = this.misses' = 0
+	 * @throws IllegalArgumentException  capacity < 0
+	 */
+	public TranslationCache(int capacity) {
+		this(capacity, null);
+	}
+
+	/**
+	 * Constructs a cache that holds at most the given number of translations in
+	 * memory and stores all translations in the given directory, if it is not null.
+	 * The directory is created if it does not exist.
+	 * @requires capacity >= 0
+	 * @ensures this.capacity' = capacity && this.directory' = directory && this.hits' = this.misses' = 0
+	 * @throws IllegalArgumentException  capacity < 0 || directory cannot be created
+	 */
+	public TranslationCache(final int capacity, File directory) {
+		if (capacity < 0)
+			throw new IllegalArgumentException("capacity < 0: " + capacity);
+		if (directory != null && !directory.isDirectory() && !directory.mkdirs())
+			throw new IllegalArgumentException("cannot create " + directory);
+		this.capacity = capacity;
+		this.directory = directory;
+		this.memory = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+			protected boolean removeEldestEntry(Map.Entry<String, TranslationCache.Entry> eldest) {
+				return size() > capacity;
+			}
+		};
+	}
+
+	/**
+	 * Returns the maximum number of translations kept in memory.
+	 * @return this.capacity
+	 */
+	public int capacity() { return capacity; }
+
+	/**
+	 * Returns the directory in which translations are stored, or null if none.
+	 * @return this.directory
+	 */
+	public File directory() { return directory; }
+
+	/**
+	 * Returns the number of translations that were served from this cache.
+	 * @return this.hits
+	 */
+	public synchronized int hits() { return hits; }
+
+	/**
+	 * Returns the number of translations that were not found in this cache.
+	 * @return this.misses
+	 */
+	public synchronized int misses() { return misses; }
+
+	/**
+	 * Removes all translations from memory and from this.directory,
+	 * and resets the hit and miss counters.
+	 * @ensures no entries && this.hits' = this.misses' = 0
+	 */
+	public synchronized void clear() {
+		memory.clear();
+		hits = misses = 0;
+		if (directory != null) {
+			final File[] files = directory.listFiles();
+			if (files != null) {
+				for(File file : files) {
+					if (file.getName().endsWith(SUFFIX))
+						file.delete();
+				}
+			}
+		}
+	}
+
+	/**
+	 * Returns a whole translation of the given problem, either from this cache or,
+	 * if it is not cached, by translating it and adding the result to this cache.
+	 * @requires options.logTranslation = 0
+	 * @return some t: Translation.Whole |  t.originalFormula = formula && t.originalBounds = bounds && t.options = options
+	 * @see Translator#translate(Formula, Bounds, Options)
+	 */
+	Translation.Whole translate(Formula formula, Bounds bounds, Options options) {
+		final Options uncached = options.clone();
+		uncached.setTranslationCache(null);
+
+		final Relation[] relations = bounds.relations().toArray(new Relation[bounds.relations().size()]);
+		final String key = key(formula, bounds, options, relations);
+		if (key == null)
+			return Translator.translate(formula, bounds, uncached);
+
+		Entry entry;
+		synchronized(this) {
+			entry = memory.get(key);
+		}
+		if (entry == null && directory != null) {
+			entry = load(key, relations);
+			if (entry != null) {
+				synchronized(this) {
+					memory.put(key, entry);
+				}
+			}
+		}
+
+		if (entry != null) {
+			synchronized(this) { hits++; }
+			return entry.materialize(bounds, options, relations);
+		}
+
+		final RecordingFactory recorder = new RecordingFactory(options.solver());
+		uncached.setSolver(recorder);
+		final Translation.Whole translation = Translator.translate(formula, bounds, uncached);
+
+		final Map<Relation, IntSet> varUsage = new LinkedHashMap<Relation, IntSet>();
+		for(Relation r : translation.bounds().relations()) {
+			final IntSet vars = translation.primaryVariables(r);
+			if (!vars.isEmpty())
+				varUsage.put(r, vars);
+		}
+		entry = new Entry(translation, recorder.recorder, relations);
+		synchronized(this) {
+			misses++;
+			memory.put(key, entry);
+		}
+		if (directory != null)
+			store(key, entry);
+
+		final Translation.Whole ret = new Translation.Whole(translation.bounds(), options, recorder.recorder.solver,
+				varUsage, translation.numPrimaryVariables(), null, translation.circuit());
+		ret.countMemo(translation.memoHits(), translation.memoMisses());
+		return ret;
+	}
+
+	/*----------------------------------------------------------------
+	 * Fingerprinting
+	 *----------------------------------------------------------------*/
+
+	/**
+	 * Returns the fingerprint of the given problem, as a hex string, or null
+	 * if the problem cannot be cached.
+	 * @requires relations = bounds.relations, in iteration order
+	 */
+	private static String key(Formula formula, Bounds bounds, Options options, Relation[] relations) {
+		final Fingerprinter fp = new Fingerprinter(relations);
+		fp.put(VERSION);
+		fp.put(options.intEncoding().name());
+		fp.put(options.bitwidth());
+		fp.put(options.closureEncoding().name());
+		fp.put(options.symmetryBreaking());
+		fp.put(options.symmetryPredicate().name());
+		fp.put(options.sharing());
+		fp.put(options.skolemDepth());
+
+		fp.put(bounds.universe().size());
+		fp.put(relations.length);
+		for(Relation r : relations) {
+			if (bounds.upperBound(r).isLongIndexed()) return null; // too large to store
+			fp.put(r.name());
+			fp.put(r.arity());
+			fp.put(bounds.lowerBound(r).indexView());
+			fp.put(bounds.upperBound(r).indexView());
+		}
+		for(IndexedEntry<TupleSet> ib : bounds.intBounds()) {
+			fp.put(ib.index());
+			fp.put(ib.value().indexView());
+		}
+
+		formula.accept(fp);
+		return fp.cacheable ? fp.digest() : null;
+	}
+
+	/**
+	 * Computes a digest of a problem.  Each node of the formula contributes its
+	 * type and attributes, followed by its children, and every node that has already
+	 * been seen contributes a back reference instead.  Relations contribute their
+	 * position in the problem bounds.
+	 */
+	private static final class Fingerprinter extends AbstractVoidVisitor {
+		private final MessageDigest md;
+		private final byte[] buf = new byte[4];
+		private final Map<Relation, Integer> relations;
+		private final Map<Node, Integer> ids;
+		boolean cacheable;
+
+		Fingerprinter(Relation[] relations) {
+			try {
+				this.md = MessageDigest.getInstance("SHA-256");
+			} catch (NoSuchAlgorithmException e) {
+				throw new IllegalStateException(e);
+			}
+			this.relations = new IdentityHashMap<Relation, Integer>();
+			for(int i = 0; i < relations.length; i++) {
+				this.relations.put(relations[i], i);
+			}
+			this.ids = new IdentityHashMap<Node, Integer>();
+			this.cacheable = true;
+		}
+
+		void put(int i) {
+			buf[0] = (byte) (i >>> 24);
+			buf[1] = (byte) (i >>> 16);
+			buf[2] = (byte) (i >>> 8);
+			buf[3] = (byte) i;
+			md.update(buf);
+		}
+
+		void put(boolean b) {
+			md.update(b ? (byte) 1 : (byte) 0);
+		}
+
+		void put(String s) {
+			final byte[] bytes = s.getBytes(StandardCharsets.UTF_8);
+			put(bytes.length);
+			md.update(bytes);
+		}
+
+		void put(IntSet s) {
+			put(s.size());
+			for(IntIterator itr = s.iterator(); itr.hasNext(); ) {
+				put(itr.next());
+			}
+		}
+
+		String digest() {
+			final byte[] hash = md.digest();
+			final StringBuilder b = new StringBuilder(hash.length * 2);
+			for(byte x : hash) {
+				b.append(Character.forDigit((x >> 4) & 0xf, 16));
+				b.append(Character.forDigit(x & 0xf, 16));
+			}
+			return b.toString();
+		}
+
+		/**
+		 * Contributes a back reference to n, if n has already been visited, and
+		 * otherwise contributes the type and the attributes of n.
+		 * @return true if n has already been visited
+		 */
+		protected boolean visited(Node n) {
+			final Integer id = ids.get(n);
+			if (id != null) {
+				put(-1);
+				put(id);
+				return true;
+			}
+			ids.put(n, ids.size());
+			put(n.getClass().getName());
+			if (n instanceof Relation) {
+				final Integer index = relations.get(n);
+				if (index == null)
+					cacheable = false;
+				put(index == null ? -1 : index);
+			} else if (n instanceof LeafExpression) {
+				put(((LeafExpression) n).name());
+				put(((LeafExpression) n).arity());
+			} else if (n instanceof IntConstant) {
+				put(((IntConstant) n).value());
+			} else if (n instanceof ConstantFormula) {
+				put(((ConstantFormula) n).booleanValue());
+			} else if (n instanceof Decl) {
+				put(((Decl) n).multiplicity().name());
+			} else if (n instanceof Decls) {
+				put(((Decls) n).size());
+			} else if (n instanceof NaryFormula) {
+				put(((NaryFormula) n).op().name());
+				put(((NaryFormula) n).size());
+			} else if (n instanceof NaryExpression) {
+				put(((NaryExpression) n).op().name());
+				put(((NaryExpression) n).size());
+			} else if (n instanceof NaryIntExpression) {
+				put(((NaryIntExpression) n).op().name());
+				put(((NaryIntExpression) n).size());
+			} else if (n instanceof BinaryFormula) {
+				put(((BinaryFormula) n).op().name());
+			} else if (n instanceof BinaryExpression) {
+				put(((BinaryExpression) n).op().name());
+			} else if (n instanceof BinaryIntExpression) {
+				put(((BinaryIntExpression) n).op().name());
+			} else if (n instanceof UnaryExpression) {
+				put(((UnaryExpression) n).op().name());
+			} else if (n instanceof UnaryIntExpression) {
+				put(((UnaryIntExpression) n).op().name());
+			} else if (n instanceof ComparisonFormula) {
+				put(((ComparisonFormula) n).op().name());
+			} else if (n instanceof IntComparisonFormula) {
+				put(((IntComparisonFormula) n).op().name());
+			} else if (n instanceof MultiplicityFormula) {
+				put(((MultiplicityFormula) n).multiplicity().name());
+			} else if (n instanceof QuantifiedFormula) {
+				put(((QuantifiedFormula) n).quantifier().name());
+			} else if (n instanceof ExprToIntCast) {
+				put(((ExprToIntCast) n).op().name());
+			} else if (n instanceof IntToExprCast) {
+				put(((IntToExprCast) n).op().name());
+			} else if (n instanceof ProjectExpression) {
+				put(((ProjectExpression) n).arity());
+			} else if (n instanceof RelationPredicate) {
+				final RelationPredicate pred = (RelationPredicate) n;
+				put(pred.name().name());
+				if (pred instanceof RelationPredicate.Function)
+					put(((RelationPredicate.Function) pred).targetMult().name());
+			}
+			return false;
+		}
+
+		public void visit(Relation relation) { visited(relation); }
+		public void visit(Variable variable) { visited(variable); }
+		public void visit(ConstantExpression constExpr) { visited(constExpr); }
+		public void visit(IntConstant intConst) { visited(intConst); }
+		public void visit(ConstantFormula constant) { visited(constant); }
+	}
+
+	/*----------------------------------------------------------------
+	 * Entries
+	 *----------------------------------------------------------------*/
+
+	/**
+	 * A cached translation.  Relations are identified by their position in
+	 * the bounds of the problem, and the relations introduced by skolemization
+	 * by their name and arity.
+	 */
+	private static final class Entry {
+		final int vars, maxPrimaryVar;
+		final int[] clauses; // each clause is terminated by 0
+		final Slot[] slots;
+
+		Entry(int vars, int maxPrimaryVar, int[] clauses, Slot[] slots) {
+			this.vars = vars;
+			this.maxPrimaryVar = maxPrimaryVar;
+			this.clauses = clauses;
+			this.slots = slots;
+		}
+
+		/**
+		 * Creates an entry for the given translation, whose clauses were recorded
+		 * by the given recorder.
+		 * @requires relations = translation.originalBounds.relations, in iteration order
+		 */
+		Entry(Translation.Whole translation, Recorder recorder, Relation[] relations) {
+			final Map<Relation, Integer> indices = new IdentityHashMap<Relation, Integer>();
+			for(int i = 0; i < relations.length; i++) {
+				indices.put(relations[i], i);
+			}
+			final Bounds bounds = translation.bounds();
+			this.vars = recorder.vars;
+			this.maxPrimaryVar = translation.numPrimaryVariables();
+			this.clauses = recorder.clauses.toArray();
+			this.slots = new Slot[bounds.relations().size()];
+			int i = 0;
+			for(Relation r : bounds.relations()) {
+				final Integer index = indices.get(r);
+				final IntSet vars = translation.primaryVariables(r);
+				slots[i++] = new Slot(index == null ? -1 : index, r.name(), r.arity(),
+						bounds.lowerBound(r).indexView().toArray(), bounds.upperBound(r).indexView().toArray(),
+						vars.isEmpty() ? 0 : vars.min(), vars.isEmpty() ? 0 : vars.max());
+			}
+		}
+
+		/**
+		 * Returns a translation of a problem with the given bounds and options,
+		 * whose CNF is loaded into a fresh instance of options.solver.
+		 * @requires relations = bounds.relations, in iteration order
+		 */
+		Translation.Whole materialize(Bounds original, Options options, Relation[] relations) {
+			final TupleFactory f = original.universe().factory();
+			final Bounds bounds = new Bounds(original.universe());
+			final Map<Relation, IntSet> varUsage = new LinkedHashMap<Relation, IntSet>();
+			for(Slot slot : slots) {
+				final Relation r = slot.index < 0 ? Relation.nary(slot.name, slot.arity) : relations[slot.index];
+				bounds.bound(r, tuples(f, r.arity(), slot.lower), tuples(f, r.arity(), slot.upper));
+				if (slot.min > 0)
+					varUsage.put(r, Ints.rangeSet(Ints.range(slot.min, slot.max)));
+			}
+			for(IndexedEntry<TupleSet> ib : original.intBounds()) {
+				bounds.boundExactly(ib.index(), ib.value());
+			}
+
+			final SATSolver solver = options.solver().instance();
+			solver.addVariables(vars);
+			for(int start = 0, end = 0; end < clauses.length; start = ++end) {
+				while(clauses[end] != 0) end++;
+				final int[] clause = new int[end - start];
+				System.arraycopy(clauses, start, clause, 0, clause.length);
+				solver.addClause(clause);
+			}
+			return new Translation.Whole(bounds, options, solver, varUsage, maxPrimaryVar, null);
+		}
+
+		/**
+		 * Returns the tuple set of the given arity that consists of the tuples with the given indices.
+		 */
+		private static TupleSet tuples(TupleFactory f, int arity, int[] indices) {
+			final IntSet s = Ints.bestSet(f.noneOf(arity).capacity());
+			for(int i : indices) {
+				s.add(i);
+			}
+			return f.setOf(arity, s);
+		}
+	}
+
+	/**
+	 * A relation in the bounds of a cached translation, along with
+	 * the range of primary variables allocated to it (0 if none).
+	 */
+	private static final class Slot {
+		final int index, arity, min, max;
+		final String name;
+		final int[] lower, upper;
+
+		Slot(int index, String name, int arity, int[] lower, int[] upper, int min, int max) {
+			this.index = index;
+			this.name = name;
+			this.arity = arity;
+			this.lower = lower;
+			this.upper = upper;
+			this.min = min;
+			this.max = max;
+		}
+	}
+
+	/*----------------------------------------------------------------
+	 * Disk storage
+	 *----------------------------------------------------------------*/
+
+	/**
+	 * Writes the given entry to this.directory.  The entry is written to a temporary
+	 * file that is then renamed, so readers never see partially written entries.
+	 * Failures are ignored:  the entry simply remains in memory only.
+	 */
+	private void store(String key, Entry entry) {
+		File temp = null;
+		try {
+			temp = File.createTempFile(key, ".tmp", directory);
+			final DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(temp)));
+			try {
+				out.writeInt(MAGIC);
+				out.writeInt(VERSION);
+				out.writeUTF(key);
+				writeVarint(out, entry.vars);
+				writeVarint(out, entry.maxPrimaryVar);
+				writeVarint(out, entry.clauses.length);
+				for(int lit : entry.clauses) {
+					writeVarint(out, (lit << 1) ^ (lit >> 31));
+				}
+				writeVarint(out, entry.slots.length);
+				for(Slot slot : entry.slots) {
+					writeVarint(out, slot.index + 1);
+					if (slot.index < 0) {
+						out.writeUTF(slot.name);
+						writeVarint(out, slot.arity);
+					}
+					writeSorted(out, slot.lower);
+					writeSorted(out, slot.upper);
+					writeVarint(out, slot.min);
+					writeVarint(out, slot.max);
+				}
+			} finally {
+				out.close();
+			}
+			if (temp.renameTo(new File(directory, key + SUFFIX)))
+				temp = null;
+		} catch (IOException e) {
+			// leave the entry in memory only
+		} finally {
+			if (temp != null)
+				temp.delete();
+		}
+	}
+
+	/**
+	 * Reads the entry with the given key from this.directory.  Returns null if there
+	 * is no such entry.  An entry that cannot be read, or that does not fit the given
+	 * relations, is deleted, and null is returned.
+	 */
+	private Entry load(String key, Relation[] relations) {
+		final File file = new File(directory, key + SUFFIX);
+		if (!file.isFile())
+			return null;
+		try {
+			final DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)));
+			try {
+				if (in.readInt() != MAGIC || in.readInt() != VERSION || !key.equals(in.readUTF()))
+					throw new IOException("bad header");
+				final int vars = readVarint(in);
+				final int maxPrimaryVar = readVarint(in);
+				final int[] clauses = new int[readVarint(in)];
+				for(int i = 0; i < clauses.length; i++) {
+					final int z = readVarint(in);
+					clauses[i] = (z >>> 1) ^ -(z & 1);
+					if (Math.abs(clauses[i]) > vars)
+						throw new IOException("bad literal");
+				}
+				if (clauses.length > 0 && clauses[clauses.length - 1] != 0)
+					throw new IOException("bad clause");
+				final Slot[] slots = new Slot[readVarint(in)];
+				for(int i = 0; i < slots.length; i++) {
+					final int index = readVarint(in) - 1;
+					final String name;
+					final int arity;
+					if (index < 0) {
+						name = in.readUTF();
+						arity = readVarint(in);
+					} else if (index < relations.length) {
+						name = relations[index].name();
+						arity = relations[index].arity();
+					} else {
+						throw new IOException("bad relation");
+					}
+					slots[i] = new Slot(index, name, arity, readSorted(in), readSorted(in), readVarint(in), readVarint(in));
+					if (slots[i].max < slots[i].min || slots[i].max > maxPrimaryVar)
+						throw new IOException("bad variables");
+				}
+				return new Entry(vars, maxPrimaryVar, clauses, slots);
+			} finally {
+				in.close();
+			}
+		} catch (IOException e) {
+			file.delete();
+			return null;
+		}
+	}
+
+	private static void writeVarint(DataOutputStream out, int value) throws IOException {
+		while((value & ~0x7f) != 0) {
+			out.writeByte((value & 0x7f) | 0x80);
+			value >>>= 7;
+		}
+		out.writeByte(value);
+	}
+
+	private static int readVarint(DataInputStream in) throws IOException {
+		int value = 0;
+		for(int shift = 0; shift < 35; shift += 7) {
+			final int b = in.readUnsignedByte();
+			value |= (b & 0x7f) << shift;
+			if ((b & 0x80) == 0)
+				return value;
+		}
+		throw new IOException("bad varint");
+	}
+
+	/**
+	 * Writes the given ascending sequence of non-negative ints as deltas.
+	 */
+	private static void writeSorted(DataOutputStream out, int[] ints) throws IOException {
+		writeVarint(out, ints.length);
+		int prev = 0;
+		for(int i : ints) {
+			writeVarint(out, i - prev);
+			prev = i;
+		}
+	}
+
+	private static int[] readSorted(DataInputStream in) throws IOException {
+		final int[] ints = new int[readVarint(in)];
+		int prev = 0;
+		for(int i = 0; i < ints.length; i++) {
+			ints[i] = prev + readVarint(in);
+			if (ints[i] < prev || (i > 0 && ints[i] == prev))
+				throw new IOException("bad tuple indices");
+			prev = ints[i];
+		}
+		return ints;
+	}
+
+	/*----------------------------------------------------------------
+	 * Clause recording
+	 *----------------------------------------------------------------*/
+
+	/**
+	 * Produces solvers that record the clauses they are given
+	 * before passing them on to solvers produced by another factory.
+	 */
+	private static final class RecordingFactory extends SATFactory {
+		private final SATFactory factory;
+		Recorder recorder;
+
+		RecordingFactory(SATFactory factory) {
+			this.factory = factory;
+		}
+
+		public SATSolver instance() {
+			recorder = new Recorder(factory.instance());
+			return recorder;
+		}
+
+		public boolean prover() { return factory.prover(); }
+	}
+
+	/**
+	 * A SATSolver that records its variables and clauses.
+	 */
+	private static final class Recorder implements SATSolver {
+		final SATSolver solver;
+		final ArrayIntVector clauses;
+		int vars;
+
+		Recorder(SATSolver solver) {
+			this.solver = solver;
+			this.clauses = new ArrayIntVector();
+			this.vars = 0;
+		}
+
+		public int numberOfVariables() { return solver.numberOfVariables(); }
+		public int numberOfClauses() { return solver.numberOfClauses(); }
+
+		public void addVariables(int numVars) {
+			solver.addVariables(numVars);
+			vars += numVars;
+		}
+
+		public boolean addClause(int[] lits) {
+			for(int lit : lits) {
+				clauses.add(lit);
+			}
+			clauses.add(0);
+			return solver.addClause(lits);
+		}
+
+		public boolean solve() { return solver.solve(); }
+		public boolean solve(int[] assumptions) { return solver.solve(assumptions); }
+		public int[] failedAssumptions() { return solver.failedAssumptions(); }
+		public boolean valueOf(int variable) { return solver.valueOf(variable); }
+		public void free() { solver.free(); }
+	}
+}
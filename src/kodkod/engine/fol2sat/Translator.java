@@ -30,16 +30,23 @@ import static kodkod.util.collections.Containers.setDifference;
 import java.util.Collections;
 import java.util.IdentityHashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
 import kodkod.ast.Expression;
+import kodkod.ast.Decl;
 import kodkod.ast.Formula;
 import kodkod.ast.IntExpression;
 import kodkod.ast.Node;
+import kodkod.ast.QuantifiedFormula;
 import kodkod.ast.Relation;
 import kodkod.ast.RelationPredicate;
+import kodkod.ast.Variable;
+import kodkod.ast.operator.Multiplicity;
+import kodkod.ast.operator.Quantifier;
 import kodkod.ast.visitor.AbstractReplacer;
+import kodkod.engine.CapacityExceededException;
 import kodkod.engine.bool.BooleanAccumulator;
 import kodkod.engine.bool.BooleanConstant;
 import kodkod.engine.bool.BooleanFactory;
@@ -49,6 +56,8 @@ import kodkod.engine.bool.BooleanValue;
 import kodkod.engine.bool.Int;
 import kodkod.engine.bool.Operator;
 import kodkod.engine.config.Options;
+import kodkod.engine.config.Options.Blocking;
+import kodkod.engine.config.Options.SymmetryPredicate;
 import kodkod.engine.satlab.SATSolver;
 import kodkod.instance.Bounds;
 import kodkod.instance.Instance;
@@ -115,11 +124,87 @@ public final class Translator {
 		return (Int) FOL2BoolTranslator.translate(annotate(intExpr), LeafInterpreter.exact(instance,options));
 	}
 	
+	/**
+	 * Evaluates the given formula using the provided instance and options, without 
+	 * translating it to a boolean circuit.  The result is the same as the value of
+	 * {@link #evaluate(Formula, Instance, Options)}.
+	 * 
+	 * @return true if the formula is true with respect to the given instance and options; otherwise false.
+	 * @throws NullPointerException  formula = null || instance = null || options = null
+	 * @throws UnboundLeafException  the formula refers to an undeclared variable or a relation not mapped by the instance
+	 * @throws HigherOrderDeclException  the formula contains a higher order declaration
+	 * @throws kodkod.engine.CapacityExceededException  the indices of some tuples do not fit into an int
+	 */
+	public static boolean evaluateDirectly(Formula formula, Instance instance, Options options) {
+		return TupleEvaluator.evaluate(formula, instance, options);
+	}
+	
+	/**
+	 * Evaluates the given expression using the provided instance and options, without 
+	 * translating it to a boolean matrix.  The result contains the tuples whose entries 
+	 * are TRUE in {@link #evaluate(Expression, Instance, Options)}.
+	 * 
+	 * @return the set of tuples to which the expression evaluates.
+	 * @throws NullPointerException  expression = null || instance = null || options = null
+	 * @throws UnboundLeafException  the expression refers to an undeclared variable or a relation not mapped by the instance
+	 * @throws HigherOrderDeclException  the expression contains a higher order declaration
+	 * @throws kodkod.engine.CapacityExceededException  the indices of some tuples do not fit into an int
+	 */
+	public static TupleSet evaluateDirectly(Expression expression, Instance instance, Options options) {
+		return TupleEvaluator.evaluate(expression, instance, options);
+	}
+	
+	/**
+	 * Evaluates the given intexpression using the provided instance and options, without 
+	 * translating it to a circuit.  The result is the value of {@link #evaluate(IntExpression, Instance, Options)}.
+	 * 
+	 * @return the integer to which the intExpr evaluates.
+	 * @throws NullPointerException  intExpr = null || instance = null || options = null
+	 * @throws UnboundLeafException  the expression refers to an undeclared variable or a relation not mapped by the instance
+	 * @throws HigherOrderDeclException  the expression contains a higher order declaration
+	 * @throws kodkod.engine.CapacityExceededException  the indices of some tuples do not fit into an int
+	 */
+	public static int evaluateDirectly(IntExpression intExpr, Instance instance, Options options) {
+		return TupleEvaluator.evaluate(intExpr, instance, options);
+	}
+	
+	/**
+	 * Returns at most limit bindings of the variables declared by the given universally quantified 
+	 * formula for which its body is false with respect to the given instance and options.  Each 
+	 * binding consists of the indices of the tuples bound to the declared variables, in the order of 
+	 * their declarations, and can be passed to {@link #translateInstances(QuantifiedFormula, List, Translation.Incremental)}.  
+	 * The formula is evaluated {@linkplain #evaluateDirectly(Formula, Instance, Options) directly}, unless 
+	 * the indices of the tuples in the value of some subexpression do not fit into an int.  In that case, 
+	 * it is {@linkplain #evaluate(Formula, Instance, Options) evaluated with circuits} instead, which 
+	 * is slower but represents the values of subexpressions with long indices.
+	 * 
+	 * @return at most limit bindings of formula.decls for which formula.formula is false with respect to the instance 
+	 * @throws NullPointerException  formula = null || instance = null || options = null
+	 * @throws IllegalArgumentException  formula.quantifier != ALL || limit < 1
+	 * @throws UnboundLeafException  the formula refers to an undeclared variable or a relation not mapped by the instance
+	 * @throws HigherOrderDeclException  the formula contains a higher order declaration
+	 * @throws CapacityExceededException  the index of some tuple that a declared variable can be bound to does not fit into an int
+	 */
+	public static List<int[]> counterexamples(QuantifiedFormula formula, Instance instance, Options options, int limit) {
+		if (formula.quantifier()!=Quantifier.ALL) 
+			throw new IllegalArgumentException("Expected a universally quantified formula, given " + formula);
+		if (limit < 1) 
+			throw new IllegalArgumentException("limit < 1: " + limit);
+		try {
+			return TupleEvaluator.counterexamples(formula, instance, options, limit);
+		} catch (CapacityExceededException e) {
+			// some tuple indices do not fit into an int, so evaluate with circuits
+			return FOL2BoolTranslator.counterexamples(annotate(formula), LeafInterpreter.exact(instance, options), limit);
+		}
+	}
+	
 	/**
 	 * Translates the given formula using the specified bounds and options.
 	 * The CNF representation of the given formula and bounds  is generated so that the magnitude 
 	 * of the literal representing the truth value of a given circuit is strictly larger than the magnitudes of 
 	 * the literals representing the truth values of the circuit's descendants.   
+	 * If options.translationCache is set and translation logging is off, the 
+	 * translation is served from the cache when possible.
 	 * @return some t: Translation.Whole |  t.originalFormula = formula && t.originalBounds = bounds && t.options = options
 	 * @throws NullPointerException  any of the arguments are null
 	 * @throws UnboundLeafException  the formula refers to an undeclared variable or a relation not mapped by the given bounds.
@@ -127,6 +212,9 @@ public final class Translator {
 	 * be skolemized, or it can be skolemized but options.skolemize is false.
 	 */
 	public static Translation.Whole translate(Formula formula, Bounds bounds, Options options)  {
+		final TranslationCache cache = options.translationCache();
+		if (cache != null && options.logTranslation()==0)
+			return cache.translate(formula, bounds, options);
 		return (Translation.Whole) (new Translator(formula,bounds,options)).translate();
 	}
 	
@@ -161,8 +249,11 @@ public final class Translator {
 	 * <li>{@code bounds} must not specify any integer bounds;</li> 
 	 * <li>{@code bounds.relations} must not contain any members of {@code translation.bounds.relations} 
 	 * (which may be a superset of {@code translation.originalBounds.relations} that also includes Skolem constants); and,</li>
-	 * <li>{@code bounds} must induce a coarser set of equivalence classes on the shared universe than {@code translation.originalBounds}.</li>
+	 * <li>{@code bounds} must not split any equivalence class of {@code translation.originalBounds} whose symmetries were  
+	 * broken by tightening the bounds of a totally ordered or acyclic relation (i.e., {@code translation.symmetries}).</li>
 	 * </ol>
+	 * If {@code bounds} split any of the remaining classes, the symmetry breaking predicate of the translation is 
+	 * retracted and regenerated for the refined classes.
 	 * </p>
 	 * 
 	 * <p>
@@ -197,6 +288,89 @@ public final class Translator {
 		}	
 	}
 
+	/**
+	 * Updates the given translation with the CNF encoding of the instances of the given universally 
+	 * quantified formula in which its variables are bound to the tuples with the given indices, as 
+	 * returned by {@link #counterexamples(QuantifiedFormula, Instance, Options, int)}.  The instance for 
+	 * a binding {@code b} of {@code all x1: X1, ..., xn: Xn | F} is the ground formula 
+	 * {@code b[0] in X1 && ... && b[n-1] in Xn => F(b[0], ..., b[n-1])}, which is implied by the formula,
+	 * so the updated translation is satisfiable if the conjunction of its original formula and the 
+	 * given formula is.  This makes it possible to ground the formula lazily, by adding only those 
+	 * instances that are violated by the solutions of the translation.  The result of the update is either 
+	 * a new translation instance or the given {@code translation}, modified in place.  
+	 * 
+	 * <p>The behavior of this method is unspecified if a prior call to {@code translation.cnf.solve()} returned false, 
+	 * or if a prior call to this method or to {@code translateIncremental(...)} resulted in an exception.</p>
+	 * 
+	 * @requires translation.cnf.solve()
+	 * @requires formula.*components & Relation in translation.bounds.relations
+	 * @requires all b: bindings[int] | b.length = #formula.decls &&
+	 *             all i: [0..b.length) | 0 <= b[i] < translation.bounds.universe.size^formula.decls[i].variable.arity
+	 * @return some t: Translation.Incremental | 
+	 *           t.originalFormula = translation.originalFormula.and(instances of formula for bindings) && 
+	 *           t.originalBounds = translation.originalBounds
+	 * @throws NullPointerException  any of the arguments are null
+	 * @throws IllegalArgumentException  formula.quantifier != ALL or the translation options are not incremental
+	 * @throws UnboundLeafException  the formula refers to an undeclared variable or a relation not mapped by translation.bounds 
+	 * @throws HigherOrderDeclException  the formula contains a higher order declaration
+	 */
+	public static Translation.Incremental translateInstances(QuantifiedFormula formula, List<int[]> bindings, Translation.Incremental translation) {
+		checkIncrementalOptions(translation.options());
+		if (formula.quantifier()!=Quantifier.ALL) 
+			throw new IllegalArgumentException("Expected a universally quantified formula, given " + formula);
+		if (bindings.isEmpty()) 
+			return translation;
+		
+		final Options tOptions = translation.options();
+		final Bounds tBounds = translation.bounds();
+		
+		final Translation.Incremental transl;
+		if (translation.trivial()) {
+			if (!translation.cnf().solve()) 
+				throw new IllegalArgumentException("Expected a satisfiable translation, given " + translation);
+			// a trivial translation has an empty interpreter, which cannot be extended.  so we release the empty solver and 
+			// start over with an exact interpreter for tBounds, and with a symmetry breaking predicate for its classes. 
+			translation.cnf().free();
+			transl = new Translation.Incremental(tBounds, tOptions, translation.symmetries(), 
+					LeafInterpreter.exact(tBounds, tOptions, true), 
+					Bool2CNFTranslator.translateIncremental(BooleanConstant.TRUE, tOptions.solver()));
+			transl.countMemo(translation.memoHits(), translation.memoMisses());
+			breakSymmetries(transl, new SymmetryBreaker(tBounds, tOptions.reporter()));
+		} else {
+			transl = translation;
+		}
+		
+		// the instance of the formula for a binding of its variables is (x1 in X1 && ... && xn in Xn) => F(x1, ..., xn)
+		final Variable[] vars = new Variable[formula.decls().size()];
+		Formula domain = Formula.TRUE;
+		for(int i = 0; i < vars.length; i++) {
+			final Decl decl = formula.decls().get(i);
+			if (decl.multiplicity()!=Multiplicity.ONE)
+				throw new HigherOrderDeclException(decl);
+			vars[i] = decl.variable();
+			domain = domain.and(vars[i].in(decl.expression()));
+		}
+		
+		final LeafInterpreter interpreter = transl.interpreter();
+		final FOL2BoolCache.Counter memo = new FOL2BoolCache.Counter();
+		final BooleanValue circuit = FOL2BoolTranslator.instantiate(annotate(domain.implies(formula.formula())), vars, bindings, interpreter, memo);
+		transl.countMemo(memo.hits(), memo.misses());
+		
+		if (circuit==BooleanConstant.FALSE) {
+			// release the old solver and state, and return a fresh trivially false incremental translation.
+			transl.incrementer().solver().free();
+			final Translation.Incremental ret = new Translation.Incremental(tBounds, tOptions, transl.symmetries(), 
+					LeafInterpreter.empty(tBounds.universe(), tOptions), 
+					Bool2CNFTranslator.translateIncremental(BooleanConstant.FALSE, tOptions.solver()));
+			ret.countMemo(transl.memoHits(), transl.memoMisses());
+			return ret;
+		} else if (circuit != BooleanConstant.TRUE) {
+			// circuit is a formula; add its CNF representation to transl.incrementer.solver()			
+			Bool2CNFTranslator.translateIncremental((BooleanFormula) circuit, interpreter.factory().maxVariable(), transl.incrementer());
+		}
+		return transl;
+	}
+	
 	/** 
 	 * @requires checkIncrementalBounds(bounds, transl)
 	 * @requires checkIncrementalOptions(transl.options) 
@@ -213,12 +387,10 @@ public final class Translator {
 		final Options tOptions = transl.options();
 		final Bounds tBounds = transl.bounds();
 		
-		// add new relation bindings to the translation bounds.  since the given bounds induce
-		// a coarser set of symmetries on the universe than transl.symmetries, adding their (disjoint) bindings to tBounds 
-		// will not change the symmetries of tBounds.  note that the ymmetries of tBounds refine transl.symmetries, and they 
-		// may be strictly finer if some of the symmetries in transl.symmetries were broken via SymmetryBreaker.breakMatrixSymmetries(...) 
-		// during the generation of transl.  in particular, any symmetries absent from tBounds are precisely those that were broken based
-		// on the total ordering and acyclic predicates in transl.originalFormula.
+		// add new relation bindings to the translation bounds.  since the given bounds do not split the classes 
+		// in transl.symmetries, which were broken via SymmetryBreaker.breakMatrixSymmetries(...) during the generation 
+		// of transl, the constant bounds that broke them remain valid.  the given bounds may, however, refine the 
+		// remaining symmetries of tBounds, which is accounted for when the formula is re-translated below.
 		for(Relation r : bounds.relations()) {
 			tBounds.bound(r, bounds.lowerBound(r), bounds.upperBound(r));
 		}
@@ -228,22 +400,29 @@ public final class Translator {
 		// TRUE with respect to tBounds (since no bindings that were originally in tBounds were changed by the above loop).
 		final Translation.Incremental updated = translateIncremental(formula, tBounds, tOptions);
 		
-		// we can't return the updated translation as is, since we have to make sure that updated.symmetries is set to
-		// transl.symmetries rather than the potentially finer set of symmetries induced by tBounds. note that 
+		// we can't return the updated translation as is, since we have to make sure that the symmetries broken 
+		// by tightening transl.bounds stay broken, in addition to those broken by tightening updated.bounds. note that 
 		// the updated translation currently has updated.originalBounds = tBounds, while updated.bounds is a copy of 
 		// tBounds with possibly additional skolem relations, as well as new bounds for some relations in formula.*components 
-		// due to symmetry breaking.
-		return new Translation.Incremental(updated.bounds(), tOptions, transl.symmetries(), updated.interpreter(), updated.incrementer());
+		// due to symmetry breaking.  the symmetry breaking predicate of the updated translation is carried over as is.
+		final Set<IntSet> broken = new LinkedHashSet<IntSet>(transl.symmetries());
+		broken.addAll(updated.symmetries());
+		final Translation.Incremental ret = new Translation.Incremental(updated.bounds(), tOptions, broken, updated.interpreter(), updated.incrementer());
+		ret.setSBP(updated.sbpGuard(), updated.sbpSymmetries());
+		ret.countMemo(transl.memoHits() + updated.memoHits(), transl.memoMisses() + updated.memoMisses());
+		return ret;
 	}
 	
-	/** 
-	 * @requires checkIncrementalBounds(bounds, transl)
-	 * @requires checkIncrementalOptions(transl.options) 
+	/**
+	 * Adds the given bounds to {@code transl.bounds}, extends the given interpreter of {@code transl} with variables 
+	 * for the newly bound relations (including any skolem relations), and returns the circuit that encodes the given 
+	 * formula with respect to the extended interpreter.  The circuit is not added to {@code transl.cnf}.  This is
+	 * the part of an update that incremental and checkpointed translations have in common.
+	 * @requires interpreter is the interpreter of the incremental or checkpointed translation transl
 	 * @requires !transl.trivial()
-	 * @return see {@link #translateIncremental(Formula, Bounds, Options)}
+	 * @return the translation of the given formula with respect to interpreter'
 	 **/
-	private static Translation.Incremental translateIncrementalNonTrivial(Formula formula, Bounds bounds, Translation.Incremental transl) {
-		
+	private static BooleanValue translateIncrementalCircuit(Formula formula, Bounds bounds, Translation transl, LeafInterpreter interpreter) {
 		final Options tOptions = transl.options();
 		final Bounds tBounds = transl.bounds();
 		
@@ -255,21 +434,39 @@ public final class Translator {
 			tBounds.bound(r, bounds.lowerBound(r), bounds.upperBound(r));
 		}
 		final AnnotatedNode<Formula> annotated = 
-			(transl.options().skolemDepth() < 0) ? annotate(formula) : skolemize(annotate(formula), tBounds, tOptions);
+			(tOptions.skolemDepth() < 0) ? annotate(formula) : skolemize(annotate(formula), tBounds, tOptions);
 		
 		// extend the interpreter with variable allocations for new relations, either from given bounds
 		// or those introduced by skolemization
-		final LeafInterpreter interpreter = transl.interpreter();
 		interpreter.extend(setDifference(tBounds.relations(), oldRelations), tBounds.lowerBounds(), tBounds.upperBounds());
 		
-		final BooleanValue circuit = FOL2BoolTranslator.translate(annotated, interpreter); 
+		final FOL2BoolCache.Counter memo = new FOL2BoolCache.Counter();
+		final BooleanValue circuit = FOL2BoolTranslator.translate(annotated, interpreter, memo); 
+		transl.countMemo(memo.hits(), memo.misses());
+		return circuit;
+	}
+	
+	/** 
+	 * @requires checkIncrementalBounds(bounds, transl)
+	 * @requires checkIncrementalOptions(transl.options) 
+	 * @requires !transl.trivial()
+	 * @return see {@link #translateIncremental(Formula, Bounds, Options)}
+	 **/
+	private static Translation.Incremental translateIncrementalNonTrivial(Formula formula, Bounds bounds, Translation.Incremental transl) {
+		
+		final Options tOptions = transl.options();
+		final Bounds tBounds = transl.bounds();
+		final LeafInterpreter interpreter = transl.interpreter();
+		final BooleanValue circuit = translateIncrementalCircuit(formula, bounds, transl, interpreter);
 	
 		if (circuit==BooleanConstant.FALSE) {
 			// release the old solver and state, and return a fresh trivially false incremental translation.
 			transl.incrementer().solver().free();
-			return new Translation.Incremental(tBounds, tOptions, transl.symmetries(), 
+			final Translation.Incremental ret = new Translation.Incremental(tBounds, tOptions, transl.symmetries(), 
 					LeafInterpreter.empty(tBounds.universe(), tOptions), 
-					Bool2CNFTranslator.translateIncremental(BooleanConstant.FALSE, tOptions.solver()));			
+					Bool2CNFTranslator.translateIncremental(BooleanConstant.FALSE, tOptions.solver()));
+			ret.countMemo(transl.memoHits(), transl.memoMisses());
+			return ret;
 		} else if (circuit==BooleanConstant.TRUE) {
 			// must add any newly allocated primary variables to the solver for interpretation to work correctly 
 			final int maxVar = interpreter.factory().maxVariable();
@@ -282,6 +479,80 @@ public final class Translator {
 			Bool2CNFTranslator.translateIncremental((BooleanFormula) circuit, interpreter.factory().maxVariable(), transl.incrementer());			
 		}  
 		
+		// if the new bounds split some of the classes broken by the current symmetry breaking predicate, 
+		// replace it with a predicate for the refined classes
+		if (refines(bounds, transl)) {
+			breakSymmetries(transl, new SymmetryBreaker(tBounds, tOptions.reporter()));
+		}
+		
+		return transl;
+	}
+	
+	/**
+	 * Updates the given translation with {@code CNF(guard => formula, translation.originalBounds + bounds, translation.options)}, 
+	 * where {@code guard} is a fresh variable, and returns the result.  The guard is always the last variable of the returned 
+	 * translation's {@linkplain Translation#cnf() cnf}, so its label is {@code cnf().numberOfVariables()} immediately after 
+	 * this call.  The formula thus constrains only those calls to {@link SATSolver#solve(int[])} that assume the guard, and it 
+	 * can be retracted for good by adding the unit clause {@code -guard} to the cnf.  The given bounds, in contrast, are added 
+	 * permanently.  The requirements on the arguments, and the way the result relates to {@code translation}, are the same 
+	 * as for {@link #translateIncremental(Formula, Bounds, Translation.Incremental)}.
+	 * 
+	 * @requires translation.cnf.solve()
+	 * @requires formula.*components & Relation in (translation.bounds + bounds).relations
+	 * @requires translation.bounds.universe = bounds.universe && no bounds.intBound && no (translation.bounds.relations & bounds.relations)
+	 * @requires all s: translation.symmetries | 
+	 *            some p: {@link SymmetryDetector#partition(Bounds) partition}(bounds) |
+	 *             s.ints in p.ints       
+	 * @return some t: Translation | let guard = t.cnf.numberOfVariables() |
+	 *          t.originalFormula = translation.originalFormula.and(guard => formula) && 
+	 * 	        t.originalBounds.relations = translation.originalBounds.relations + bounds.relations &&
+	 *          t.originalBounds.upperBound = translation.originalBounds.upperBound + bounds.upperBound &&
+	 *          t.originalBounds.lowerBound = translation.originalBounds.lowerBound + bounds.lowerBound &&
+	 *          t.originalBounds.intBound = translation.originalBounds.intBound 
+	 * @throws NullPointerException  any of the arguments are null
+	 * @throws UnboundLeafException  the formula refers to an undeclared variable or a relation not mapped by translation.bounds + bounds
+	 * @throws HigherOrderDeclException  the formula contains a higher order declaration
+	 * @throws IllegalArgumentException any of the other preconditions on the arguments are violated
+	 */
+	public static Translation.Incremental translateIncrementalGuarded(Formula formula, Bounds bounds, Translation.Incremental translation)  {
+		checkIncrementalOptions(translation.options());
+		checkIncrementalBounds(bounds, translation);		
+		
+		final Options tOptions = translation.options();
+		final Bounds tBounds = translation.bounds();
+		
+		final Translation.Incremental transl;
+		if (translation.trivial()) {
+			if (!translation.cnf().solve()) 
+				throw new IllegalArgumentException("Expected a satisfiable translation, given " + translation);
+			// a trivial translation has an empty interpreter, which cannot be extended.  so we release the empty solver and 
+			// start over with an exact interpreter for tBounds.  the formulas translated so far are all trivially true, so 
+			// the symmetry breaking predicate (generated below) only needs to account for tBounds.
+			translation.cnf().free();
+			transl = new Translation.Incremental(tBounds, tOptions, translation.symmetries(), 
+					LeafInterpreter.exact(tBounds, tOptions, true), 
+					Bool2CNFTranslator.translateIncremental(BooleanConstant.TRUE, tOptions.solver()));
+			transl.countMemo(translation.memoHits(), translation.memoMisses());
+		} else {
+			transl = translation;
+		}
+		
+		final BooleanValue circuit = translateIncrementalCircuit(formula, bounds, transl, transl.interpreter());
+		
+		// generate a symmetry breaking predicate if the translation didn't have one yet, or if the 
+		// new bounds split some of the classes broken by its current one
+		if (translation.trivial() || refines(bounds, transl)) {
+			breakSymmetries(transl, new SymmetryBreaker(tBounds, tOptions.reporter()));
+		}
+		
+		// allocate the guard last, so that its label exceeds the labels of all gates in the circuit 
+		final BooleanFactory factory = transl.interpreter().factory();
+		factory.addVariables(1);
+		final int guard = factory.maxVariable();
+		
+		Bool2CNFTranslator.translateIncremental(circuit, guard, guard, transl.incrementer());
+		assert transl.cnf().numberOfVariables() == guard;
+		
 		return transl;
 	}
 	
@@ -299,6 +570,9 @@ public final class Translator {
 	
 	/**
 	 * Checks that the given {@code inc} bounds are incremental with respect to the given {@code translation}.
+	 * In particular, {@code inc} may refine the equivalence classes broken by the translation's 
+	 * {@linkplain Translation.Incremental#sbpGuard() guarded} symmetry breaking predicate, but not 
+	 * those in {@code translation.symmetries}, which were broken by tightening the translation bounds.
 	 * @requires translation.bounds.universe = inc.universe && no inc.intBound && no (translation.bounds.relations & inc.relations)
 	 * @requires all s: translation.symmetries |  
 	 * 				some p: {@link SymmetryDetector#partition(Bounds) partition}(inc) | 
@@ -399,7 +673,9 @@ public final class Translator {
 		// the updated translation currently has updated.originalBounds = tBounds, while updated.bounds is a copy of 
 		// tBounds with possibly additional skolem relations, as well as new bounds for some relations in formula.*components 
 		// due to symmetry breaking.
-		return new Translation.Checkpointed(updated.bounds(), tOptions, transl.symmetries(), updated.interpreter(), updated.incrementer());
+		final Translation.Checkpointed ret = new Translation.Checkpointed(updated.bounds(), tOptions, transl.symmetries(), updated.interpreter(), updated.incrementer());
+		ret.countMemo(transl.memoHits() + updated.memoHits(), transl.memoMisses() + updated.memoMisses());
+		return ret;
 	}
 	
 	/** 
@@ -412,29 +688,16 @@ public final class Translator {
 		
 		final Options tOptions = transl.options();
 		final Bounds tBounds = transl.bounds();
-		
-		// save the set of relations bound in the pre-state
-		final Set<Relation> oldRelations = new LinkedHashSet<Relation>(tBounds.relations());
-		
-		// add new relation bindings to the translation bounds.  note that skolemization (below) may also cause extra relations to be added.
-		for(Relation r : bounds.relations()) {
-			tBounds.bound(r, bounds.lowerBound(r), bounds.upperBound(r));
-		}
-		final AnnotatedNode<Formula> annotated = 
-			(transl.options().skolemDepth() < 0) ? annotate(formula) : skolemize(annotate(formula), tBounds, tOptions);
-		
-		// extend the interpreter with variable allocations for new relations, either from given bounds
-		// or those introduced by skolemization
 		final LeafInterpreter interpreter = transl.interpreter();
-		interpreter.extend(setDifference(tBounds.relations(), oldRelations), tBounds.lowerBounds(), tBounds.upperBounds());
-		
-		final BooleanValue circuit = FOL2BoolTranslator.translate(annotated, interpreter); 
+		final BooleanValue circuit = translateIncrementalCircuit(formula, bounds, transl, interpreter);
 	
 		if (circuit==BooleanConstant.FALSE) {
 			// return a fresh trivially false incremental translation.
-			return new Translation.Checkpointed(tBounds, tOptions, transl.symmetries(), 
+			final Translation.Checkpointed ret = new Translation.Checkpointed(tBounds, tOptions, transl.symmetries(), 
 					LeafInterpreter.empty(tBounds.universe(), tOptions), 
-					Bool2CNFTranslator.translateIncremental(BooleanConstant.FALSE, tOptions.solver()));			
+					Bool2CNFTranslator.translateIncremental(BooleanConstant.FALSE, tOptions.solver()));
+			ret.countMemo(transl.memoHits(), transl.memoMisses());
+			return ret;
 		} else if (circuit==BooleanConstant.TRUE) {
 			// must add any newly allocated primary variables to the solver for interpretation to work correctly 
 			final int maxVar = interpreter.factory().maxVariable();
@@ -505,6 +768,7 @@ public final class Translator {
 	private final boolean logging;
 	private final boolean incremental;
 	private final boolean checkpointed;
+	private final FOL2BoolCache.Counter memo = new FOL2BoolCache.Counter();
 
 	private Translator(Formula formula, Bounds bounds, Options options, boolean incremental, boolean checkpointed) {
 		if (checkpointed && !incremental) {
@@ -569,7 +833,9 @@ public final class Translator {
 		// eliminate top-level predicates, and also by skolemizing.  Then translate the optimize
 		// formula and bounds to a circuit, augment the circuit with a symmetry breaking predicate 
 		// that eliminates any remaining symmetries, and translate everything to CNF.
-		return toBoolean(optimizeFormulaAndBounds(annotated, breaker), breaker);
+		final Translation transl = toBoolean(optimizeFormulaAndBounds(annotated, breaker), breaker);
+		transl.countMemo(memo.hits(), memo.misses());
+		return transl;
 	}
 	
 	/**
@@ -704,24 +970,118 @@ public final class Translator {
 		if (logging) {
 			assert !incremental;
 			final TranslationLogger logger = options.logTranslation()==1 ? new MemoryLogger(annotated, bounds) : new FileLogger(annotated, bounds);
-			final BooleanAccumulator circuit = FOL2BoolTranslator.translate(annotated, interpreter, logger);
+			final BooleanAccumulator circuit = FOL2BoolTranslator.translate(annotated, interpreter, logger, memo);
 			final TranslationLog log = logger.log();
 			if (circuit.isShortCircuited()) {
-				return trivial(circuit.op().shortCircuit(), log);
+				return trivial(circuit.op().shortCircuit(), log, breaker);
 			} else if (circuit.size()==0) { 
-				return trivial(circuit.op().identity(), log);
+				return trivial(circuit.op().identity(), log, breaker);
 			}
 			circuit.add(breaker.generateSBP(interpreter, options));
 			return toCNF((BooleanFormula)factory.accumulate(circuit), interpreter, log);
 		} else {
-			final BooleanValue circuit = (BooleanValue)FOL2BoolTranslator.translate(annotated, interpreter);
+			final BooleanValue circuit = FOL2BoolTranslator.translate(annotated, interpreter, options.translationThreads(), options.groundingGrain(), memo);
 			if (circuit.op()==Operator.CONST) {
-				return trivial((BooleanConstant)circuit, null);
-			} 
+				return trivial((BooleanConstant)circuit, null, breaker);
+			} else if (incremental && !checkpointed) {
+				return toIncrementalCNF((BooleanFormula)circuit, interpreter, breaker);
+			}
 			return toCNF((BooleanFormula)factory.and(circuit, breaker.generateSBP(interpreter, options)), interpreter, null);
 		}
 	}
 	
+	/**
+	 * Translates the given circuit to CNF, adds the clauses to an incremental SATSolver returned
+	 * by options.solver(), and returns an incremental Translation object constructed from the solver
+	 * and the provided arguments.  The SBP generated by the given breaker is added to the 
+	 * translation separately, under a {@linkplain Translation.Incremental#sbpGuard() guard}.
+	 * @requires this.incremental && !this.checkpointed
+	 * @requires breaker.bounds = this.bounds
+	 * @requires interpreter and circuit are as specified by {@link #toCNF(BooleanFormula, LeafInterpreter, TranslationLog)}
+	 * @ensures {@link #completeBounds()}
+	 * @ensures this.options.reporter.translatingToCNF(circuit)
+	 * @return some t: Translation.Incremental | 
+	 *           t.bounds = completeBounds() && t.originalBounds = this.originalBounds &&
+	 *           t.vars = interpreter.vars && 
+	 *           t.symmetries = partition(this.originalBounds) - breaker.symmetries &&
+	 *           t.solver.solve(t.sbpGuard) iff SAT(this.formula, this.bounds, this.options)
+	 */
+	private Translation.Incremental toIncrementalCNF(BooleanFormula circuit, LeafInterpreter interpreter, SymmetryBreaker breaker) {
+		options.reporter().translatingToCNF(circuit);
+		final int maxPrimaryVar = interpreter.factory().maxVariable();
+		final Bool2CNFTranslator incrementer = Bool2CNFTranslator.translateIncremental(circuit, maxPrimaryVar, options.solver());
+		final Translation.Incremental transl = new Translation.Incremental(completeBounds(), options, brokenSymmetries(breaker), interpreter, incrementer);
+		breakSymmetries(transl, breaker);
+		return transl;
+	}
+	
+	/**
+	 * Returns the equivalence classes of this.originalBounds whose symmetries were broken 
+	 * by the given breaker's {@linkplain SymmetryBreaker#breakMatrixSymmetries(Map, boolean) breakMatrixSymmetries} method.
+	 * @requires breaker.bounds = this.bounds 
+	 * @return partition(this.originalBounds) - breaker.symmetries
+	 */
+	private Set<IntSet> brokenSymmetries(SymmetryBreaker breaker) {
+		final Set<IntSet> broken = SymmetryDetector.partition(originalBounds);
+		broken.removeAll(breaker.symmetries());
+		return broken;
+	}
+	
+	/**
+	 * Retracts the symmetry breaking predicate of the given translation, if any, and replaces it with 
+	 * the predicate generated by the given breaker, guarded by a fresh variable.
+	 * @requires breaker.bounds = transl.bounds
+	 * @requires transl.interpreter.relations = transl.bounds.relations 
+	 * @requires transl.cnf.solve(transl.sbpGuard)
+	 * @ensures transl.sbpGuard != 0 => transl.cnf.clauses' = transl.cnf.clauses + { -transl.sbpGuard }
+	 * @ensures let sbp = breaker.generateSBP(transl.interpreter, transl.options) | 
+	 *           sbp = TRUE => (transl.sbpGuard' = 0 && no transl.sbpSymmetries') else 
+	 *           (transl.sbpGuard' = transl.interpreter.factory.maxVariable()' && 
+	 *            transl.sbpSymmetries' = breaker.symmetries && 
+	 *            [[transl.cnf.clauses']] = [[transl.cnf.clauses]] && [[transl.sbpGuard' => sbp]])
+	 */
+	private static void breakSymmetries(Translation.Incremental transl, SymmetryBreaker breaker) {
+		final int oldGuard = transl.sbpGuard();
+		if (oldGuard != 0) { 
+			transl.cnf().addClause(new int[] { -oldGuard });
+		}
+		final Set<IntSet> symmetries = breaker.symmetries();
+		final LeafInterpreter interpreter = transl.interpreter();
+		final BooleanValue sbp = breaker.generateSBP(interpreter, transl.options());
+		if (sbp==BooleanConstant.TRUE) { 
+			transl.setSBP(0, Collections.<IntSet>emptySet());
+		} else {
+			// allocate the guard last, so that its label exceeds the labels of all gates in the predicate 
+			final BooleanFactory factory = interpreter.factory();
+			factory.addVariables(1);
+			final int guard = factory.maxVariable();
+			Bool2CNFTranslator.translateIncremental(sbp, guard, guard, transl.incrementer());
+			transl.setSBP(guard, symmetries);
+		}
+	}
+	
+	/**
+	 * Returns true if the equivalence classes induced by the given bounds split 
+	 * some of the classes broken by the symmetry breaking predicate of the given translation.
+	 * A predicate that also breaks {@linkplain AutomorphismDetector automorphisms} of the bounds 
+	 * is refined by any non-empty incremental bounds, since they may not preserve those automorphisms.
+	 * @return some inc.relations && transl.sbpGuard != 0 && transl.options.symmetryPredicate = AUTOMORPHISMS || 
+	 *         some s: transl.sbpSymmetries | no p: {@link SymmetryDetector#partition(Bounds) partition}(inc) | s.ints in p.ints
+	 */
+	private static boolean refines(Bounds inc, Translation.Incremental transl) {
+		if (transl.sbpSymmetries().isEmpty() || inc.relations().isEmpty()) return false;
+		if (transl.options().symmetryPredicate()==SymmetryPredicate.AUTOMORPHISMS) return true;
+		final Set<IntSet> incSymmetries = SymmetryDetector.partition(inc);
+		EQUIV_CHECK : for(IntSet part : transl.sbpSymmetries()) {
+			for(IntSet incPart : incSymmetries) {
+				if (incPart.containsAll(part))
+					continue EQUIV_CHECK;
+			}
+			return true;
+		}
+		return false;
+	}
+	
 	/**
 	 * Translates the given circuit to CNF, adds the clauses to a SATSolver returned
 	 * by options.solver(), and returns a Translation object constructed from the solver
@@ -754,7 +1114,8 @@ public final class Translator {
 			final Map<Relation, IntSet> varUsage = interpreter.vars();
 			interpreter = null; // enable gc
 			final SATSolver cnf = Bool2CNFTranslator.translate((BooleanFormula)circuit, maxPrimaryVar, options.solver());
-			return new Translation.Whole(completeBounds(), options, cnf, varUsage, maxPrimaryVar, log);
+			return new Translation.Whole(completeBounds(), options, cnf, varUsage, maxPrimaryVar, log, 
+					options.blocking()==Blocking.MODEL ? null : circuit);
 		}
 	}
 	
@@ -770,7 +1131,7 @@ public final class Translator {
 	 *           (outcome.booleanValue() => no t.solver.clauses else (one t.solver.clauses && no t.solver.clauses.literals))      
 	 **/
 	@SuppressWarnings("unchecked")
-	private Translation trivial(BooleanConstant outcome, TranslationLog log) {
+	private Translation trivial(BooleanConstant outcome, TranslationLog log, SymmetryBreaker breaker) {
 		if (incremental) {
 			if (checkpointed) {
 				return new Translation.Checkpointed(completeBounds(), options, 
@@ -779,7 +1140,7 @@ public final class Translator {
 						Bool2CNFTranslator.translateIncremental(outcome, options.solver()));
 			} else {
 				return new Translation.Incremental(completeBounds(), options, 
-						SymmetryDetector.partition(originalBounds), 
+						brokenSymmetries(breaker), 
 						LeafInterpreter.empty(bounds.universe(), options), // empty interpreter
 						Bool2CNFTranslator.translateIncremental(outcome, options.solver()));
 			}
@@ -0,0 +1,937 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.fol2sat;
+
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import kodkod.ast.BinaryExpression;
+import kodkod.ast.BinaryFormula;
+import kodkod.ast.BinaryIntExpression;
+import kodkod.ast.ComparisonFormula;
+import kodkod.ast.Comprehension;
+import kodkod.ast.ConstantExpression;
+import kodkod.ast.ConstantFormula;
+import kodkod.ast.Decl;
+import kodkod.ast.Decls;
+import kodkod.ast.ExprToIntCast;
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.IfExpression;
+import kodkod.ast.IfIntExpression;
+import kodkod.ast.IntComparisonFormula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.IntExpression;
+import kodkod.ast.IntToExprCast;
+import kodkod.ast.MultiplicityFormula;
+import kodkod.ast.NaryExpression;
+import kodkod.ast.NaryFormula;
+import kodkod.ast.NaryIntExpression;
+import kodkod.ast.Node;
+import kodkod.ast.NotFormula;
+import kodkod.ast.ProjectExpression;
+import kodkod.ast.QuantifiedFormula;
+import kodkod.ast.Relation;
+import kodkod.ast.RelationPredicate;
+import kodkod.ast.SumExpression;
+import kodkod.ast.UnaryExpression;
+import kodkod.ast.UnaryIntExpression;
+import kodkod.ast.Variable;
+import kodkod.ast.operator.IntOperator;
+import kodkod.ast.operator.Multiplicity;
+import kodkod.ast.visitor.ReturnVisitor;
+import kodkod.engine.CapacityExceededException;
+import kodkod.engine.bool.BooleanFactory;
+import kodkod.engine.config.Options;
+import kodkod.instance.Instance;
+import kodkod.instance.TupleSet;
+import kodkod.util.ints.IndexedEntry;
+import kodkod.util.ints.IntBitSet;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.IntTreeSet;
+import kodkod.util.ints.Ints;
+import kodkod.util.nodes.AnnotatedNode;
+
+/**
+ * Evaluates a node with respect to an instance by computing the tuples of its expressions
+ * directly, as sets of tuple indices, instead of translating it to a circuit over constants.
+ * The results are the same as those of the translation by {@link FOL2BoolTranslator} with
+ * an {@linkplain LeafInterpreter#exact(Instance, Options) exact} interpreter:  integers are
+ * {@link Options.IntEncoding#TWOSCOMPLEMENT two's complement} numbers of width options.bitwidth,
+ * and the operators whose circuits have edge cases that differ from Java's arithmetic
+ * (division, remainder and shifts) are evaluated with constant circuits.
+ *
+ * <p>The values of shared nodes and of nodes inside quantifier or comprehension bodies
+ * that have no free variables are computed once.  The binary formula operators are
+ * short-circuited, so an operand that does not affect the value of a formula
+ * is not evaluated.</p>
+ *
+ * @specfield node: AnnotatedNode<? extends Node> // node to evaluate
+ * @specfield instance: Instance // the instance that gives the values of the leaves
+ * @specfield options: Options // the options that determine the integer semantics
+ * @specfield env: Environment<IntSet> // current values of the enclosing quantified variables
+ */
+final class TupleEvaluator implements ReturnVisitor<IntSet, Boolean, IntSet, Integer> {
+	/* the largest capacity for which tuple sets are represented as bit sets */
+	private static final int BITSET_CAPACITY = 1<<16;
+	private final Instance instance;
+	private final int usize;
+	private final int bitwidth;
+	private final BooleanFactory constants;
+	/* the integers in the instance, and the indices of the atoms that represent them */
+	private final int[] ints, intAtoms;
+
+	private final Map<Node, Object> cache;
+	private Environment<IntSet> env;
+
+	/**
+	 * Constructs a new evaluator for the given node, instance and options.
+	 */
+	private TupleEvaluator(AnnotatedNode<? extends Node> annotated, Instance instance, Options options) {
+		this.instance = instance;
+		this.usize = instance.universe().size();
+		this.bitwidth = options.bitwidth();
+		this.constants = BooleanFactory.constantFactory(options);
+		this.ints = new int[instance.ints().size()];
+		this.intAtoms = new int[ints.length];
+		int i = 0;
+		for(IndexedEntry<TupleSet> entry : instance.intTuples()) {
+			ints[i] = entry.index();
+			intAtoms[i] = entry.value().indexView().min();
+			i++;
+		}
+		final ConstantCollector collector = new ConstantCollector(annotated.sharedNodes());
+		annotated.node().accept(collector);
+		this.cache = new IdentityHashMap<Node, Object>(collector.constants().size());
+		for(Node node : collector.constants()) {
+			cache.put(node, null);
+		}
+		this.env = Environment.empty();
+	}
+
+	/**
+	 * Evaluates the given formula with respect to the given instance and options.
+	 * @return the value of the formula with respect to the given instance and options
+	 * @throws HigherOrderDeclException  formula contains a higher order declaration
+	 * @throws UnboundLeafException  formula refers to an undeclared variable or a relation not mapped by the instance
+	 */
+	static boolean evaluate(Formula formula, Instance instance, Options options) {
+		return formula.accept(new TupleEvaluator(AnnotatedNode.annotate(formula), instance, options));
+	}
+
+	/**
+	 * Evaluates the given expression with respect to the given instance and options.
+	 * @return the tuples to which the expression evaluates with respect to the given instance and options
+	 * @throws HigherOrderDeclException  expression contains a higher order declaration
+	 * @throws UnboundLeafException  expression refers to an undeclared variable or a relation not mapped by the instance
+	 */
+	static TupleSet evaluate(Expression expression, Instance instance, Options options) {
+		final TupleEvaluator evaluator = new TupleEvaluator(AnnotatedNode.annotate(expression), instance, options);
+		// the value may be a leaf's or a constant's, which the returned set must not share
+		final IntSet tuples = evaluator.copy(expression.accept(evaluator), expression.arity());
+		return instance.universe().factory().setOf(expression.arity(), tuples);
+	}
+
+	/**
+	 * Evaluates the given int expression with respect to the given instance and options.
+	 * @return the integer to which the expression evaluates with respect to the given instance and options
+	 * @throws HigherOrderDeclException  intExpr contains a higher order declaration
+	 * @throws UnboundLeafException  intExpr refers to an undeclared variable or a relation not mapped by the instance
+	 */
+	static int evaluate(IntExpression intExpr, Instance instance, Options options) {
+		return intExpr.accept(new TupleEvaluator(AnnotatedNode.annotate(intExpr), instance, options));
+	}
+
+	/**
+	 * Returns at most limit bindings of the variables declared by the given universally 
+	 * quantified formula for which its body is false with respect to the given instance 
+	 * and options.  Each binding consists of the indices of the tuples bound to the 
+	 * declared variables, in the order of their declarations, and the bindings are 
+	 * returned in the order in which the formula is evaluated.
+	 * @requires formula.quantifier = ALL && limit > 0
+	 * @return bindings for which formula.body is false, in evaluation order
+	 * @throws HigherOrderDeclException  formula contains a higher order declaration
+	 * @throws UnboundLeafException  formula refers to an undeclared variable or a relation not mapped by the instance
+	 */
+	static List<int[]> counterexamples(QuantifiedFormula formula, Instance instance, Options options, int limit) {
+		final TupleEvaluator evaluator = new TupleEvaluator(AnnotatedNode.annotate(formula), instance, options);
+		final List<int[]> ret = new ArrayList<int[]>();
+		evaluator.counterexamples(formula.decls(), formula.formula(), 0, new int[formula.decls().size()], limit, ret);
+		return ret;
+	}
+
+	/*---------------------- helpers ----------------------*/
+	
+	/**
+	 * Adds to ret the bindings of the variables declared by decls[currentDecl..], 
+	 * extended with the given bindings of decls[0..currentDecl), for which the given 
+	 * formula is false, until ret contains limit bindings.
+	 * @ensures ret.elements' = ret.elements + { b: int[] | b[0..currentDecl) = binding[0..currentDecl) && 
+	 *            !formula(b) } && #ret' <= limit
+	 */
+	private void counterexamples(Decls decls, Formula formula, int currentDecl, int[] binding, int limit, List<int[]> ret) {
+		if (currentDecl==decls.size()) {
+			if (!formula.accept(this))
+				ret.add(binding.clone());
+			return;
+		}
+		final Decl decl = decls.get(currentDecl);
+		final IntSet declValue = visit(decl);
+		final Environment<IntSet> parent = env;
+		try {
+			for(IntIterator itr = declValue.iterator(); itr.hasNext() && ret.size() < limit; ) {
+				binding[currentDecl] = itr.next();
+				env = parent.extend(decl.variable(), Ints.singleton(binding[currentDecl]));
+				counterexamples(decls, formula, currentDecl+1, binding, limit, ret);
+			}
+		} finally {
+			env = parent;
+		}
+	}
+
+	/**
+	 * Returns the cached value of the given node, if any. Otherwise returns null.
+	 * @return the cached value of the given node, if any. Otherwise returns null.
+	 */
+	@SuppressWarnings("unchecked")
+	private <T> T lookup(Node node) {
+		return (T) cache.get(node);
+	}
+
+	/**
+	 * Caches the given value for the given node, if the node has no free variables
+	 * and its value may be needed more than once, and returns it.
+	 * @return value
+	 */
+	private <T> T cache(Node node, T value) {
+		if (cache.containsKey(node))
+			cache.put(node, value);
+		return value;
+	}
+
+	/**
+	 * Returns this.usize^arity.
+	 * @return this.usize^arity
+	 * @throws CapacityExceededException  this.usize^arity > Integer.MAX_VALUE
+	 */
+	private int capacity(int arity) {
+		long capacity = 1;
+		for(int i = 0; i < arity; i++) {
+			capacity *= usize;
+			if (capacity > Integer.MAX_VALUE)
+				throw new CapacityExceededException("universe.size()^" + arity + " > Integer.MAX_VALUE", Ints.nCopies(arity, usize));
+		}
+		return (int) capacity;
+	}
+
+	/**
+	 * Returns an empty set that can hold the indices of tuples of the given arity.
+	 * Bit sets are used for all but the largest capacities, since the sets are built 
+	 * and scanned by index ranges rather than probed.
+	 * @return an empty set that can hold the indices of tuples of the given arity.
+	 */
+	private IntSet empty(int arity) {
+		final int capacity = capacity(arity);
+		return capacity <= BITSET_CAPACITY ? new IntBitSet(capacity) : new IntTreeSet();
+	}
+
+	/**
+	 * Returns a modifiable copy of the given set.
+	 * @return a modifiable copy of the given set.
+	 */
+	private IntSet copy(IntSet s, int arity) {
+		final IntSet ret = empty(arity);
+		ret.addAll(s);
+		return ret;
+	}
+
+	/**
+	 * Returns the given number truncated to this.bitwidth bits and sign-extended.
+	 * @return the given number truncated to this.bitwidth bits and sign-extended.
+	 */
+	private int truncate(long number) {
+		final int shift = 64 - bitwidth;
+		return (int) ((number << shift) >> shift);
+	}
+
+	/*---------------------- declarations and leaves ----------------------*/
+
+	/**
+	 * Throws an UnsupportedOperationException;  declarations are evaluated
+	 * one at a time, as their variables are bound.
+	 * @throws UnsupportedOperationException
+	 */
+	public IntSet visit(Decls decls) {
+		throw new UnsupportedOperationException("visit(Decls)");
+	}
+
+	/**
+	 * Returns the value of decl.expression.
+	 * @return decl.expression.accept(this)
+	 * @throws HigherOrderDeclException  decl.multiplicity != ONE
+	 */
+	public IntSet visit(Decl decl) {
+		if (decl.multiplicity()!=Multiplicity.ONE)
+			throw new HigherOrderDeclException(decl);
+		return decl.expression().accept(this);
+	}
+
+	/**
+	 * @return this.env.lookup(variable)
+	 * @throws UnboundLeafException  no this.env.lookup(variable)
+	 */
+	public IntSet visit(Variable variable) {
+		final IntSet ret = env.lookup(variable);
+		if (ret != null) return ret;
+		else throw new UnboundLeafException("Unbound variable", variable);
+	}
+
+	/**
+	 * @return this.instance.tuples(relation).indexView()
+	 * @throws UnboundLeafException  no this.instance.tuples(relation)
+	 */
+	public IntSet visit(Relation relation) {
+		final TupleSet tuples = instance.tuples(relation);
+		if (tuples != null) return tuples.indexView();
+		else throw new UnboundLeafException("Unbound relation: ", relation);
+	}
+
+	/**
+	 * @return the indices of the tuples in the given constant
+	 */
+	public IntSet visit(ConstantExpression constExpr) {
+		IntSet ret = lookup(constExpr);
+		if (ret!=null) return ret;
+		if (constExpr==Expression.UNIV) {
+			ret = Ints.rangeSet(Ints.range(0, usize-1));
+		} else if (constExpr==Expression.IDEN) {
+			ret = empty(2);
+			for(int i = 0; i < usize; i++) {
+				ret.add(i*usize + i);
+			}
+		} else if (constExpr==Expression.NONE) {
+			ret = empty(1);
+		} else if (constExpr==Expression.INTS) {
+			ret = empty(1);
+			for(int atom : intAtoms) {
+				ret.add(atom);
+			}
+		} else {
+			throw new IllegalArgumentException("unknown constant expression: " + constExpr);
+		}
+		return cache(constExpr, ret);
+	}
+
+	/*---------------------- expressions ----------------------*/
+
+	/**
+	 * Returns the join of the given sets of tuples.
+	 * @return { i: int | some l: left, r: right | l % usize = r / usize^(rightArity-1) &&
+	 *                                             i = (l / usize) * usize^(rightArity-1) + r % usize^(rightArity-1) }
+	 */
+	private IntSet join(IntSet left, int leftArity, IntSet right, int rightArity) {
+		final IntSet ret = empty(leftArity + rightArity - 2);
+		if (left.isEmpty() || right.isEmpty()) return ret;
+		final int rowSize = capacity(rightArity-1);
+		for(IntIterator l = left.iterator(); l.hasNext(); ) {
+			final int lIndex = l.next();
+			final int last = lIndex % usize, prefix = (lIndex / usize) * rowSize;
+			for(IntIterator r = right.iterator(last*rowSize, (last+1)*rowSize - 1); r.hasNext(); ) {
+				ret.add(prefix + r.next() % rowSize);
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the cross product of the given sets of tuples.
+	 * @return { i: int | some l: left, r: right | i = l * usize^rightArity + r }
+	 */
+	private IntSet product(IntSet left, int leftArity, IntSet right, int rightArity) {
+		final IntSet ret = empty(leftArity + rightArity);
+		final int rowSize = capacity(rightArity);
+		for(IntIterator l = left.iterator(); l.hasNext(); ) {
+			final int prefix = l.next() * rowSize;
+			for(IntIterator r = right.iterator(); r.hasNext(); ) {
+				ret.add(prefix + r.next());
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the override of the left set of tuples with the right one.
+	 * @return right + { l: left | no r: right | l / usize^(arity-1) = r / usize^(arity-1) }
+	 */
+	private IntSet override(IntSet left, IntSet right, int arity) {
+		final IntSet ret = copy(right, arity);
+		final int rowSize = capacity(arity-1);
+		for(IntIterator l = left.iterator(); l.hasNext(); ) {
+			final int lIndex = l.next(), first = lIndex / rowSize;
+			if (!right.iterator(first*rowSize, (first+1)*rowSize - 1).hasNext())
+				ret.add(lIndex);
+		}
+		return ret;
+	}
+
+	/**
+	 * Returns the transitive closure of the given binary relation, computed
+	 * with a depth first search from every atom that has a successor.
+	 * @return ^s
+	 */
+	private IntSet closure(IntSet s) {
+		final IntSet ret = empty(2);
+		if (s.isEmpty()) return ret;
+		final IntBitSet reached = new IntBitSet(usize);
+		final int[] stack = new int[usize+1];
+		int lastSource = -1;
+		for(IntIterator edges = s.iterator(); edges.hasNext(); ) {
+			final int source = edges.next() / usize;
+			if (source==lastSource) continue;
+			lastSource = source;
+			reached.clear();
+			int top = 0;
+			stack[top++] = source;
+			while(top > 0) {
+				final int atom = stack[--top];
+				for(IntIterator succ = s.iterator(atom*usize, (atom+1)*usize - 1); succ.hasNext(); ) {
+					final int next = succ.next() % usize;
+					if (reached.add(next)) {
+						ret.add(source*usize + next);
+						stack[top++] = next;
+					}
+				}
+			}
+		}
+		return ret;
+	}
+
+	/**
+	 * @return the value of the given binary expression
+	 */
+	public IntSet visit(BinaryExpression binExpr) {
+		IntSet ret = lookup(binExpr);
+		if (ret!=null) return ret;
+
+		final IntSet left = binExpr.left().accept(this);
+		final IntSet right = binExpr.right().accept(this);
+		final int arity = binExpr.arity();
+
+		switch(binExpr.op()) {
+		case UNION        	: ret = copy(left, arity); ret.addAll(right); break;
+		case INTERSECTION	: ret = copy(left, arity); ret.retainAll(right); break;
+		case DIFFERENCE 	: ret = copy(left, arity); ret.removeAll(right); break;
+		case OVERRIDE 		: ret = override(left, right, arity); break;
+		case JOIN 			: ret = join(left, binExpr.left().arity(), right, binExpr.right().arity()); break;
+		case PRODUCT		: ret = product(left, binExpr.left().arity(), right, binExpr.right().arity()); break;
+		default :
+			throw new IllegalArgumentException("Unknown operator: " + binExpr.op());
+		}
+		return cache(binExpr, ret);
+	}
+
+	/**
+	 * @return the value of the given nary expression
+	 */
+	public IntSet visit(NaryExpression expr) {
+		IntSet ret = lookup(expr);
+		if (ret!=null) return ret;
+
+		ret = expr.child(0).accept(this);
+		int arity = expr.child(0).arity();
+		for(int i = 1, size = expr.size(); i < size; i++) {
+			final IntSet child = expr.child(i).accept(this);
+			switch(expr.op()) {
+			case UNION        	: ret = copy(ret, arity); ret.addAll(child); break;
+			case INTERSECTION	: ret = copy(ret, arity); ret.retainAll(child); break;
+			case OVERRIDE 		: ret = override(ret, child, arity); break;
+			case PRODUCT		:
+				ret = product(ret, arity, child, expr.child(i).arity());
+				arity += expr.child(i).arity();
+				break;
+			default :
+				throw new IllegalArgumentException("Unknown associative operator: " + expr.op());
+			}
+		}
+		return cache(expr, ret);
+	}
+
+	/**
+	 * @return the value of the given unary expression
+	 */
+	public IntSet visit(UnaryExpression unaryExpr) {
+		IntSet ret = lookup(unaryExpr);
+		if (ret!=null) return ret;
+
+		final IntSet child = unaryExpr.expression().accept(this);
+		switch(unaryExpr.op()) {
+		case TRANSPOSE :
+			ret = empty(2);
+			for(IntIterator itr = child.iterator(); itr.hasNext(); ) {
+				final int index = itr.next();
+				ret.add((index % usize) * usize + index / usize);
+			}
+			break;
+		case CLOSURE :
+			ret = closure(child);
+			break;
+		case REFLEXIVE_CLOSURE :
+			ret = closure(child);
+			for(int i = 0; i < usize; i++) {
+				ret.add(i*usize + i);
+			}
+			break;
+		default :
+			throw new IllegalArgumentException("Unknown operator: " + unaryExpr.op());
+		}
+		return cache(unaryExpr, ret);
+	}
+
+	/**
+	 * Adds to the given set the indices of the tuples {@code (a, b, ..., x)} for which
+	 * {@code a in A, b in B, ..., x in X} and {@code formula(a, b, ..., x)} holds, where
+	 * {@code a: A, b: B, ..., x: X} are the declarations decls[currentDecl..].
+	 */
+	private void comprehension(Decls decls, Formula formula, int currentDecl, int partialIndex, IntSet ret) {
+		if (currentDecl==decls.size()) {
+			if (formula.accept(this))
+				ret.add(partialIndex);
+			return;
+		}
+		final Decl decl = decls.get(currentDecl);
+		final IntSet declValue = visit(decl);
+		final int position = capacity(decls.size()-currentDecl-1);
+		final Environment<IntSet> parent = env;
+		for(IntIterator itr = declValue.iterator(); itr.hasNext(); ) {
+			final int index = itr.next();
+			env = parent.extend(decl.variable(), Ints.singleton(index));
+			comprehension(decls, formula, currentDecl+1, partialIndex + index*position, ret);
+		}
+		env = parent;
+	}
+
+	/**
+	 * @return the value of the given comprehension
+	 */
+	public IntSet visit(Comprehension cexpr) {
+		IntSet ret = lookup(cexpr);
+		if (ret!=null) return ret;
+		ret = empty(cexpr.decls().size());
+		comprehension(cexpr.decls(), cexpr.formula(), 0, 0, ret);
+		return cache(cexpr, ret);
+	}
+
+	/**
+	 * @return ifExpr.condition.accept(this) ? ifExpr.thenExpr.accept(this) : ifExpr.elseExpr.accept(this)
+	 */
+	public IntSet visit(IfExpression ifExpr) {
+		final IntSet ret = lookup(ifExpr);
+		if (ret!=null) return ret;
+		return cache(ifExpr, ifExpr.condition().accept(this) ?
+				ifExpr.thenExpr().accept(this) : ifExpr.elseExpr().accept(this));
+	}
+
+	/**
+	 * @return the value of the given projection
+	 */
+	public IntSet visit(ProjectExpression project) {
+		IntSet ret = lookup(project);
+		if (ret!=null) return ret;
+
+		final int arity = project.arity(), tdnum = project.expression().arity();
+		final int[] cols = new int[arity];
+		ret = empty(arity);
+		for(int i = 0; i < arity; i++) {
+			cols[i] = project.column(i).accept(this);
+			if (cols[i] < 0 || cols[i] >= tdnum)
+				return cache(project, ret);
+		}
+
+		final int[] atoms = new int[tdnum];
+		for(IntIterator itr = project.expression().accept(this).iterator(); itr.hasNext(); ) {
+			int index = itr.next();
+			for(int i = tdnum-1; i >= 0; i--) {
+				atoms[i] = index % usize;
+				index /= usize;
+			}
+			int projected = 0;
+			for(int col : cols) {
+				projected = projected*usize + atoms[col];
+			}
+			ret.add(projected);
+		}
+		return cache(project, ret);
+	}
+
+	/**
+	 * @return the value of the given cast
+	 */
+	public IntSet visit(IntToExprCast castExpr) {
+		IntSet ret = lookup(castExpr);
+		if (ret!=null) return ret;
+
+		final int value = castExpr.intExpr().accept(this);
+		ret = empty(1);
+		switch(castExpr.op()) {
+		case INTCAST :
+			for(int i = 0; i < ints.length; i++) {
+				if (truncate(ints[i])==value)
+					ret.add(intAtoms[i]);
+			}
+			break;
+		case BITSETCAST :
+			final int msb = bitwidth-1;
+			// handle all bits but the sign bit
+			for(int i = 0; i < msb; i++) {
+				final int pow2 = 1<<i;
+				if ((value & pow2)!=0 && instance.contains(pow2))
+					ret.add(instance.tuples(pow2).indexView().min());
+			}
+			// handle the sign bit
+			if (value < 0 && instance.contains(-1<<msb))
+				ret.add(instance.tuples(-1<<msb).indexView().min());
+			break;
+		default :
+			throw new IllegalArgumentException("Unknown cast operator: " + castExpr.op());
+		}
+		return cache(castExpr, ret);
+	}
+
+	/*---------------------- integers ----------------------*/
+
+	/**
+	 * @return intConst.value truncated to this.bitwidth bits
+	 */
+	public Integer visit(IntConstant intConst) {
+		return truncate(intConst.value());
+	}
+
+	/**
+	 * @return intExpr.condition.accept(this) ? intExpr.thenExpr.accept(this) : intExpr.elseExpr.accept(this)
+	 */
+	public Integer visit(IfIntExpression intExpr) {
+		final Integer ret = lookup(intExpr);
+		if (ret!=null) return ret;
+		return cache(intExpr, intExpr.condition().accept(this) ?
+				intExpr.thenExpr().accept(this) : intExpr.elseExpr().accept(this));
+	}
+
+	/**
+	 * @return the value of the given cast
+	 */
+	public Integer visit(ExprToIntCast intExpr) {
+		final Integer ret = lookup(intExpr);
+		if (ret!=null) return ret;
+		final IntSet child = intExpr.expression().accept(this);
+		switch(intExpr.op()) {
+		case CARDINALITY :
+			return cache(intExpr, truncate(child.size()));
+		case SUM :
+			long sum = 0;
+			for(int i = 0; i < ints.length; i++) {
+				if (child.contains(intAtoms[i]))
+					sum += ints[i];
+			}
+			return cache(intExpr, truncate(sum));
+		default:
+			throw new IllegalArgumentException("unknown operator: " + intExpr.op());
+		}
+	}
+
+	/**
+	 * Returns the value of the given operator applied to the given operands.
+	 * @return left op right
+	 */
+	private int apply(IntOperator op, int left, int right) {
+		switch(op) {
+		case PLUS		: return truncate((long)left + right);
+		case MINUS		: return truncate((long)left - right);
+		case MULTIPLY	: return truncate((long)left * right);
+		case AND		: return left & right;
+		case OR			: return left | right;
+		case XOR		: return left ^ right;
+		case DIVIDE		: return constants.integer(left).divide(constants.integer(right)).value();
+		case MODULO		: return constants.integer(left).modulo(constants.integer(right)).value();
+		case SHL		: return constants.integer(left).shl(constants.integer(right)).value();
+		case SHR		: return constants.integer(left).shr(constants.integer(right)).value();
+		case SHA		: return constants.integer(left).sha(constants.integer(right)).value();
+		default :
+			throw new IllegalArgumentException("Unknown operator: " + op);
+		}
+	}
+
+	/**
+	 * @return intExpr.left.accept(this) intExpr.op intExpr.right.accept(this)
+	 */
+	public Integer visit(BinaryIntExpression intExpr) {
+		final Integer ret = lookup(intExpr);
+		if (ret!=null) return ret;
+		final int left = intExpr.left().accept(this);
+		final int right = intExpr.right().accept(this);
+		return cache(intExpr, apply(intExpr.op(), left, right));
+	}
+
+	/**
+	 * @return intExpr.child(0).accept(this) intExpr.op ... intExpr.op intExpr.child(intExpr.size()-1).accept(this)
+	 */
+	public Integer visit(NaryIntExpression intExpr) {
+		final Integer ret = lookup(intExpr);
+		if (ret!=null) return ret;
+		int value = intExpr.child(0).accept(this);
+		for(int i = 1, size = intExpr.size(); i < size; i++) {
+			value = apply(intExpr.op(), value, intExpr.child(i).accept(this));
+		}
+		return cache(intExpr, value);
+	}
+
+	/**
+	 * @return intExpr.op(intExpr.intExpr.accept(this))
+	 */
+	public Integer visit(UnaryIntExpression intExpr) {
+		final Integer ret = lookup(intExpr);
+		if (ret!=null) return ret;
+		final int child = intExpr.intExpr().accept(this);
+		switch(intExpr.op()) {
+		case NEG	: return cache(intExpr, truncate(-(long)child));
+		case NOT	: return cache(intExpr, ~child);
+		case ABS	: return cache(intExpr, truncate(StrictMath.abs((long)child)));
+		case SGN	: return cache(intExpr, Integer.signum(child));
+		default :
+			throw new IllegalArgumentException("Unknown operator: " + intExpr.op());
+		}
+	}
+
+	/**
+	 * Returns the sum of the values of the given expression for all bindings of
+	 * the variables declared by decls[currentDecl..].
+	 * @return sum of expr for all bindings of decls[currentDecl..]
+	 */
+	private long sum(Decls decls, IntExpression expr, int currentDecl) {
+		if (currentDecl==decls.size())
+			return expr.accept(this);
+		final Decl decl = decls.get(currentDecl);
+		final IntSet declValue = visit(decl);
+		final Environment<IntSet> parent = env;
+		long sum = 0;
+		for(IntIterator itr = declValue.iterator(); itr.hasNext(); ) {
+			env = parent.extend(decl.variable(), Ints.singleton(itr.next()));
+			sum += sum(decls, expr, currentDecl+1);
+		}
+		env = parent;
+		return sum;
+	}
+
+	/**
+	 * @return sum of intExpr.intExpr for all bindings of intExpr.decls
+	 */
+	public Integer visit(SumExpression intExpr) {
+		final Integer ret = lookup(intExpr);
+		if (ret!=null) return ret;
+		return cache(intExpr, truncate(sum(intExpr.decls(), intExpr.intExpr(), 0)));
+	}
+
+	/*---------------------- formulas ----------------------*/
+
+	/**
+	 * @return intComp.left.accept(this) intComp.op intComp.right.accept(this)
+	 */
+	public Boolean visit(IntComparisonFormula intComp) {
+		final Boolean ret = lookup(intComp);
+		if (ret!=null) return ret;
+		final int left = intComp.left().accept(this);
+		final int right = intComp.right().accept(this);
+		switch(intComp.op()) {
+		case EQ  : return cache(intComp, left==right);
+		case LT  : return cache(intComp, left<right);
+		case LTE : return cache(intComp, left<=right);
+		case GT  : return cache(intComp, left>right);
+		case GTE : return cache(intComp, left>=right);
+		default:
+			throw new IllegalArgumentException("Unknown operator: " + intComp.op());
+		}
+	}
+
+	/**
+	 * Returns true if the given formula holds for all (if all is true) or for some
+	 * (if all is false) bindings of the variables declared by decls[currentDecl..].
+	 * @return all => (all decls[currentDecl..] | formula), (some decls[currentDecl..] | formula)
+	 */
+	private boolean quantify(boolean all, Decls decls, Formula formula, int currentDecl) {
+		if (currentDecl==decls.size())
+			return formula.accept(this);
+		final Decl decl = decls.get(currentDecl);
+		final IntSet declValue = visit(decl);
+		final Environment<IntSet> parent = env;
+		try {
+			for(IntIterator itr = declValue.iterator(); itr.hasNext(); ) {
+				env = parent.extend(decl.variable(), Ints.singleton(itr.next()));
+				if (quantify(all, decls, formula, currentDecl+1) != all)
+					return !all;
+			}
+			return all;
+		} finally {
+			env = parent;
+		}
+	}
+
+	/**
+	 * @return the value of the given quantified formula
+	 */
+	public Boolean visit(QuantifiedFormula quantFormula) {
+		final Boolean ret = lookup(quantFormula);
+		if (ret!=null) return ret;
+		switch(quantFormula.quantifier()) {
+		case ALL	: return cache(quantFormula, quantify(true, quantFormula.decls(), quantFormula.formula(), 0));
+		case SOME	: return cache(quantFormula, quantify(false, quantFormula.decls(), quantFormula.formula(), 0));
+		default :
+			throw new IllegalArgumentException("Unknown quantifier: " + quantFormula.quantifier());
+		}
+	}
+
+	/**
+	 * @return the value of the given nary formula
+	 */
+	public Boolean visit(NaryFormula formula) {
+		final Boolean ret = lookup(formula);
+		if (ret!=null) return ret;
+		final boolean shortCircuit;
+		switch(formula.op()) {
+		case AND : shortCircuit = false; break;
+		case OR  : shortCircuit = true;  break;
+		default	 : throw new IllegalArgumentException("Unknown nary operator: " + formula.op());
+		}
+		for(Formula child : formula) {
+			if (child.accept(this)==shortCircuit)
+				return cache(formula, shortCircuit);
+		}
+		return cache(formula, !shortCircuit);
+	}
+
+	/**
+	 * @return the value of the given binary formula
+	 */
+	public Boolean visit(BinaryFormula binFormula) {
+		final Boolean ret = lookup(binFormula);
+		if (ret!=null) return ret;
+		final boolean left = binFormula.left().accept(this);
+		switch(binFormula.op()) {
+		case AND		: return cache(binFormula, left && binFormula.right().accept(this));
+		case OR			: return cache(binFormula, left || binFormula.right().accept(this));
+		case IMPLIES	: return cache(binFormula, !left || binFormula.right().accept(this));
+		case IFF		: return cache(binFormula, left == binFormula.right().accept(this));
+		default :
+			throw new IllegalArgumentException("Unknown operator: " + binFormula.op());
+		}
+	}
+
+	/**
+	 * @return !not.formula.accept(this)
+	 */
+	public Boolean visit(NotFormula not) {
+		final Boolean ret = lookup(not);
+		return ret!=null ? ret : cache(not, !not.formula().accept(this));
+	}
+
+	/**
+	 * @return constant.booleanValue()
+	 */
+	public Boolean visit(ConstantFormula constant) {
+		return constant.booleanValue();
+	}
+
+	/**
+	 * @return the value of the given comparison formula
+	 */
+	public Boolean visit(ComparisonFormula compFormula) {
+		final Boolean ret = lookup(compFormula);
+		if (ret!=null) return ret;
+		final IntSet left = compFormula.left().accept(this);
+		final IntSet right = compFormula.right().accept(this);
+		switch(compFormula.op()) {
+		case SUBSET	: return cache(compFormula, right.containsAll(left));
+		case EQUALS	: return cache(compFormula, left.size()==right.size() && right.containsAll(left));
+		default :
+			throw new IllegalArgumentException("Unknown operator: " + compFormula.op());
+		}
+	}
+
+	/**
+	 * @return the value of the given multiplicity formula
+	 */
+	public Boolean visit(MultiplicityFormula multFormula) {
+		final Boolean ret = lookup(multFormula);
+		if (ret!=null) return ret;
+		final int size = multFormula.expression().accept(this).size();
+		switch(multFormula.multiplicity()) {
+		case NO 	: return cache(multFormula, size==0);
+		case SOME	: return cache(multFormula, size>0);
+		case ONE 	: return cache(multFormula, size==1);
+		case LONE 	: return cache(multFormula, size<=1);
+		default :
+			throw new IllegalArgumentException("Unknown multiplicity: " + multFormula.multiplicity());
+		}
+	}
+
+	/**
+	 * @return pred.toConstraints().accept(this)
+	 */
+	public Boolean visit(RelationPredicate pred) {
+		final Boolean ret = lookup(pred);
+		return ret!=null ? ret : cache(pred, pred.toConstraints().accept(this));
+	}
+
+	/**
+	 * Collects the nodes whose values should be cached:  the nodes without free
+	 * variables that are either shared or inside the body of a quantified formula,
+	 * comprehension or sum.
+	 */
+	private static final class ConstantCollector extends FreeVariableCollector {
+
+		ConstantCollector(Set<Node> shared) {
+			super(shared);
+		}
+
+		/**
+		 * Returns the nodes whose values should be cached.
+		 * @return the nodes whose values should be cached
+		 */
+		Set<Node> constants() {
+			return cache.keySet();
+		}
+
+		/**
+		 * Records the given node if it has no free variables and it is either
+		 * shared or inside the body of a quantified formula, comprehension or sum.
+		 */
+		@Override
+		protected Set<Variable> cache(Node node, Set<Variable> freeVars) {
+			if (freeVars.isEmpty() && (cached.contains(node) || !varsInScope.empty())) {
+				cache.put(node, reduce(freeVars));
+			}
+			return freeVars;
+		}
+	}
+}
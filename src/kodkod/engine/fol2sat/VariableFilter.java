@@ -0,0 +1,67 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.fol2sat;
+
+import java.util.Map;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Node;
+import kodkod.ast.Variable;
+import kodkod.instance.TupleSet;
+import kodkod.util.ints.IntSet;
+
+/**
+ * A filter for TranslationRecords that accepts only those records whose literals
+ * are drawn from a given set of variables.  Translation logs that index their records
+ * by literal use the variable set to look up the candidate records directly, and consult
+ * {@linkplain #accept(Node, Formula, int, Map)} only for those candidates.  Subclasses 
+ * may strengthen the filter by overriding <tt>accept</tt>, but an overriding method 
+ * must not accept any record that is rejected by <tt>super.accept</tt>.
+ * @specfield variables: set int
+ */
+public class VariableFilter implements RecordFilter {
+	private final IntSet variables;
+	
+	/**
+	 * Constructs a filter that accepts the records whose literals 
+	 * are drawn from the given set of variables.  
+	 * @ensures this.variables' = variables
+	 */
+	public VariableFilter(IntSet variables) { 
+		this.variables = variables;
+	}
+	
+	/**
+	 * Returns this.variables.
+	 * @return this.variables
+	 */
+	public final IntSet variables() { return variables; }
+	
+	/**
+	 * Returns true if the absolute value of the given literal is in this.variables.
+	 * @return this.variables.contains(abs(literal))
+	 * @see kodkod.engine.fol2sat.RecordFilter#accept(kodkod.ast.Node, kodkod.ast.Formula, int, java.util.Map)
+	 */
+	public boolean accept(Node node, Formula translated, int literal, Map<Variable, TupleSet> env) {
+		return variables.contains(StrictMath.abs(literal));
+	}
+}
@@ -0,0 +1,48 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.satlab;
+
+/**
+ * Provides an interface to a SAT solver that can take many clauses at once, 
+ * from a {@link ClauseArena}.  For solvers accessed through JNI, this replaces
+ * a native call (and an array copy) per clause with a single call per arena.
+ *
+ * @specfield variables: set [1..)
+ * @specfield clauses: set Clause
+ * @invariant all i: [2..) | i in variables => i-1 in variables
+ * @invariant all c: clauses | all lit: c.literals | lit in variables || -lit in variables
+ * @invariant all c: clauses | all disj i,j: c.literals | abs(i) != abs(j)
+ */
+public interface BatchedSolver extends SATSolver {
+
+    /**
+     * Adds the clauses in the given arena to this solver, in the order in which 
+     * they were added to the arena, and clears the arena.  The result is the same as 
+     * calling {@link #addClause(int[])} on each clause in turn.
+     * @requires all c: arena.clauses | all lit: c.literals | lit in this.variables || -lit in this.variables
+     * @ensures this.clauses' = this.clauses + arena.clauses
+     * @ensures no arena.clauses'
+     * @return the number of clauses for which {@link #addClause(int[])} would have returned true
+     * @throws NullPointerException  arena = null
+     */
+    public int addClauses(ClauseArena arena);
+}
@@ -0,0 +1,126 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.satlab;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+
+/**
+ * A fixed-size buffer of clauses, stored outside of the Java heap so that 
+ * they can be handed to a {@link BatchedSolver} all at once.  The clauses are laid 
+ * out as in the DIMACS format:  the literals of each clause are followed by a zero.
+ * 
+ * @specfield capacity: int // the number of literals and terminators that fit into this arena
+ * @specfield clauses: seq Clause
+ * @invariant (sum c: clauses.elems | c.size() + 1) <= capacity
+ */
+public final class ClauseArena {
+	/** The default capacity of an arena, in literals and terminators. */
+	public static final int DEFAULT_CAPACITY = 1 << 16;
+	
+	private final IntBuffer buffer;
+	private int size;
+	
+	/**
+	 * Constructs an empty arena with the given capacity.
+	 * @requires capacity > 0
+	 * @ensures this.capacity' = capacity && no this.clauses'
+	 * @throws IllegalArgumentException  capacity <= 0
+	 */
+	public ClauseArena(int capacity) {
+		if (capacity <= 0) throw new IllegalArgumentException("capacity <= 0: " + capacity);
+		this.buffer = ByteBuffer.allocateDirect(capacity << 2).order(ByteOrder.nativeOrder()).asIntBuffer();
+		this.size = 0;
+	}
+	
+	/**
+	 * Constructs an empty arena with the default capacity.
+	 * @ensures this.capacity' = DEFAULT_CAPACITY && no this.clauses'
+	 */
+	public ClauseArena() {
+		this(DEFAULT_CAPACITY);
+	}
+	
+	/**
+	 * Returns the capacity of this arena.
+	 * @return this.capacity
+	 */
+	public int capacity() { return buffer.capacity(); }
+	
+	/**
+	 * Returns the number of clauses in this arena.
+	 * @return #this.clauses
+	 */
+	public int size() { return size; }
+	
+	/**
+	 * Returns true if this arena contains no clauses.
+	 * @return no this.clauses
+	 */
+	public boolean isEmpty() { return size==0; }
+	
+	/**
+	 * Returns the number of literals and terminators in this arena.
+	 * @return sum c: this.clauses.elems | c.size() + 1
+	 */
+	int length() { return buffer.position(); }
+	
+	/**
+	 * Returns the direct buffer that backs this arena.  Its first {@link #length()} 
+	 * entries hold the clauses in this arena.
+	 * @return the direct buffer that backs this arena
+	 */
+	IntBuffer buffer() { return buffer; }
+	
+	/**
+	 * Appends a clause with the given literals to this arena, if it fits, and returns 
+	 * true.  Otherwise leaves this arena unchanged and returns false. 
+	 * @ensures (sum c: this.clauses.elems | c.size() + 1) + lits.length < this.capacity => 
+	 *           this.clauses' = this.clauses.add(lits) else this.clauses' = this.clauses
+	 * @return true if the clause was added to this arena
+	 */
+	public boolean add(int[] lits) {
+		if (buffer.remaining() <= lits.length) return false;
+		buffer.put(lits);
+		buffer.put(0);
+		size++;
+		return true;
+	}
+	
+	/**
+	 * Removes all clauses from this arena.
+	 * @ensures no this.clauses'
+	 */
+	public void clear() {
+		buffer.clear();
+		size = 0;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "ClauseArena(" + size + " clauses, " + length() + "/" + capacity() + ")";
+	}
+}
@@ -21,12 +21,14 @@
  */
 package kodkod.engine.satlab;
 
+import java.nio.IntBuffer;
+
 /**
  * Java wrapper for the CryptoMiniSat solver by Mate Soos.
  * 
  * @author Emina Torlak
  */
-final class CryptoMiniSat extends NativeSolver {
+final class CryptoMiniSat extends NativeSolver implements InterruptibleSolver {
 
 	/**
 	 * Constructs a new MiniSAT wrapper.
@@ -75,6 +77,13 @@ final class CryptoMiniSat extends NativeSolver {
 	@Override
 	native boolean addClause(long peer, int[] lits) ;
 
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#addClauses(long, IntBuffer, int)
+	 */
+	@Override
+	native int addClauses(long peer, IntBuffer clauses, int length);
+
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.NativeSolver#solve(long)
@@ -82,6 +91,27 @@ final class CryptoMiniSat extends NativeSolver {
 	@Override
 	native boolean solve(long peer) ;
 
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#solveAssuming(long, int[])
+	 */
+	@Override
+	native boolean solveAssuming(long peer, int[] assumptions) ;
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#failedAssumptions(long)
+	 */
+	@Override
+	native int[] failedAssumptions(long peer) ;
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#setInterrupt(long, boolean)
+	 */
+	@Override
+	native void setInterrupt(long peer, boolean interrupt) ;
+
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.NativeSolver#valueOf(long, int)
@@ -21,14 +21,15 @@
  */
 package kodkod.engine.satlab;
 
-import java.io.BufferedReader;
 import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
-import java.io.InputStreamReader;
+import java.io.OutputStream;
 import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
 import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
@@ -37,18 +38,38 @@ import java.util.List;
 
 /**
  * An implementation of a wrapper for an external SAT solver, 
- * executed in a separate process.
+ * executed in a separate process.  Clauses are encoded in the DIMACS 
+ * format as they are added, directly into a byte buffer, which is written 
+ * either to a cnf file or, if no file is given, kept in memory and piped 
+ * to the standard input of the solver when it is executed.
  * @author Emina Torlak
  */
 final class ExternalSolver implements SATSolver {
-	private final StringBuilder buffer;
-	private final int capacity = 8192;
+	/**
+	 * The size of the encoding buffer.
+	 */
+	private static final int CAPACITY = 1 << 16;
+	/**
+	 * The maximum number of bytes needed to encode a literal followed by a space.
+	 */
+	private static final int MAX_LITERAL_LENGTH = String.valueOf(Integer.MIN_VALUE).length() + 1;
+	
+	private byte[] buffer;
+	private int position;
 	private final boolean deleteTemp;
 	private final String executable, inTemp;
 	private final String[] options;
-	private final RandomAccessFile cnf;
+	/**
+	 * The channel to the cnf file, or null if the cnf is piped to the solver.
+	 */
+	private final FileChannel cnf;
+	/**
+	 * The filled encoding buffers, if the cnf is piped to the solver; null otherwise.
+	 */
+	private List<ByteBuffer> chunks;
 	private final BitSet solution;
 	private volatile Boolean sat;
+	private int[] assumed;
 	private volatile int vars, clauses;
 
 
@@ -56,30 +77,43 @@ final class ExternalSolver implements SATSolver {
 	 * Constructs an ExternalSolver that will execute the specified binary
 	 * with the given options on the {@code inTemp} file.  The {@code inTemp} file 
 	 * will be initialized to contain all clauses added to this solver via the 
-	 * {@link #addClause(int[])} method.  The solver is assumed to write its output 
-	 * to standard out.  The {@code deleteTemp} flag indicates whether the temporary 
-	 * files should be deleted when they are no longer needed by this solver.
+	 * {@link #addClause(int[])} method.  If {@code inTemp} is null, the clauses 
+	 * are kept in memory instead, and they are written to the standard input 
+	 * of the solver, which is executed without a file argument.  The solver is 
+	 * assumed to write its output to standard out.  The {@code deleteTemp} flag 
+	 * indicates whether the temporary files should be deleted when they are no 
+	 * longer needed by this solver.
 	 */
+	@SuppressWarnings("resource") // the channel is closed by the solve and free methods
 	ExternalSolver(String executable, String inTemp, boolean deleteTemp, String... options) {
-		RandomAccessFile file = null;
-		try {
-			file = new RandomAccessFile(inTemp, "rw");
-			file.setLength(0);
-		} catch (FileNotFoundException e) {
-			throw new SATAbortedException(e);
-		} catch (IOException e) {
-			close(file);
-			throw new SATAbortedException(e);
+		FileChannel channel = null;
+		if (inTemp != null) {
+			RandomAccessFile file = null;
+			try {
+				file = new RandomAccessFile(inTemp, "rw");
+				file.setLength(0);
+				channel = file.getChannel();
+			} catch (FileNotFoundException e) {
+				throw new SATAbortedException(e);
+			} catch (IOException e) {
+				close(file);
+				throw new SATAbortedException(e);
+			}
 		}
 		this.deleteTemp = deleteTemp;
-		this.cnf = file;
-		// get enough space into the buffer for the cnf header, which will be written last
-		this.buffer = new StringBuilder();
-		for(int i = headerLength(); i > 0; i--) {
-			buffer.append(" ");
+		this.cnf = channel;
+		this.chunks = channel==null ? new ArrayList<ByteBuffer>() : null;
+		this.buffer = new byte[CAPACITY];
+		this.position = 0;
+		if (channel != null) {
+			// get enough space into the file for the cnf header, which will be written last
+			for(int i = headerLength(); i > 0; i--) {
+				buffer[position++] = ' ';
+			}
+			buffer[position++] = '\n';
 		}
-		buffer.append("\n");
 		this.sat = null;
+		this.assumed = new int[0];
 		this.solution = new BitSet();
 		this.vars = 0;
 		this.clauses = 0;
@@ -113,19 +147,69 @@ final class ExternalSolver implements SATSolver {
 	private static final int headerLength() {
 		return String.valueOf(Integer.MAX_VALUE).length()*2 + 8;
 	}
+	
+	/**
+	 * Returns the ASCII encoding of the cnf header for this solver.
+	 * @return the ASCII encoding of "p cnf " + this.vars + " " + this.clauses
+	 */
+	private final byte[] header() {
+		final String header = "p cnf " + vars + " " + clauses;
+		final byte[] bytes = new byte[header.length()];
+		for(int i = 0; i < bytes.length; i++) {
+			bytes[i] = (byte) header.charAt(i);
+		}
+		return bytes;
+	}
 
 	/**
-	 * Flushes the contents of the string buffer to the cnf file.
+	 * Moves the contents of the encoding buffer to the cnf file, or, if 
+	 * the cnf is piped to the solver, to the list of filled chunks.
 	 */
 	private final void flush(){ 
+		if (cnf == null) {
+			if (chunks == null)
+				throw new SATAbortedException("The cnf has already been piped to " + executable + ".");
+			chunks.add(ByteBuffer.wrap(buffer, 0, position));
+			buffer = new byte[CAPACITY];
+			position = 0;
+			return;
+		}
 		try {
-			cnf.writeBytes(buffer.toString());
+			final ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, position);
+			while(bytes.hasRemaining()) {
+				cnf.write(bytes);
+			}
 		} catch (IOException e) {
 			close(cnf);
 			throw new SATAbortedException(e);
 		} finally {
-			buffer.setLength(0);
+			position = 0;
+		}
+	}
+	
+	/**
+	 * Writes the ASCII encoding of the given literal, followed by a space,
+	 * to the encoding buffer.
+	 */
+	private final void put(int lit) {
+		if (buffer.length - position < MAX_LITERAL_LENGTH)
+			flush();
+		final byte[] buf = buffer;
+		int pos = position;
+		if (lit < 0) {
+			buf[pos++] = '-';
+			lit = -lit;
+		}
+		int end = pos + 1;
+		for(int bound = 10; end - pos < 10 && lit >= bound; bound *= 10) {
+			end++;
+		}
+		for(int i = end - 1; i >= pos; i--) {
+			buf[i] = (byte) ('0' + lit % 10);
+			lit /= 10;
 		}
+		buf[end] = ' ';
+		position = end + 1;
 	}
 
 	/**
@@ -134,13 +218,13 @@ final class ExternalSolver implements SATSolver {
 	 */
 	public boolean addClause(int[] lits) {
 		clauses++;
-		if (buffer.length()>capacity) 
-			flush();
 		for(int lit: lits) {
-			buffer.append(lit);
-			buffer.append(" ");
+			put(lit);
 		}
-		buffer.append("0\n");
+		if (buffer.length - position < 2)
+			flush();
+		buffer[position++] = '0';
+		buffer[position++] = '\n';
 		return true;
 	}
 
@@ -158,7 +242,8 @@ final class ExternalSolver implements SATSolver {
 	 */
 	public synchronized void free() {
 		close(cnf);
-		if (deleteTemp) {
+		chunks = null;
+		if (deleteTemp && inTemp != null) {
 			(new File(inTemp)).delete();
 		}
 	}
@@ -203,51 +288,32 @@ final class ExternalSolver implements SATSolver {
 	/**
 	 * @see kodkod.engine.satlab.SATSolver#solve()
 	 */
-	@SuppressWarnings("resource") // suppressing spurious warning about "out" not being closed (it is, in the finally block)
 	public boolean solve() throws SATAbortedException {
 		if (sat==null) {
 			flush();
 			Process p = null;
-			BufferedReader out = null;
+			InputStream out = null;
 			try {
-				cnf.seek(0);
-				cnf.writeBytes("p cnf " + vars + " " + clauses);
-				cnf.close();
-
-				final String[] command = new String[options.length+2];
+				final byte[] header = header();
+				final String[] command;
+				if (cnf != null) {
+					cnf.write(ByteBuffer.wrap(header), 0);
+					cnf.close();
+					command = new String[options.length+2];
+					command[command.length-1] = inTemp;
+				} else {
+					command = new String[options.length+1];
+				}
 				command[0] = executable;
 				System.arraycopy(options, 0, command, 1, options.length);
-				command[command.length-1] = inTemp;
 				p = Runtime.getRuntime().exec(command);
 				new Thread(drain(p.getErrorStream())).start();
-				out = outputReader(p);
-				String line = null;
-				while((line = out.readLine()) != null) {
-					String[] tokens = line.split("\\s");
-					int tlength = tokens.length;
-					if (tlength>0) {
-						if (tokens[0].compareToIgnoreCase("s")==0) {
-							if (tlength==2) {
-								if (tokens[1].compareToIgnoreCase("SATISFIABLE")==0) {
-									sat = Boolean.TRUE;
-									continue;
-								} else if (tokens[1].compareToIgnoreCase("UNSATISFIABLE")==0) {
-									sat = Boolean.FALSE;
-									continue;
-								} 
-							}
-							throw new SATAbortedException("Invalid " + executable + " output. Line: " + line);
-						} else if (tokens[0].compareToIgnoreCase("v")==0) {
-							int last = tlength-1;
-							for(int i = 1; i < last; i++) {
-								updateSolution(Integer.parseInt(tokens[i]));
-							}
-							int lit = Integer.parseInt(tokens[last]);
-							if (lit!=0) updateSolution(lit);
-							else if (sat!=null) break;
-						} // not a solution line or a variable line, so ignore it.
-					}
+				if (cnf == null) {
+					new Thread(feed(p.getOutputStream(), header, chunks)).start();
+					chunks = null;
 				}
+				out = p.getInputStream();
+				parse(new LineReader(out));
 				if (sat==null) {
 					throw new SATAbortedException("Invalid " + executable + " output: no line specifying the outcome.");
 				}
@@ -258,11 +324,133 @@ final class ExternalSolver implements SATSolver {
 			} finally {
 				close(cnf);
 				close(out);
+				if (p != null) 
+					p.destroy(); // the solver has told us all we need, or its output could not be used
 			}
 		}
 		return sat;
 	}
 	
+	/**
+	 * Reads the solver's output from the given reader, setting this.sat and 
+	 * this.solution according to its "s" and "v" lines.  All other lines are ignored.
+	 * @throws IOException  the output could not be read
+	 * @throws NumberFormatException  a "v" line contains a non-integer token
+	 * @throws SATAbortedException  an "s" line is malformed or a "v" line contains an invalid literal
+	 */
+	final void parse(LineReader out) throws IOException {
+		while(out.next()) {
+			final byte[] line = out.line;
+			final int length = out.length;
+			final int start = skipSpaces(line, 0, length);
+			if (length - start == 0 || (length - start > 1 && !isSpace(line[start+1]))) 
+				continue; // not a solution line or a variable line, so ignore it.
+			final byte kind = line[start];
+			if (kind=='s' || kind=='S') {
+				final int from = skipSpaces(line, start+1, length);
+				int to = from;
+				while(to < length && !isSpace(line[to])) { to++; }
+				if (skipSpaces(line, to, length) == length) {
+					if (matches(line, from, to, "SATISFIABLE")) {
+						sat = Boolean.TRUE;
+						continue;
+					} else if (matches(line, from, to, "UNSATISFIABLE")) {
+						sat = Boolean.FALSE;
+						continue;
+					}
+				}
+				throw new SATAbortedException("Invalid " + executable + " output. Line: " + new String(line, 0, length, "ISO-8859-1"));
+			} else if (kind=='v' || kind=='V') {
+				int pos = skipSpaces(line, start+1, length);
+				while(pos < length) {
+					int lit = 0, end = pos;
+					final boolean negative = line[pos]=='-';
+					if (negative) end++;
+					if (end == length || isSpace(line[end]))
+						throw new NumberFormatException(new String(line, pos, end-pos, "ISO-8859-1"));
+					for(; end < length && !isSpace(line[end]); end++) {
+						final int digit = line[end] - '0';
+						if (digit < 0 || digit > 9 || lit > (Integer.MAX_VALUE - digit) / 10)
+							throw new NumberFormatException(new String(line, pos, end+1-pos, "ISO-8859-1"));
+						lit = lit*10 + digit;
+					}
+					if (negative) lit = -lit;
+					pos = skipSpaces(line, end, length);
+					if (lit!=0 || pos < length) updateSolution(lit);
+					else if (sat!=null) return;
+				}
+			} 
+		}
+	}
+	
+	/**
+	 * Returns true if the given byte is an ASCII whitespace character.
+	 */
+	private static boolean isSpace(byte b) {
+		return b==' ' || b=='\t' || b=='\r' || b=='\f' || b==0x0B;
+	}
+	
+	/**
+	 * Returns the index of the first non-whitespace byte in line[from..length), or length if there is none.
+	 */
+	private static int skipSpaces(byte[] line, int from, int length) {
+		while(from < length && isSpace(line[from])) { from++; }
+		return from;
+	}
+	
+	/**
+	 * Returns true if line[from..to) is equal to the given upper case word, ignoring case.
+	 */
+	private static boolean matches(byte[] line, int from, int to, String word) {
+		if (to - from != word.length())
+			return false;
+		for(int i = from; i < to; i++) {
+			final int b = line[i];
+			if (b != word.charAt(i-from) && b - ('a' - 'A') != word.charAt(i-from))
+				return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * Since external solvers are not incremental, the assumptions are passed 
+	 * to the executable as unit clauses, and this method may only be called 
+	 * with a non-empty set of assumptions if the solver has not been run yet.
+	 * @throws IllegalStateException  assumptions.length > 0 and this solver has already been run
+	 * @see kodkod.engine.satlab.SATSolver#solve(int[])
+	 */
+	public boolean solve(int[] assumptions) throws SATAbortedException {
+		if (assumptions.length == 0)
+			return solve();
+		if (sat != null)
+			throw new IllegalStateException("Cannot solve under assumptions after " + executable + " has been run.");
+		for(int lit : assumptions) {
+			final int abs = StrictMath.abs(lit);
+			if (abs < 1 || abs > vars)
+				throw new IllegalArgumentException(abs + " !in [1.." + vars+"]");
+			addClause(new int[] { lit });
+		}
+		assumed = assumptions.clone();
+		try {
+			return solve();
+		} finally {
+			clauses -= assumptions.length;
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * External solvers do not report which assumptions failed, so
+	 * all assumptions passed to the last call to solve are returned.
+	 * @see kodkod.engine.satlab.SATSolver#failedAssumptions()
+	 */
+	public int[] failedAssumptions() {
+		if (!Boolean.FALSE.equals(sat))
+			throw new IllegalStateException();
+		return assumed.clone();
+	}
+	
 	/**
 	 * Returns a runnable that drains the specified input stream.
 	 * @return a runnable that drains the specified input stream.
@@ -283,18 +471,75 @@ final class ExternalSolver implements SATSolver {
 			}
 		};
 	}
-
+	
 	/**
-	 * Returns a reader for reading the output of the given process.
-	 * @return a reader for reading the output of the given process.
-	 * @throws IOException
+	 * Returns a runnable that writes the given header, followed by a newline
+	 * and the contents of the given chunks, to the specified output stream, 
+	 * and then closes it.
+	 * @return a runnable that writes the given header and chunks to the specified output stream.
 	 */
-	private BufferedReader outputReader(Process p) throws IOException {
-		try {
-			return new BufferedReader(new InputStreamReader(p.getInputStream(), "ISO-8859-1"));
-		} catch (IOException e) {
-			close(p.getInputStream());
-			throw e;
+	private static Runnable feed(final OutputStream output, final byte[] header, final List<ByteBuffer> chunks) { 
+		return new Runnable() {
+			public void run() {
+				try {
+					output.write(header);
+					output.write('\n');
+					for(ByteBuffer chunk : chunks) {
+						output.write(chunk.array(), chunk.arrayOffset() + chunk.position(), chunk.remaining());
+					}
+					output.flush();
+				} catch (IOException ex) {
+					// the solver exited early; its output will tell why
+				} finally {
+					close(output);
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Reads lines of bytes from an input stream into a reusable buffer.
+	 */
+	static final class LineReader {
+		private final InputStream input;
+		private final byte[] buffer = new byte[8192];
+		private int position, limit;
+		/** 
+		 * The contents of the last line read, without the line terminator, 
+		 * are stored in line[0..length).
+		 */
+		byte[] line = new byte[256];
+		int length;
+		
+		LineReader(InputStream input) { this.input = input; }
+		
+		/**
+		 * Reads the next line and returns true, or returns false if the end of 
+		 * the stream has been reached.
+		 * @return true if a line was read, false if the end of the stream has been reached
+		 * @throws IOException  the stream could not be read
+		 */
+		boolean next() throws IOException {
+			length = 0;
+			while(true) {
+				if (position == limit) {
+					limit = input.read(buffer);
+					position = 0;
+					if (limit < 0) {
+						limit = 0;
+						return length > 0;
+					}
+				}
+				final byte b = buffer[position++];
+				if (b == '\n') 
+					return true;
+				if (length == line.length) {
+					final byte[] grown = new byte[line.length * 2];
+					System.arraycopy(line, 0, grown, 0, length);
+					line = grown;
+				}
+				line[length++] = b;
+			}
 		}
 	}
 
@@ -21,12 +21,14 @@
  */
 package kodkod.engine.satlab;
 
+import java.nio.IntBuffer;
+
 /**
  * Java wrapper for the Glucose solver by G. Audemard and L. Simon.
  * 
  * @author Emina Torlak
  */
-final class Glucose extends NativeSolver {
+final class Glucose extends NativeSolver implements InterruptibleSolver {
 
 	/**
 	 * Constructs a new Glucose wrapper.
@@ -69,12 +71,36 @@ final class Glucose extends NativeSolver {
 	 */
 	native boolean addClause(long peer, int[] lits);
 	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#addClauses(long, IntBuffer, int)
+	 */
+	native int addClauses(long peer, IntBuffer clauses, int length);
+	
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.NativeSolver#solve(long)
 	 */
 	native boolean solve(long peer);
 	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#solveAssuming(long, int[])
+	 */
+	native boolean solveAssuming(long peer, int[] assumptions);
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#failedAssumptions(long)
+	 */
+	native int[] failedAssumptions(long peer);
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#setInterrupt(long, boolean)
+	 */
+	native void setInterrupt(long peer, boolean interrupt);
+	
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.NativeSolver#valueOf(long, int)
@@ -0,0 +1,53 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.satlab;
+
+/**
+ * Provides an interface to a SAT solver whose calls to solve can be
+ * abandoned from another thread.
+ *
+ * @specfield variables: set [1..)
+ * @specfield clauses: set Clause
+ * @specfield interrupted: boolean
+ * @invariant all i: [2..) | i in variables => i-1 in variables
+ * @invariant all c: clauses | all lit: c.literals | lit in variables || -lit in variables
+ * @invariant all c: clauses | all disj i,j: c.literals | abs(i) != abs(j)
+ */
+interface InterruptibleSolver extends SATSolver {
+
+    /**
+     * Asks this solver to abandon the call to solve that is currently in
+     * progress, or the next such call if none is.  The abandoned call throws
+     * a {@link SATAbortedException} and leaves this.clauses unchanged.  This
+     * method may be called from any thread, and it may be called repeatedly.
+     * @ensures this.interrupted' = true
+     */
+    public void interrupt();
+
+    /**
+     * Clears the interrupt indicator of this solver, so that subsequent calls
+     * to solve run to completion.  This method must not be called while a call
+     * to solve is in progress.
+     * @ensures this.interrupted' = false
+     */
+    public void clearInterrupt();
+}
@@ -21,6 +21,7 @@
  */
 package kodkod.engine.satlab;
 
+import java.nio.ByteBuffer;
 import java.util.Iterator;
 import java.util.NoSuchElementException;
 
@@ -29,151 +30,122 @@ import kodkod.util.ints.IntBitSet;
 import kodkod.util.ints.IntIterator;
 import kodkod.util.ints.IntSet;
 import kodkod.util.ints.Ints;
+import kodkod.util.ints.SparseSequence;
+import kodkod.util.ints.TreeSequence;
 
 /**
- * An array-backed implementation of the {@linkplain ResolutionTrace} interface.
- * Resolvent literals are computed on-demand, and only the resolvents reachable
- * from the conflict clause are stored.
+ * A packed implementation of the {@linkplain ResolutionTrace} interface.
+ * The trace is stored off-heap, as a single stream of variable-length integers 
+ * with an offset index.  Resolvent literals are computed on-demand, and only the 
+ * resolvents reachable from the conflict clause are stored.
  * 
  * @author Emina Torlak
  */
 final class LazyTrace implements ResolutionTrace {
-	/* The trace array encodes the resolution trace as follows.
-	 * The first <tt>axioms</tt> entries in the trace array contain
-	 * the literals of the clauses added to the prover, in the order
-	 * in which they were added.  The remaining entries encode the
-	 * resolvents as follows.   Let i >= <tt>axioms</tt>
-	 * represent the ith resolvent.  If resolved.contains(i-axioms), then trace[i][0] 
-	 * contains the number of the resolvent's antecedents; trace[i][1..trace[i][0]] 
-	 * contains the indices of the resolvent's antecedents in the trace;
-	 * and trace[i][trace[i][0]+1..trace[i].length-1] contains the literals of the ith resolvent.
-	 * Otherwise, the literals for the given resolvent have not yet been computed so 
-	 * trace[i][0..trace[i].length-1] contains the indices of the resolvent's antecedents.  
+	/* The data buffer encodes the resolution trace as specified by 
+	 * {@linkplain TraceBuffer}, and the ith clause starts at offsets[i].  
+	 * The first <tt>axioms</tt> clauses are the clauses added to the prover, 
+	 * in the order in which they were added.  The remaining clauses are resolvents.  
 	 * 
-	 * All computed and axiom literals are sorted in the increasing order of absolute values. 
-	 * All antecedents of a given resolvent  precede it in the trace,
-	 * and the conflict clause should be the last trace element.
+	 * All antecedents of a given resolvent precede it in the trace, 
+	 * and the conflict clause is the last trace element.  The literals of 
+	 * the resolvents that have been computed so far are cached in the 
+	 * resolved sequence, sorted in the increasing order of absolute values.
 	 */
-	private final int[][] trace;
+	private final ByteBuffer data;
+	private final int[] offsets;
 	private final int axioms;
-	private final IntSet core, resolved;
+	private final IntSet core;
+	private final SparseSequence<int[]> resolved;
+	
+	private static final int[] NO_ANTECEDENTS = {};
 	
 	/**
 	 * Constructs a resolution trace view for the given raw trace.
-	 * The first <tt>axioms</tt> entries in the trace array should
-	 * contain the literals of the clauses added to the prover, in
-	 * the order in which they were added.  The literals should be 
-	 * sorted in the increasing order of absolute values.  The remaining entries
-	 * should encode the resolvents as follows.  Let i be the index
-	 * of a resolvent in the raw trace.  Then, for all 0 <= j < trace[i].length, 
-	 * trace[i][j] is the index of the resolvent's jth antecedents in the trace array.
-	 * All antecedents of a given resolvent should precede it in the trace,
-	 * and the conflict clause should be the last trace element.
-	 * 
-     * <p><b>Note: </b> the given array's contents must not be modified while
-     * in use by this resolution trace object.</p>
+	 * The axioms in the raw trace should be the clauses added to the prover, 
+	 * in the order in which they were added, and they may be interleaved with
+	 * the resolvents.  The axioms become the first trace.axioms() clauses of this 
+	 * trace, followed by the resolvents that are reachable from the conflict clause, 
+	 * in their original order.  
 	 */
-	LazyTrace(int[][] trace, int axioms) {
-		this.axioms = axioms;
+	LazyTrace(TraceBuffer trace) {
+		this.axioms = trace.axioms();
 		
 		// find all the clauses that are reachable from the conflict
-		final IntSet reachable = reachable(trace, axioms);
+		final IntSet reachable = reachable(trace);
 		
 		// get the core clauses
-		this.core = core(reachable, axioms);
+		this.core = core(trace, reachable);
 		
-		// trim the trace so that it contains all axioms but only those resolvents that are reachable from the conflict
-		this.trace = compress(trace, axioms, reachable, core);
+		// pack the trace so that it contains all axioms but only those resolvents that are reachable from the conflict
+		this.offsets = new int[reachable.size()-core.size()+axioms];
+		this.data = pack(trace, reachable, offsets);
 		
 		// we haven't computed any resolvent literals yet ...
-		this.resolved = new IntBitSet(this.trace.length-axioms);
+		this.resolved = new TreeSequence<int[]>();
 	}
 	
-	
 	/**
 	 * Constructs a resolution trace from the given subtrace and partial
 	 * trace. This constructor assumes that <tt>partial</tt> is the result 
 	 * of solving the subtrace of the <tt>original</tt> trace that is given by the
-	 * specified set of indices.  The first indices.size() of the partial
-	 * trace are assumed to represent the clauses given by original.trace[indices],
-	 * in the increasing order of indices; the remaining entries should encode
-	 * the resolvents computed from original.trace[indices], as specified by 
-	 * {@linkplain #LazyTrace(int[][], int)}. The given subtrace of the original 
-	 * trace must be self-contained, i.e. original.reachable(indices).equals(indices). 
-	 * 
-	 * <p><b>Note: </b> the given array's contents must not be modified while
-     * in use by this resolution trace object.</p>
+	 * specified set of indices.  The first indices.size() clauses of the partial
+	 * trace are assumed to be unrecorded axioms that stand for the clauses 
+	 * original.trace[indices], in the increasing order of indices; the remaining 
+	 * clauses should be the resolvents computed from original.trace[indices]. 
+	 * The given subtrace of the original trace must be self-contained, i.e. 
+	 * original.reachable(indices).equals(indices). 
 	 */
-	LazyTrace(LazyTrace original, IntSet indices, int[][] partial) {
-		this.axioms = reconstruct(original, indices, partial);
-		
-		// find all the clauses that are reachable from the conflict
-		final IntSet reachable = reachable(partial, axioms);
-		
-		// get the core clauses
-		this.core = core(reachable, axioms);
-		
-		// trim the trace so that it contains all axioms but only those resolvents that are reachable from the conflict
-		this.trace = compress(partial, axioms, reachable, core);
-		
-		// we haven't computed any resolvent literals yet ...
-		this.resolved = new IntBitSet(this.trace.length-axioms);
+	LazyTrace(LazyTrace original, IntSet indices, TraceBuffer partial) {
+		this(reconstruct(original, indices, partial));
 	}
 	
 	/**
-	 * Fills the first indices.size() empty positions of the partial trace with the 
-	 * corresponding clauses from the original trace and returns the number of axioms
-	 * in the reconstructed trace.  
-	 * @requires original, indices, and partial are as specified by {@linkplain #LazyTrace(LazyTrace, IntSet, int[][])} constructor
-	 * @ensures modifies partial so that it conforms to the {@linkplain #trace LazyTrace.trace} spec
-	 * using the provided original trace and indices.
-	 * @return number of axioms in the modified partial trace
+	 * Returns a raw trace that consists of the clauses original.trace[indices], in the 
+	 * increasing order of indices, followed by the clauses in the partial trace that come 
+	 * after its first indices.size() clauses.  
+	 * @requires original, indices, and partial are as specified by {@linkplain #LazyTrace(LazyTrace, IntSet, TraceBuffer)} constructor
+	 * @return a raw trace that conforms to the {@linkplain #LazyTrace(TraceBuffer)} spec, 
+	 * obtained by replacing the unrecorded axioms in partial with the corresponding clauses from the original trace
 	 */
-	private static int reconstruct(LazyTrace original, IntSet indices, int[][] partial) { 
-		int axiomCount = indices.size();
-		// fill the partial[0..indices.size()-1] with the corresponding clauses from original.trace[indices]
-		final int[][] originalTrace = original.trace;	
+	private static TraceBuffer reconstruct(LazyTrace original, IntSet indices, TraceBuffer partial) { 
+		final TraceBuffer trace = new TraceBuffer();
 		final int[] position = new int[indices.max()+1];
 
 		IntIterator itr = indices.iterator();
 		for(int i = 0, length = indices.size(); i < length; i++) {
 			int index = itr.next();
 			position[index] = i;
-			if (original.axiom(index)) { // just set the ith pointer to original literals
-				partial[i] = originalTrace[index];
-			} else { // copy the resolvent and adjust copy's antecedent indices
-				int antes = originalTrace[index][0];
-				int[] resolvent = new int[antes];
-				for(int j = 0; j < antes; j++) {
-					resolvent[j] = position[originalTrace[index][j+1]];
+			if (original.axiom(index)) { // just unpack the original literals
+				trace.addAxiom(original.literals(index));
+			} else { // unpack the resolvent and adjust its antecedent indices
+				int[] resolvent = original.antecedents(index);
+				for(int j = 0; j < resolvent.length; j++) {
+					resolvent[j] = position[resolvent[j]];
 				}
-				partial[i] = resolvent;
-				axiomCount--;
+				trace.addResolvent(resolvent);
 			}
 		}
-		
-		return axiomCount;
+		trace.append(partial, indices.size());
+		return trace;
 	}
 
 	/**
-	 * Returns the indices of all clauses in the given trace that are 
-	 * reachable from the conflict clause through the resolvents
-	 * in trace[roots..trace.length-1].  This method assumes that 
-	 * that the last trace[roots..trace.length-1] clauses encode 
-	 * resolvents as specified by the
-	 * {@linkplain #LazyTrace(int[][], int)} constructor.
+	 * Returns the indices of all clauses in the given raw trace that are 
+	 * reachable from the conflict clause.  The trace is decoded in a single 
+	 * backward pass over its resolvents.
 	 * @return indices of all clauses in the given trace that are 
-	 * reachable from the conflict clause through the resolvents in
-	 * trace[roots..trace.length-1]
+	 * reachable from the conflict clause
 	 */
-	private static IntSet reachable(int[][] trace, int roots) { 
-		final IntSet reachable = new IntBitSet(trace.length);
-		reachable.add(trace.length-1);
-		for(int i = trace.length-1; i >= roots; i--) {
-			if (reachable.contains(i)) {
-				int[] resolvent = trace[i];
-				for(int j = 0; j < resolvent.length; j++) {
-					reachable.add(resolvent[j]);
+	private static IntSet reachable(TraceBuffer trace) { 
+		final int size = trace.size();
+		final IntSet reachable = new IntBitSet(size);
+		reachable.add(size-1);
+		for(int i = size-1; i >= 0; i--) {
+			if (reachable.contains(i) && !trace.axiom(i)) {
+				final TraceBuffer.Reader in = trace.reader(i);
+				for(int j = in.count(); j > 0; j--) {
+					reachable.add(i - in.next());
 				}
 			}
 		}
@@ -181,73 +153,140 @@ final class LazyTrace implements ResolutionTrace {
 	}
 	
 	/**
-	 * Returns a set that contains the elements from the given
-	 * reachable between 0, inclusive, and axioms, exclusive.
-	 * @return a set that contains the elements from the given
-	 * reachable between 0, inclusive, and axioms, exclusive.
+	 * Returns a set that contains the positions, among the axioms of the given 
+	 * raw trace, of the axioms whose indices are in the given reachable set.  
+	 * @return a set that contains the positions, among the axioms of the given 
+	 * raw trace, of the axioms whose indices are in the given reachable set
 	 */
-	private static IntSet core(IntSet reachable, int axioms) { 
-		final IntSet core = new IntBitSet(axioms);
-		for(IntIterator itr = reachable.iterator(0, axioms-1); itr.hasNext(); ) {
-			core.add(itr.next());
+	private static IntSet core(TraceBuffer trace, IntSet reachable) { 
+		final IntSet core = new IntBitSet(trace.axioms());
+		for(int i = 0, axiom = 0, size = trace.size(); i < size; i++) {
+			if (trace.axiom(i)) {
+				if (reachable.contains(i)) core.add(axiom);
+				axiom++;
+			}
 		}
 		return Ints.unmodifiableIntSet(core);
 	}
 	
 	/**
-	 * Compresses the given src trace into a destination trace that contains the same axioms as the 
-	 * source but only the resolvents that are reachable from the conflict clause.
-	 * @requires src and axioms are as specified by the {@linkplain #LazyTrace(int[][], int)} constructor
-	 * @requires reachable.elts = reachable(src, axioms).elts
-	 * @requires core.elts = core(reachable, axioms).elts
-	 * @ensures invalidates the contents of src; src should not be used after this method returns
-	 * @return a new trace that contains the same axioms as the 
+	 * Packs the given raw trace into a buffer that contains the same axioms as the 
+	 * source, followed by the resolvents that are reachable from the conflict clause, 
+	 * and fills the given offsets array with the positions of the packed clauses.
+	 * The buffer is sized in a first pass over the trace, and filled in a second one.
+	 * Axioms are copied as they are; resolvents are re-encoded relative to their packed positions.
+	 * @requires reachable.elts = reachable(src).elts
+	 * @requires offsets.length = #(reachable.elts & resolvents(src)) + src.axioms()
+	 * @ensures offsets[i] is the position of the ith packed clause in the returned buffer
+	 * @return a direct buffer that encodes the same axioms as the 
 	 * source but only the resolvents that are reachable from the conflict clause.
+	 * @throws OutOfMemoryError  the packed trace does not fit into a single buffer
 	 */
-	private static int[][] compress(int[][] src, int axioms, IntSet reachable, IntSet core) { 
-		final int[][] dest = new int[reachable.size()-core.size()+axioms][];
-		System.arraycopy(src, 0, dest, 0, axioms);
-		
-		final int[] pos = new int[src.length-axioms];
-		final IntIterator srcIdxs = reachable.iterator(axioms, src.length);
-		for(int i = axioms; srcIdxs.hasNext(); i++) { 
-			int srcIdx = srcIdxs.next();
-			pos[srcIdx-axioms] = i;
-			// move the resolvent and adjust its antecedent indices
-			int[] resolvent = src[srcIdx];
-			dest[i] = resolvent; 
-			for(int j = 0, lastAnte = resolvent.length; j < lastAnte; j++) {
-				int ante = resolvent[j];
-				resolvent[j] = ante < axioms ? ante : pos[ante-axioms];
+	private static ByteBuffer pack(TraceBuffer src, IntSet reachable, int[] offsets) { 
+		final int size = src.size(), axioms = src.axioms();
+		final int[] pos = new int[size];
+		int length = 0;
+		for(int i = 0, axiom = 0; i < size; i++) {
+			if (src.axiom(i)) {
+				pos[i] = axiom;
+				offsets[axiom++] = length;
+				length += src.length(i);
+				if (length < 0) 
+					throw new OutOfMemoryError("resolution trace too large to pack: " + size + " clauses");
 			}
 		}
-		return dest;
+		
+		IntIterator srcIdxs = reachable.iterator();
+		for(int i = axioms; srcIdxs.hasNext(); ) { 
+			final int srcIdx = srcIdxs.next();
+			if (src.axiom(srcIdx)) continue;
+			pos[srcIdx] = i;
+			offsets[i] = length;
+			length = putResolvent(null, length, i, src, srcIdx, pos);
+			if (length < 0) 
+				throw new OutOfMemoryError("resolution trace too large to pack: " + size + " clauses");
+			i++;
+		}
+		
+		final ByteBuffer data = ByteBuffer.allocateDirect(length);
+		for(int i = 0; i < size; i++) {
+			if (src.axiom(i)) 
+				src.copy(i, data, offsets[pos[i]]);
+		}
+		srcIdxs = reachable.iterator();
+		while(srcIdxs.hasNext()) { 
+			final int srcIdx = srcIdxs.next();
+			if (src.axiom(srcIdx)) continue;
+			putResolvent(data, offsets[pos[srcIdx]], pos[srcIdx], src, srcIdx, pos);
+		}
+		return data;
+	}
+	
+	/**
+	 * Writes the resolvent at the given index in the given raw trace at the given position 
+	 * in the given buffer, if the buffer is not null, as the resolvent at the given packed index.
+	 * Returns the position just past the written clause.
+	 * @requires !src.axiom(srcIdx) 
+	 * @requires pos maps each antecedent of the given resolvent to its packed position
+	 * @ensures buf != null => writes the encoding of the resolvent to buf starting at bufPos
+	 * @return bufPos + the number of bytes in the encoding of the resolvent
+	 */
+	private static int putResolvent(ByteBuffer buf, int bufPos, int index, TraceBuffer src, int srcIdx, int[] pos) {
+		final TraceBuffer.Reader in = src.reader(srcIdx);
+		final int header = in.next();
+		bufPos = TraceBuffer.putVarint(buf, bufPos, header);
+		for(int j = header >>> 1; j > 0; j--) {
+			bufPos = TraceBuffer.putVarint(buf, bufPos, index - pos[srcIdx - in.next()]);
+		}
+		return bufPos;
+	}
+	
+	/**
+	 * Returns the literals of the axiom at the given index.
+	 * @requires axiom(index)
+	 * @return this.elts[index].literals, in the increasing order of absolute values
+	 */
+	private int[] literals(int index) {
+		final TraceBuffer.Reader in = new TraceBuffer.Reader(data, offsets[index]);
+		final int[] lits = new int[in.count()];
+		for(int i = 0, prev = 0; i < lits.length; i++) {
+			final int v = in.next();
+			prev += v >>> 1;
+			lits[i] = (v & 1) == 0 ? prev : -prev;
+		}
+		return lits;
+	}
+	
+	/**
+	 * Returns the indices of the antecedents of the resolvent at the given index.
+	 * @requires !axiom(index)
+	 * @return this.elts[index].antecedents, in the order in which they were resolved
+	 */
+	private int[] antecedents(int index) {
+		final TraceBuffer.Reader in = new TraceBuffer.Reader(data, offsets[index]);
+		final int[] antes = new int[in.count()];
+		for(int i = 0; i < antes.length; i++) {
+			antes[i] = index - in.next();
+		}
+		return antes;
 	}
 	
 	/**
 	 * Returns an array of integers representing the result of 
 	 * resolving the clauses c1 and c2, sorted in the increasing order
-	 * of absolute values.  The parameters axiom1 and axiom2 specify 
-	 * whether c1 and c2 encode axioms or resolvents.  In particular, 
-	 * if axiom1 (resp. axiom2) is true, then all integers in c1 (resp. c2) 
-	 * are assumed to be literals, sorted in the increasing order of absolute 
-	 * values.  If axiom1 (resp. axiom2) is false, then the integers starting 
-	 * at c1[0]+1 (resp. c2[0]+1) are assumed to be literals, sorted in the increasing
-	 * order of absolute values.   
-	 * @requires let off1 = axiom1 ? 0 : c1[0] + 1, off2 = axiom2 ? 0 : c2[0]+1 | 
-	 *  (all i: [off1..c1.length), j: [off1..c1.length) | i < j => abs(c1[i]) < abs(c1[j])) and
-	 *  (all i: [off2..c2.length), j: [off2..c2.length) | i < j => abs(c2[i]) < abs(c2[j])) and
-	 *  (one i: [off1..c1.length), j: [off2..c2.length) | c1[i] = -c2[j])
+	 * of absolute values.  
+	 * @requires 
+	 *  (all i, j: [0..c1.length) | i < j => abs(c1[i]) < abs(c1[j])) and
+	 *  (all i, j: [0..c2.length) | i < j => abs(c2[i]) < abs(c2[j])) and
+	 *  (one i: [0..c1.length), j: [0..c2.length) | c1[i] = -c2[j])
 	 * @return an array of integers representing the result of 
 	 * resolving the clauses c1 and c2, sorted in the increasing order of absolute values
 	 */
-	private static int[] resolve(int[] c1, boolean axiom1, int[] c2, boolean axiom2) {
+	private static int[] resolve(int[] c1, int[] c2) {
 		final int len1 = c1.length, len2 = c2.length;
-		int i = axiom1 ? 0 : c1[0] + 1;
-		int j = axiom2 ? 0 : c2[0] + 1;
-		int k = 0;
+		int i = 0, j = 0, k = 0;
 		
-		final int[] tmp = new int[(len1-i + len2-j) - 2];
+		final int[] tmp = new int[(len1 + len2) - 2];
 		
 		while(i < len1 && j < len2) {
 			int lit1 = c1[i], lit2 = c2[j];
@@ -286,31 +325,26 @@ final class LazyTrace implements ResolutionTrace {
 	}
 	
 	/**
-	 * Computes the resolvent at the given index, sets this.trace index
-	 * to the computed resolvent and returns it.
-	 * @ensures computes the resolvent at the given index and sets trace[index]
-	 * to the computed array.
-	 * @return this.trace'[index]
+	 * Returns the literals of the clause at the given index, computing 
+	 * and caching them first if the clause is a resolvent whose literals 
+	 * have not been computed yet.
+	 * @ensures !axiom(index) => this.resolved'.get(index) = this.elts[index].literals
+	 * @return this.elts[index].literals, in the increasing order of absolute values
 	 */
 	private int[] resolve(int index) { 
-		if (index < axioms || resolved(index)) return trace[index];
-		int[] ante = trace[index];
-		int[] lits = resolve(resolve(ante[0]), ante[0]<axioms, resolve(ante[1]), ante[1]<axioms);
-		for(int j = 2; j < ante.length; j++) {
-			lits = resolve(lits, true, resolve(ante[j]), ante[j]<axioms);
-		}
-		int[] resolvent = new int[ante.length + lits.length + 1];
-		resolvent[0] = ante.length;
-		System.arraycopy(ante, 0, resolvent, 1, ante.length);
-		System.arraycopy(lits, 0, resolvent, ante.length+1, lits.length);
-		trace[index] = resolvent;
-		resolved.add(index-axioms);
-		return resolvent;
+		if (axiom(index)) return literals(index);
+		int[] lits = resolved.get(index);
+		if (lits == null) {
+			final int[] ante = antecedents(index);
+			lits = resolve(resolve(ante[0]), resolve(ante[1]));
+			for(int j = 2; j < ante.length; j++) {
+				lits = resolve(lits, resolve(ante[j]));
+			}
+			resolved.put(index, lits);
+		}
+		return lits;
 	}
 	
-	/** @return true if resolvent literals have been computed for the resolvent at the given index  */
-	private boolean resolved(int index) { return resolved.contains(index-axioms); }
-	
 	/**
 	 * Returns true if the clause at the given index is an axiom.
 	 * @return index < this.axioms
@@ -319,20 +353,11 @@ final class LazyTrace implements ResolutionTrace {
 		return index < axioms;
 	}
 	
-	/**
-	 * Returns the offset in this.trace[index] array where literal
-	 * data is stored, if any.
-	 * @return axiom(index) ? 0 : resolved(index) ? this.trace[index][0] + 1 : -1
-	 */
-	private int litOffset(int index) {
-		return axiom(index) ? 0 : resolved(index) ? trace[index][0] + 1 : -1;
-	}
-	
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.ResolutionTrace#size()
 	 */
-	public int size() {	return trace.length; }
+	public int size() {	return offsets.length; }
 	
 	
 	/**
@@ -352,8 +377,8 @@ final class LazyTrace implements ResolutionTrace {
 	 * @see kodkod.engine.satlab.ResolutionTrace#resolvents()
 	 */
 	public IntSet resolvents() { 
-		if (trace.length > axioms)
-			return Ints.rangeSet(Ints.range(axioms, trace.length-1)); 
+		if (offsets.length > axioms)
+			return Ints.rangeSet(Ints.range(axioms, offsets.length-1)); 
 		else
 			return Ints.EMPTY_SET;
 	}
@@ -363,10 +388,10 @@ final class LazyTrace implements ResolutionTrace {
 	 * @see kodkod.engine.satlab.ResolutionTrace#get(int)
 	 */
 	public Clause get(final int index) {
-		if (index>=0 && index<trace.length) {
+		if (index>=0 && index<offsets.length) {
 			if (axiom(index)) { // return a self-contained clause
 				return new Clause() {
-					final int[] literals = trace[index];
+					final int[] literals = LazyTrace.this.literals(index);
 					final int hashCode = Ints.superFastHash(literals);
 					public Iterator<Clause> antecedents() { return Containers.emptyIterator(); }
 					public IntIterator literals() { return new IntArrayIterator(literals,0,literals.length); }
@@ -394,7 +419,7 @@ final class LazyTrace implements ResolutionTrace {
 	public Iterator<Clause> iterator() { 
 		return new ClauseIterator(new IntIterator() {
 			int index = 0;
-			public boolean hasNext() { return index>=0 && index < trace.length; }
+			public boolean hasNext() { return index>=0 && index < offsets.length; }
 			public int next() { 
 				if (!hasNext()) throw new NoSuchElementException();
 				return index++;
@@ -409,7 +434,7 @@ final class LazyTrace implements ResolutionTrace {
 	 * @return indices.min() >= 0 && indices.max() < this.size()
 	 */
 	private boolean valid(IntSet indices) {
-		return indices.min()>=0 && indices.max()<trace.length;
+		return indices.min()>=0 && indices.max()<offsets.length;
 	}
 	
 	/**
@@ -441,19 +466,13 @@ final class LazyTrace implements ResolutionTrace {
 	public IntSet reachable(IntSet indices) {
 		if (indices.isEmpty()) return Ints.EMPTY_SET;
 		else if (valid(indices)) {
-			final IntSet ret = new IntBitSet(trace.length);
+			final IntSet ret = new IntBitSet(offsets.length);
 			ret.addAll(indices);
 			for(int i = indices.max(); i >= axioms; i--) {
 				if (ret.contains(i)) {
-					int[] resolvent = trace[i];
-					if (resolved(i)) { 
-						for(int j = 1, antes = resolvent[0]; j <= antes; j++) {
-							ret.add(resolvent[j]);
-						}
-					} else {
-						for(int j = 0; j < resolvent.length; j++) {
-							ret.add(resolvent[j]);
-						}
+					final TraceBuffer.Reader in = new TraceBuffer.Reader(data, offsets[i]);
+					for(int j = in.count(); j > 0; j--) {
+						ret.add(i - in.next());
 					}
 				}
 			}
@@ -469,25 +488,15 @@ final class LazyTrace implements ResolutionTrace {
 	public IntSet backwardReachable(IntSet indices) {
 		if (indices.isEmpty()) return Ints.EMPTY_SET;
 		else if (valid(indices)) {
-			final IntSet ret = new IntBitSet(trace.length);
+			final IntSet ret = new IntBitSet(offsets.length);
 			ret.addAll(indices);
-			for(int i = axioms, length = trace.length; i < length; i++) {
-				int[] resolvent = trace[i];
-				if (resolved(i)) { 
-					for(int j = 1, antes = resolvent[0]; j <= antes; j++) {
-						if (ret.contains(resolvent[j])) {
-							ret.add(i);
-							break;
-						}
-					}
-				} else {
-					for(int j = 0; j < resolvent.length; j++) {
-						if (ret.contains(resolvent[j])) {
-							ret.add(i);
-							break;
-						}
-					}
+			final TraceBuffer.Reader in = resolventReader();
+			for(int i = axioms, length = offsets.length; i < length; i++) {
+				boolean reached = false;
+				for(int j = in.count(); j > 0; j--) {
+					reached |= ret.contains(i - in.next());
 				}
+				if (reached) ret.add(i);
 			}
 			return ret;
 		}
@@ -501,24 +510,15 @@ final class LazyTrace implements ResolutionTrace {
 	public IntSet learnable(IntSet indices) {
 		if (indices.isEmpty()) return Ints.EMPTY_SET;
 		else if (valid(indices)) {
-			final IntSet ret = new IntBitSet(trace.length);
+			final IntSet ret = new IntBitSet(offsets.length);
 			ret.addAll(indices);
-			TOP: for(int i = axioms, length = trace.length; i < length; i++) {
-				int[] resolvent = trace[i];
-				if (resolved(i)) { 
-					for(int j = 1, antes = resolvent[0]; j <= antes; j++) {
-						if (!ret.contains(resolvent[j])) {
-							continue TOP;
-						}
-					}
-				} else {
-					for(int j = 0; j < resolvent.length; j++) {
-						if (!ret.contains(resolvent[j])) {
-							continue TOP;
-						}
-					}
+			final TraceBuffer.Reader in = resolventReader();
+			for(int i = axioms, length = offsets.length; i < length; i++) {
+				boolean learned = true;
+				for(int j = in.count(); j > 0; j--) {
+					learned &= ret.contains(i - in.next());
 				}
-				ret.add(i);
+				if (learned) ret.add(i);
 			}
 			return ret;
 		}
@@ -532,30 +532,29 @@ final class LazyTrace implements ResolutionTrace {
 	public IntSet directlyLearnable(IntSet indices) { 
 		if (indices.isEmpty()) return Ints.EMPTY_SET;
 		else if (valid(indices)) {
-			final IntSet ret = new IntBitSet(trace.length);
+			final IntSet ret = new IntBitSet(offsets.length);
 			ret.addAll(indices);
-			TOP: for(int i = axioms, length = trace.length; i < length; i++) {
-				int[] resolvent = trace[i];
-				if (resolved(i)) { 
-					for(int j = 1, antes = resolvent[0]; j <= antes; j++) {
-						if (!indices.contains(resolvent[j])) {
-							continue TOP;
-						}
-					}
-				} else {
-					for(int j = 0; j < resolvent.length; j++) {
-						if (!indices.contains(resolvent[j])) {
-							continue TOP;
-						}
-					}
+			final TraceBuffer.Reader in = resolventReader();
+			for(int i = axioms, length = offsets.length; i < length; i++) {
+				boolean learned = true;
+				for(int j = in.count(); j > 0; j--) {
+					learned &= indices.contains(i - in.next());
 				}
-				ret.add(i);
+				if (learned) ret.add(i);
 			}
 			return ret;
 		}
 		
 		else throw new IndexOutOfBoundsException("invalid indices: " + indices);
 	}
+	
+	/**
+	 * Returns a reader positioned at the start of the first resolvent in this trace.
+	 * @return a reader positioned at the start of the first resolvent in this trace
+	 */
+	private TraceBuffer.Reader resolventReader() {
+		return new TraceBuffer.Reader(data, axioms < offsets.length ? offsets[axioms] : data.capacity());
+	}
 
 	/**
 	 * {@inheritDoc}
@@ -565,26 +564,17 @@ final class LazyTrace implements ResolutionTrace {
 		final StringBuilder ret = new StringBuilder();
 		for(int i = 0; i < axioms; i++) {
 			ret.append("AXIOM.  Literals: ");
-			int[] clause = trace[i];
-			for(int j = 0, c = clause.length; j < c; j++) {
-				ret.append(clause[j]);
+			for(int lit : literals(i)) {
+				ret.append(lit);
 				ret.append(" ");
 			}
 			ret.append("\n");
 		}
-		for(int i = axioms, max = trace.length; i < max; i++) {
+		for(int i = axioms, max = offsets.length; i < max; i++) {
 			ret.append("RESOLVENT.  Antecedents:  ");
-			int[] clause = trace[i];
-			if (resolved(i)) { 
-				for(int j = 1, c = clause[0]; j <= c; j++) {
-					ret.append(clause[j]);
-					ret.append(" ");
-				}
-			} else {
-				for(int j = 0; j < clause.length; j++) {
-					ret.append(clause[j]);
-					ret.append(" ");
-				}
+			for(int ante : antecedents(i)) {
+				ret.append(ante);
+				ret.append(" ");
 			}
 			ret.append("\n");
 		}
@@ -596,23 +586,21 @@ final class LazyTrace implements ResolutionTrace {
 	 * @author Emina Torlak
 	 */
 	private class ClauseView extends Clause {
-		private int[] clause;
-		private int litOffset, index;
+		private int index;
+		private int[] antes, lits;
 		
 		/**
 		 * Constructs a clause view for the ith clause.
-		 * @requires 0 <= index < trace.length
+		 * @requires 0 <= index < offsets.length
 		 */
 		ClauseView(int index) {
-			this.index = index;
-			this.clause = trace[index];
-			this.litOffset = litOffset(index);
+			set(index);
 		}
 		
 		/**
-		 * Constructs a clause view for the 0th clause.
+		 * Constructs a clause view with no state.
 		 */
-		ClauseView() { this(0); }
+		ClauseView() { }
 		
 		/**
 		 * Sets the state of this clause view to represent
@@ -623,41 +611,44 @@ final class LazyTrace implements ResolutionTrace {
 		 */
 		ClauseView set(int index) {
 			this.index = index;
-			this.clause = trace[index];
-			this.litOffset = litOffset(index);
+			if (axiom(index)) {
+				this.antes = NO_ANTECEDENTS;
+				this.lits = LazyTrace.this.literals(index);
+			} else {
+				this.antes = LazyTrace.this.antecedents(index);
+				this.lits = resolved.get(index);
+			}
 			return this;
 		}
 		void ensureLiterals() {
-			if (litOffset<0) { 
-				resolve(index);
-				this.clause = trace[index];
-				this.litOffset = litOffset(index);
+			if (lits==null) { 
+				lits = resolve(index);
 			}
 		}
 		public int maxVariable() { 
 			ensureLiterals(); 
-			return StrictMath.abs(clause[clause.length-1]); 
+			return StrictMath.abs(lits[lits.length-1]); 
 		}
 		public int numberOfAntecedents() { 
-			return litOffset<0 ? clause.length : StrictMath.max(0, litOffset-1); 
+			return antes.length; 
 		}		
 		public int size() {	
 			ensureLiterals();
-			return clause.length - litOffset; 
+			return lits.length; 
 		}
 		public Iterator<Clause> antecedents() { 
-			return new ClauseIterator(new IntArrayIterator(clause, 1, litOffset)); 
+			return new ClauseIterator(new IntArrayIterator(antes, 0, antes.length)); 
 		}
 		public IntIterator literals() {	
 			ensureLiterals();
-			return new IntArrayIterator(clause, litOffset, clause.length); 
+			return new IntArrayIterator(lits, 0, lits.length); 
 		}	
 		public int[] toArray(int[] array) {
 			final int size = size();
 			if (array.length < size) {
 				array = new int[size];
 			}
-			System.arraycopy(clause, litOffset, array, 0, size);
+			System.arraycopy(lits, 0, array, 0, size);
 			return array;
 		}
 	}
@@ -21,6 +21,8 @@
  */
 package kodkod.engine.satlab;
 
+import java.nio.IntBuffer;
+
 /**
  * Java wrapper for the Lingeling solver by Armin Biere.
  * 
@@ -70,6 +72,12 @@ final class Lingeling extends NativeSolver {
 	 * @see kodkod.engine.satlab.NativeSolver#addClause(long, int[])
 	 */
 	native boolean addClause(long peer, int[] lits);
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#addClauses(long, IntBuffer, int)
+	 */
+	native int addClauses(long peer, IntBuffer clauses, int length);
 	
 	/**
 	 * {@inheritDoc}
@@ -77,6 +85,26 @@ final class Lingeling extends NativeSolver {
 	 */
 	native boolean solve(long peer);
 	
+	/**
+	 * {@inheritDoc}
+	 * This version of lingeling cannot solve under assumptions.
+	 * @throws UnsupportedOperationException  always
+	 * @see kodkod.engine.satlab.NativeSolver#solveAssuming(long, int[])
+	 */
+	boolean solveAssuming(long peer, int[] assumptions) {
+		throw new UnsupportedOperationException("Lingeling does not support solving under assumptions.");
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * This version of lingeling cannot solve under assumptions.
+	 * @throws UnsupportedOperationException  always
+	 * @see kodkod.engine.satlab.NativeSolver#failedAssumptions(long)
+	 */
+	int[] failedAssumptions(long peer) {
+		throw new UnsupportedOperationException("Lingeling does not support solving under assumptions.");
+	}
+	
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.NativeSolver#valueOf(long, int)
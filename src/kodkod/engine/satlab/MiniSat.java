@@ -21,13 +21,14 @@
  */
 package kodkod.engine.satlab;
 
+import java.nio.IntBuffer;
 import java.util.Stack;
 
 /**
  * Java wrapper for the MiniSat solver by Niklas E&eacute;n and Niklas S&ouml;rensson.
  * @author Emina Torlak
  */
-final class MiniSat extends NativeSolver implements CheckpointableSolver {
+final class MiniSat extends NativeSolver implements CheckpointableSolver, InterruptibleSolver {
     Stack<Long> solverCheckpoints;
 
 	/**
@@ -81,12 +82,36 @@ final class MiniSat extends NativeSolver implements CheckpointableSolver {
 	 */
 	native boolean addClause(long peer, int[] lits);
 	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#addClauses(long, IntBuffer, int)
+	 */
+	native int addClauses(long peer, IntBuffer clauses, int length);
+	
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.NativeSolver#solve(long)
 	 */
 	native boolean solve(long peer);
 	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#solveAssuming(long, int[])
+	 */
+	native boolean solveAssuming(long peer, int[] assumptions);
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#failedAssumptions(long)
+	 */
+	native int[] failedAssumptions(long peer);
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#setInterrupt(long, boolean)
+	 */
+	native void setInterrupt(long peer, boolean interrupt);
+	
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.NativeSolver#valueOf(long, int)
@@ -23,8 +23,6 @@ package kodkod.engine.satlab;
 
 import java.util.Iterator;
 
-import kodkod.util.ints.IntBitSet;
-import kodkod.util.ints.IntIterator;
 import kodkod.util.ints.IntSet;
 
 /**
@@ -47,90 +45,6 @@ final class MiniSatProver extends NativeSolver implements SATProver {
 		loadLibrary(MiniSatProver.class);
 	}
 	
-	/**
-	 * Returns a subset of the given trivial trace that 
-	 * consists only of axioms.  A trace is trivial iff 
-	 * its last clause is an empty clause.  This means that 
-	 * the empty axiom was added to the solver via {@linkplain #addClause(int[])}, 
-	 * so no resolution was necessary to reach the conflict.  The empty axiom 
-	 * is always the last clause in the trace. 
-	 * @requires trace[trace.length].length = 0
-	 * @return a subset of the given trivial trace that 
-	 * consists only of axioms
-	 */
-	private int[][] formatTrivial(int[][] trace) {
-		final int length = trace.length;
-		final int empty = length-1;
-		final IntSet axioms = new IntBitSet(length);
-		axioms.add(empty);
-		final int numVars = numberOfVariables();
-		for(int i = 0; i < empty; i++) {
-			int[] clause = trace[i];
-			if (clause[0]<=numVars) {
-				axioms.add(i);
-			}
-		}
-		if (axioms.size()==length) {
-			return trace;
-		}
-		final int[][] axiomClauses = new int[axioms.size()][];
-		final IntIterator itr = axioms.iterator();
-		for(int i = 0; itr.hasNext(); i++) {
-			axiomClauses[i] = trace[itr.next()];
-		}
-		return axiomClauses;
-	}
-	
-	/**
-	 * Modifies the given raw trace so that it conforms to the 
-	 * specification of {@linkplain LazyTrace#LazyTrace(int[][], int)}, 
-	 * if the array contains no null entries, and to the specfication of
-	 * {@linkplain LazyTrace#LazyTrace(LazyTrace, IntSet, int[][])}
-	 * otherwise.
-	 * @ensures modifies the trace so that it conforms to the specification
-	 * of one of the LazyTrace constructors.
-	 * @return trace
-	 */
-	private int[][] format(int[][] trace) {
-		final int length = trace.length;
-		final IntSet resolvents = new IntBitSet(length);
-		final int offset = numberOfVariables() + 1;
-		for(int i = 0; i < length; i++) {
-			int[] clause = trace[i];
-			if (clause!=null && clause[0]>=offset) {
-				clause[0] -= offset;
-				resolvents.add(i);
-			}
-		}
-				
-		final int axioms = length - resolvents.size();
-		if (resolvents.min()<axioms) {
-			final int[] position = new int[length];
-			for(int i = 0, axiomIndex = 0, resolventIndex = axioms; i < length; i++) {
-				if (resolvents.contains(i)) {
-					position[i] = resolventIndex++;
-					int[] resolvent = trace[i];
-					for(int j = 0, resLength = resolvent.length; j < resLength; j++) {
-						resolvent[j] = position[resolvent[j]];
-					}
-				} else {
-					position[i] = axiomIndex++;
-				}
-			}
-
-			for(IntIterator itr = resolvents.iterator(length, 0); itr.hasNext(); ) {
-				int i = itr.next();
-				int pos = position[i];
-				if (i==pos) continue; // correctly positioned, do nothing
-				int[] resolvent = trace[i];
-				System.arraycopy(trace, i+1, trace, i, pos-i);
-				trace[pos] = resolvent;
-			}
-		}
-		assert axioms == numberOfClauses();
-		return trace;
-	}
-		
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.SATProver#proof()
@@ -138,16 +52,13 @@ final class MiniSatProver extends NativeSolver implements SATProver {
 	public ResolutionTrace proof() {	
 		if (!Boolean.FALSE.equals(status())) throw new IllegalStateException();
 		if (proof==null) {
-			final int[][] trace = trace(peer(), true);
+			final TraceBuffer trace = new TraceBuffer();
+			trace(peer(), true, trace);
 			free();
 			// if the empty axiom was added to the solver, that axiom will be 
 			// the last clause in the trace, and it will form its own minimal unsat core.
-			//System.out.println(Arrays.deepToString(trace));
-			if (trace[trace.length-1].length==0) {
-				proof = new LazyTrace(formatTrivial(trace), numberOfClauses());
-			} else {
-				proof = new LazyTrace(format(trace), numberOfClauses());
-			}
+			assert trace.axioms() == numberOfClauses();
+			proof = new LazyTrace(trace);
 		}
 		return proof;
 	}
@@ -175,9 +86,10 @@ final class MiniSatProver extends NativeSolver implements SATProver {
 			
 			if (!solve(prover)) {
 				adjustClauseCount(next.size());
-				int[][] trace = trace(prover, false);
+				final TraceBuffer trace = new TraceBuffer();
+				trace(prover, false, trace);
 				free(prover);
-				proof = new LazyTrace(proof, next, format(trace));
+				proof = new LazyTrace(proof, next, trace);
 			} else {
 				free(prover);
 			}
@@ -225,6 +137,18 @@ final class MiniSatProver extends NativeSolver implements SATProver {
 	 */
 	native boolean solve(long peer);
 	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#solveAssuming(long, int[])
+	 */
+	native boolean solveAssuming(long peer, int[] assumptions);
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.NativeSolver#failedAssumptions(long)
+	 */
+	native int[] failedAssumptions(long peer);
+	
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.NativeSolver#valueOf(long, int)
@@ -232,17 +156,13 @@ final class MiniSatProver extends NativeSolver implements SATProver {
 	native boolean valueOf(long peer, int literal);
 
 	/**
-	 * Returns an array of arrays that encodes the most recently generated
-	 * resolution trace.  The resolution trace is encoded as follows. Let
-	 * R be the returned array. For all 0 <= i < trace.length such that 
-	 * R[i][0] > this.numberOfVariables(), the array R[i] encodes a 
-	 * resolvent clause. In particular, (R[i][0] - this.numberOfVariables() - 1) < i 
-	 * is the index of the 0th antecedent of R[i] in R; for each 0 < j < R[i].length, 
-	 * R[i][j] < i and R[i][j] is the index of the jth antecedent of R[i] in R.  
-	 * For all 0 <= i < trace.length-1 such that 
-	 * R[i][0] <= this.numberOfVariables(), R[i] contains the literals of the ith axiom, 
-	 * sorted in the increasing order of absolute values, if recordAxioms is true; otherwise R[i] is null.
-	 * @return an array of arrays that encodes the most recently generated resolution trace
+	 * Streams the most recently generated resolution trace into the given sink, 
+	 * encoded as specified by {@linkplain TraceBuffer}.  The trace is written into 
+	 * direct buffers obtained from {@linkplain TraceBuffer#flush(int, int)}, one chunk 
+	 * at a time, so it is never materialized on the Java heap.  The axioms appear in 
+	 * the trace in the order in which they were added to the solver; their literals are 
+	 * recorded only if recordAxioms is true.
+	 * @ensures sink.clauses' = the most recently generated resolution trace 
 	 */
-	native int[][] trace(long peer, boolean recordAxioms);
+	native void trace(long peer, boolean recordAxioms, TraceBuffer sink);
 }
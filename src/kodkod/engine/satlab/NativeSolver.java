@@ -22,6 +22,7 @@
 package kodkod.engine.satlab;
 
 import java.io.File;
+import java.nio.IntBuffer;
 import java.util.Stack;
 
 /**
@@ -30,13 +31,22 @@ import java.util.Stack;
  * 
  * @author Emina Torlak
  */
-abstract class NativeSolver implements SATSolver {
+abstract class NativeSolver implements BatchedSolver {
 	/**
 	 * The memory address of the native instance wrapped by this wrapper.
 	 */
 	private long peer;
 	private Boolean sat;
 	private int clauses, vars;
+	/**
+	 * The assumptions of the last call to solve, if its outcome was UNSAT; null otherwise.
+	 */
+	private int[] assumed;
+	private static final int[] NO_ASSUMPTIONS = new int[0];
+	/**
+	 * True if the current (or next) call to solve should be abandoned.
+	 */
+	private volatile boolean interrupted;
 
   	private Stack<Integer> clauseCheckpoints;
   	private Stack<Integer> varsCheckpoints;
@@ -50,6 +60,8 @@ abstract class NativeSolver implements SATSolver {
 		this.peer = peer;
 		this.clauses = this.vars = 0;
 		this.sat = null;
+		this.assumed = null;
+		this.interrupted = false;
 
     	this.clauseCheckpoints = new Stack<Integer>();
     	this.varsCheckpoints = new Stack<Integer>();
@@ -145,6 +157,19 @@ abstract class NativeSolver implements SATSolver {
 	}
 	
 	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.BatchedSolver#addClauses(ClauseArena)
+	 * @see #addClauses(long, IntBuffer, int)
+	 */
+	public final int addClauses(ClauseArena arena) {
+		if (arena.isEmpty()) return 0;
+		final int added = addClauses(peer, arena.buffer(), arena.length());
+		clauses += added;
+		arena.clear();
+		return added;
+	}
+	
 	/**
 	 * Returns a pointer to the C++ peer class (the native instance wrapped by this object).
 	 * @return a pointer to the C++ peer class (the native instance wrapped by this object).
@@ -170,12 +195,107 @@ abstract class NativeSolver implements SATSolver {
 	 * @see #solve(long)
 	 */
 	public final boolean solve() {
-		if (sat == Boolean.FALSE)
-			return sat;
-		else
-			return (sat = Boolean.valueOf(solve(peer)));
+		if (sat != Boolean.FALSE) {
+			final boolean outcome = solve(peer);
+			checkInterrupt();
+			sat = Boolean.valueOf(outcome);
+		}
+		assumed = sat ? null : NO_ASSUMPTIONS;
+		return sat;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * An unsatisfiable outcome under a non-empty set of assumptions leaves
+	 * the status of this solver unknown, so that it can be called again 
+	 * with different assumptions or additional clauses.
+	 * @see kodkod.engine.satlab.SATSolver#solve(int[])
+	 * @see #solveAssuming(long, int[])
+	 */
+	public final boolean solve(int[] assumptions) {
+		if (assumptions.length == 0)
+			return solve();
+		if (sat == Boolean.FALSE) {
+			assumed = NO_ASSUMPTIONS;
+			return false;
+		}
+		for(int lit : assumptions) {
+			validateVariable(StrictMath.abs(lit));
+		}
+		final boolean outcome = solveAssuming(peer, assumptions);
+		checkInterrupt();
+		if (outcome) {
+			sat = Boolean.TRUE;
+			assumed = null;
+			return true;
+		} else {
+			sat = null;
+			assumed = assumptions.clone();
+			return false;
+		}
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * If no assumptions failed, the clauses are unsatisfiable on their own, 
+	 * and this solver's status is set to UNSAT.
+	 * @see kodkod.engine.satlab.SATSolver#failedAssumptions()
+	 * @see #failedAssumptions(long)
+	 */
+	public final int[] failedAssumptions() {
+		if (assumed == null)
+			throw new IllegalStateException();
+		if (assumed.length == 0)
+			return NO_ASSUMPTIONS;
+		final int[] failed = failedAssumptions(peer);
+		if (failed.length == 0)
+			sat = Boolean.FALSE;
+		return failed;
+	}
+	
+	/**
+	 * Asks the native peer to abandon the call to solve that is in progress, 
+	 * or the next such call if none is.  Only the subclasses whose peers support
+	 * interruption implement {@link InterruptibleSolver}.
+	 * @see InterruptibleSolver#interrupt()
+	 * @see #setInterrupt(long, boolean)
+	 */
+	public final void interrupt() {
+		interrupted = true;
+		setInterrupt(peer, true);
 	}
 	
+	/**
+	 * Clears the interrupt indicator of this solver and its native peer.
+	 * @see InterruptibleSolver#clearInterrupt()
+	 * @see #setInterrupt(long, boolean)
+	 */
+	public final void clearInterrupt() {
+		interrupted = false;
+		setInterrupt(peer, false);
+	}
+	
+	/**
+	 * Throws a SATAbortedException if this solver has been interrupted.
+	 * In that case, the outcome of the last call to the native peer is 
+	 * meaningless, and the status of this solver remains unchanged.
+	 * @throws SATAbortedException  this.interrupted
+	 */
+	private void checkInterrupt() {
+		if (interrupted) {
+			assumed = null;
+			throw new SATAbortedException("The call to solve was interrupted.");
+		}
+	}
+	
+	/**
+	 * Returns the assumptions passed to the last call to {@link #solve(int[])}, 
+	 * if that call was unsatisfiable.  Otherwise returns null.
+	 * @return the assumptions passed to the last call to {@link #solve(int[])}, 
+	 * if that call was unsatisfiable; null otherwise.
+	 */
+	final int[] assumed() { return assumed; }
+	
 
 	/**
 	 * Throws an IllegalArgumentException if variable !in this.variables.
@@ -229,6 +349,7 @@ abstract class NativeSolver implements SATSolver {
 	    this.clauses = this.clauseCheckpoints.pop();
 	    this.vars = this.varsCheckpoints.pop();
 	    this.sat = this.satCheckpoints.pop();
+	    this.assumed = null;
 	}
 	
 	/**
@@ -260,6 +381,32 @@ abstract class NativeSolver implements SATSolver {
 	 */
 	abstract boolean addClause(long peer, int[] lits);
 	
+	/**
+	 * Ensures that the given native peer logically contains the zero-terminated 
+	 * clauses stored in the first {@code length} entries of the given buffer, and returns 
+	 * the number of clauses for which {@link #addClause(long, int[])} would have returned true.  
+	 * By default, the clauses are copied out of the buffer and added one at a time.  Subclasses whose 
+	 * peers can read the (direct) buffer in a single call should override this method.
+	 * @requires clauses.isDirect() && 0 <= length <= clauses.capacity() && clauses.get(length-1) = 0
+	 * @requires all lit: clauses[0..length) | abs(lit) in this.variables + 0
+	 * @ensures ensures that the given native peer logically contains the specified clauses
+	 * @return the number of clauses for which {@link #addClause(long, int[])} would have returned true
+	 */
+	int addClauses(long peer, IntBuffer clauses, int length) {
+		int added = 0;
+		for(int start = 0, end = 0; end < length; end++) {
+			if (clauses.get(end)==0) {
+				final int[] lits = new int[end-start];
+				for(int i = 0; i < lits.length; i++) { 
+					lits[i] = clauses.get(start+i);
+				}
+				if (addClause(peer, lits)) added++;
+				start = end + 1;
+			}
+		}
+		return added;
+	}
+	
 	/**
 	 * Calls the solve method on the given native peer.
 	 * @return true if the clauses in the solver are SAT;
@@ -267,6 +414,37 @@ abstract class NativeSolver implements SATSolver {
 	 */
 	abstract boolean solve(long peer);
 	
+	/**
+	 * Sets or clears the interrupt indicator of the given native peer.  A peer 
+	 * whose indicator is set abandons the current call to solve as soon as it 
+	 * reaches a consistent state, and it returns false from that call.  
+	 * Subclasses that implement {@link InterruptibleSolver} must override 
+	 * this method; by default, it throws an UnsupportedOperationException.
+	 * @ensures sets the interrupt indicator of the given peer to the given value
+	 * @throws UnsupportedOperationException  the native peer cannot be interrupted 
+	 */
+	void setInterrupt(long peer, boolean interrupt) {
+		throw new UnsupportedOperationException(getClass().getSimpleName() + " cannot be interrupted.");
+	}
+	
+	/**
+	 * Calls the solve method on the given native peer, 
+	 * assuming that all of the given literals are true.
+	 * @requires all i: [0..assumptions.length) | abs(assumptions[i]) in this.variables
+	 * @return true if the clauses in the solver are SAT 
+	 * under the given assumptions; otherwise returns false.
+	 */
+	abstract boolean solveAssuming(long peer, int[] assumptions);
+	
+	/**
+	 * Returns the assumptions that the last call to {@link #solveAssuming(long, int[])} 
+	 * on the given native peer found to be inconsistent with its clauses. 
+	 * @requires the last call to {@link #solveAssuming(long, int[]) solveAssuming(peer, this.assumed())} returned UNSATISFIABLE
+	 * @return some failed: int[] | failed.elems in this.assumed().elems && 
+	 *          no [[peer.clauses]] && [[failed]]
+	 */
+	abstract int[] failedAssumptions(long peer);
+	
 	/**
 	 * Returns the assignment for the given literal
 	 * by the specified native peer
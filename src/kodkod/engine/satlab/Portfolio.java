@@ -0,0 +1,313 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.satlab;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+/**
+ * A SATSolver that races several solvers against one another.  Every variable
+ * and clause is added to all of the solvers in the portfolio, and each call to
+ * solve runs all of them in parallel, on separate threads.  The first solver to
+ * finish determines the outcome of the call, and the remaining solvers are aborted.
+ * {@linkplain InterruptibleSolver Interruptible} solvers are interrupted, and they
+ * take part in subsequent calls.  All other solvers are retired from the portfolio
+ * when they lose a race:  they are left to finish in the background and freed once
+ * they do.
+ *
+ * @specfield solvers: set SATSolver
+ * @specfield winner: lone solvers
+ */
+final class Portfolio implements SATSolver {
+	/**
+	 * How long to wait for an interrupted solver before interrupting it again.
+	 */
+	private static final long RETRY_MILLIS = 10;
+
+	/**
+	 * Creates daemon threads, so that the solvers that are still running
+	 * in the background do not keep the virtual machine alive.
+	 */
+	private static final ThreadFactory DAEMONS = new ThreadFactory() {
+		private final ThreadFactory factory = Executors.defaultThreadFactory();
+		public Thread newThread(Runnable r) {
+			final Thread thread = factory.newThread(r);
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+
+	private final List<SATSolver> solvers;
+	private final ExecutorService executor;
+	private SATSolver winner;
+	private int vars, clauses;
+
+	/**
+	 * Constructs a portfolio of the given solvers.
+	 * @requires solvers.length > 0 && no s: solvers[int] | some s.clauses || some s.variables
+	 * @ensures this.solvers' = solvers[int] && no this.winner'
+	 */
+	Portfolio(SATSolver[] solvers) {
+		assert solvers.length > 0;
+		this.solvers = new ArrayList<SATSolver>(Arrays.asList(solvers));
+		this.executor = Executors.newCachedThreadPool(DAEMONS);
+		this.winner = null;
+		this.vars = this.clauses = 0;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#numberOfVariables()
+	 */
+	public int numberOfVariables() {
+		return vars;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#numberOfClauses()
+	 */
+	public int numberOfClauses() {
+		return clauses;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#addVariables(int)
+	 */
+	public void addVariables(int numVars) {
+		if (numVars < 0)
+			throw new IllegalArgumentException("numVars < 0: " + numVars);
+		else if (numVars > 0) {
+			vars += numVars;
+			for(SATSolver solver : solvers) {
+				solver.addVariables(numVars);
+			}
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#addClause(int[])
+	 */
+	public boolean addClause(int[] lits) {
+		// each solver may modify the array, so it is restored before every call
+		final int[] clause = lits.clone();
+		boolean changed = false;
+		for(SATSolver solver : solvers) {
+			System.arraycopy(clause, 0, lits, 0, clause.length);
+			changed |= solver.addClause(lits);
+		}
+		if (changed) {
+			clauses++;
+		}
+		return changed;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#solve()
+	 */
+	public boolean solve() throws SATAbortedException {
+		return race(new int[0]);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#solve(int[])
+	 */
+	public boolean solve(int[] assumptions) throws SATAbortedException {
+		return race(assumptions.clone());
+	}
+
+	/**
+	 * Calls solve on all of this.solvers in parallel, with the given assumptions,
+	 * and returns the outcome of the first call to finish normally.
+	 * @ensures this.winner' = the solver whose call finished first
+	 * @ensures aborts the calls of all other solvers, and retires
+	 * the ones that cannot be interrupted
+	 * @return the outcome of the winner's call
+	 * @throws SATAbortedException  the calling thread was interrupted or
+	 * all of the calls were aborted
+	 */
+	private boolean race(final int[] assumptions) {
+		winner = null;
+		if (solvers.size()==1) {
+			final SATSolver solver = solvers.get(0);
+			final boolean outcome = solver.solve(assumptions);
+			winner = solver;
+			return outcome;
+		}
+
+		final CompletionService<Boolean> service = new ExecutorCompletionService<Boolean>(executor);
+		final Map<Future<Boolean>, SATSolver> racers = new LinkedHashMap<Future<Boolean>, SATSolver>();
+		for(final SATSolver solver : solvers) {
+			racers.put(service.submit(new Callable<Boolean>() {
+				public Boolean call() {
+					return solver.solve(assumptions);
+				}
+			}), solver);
+		}
+
+		Throwable failure = null;
+		boolean outcome = false, interrupted = false;
+		try {
+			for(int i = 0, max = racers.size(); i < max && winner == null; i++) {
+				final Future<Boolean> finished = service.take();
+				final SATSolver solver = racers.remove(finished);
+				try {
+					outcome = finished.get();
+					winner = solver;
+				} catch (ExecutionException e) {
+					if (failure == null)
+						failure = e.getCause();
+				}
+			}
+		} catch (InterruptedException e) {
+			interrupted = true;
+			failure = new SATAbortedException(e);
+		} finally {
+			abort(racers);
+		}
+
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		if (winner != null)
+			return outcome;
+		else if (failure instanceof RuntimeException)
+			throw (RuntimeException) failure;
+		else if (failure instanceof Error)
+			throw (Error) failure;
+		else
+			throw new SATAbortedException(failure);
+	}
+
+	/**
+	 * Aborts the calls to solve that are represented by the given futures.
+	 * Interruptible solvers are interrupted until their calls return, and then
+	 * their interrupt indicators are cleared.  The remaining solvers whose
+	 * calls are still running are removed from this.solvers and freed once
+	 * their calls return.
+	 * @ensures this.solvers' = this.solvers - { s: losers[Future] |
+	 *   s !in InterruptibleSolver && the call represented by losers.s has not returned }
+	 */
+	private void abort(Map<Future<Boolean>, SATSolver> losers) {
+		for(Map.Entry<Future<Boolean>, SATSolver> loser : losers.entrySet()) {
+			final Future<Boolean> future = loser.getKey();
+			final SATSolver solver = loser.getValue();
+			if (solver instanceof InterruptibleSolver) {
+				((InterruptibleSolver)solver).interrupt();
+			} else if (!future.isDone()) {
+				solvers.remove(solver);
+				executor.execute(new Runnable() {
+					public void run() {
+						try {
+							future.get();
+						} catch (InterruptedException e) {
+						} catch (ExecutionException e) {
+						} finally {
+							solver.free();
+						}
+					}
+				});
+			}
+		}
+
+		boolean interrupted = false;
+		for(Map.Entry<Future<Boolean>, SATSolver> loser : losers.entrySet()) {
+			if (!(loser.getValue() instanceof InterruptibleSolver))
+				continue;
+			final InterruptibleSolver solver = (InterruptibleSolver) loser.getValue();
+			while(true) {
+				try {
+					loser.getKey().get(RETRY_MILLIS, TimeUnit.MILLISECONDS);
+					break;
+				} catch (ExecutionException e) {
+					break;
+				} catch (TimeoutException e) {
+					// a call that had not started when it was interrupted may have missed it
+					solver.interrupt();
+				} catch (InterruptedException e) {
+					interrupted = true;
+				}
+			}
+			solver.clearInterrupt();
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#failedAssumptions()
+	 */
+	public int[] failedAssumptions() {
+		if (winner == null)
+			throw new IllegalStateException();
+		return winner.failedAssumptions();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#valueOf(int)
+	 */
+	public boolean valueOf(int variable) {
+		if (winner == null)
+			throw new IllegalStateException();
+		return winner.valueOf(variable);
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#free()
+	 */
+	public synchronized void free() {
+		for(SATSolver solver : solvers) {
+			solver.free();
+		}
+		solvers.clear();
+		winner = null;
+		executor.shutdown();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "Portfolio" + solvers;
+	}
+}
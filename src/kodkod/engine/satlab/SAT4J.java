@@ -23,6 +23,7 @@ package kodkod.engine.satlab;
 
 import java.util.NoSuchElementException;
 
+import org.sat4j.core.VecInt;
 import org.sat4j.specs.ContradictionException;
 import org.sat4j.specs.ISolver;
 import org.sat4j.specs.IVecInt;
@@ -35,11 +36,20 @@ import org.sat4j.specs.IteratorInt;
  * 
  * @author Emina Torlak
  */
-final class SAT4J implements SATSolver {
+final class SAT4J implements InterruptibleSolver {
 	private ISolver solver;
 	private final ReadOnlyIVecInt wrapper;
 	private Boolean sat; 
 	private int vars, clauses;
+	/**
+	 * The assumptions of the last call to solve, if its outcome was UNSAT; null otherwise.
+	 */
+	private int[] assumed;
+	private static final int[] NO_ASSUMPTIONS = new int[0];
+	/**
+	 * True if the current (or next) call to solve should be abandoned.
+	 */
+	private volatile boolean interrupted;
 	
 	/**
 	 * Constructs a wrapper for the given instance
@@ -52,6 +62,8 @@ final class SAT4J implements SATSolver {
 		this.solver = solver;
 		this.wrapper = new ReadOnlyIVecInt();
 		this.sat = null;
+		this.assumed = null;
+		this.interrupted = false;
 		this.vars = this.clauses = 0;
 	}
 
@@ -114,12 +126,92 @@ final class SAT4J implements SATSolver {
 		try {
 			if (!Boolean.FALSE.equals(sat))
 				sat = Boolean.valueOf(solver.isSatisfiable());
+			assumed = sat ? null : NO_ASSUMPTIONS;
 			return sat;
 		} catch (org.sat4j.specs.TimeoutException e) {
+			if (interrupted)
+				throw new SATAbortedException("The call to solve was interrupted.", e);
+			throw new RuntimeException("timed out");
+		} 
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#solve(int[])
+	 */
+	public boolean solve(int[] assumptions) {
+		if (assumptions.length == 0)
+			return solve();
+		for(int lit : assumptions) {
+			final int var = StrictMath.abs(lit);
+			if (var < 1 || var > vars)
+				throw new IllegalArgumentException(var + " !in [1.." + vars+"]");
+		}
+		try {
+			if (Boolean.FALSE.equals(sat)) {
+				assumed = NO_ASSUMPTIONS;
+				return false;
+			}
+			final boolean outcome = solver.isSatisfiable(new VecInt(assumptions));
+			// an unsat outcome under assumptions says nothing about the clauses alone
+			sat = outcome ? Boolean.TRUE : null;
+			assumed = outcome ? null : assumptions.clone();
+			return outcome;
+		} catch (org.sat4j.specs.TimeoutException e) {
+			if (interrupted)
+				throw new SATAbortedException("The call to solve was interrupted.", e);
 			throw new RuntimeException("timed out");
 		} 
 	}
 
+	/**
+	 * {@inheritDoc}
+	 * A call to solve that has not yet started may not notice the interruption, 
+	 * so callers should repeat this call until the call to solve has returned.
+	 * @see kodkod.engine.satlab.InterruptibleSolver#interrupt()
+	 */
+	public void interrupt() {
+		interrupted = true;
+		solver.expireTimeout();
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.InterruptibleSolver#clearInterrupt()
+	 */
+	public void clearInterrupt() {
+		interrupted = false;
+	}
+
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.SATSolver#failedAssumptions()
+	 */
+	public int[] failedAssumptions() {
+		if (assumed == null)
+			throw new IllegalStateException();
+		if (assumed.length == 0)
+			return NO_ASSUMPTIONS;
+		final IVecInt explanation;
+		try {
+			explanation = solver.unsatExplanation();
+		} catch (NullPointerException e) {
+			// sat4j leaves the explanation unset when it refutes the clauses without
+			// using any of the assumptions, so the clauses are unsatisfiable on their own
+			sat = Boolean.FALSE;
+			return NO_ASSUMPTIONS;
+		}
+		if (explanation == null)
+			return assumed.clone();
+		final int[] failed = new int[explanation.size()];
+		for(int i = 0; i < failed.length; i++) {
+			failed[i] = explanation.get(i);
+		}
+		if (failed.length == 0)
+			sat = Boolean.FALSE;
+		return failed;
+	}
+
 	/**
 	 * {@inheritDoc}
 	 * @see kodkod.engine.satlab.SATSolver#valueOf(int)
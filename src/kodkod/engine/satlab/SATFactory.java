@@ -24,6 +24,7 @@ package kodkod.engine.satlab;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
 import org.sat4j.minisat.SolverFactory;
@@ -147,7 +148,7 @@ public abstract class SATFactory {
 
 	/**
 	 * The factory that produces instances of Armin Biere's
-	 * Lingeling solver.
+	 * Lingeling solver.  These instances cannot {@linkplain SATSolver#solve(int[]) solve under assumptions}.
 	 */
 	public static final SATFactory Lingeling = new SATFactory() {
 		public SATSolver instance() {
@@ -306,6 +307,81 @@ public abstract class SATFactory {
 	}
 
 
+	/**
+	 * Returns a SATFactory that produces SATSolver wrappers for the external
+	 * SAT solver specified by the executable parameter, which is expected to read 
+	 * its input from standard in.  The solver's input and output formats must conform 
+	 * to the <a href="http://www.satcompetition.org/2011/rules.pdf">SAT competition standards</a>.  
+	 * The solver will be called with the specified options, and it is expected to write 
+	 * properly formatted output to standard out.  Each solver instance keeps its clauses 
+	 * in memory, in the DIMACS format, and pipes them to the executable when it is solved, 
+	 * so no temporary files are created.  External solvers are never incremental.
+	 * @return  SATFactory that produces SATSolver wrappers for the specified external
+	 * SAT solver
+	 * @see #externalFactory(String, String, String...)
+	 */
+	public static final SATFactory externalPipeFactory(final String executable, final String... options) {
+		return new SATFactory() {
+
+			@Override
+			public SATSolver instance() {
+				return new ExternalSolver(executable, null, false, options);
+			}
+
+			@Override
+			public boolean incremental() {
+				return false;
+			}
+
+			public String toString() {
+				return (new File(executable)).getName();
+			}
+		};
+	}
+
+	/**
+	 * Returns a SATFactory that produces portfolio solvers, each of which races 
+	 * instances of the given factories' solvers against one another.  All variables and 
+	 * clauses are added to every solver in a portfolio, and each call to solve runs them 
+	 * in parallel, on separate threads.  The first solver to finish determines the outcome 
+	 * of the call, and the others are aborted:  the solvers that support interruption 
+	 * (MiniSat, Glucose, CryptoMiniSat, SAT4J and Z3) are interrupted, and all other 
+	 * solvers are retired from the portfolio and freed in the background once they finish.
+	 * The produced solvers are incremental if all of the given factories are.  They are 
+	 * neither {@link SATProver provers} nor {@link CheckpointableSolver checkpointable}.
+	 * @requires factories.length > 0
+	 * @return a SATFactory that produces portfolio solvers for the given factories
+	 * @throws IllegalArgumentException  factories.length = 0
+	 */
+	public static final SATFactory portfolio(final SATFactory... factories) {
+		if (factories.length == 0)
+			throw new IllegalArgumentException("A portfolio requires at least one SAT factory.");
+		final SATFactory[] members = factories.clone();
+		return new SATFactory() {
+			@Override
+			public SATSolver instance() {
+				final SATSolver[] solvers = new SATSolver[members.length];
+				for(int i = 0; i < members.length; i++) {
+					solvers[i] = members[i].instance();
+				}
+				return new Portfolio(solvers);
+			}
+
+			@Override
+			public boolean incremental() {
+				for(SATFactory member : members) {
+					if (!member.incremental())
+						return false;
+				}
+				return true;
+			}
+
+			public String toString() {
+				return "portfolio" + Arrays.toString(members);
+			}
+		};
+	}
+
 	/**
 	 * Returns an instance of a SATSolver produced by this factory.
 	 * @return a SATSolver instance
@@ -87,10 +87,47 @@ public interface SATSolver {
 	 * could not terminate normally.
 	 */
 	public abstract boolean solve() throws SATAbortedException;
-	
+
+	/**
+	 * Returns true if there is a satisfying assignment for this.clauses
+	 * that makes all of the given literals true.  Otherwise returns false.
+	 * The assumptions hold only for the duration of this call: they are not
+	 * added to this.clauses, so a false outcome does not preclude this.clauses
+	 * from being satisfiable under different assumptions, and subsequent calls
+	 * may add further clauses.  If the outcome is true, the satisfying assignment
+	 * for a given variable can be obtained by calling {@link #valueOf(int)}.
+	 * @requires all i: [0..assumptions.length) | abs(assumptions[i]) in this.variables
+	 * @return true if this.clauses are satisfiable when all literals in
+	 * assumptions are true; otherwise false.
+	 * @throws IllegalArgumentException  some i: [0..assumptions.length) | abs(assumptions[i]) !in this.variables
+	 * @throws SATAbortedException - the call to solve was cancelled or
+	 * could not terminate normally.
+	 * @throws UnsupportedOperationException  assumptions.length > 0 and this solver 
+	 * cannot solve under assumptions.  Solvers produced by {@linkplain SATFactory#incremental() incremental}
+	 * factories always can.
+	 */
+	public abstract boolean solve(int[] assumptions) throws SATAbortedException;
+
+	/**
+	 * Returns the assumptions that were found to be inconsistent with this.clauses
+	 * by the last call to {@link #solve(int[])}.  In particular, if the last call
+	 * to solve was unsatisfiable, the returned array contains a subset of its
+	 * assumptions such that this.clauses are unsatisfiable when all of
+	 * them are true.  The subset is not necessarily minimal, and it is empty only
+	 * if this.clauses are unsatisfiable on their own (which is always the case
+	 * when the last call was to {@link #solve()}).
+	 * @requires {@link #solve(int[]) } or {@link #solve() } has been called and the
+	 * outcome of the last call was <code>false</code>.
+	 * @return some failed: int[] | failed.elems in assumptions.elems &&
+	 *          no [[this.clauses]] && [[failed]]
+	 * @throws IllegalStateException  solve has not been called or the
+	 * outcome of the last call was not <code>false</code>.
+	 */
+	public abstract int[] failedAssumptions();
+
 	/**
 	 * Returns the boolean value assigned to the given variable by the
-	 * last successful call to {@link #solve()}. 
+	 * last successful call to {@link #solve()} or {@link #solve(int[])}.
 	 * @requires {@link #solve() } has been called and the 
 	 * outcome of the last call was <code>true</code>.  
 	 * @return the boolean value assigned to the given variable by the
@@ -0,0 +1,332 @@
+/*
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.satlab;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * An append-only resolution trace, stored off-heap in the order in which a prover
+ * produced its clauses.  A prover streams its trace into this buffer one chunk at a
+ * time (see {@link #flush(int, int)}), so the trace is never materialized on the
+ * Java heap.  A prover that knows the size of its trace up front {@linkplain #reserve(long, int) reserves}
+ * room for it first, so the trace is stored in a single allocation.  {@link LazyTrace} packs its
+ * clauses using the same encoding.
+ *
+ * <p>All integers in the buffer are unsigned LEB128 varints.  Each clause starts
+ * with a header h, followed by h >>> 1 integers.  If h & 1 = 0, the clause is an axiom,
+ * and the integers are its literals, in the increasing order of absolute values:  a
+ * literal l is encoded as (abs(l) - abs(p)) << 1 | (l < 0 ? 1 : 0), where p is the
+ * previous literal in the clause, or 0 for the first literal.  An axiom whose literals
+ * were not recorded is encoded as if it were empty.  If h & 1 = 1, the clause is a resolvent,
+ * and the integers are i - a for each of its antecedents a, in the order in which they
+ * were resolved, where i is the index of the resolvent.  All antecedents of a given
+ * resolvent precede it, and the conflict clause is the last clause in the buffer.</p>
+ *
+ * @specfield clauses: seq Clause
+ */
+final class TraceBuffer {
+	/** The default size of the chunks handed to a prover, in bytes. */
+	static final int CHUNK_SIZE = 1 << 16;
+
+	private ByteBuffer data;
+	private int length;
+	private int[] offsets;
+	private int size, axioms;
+	private ByteBuffer chunk;
+
+	/**
+	 * Constructs an empty trace buffer.
+	 * @ensures no this.clauses'
+	 */
+	TraceBuffer() {
+		this.data = ByteBuffer.allocateDirect(CHUNK_SIZE);
+		this.length = 0;
+		this.offsets = new int[64];
+		this.size = this.axioms = 0;
+		this.chunk = null;
+	}
+
+	/**
+	 * Returns the number of clauses in this buffer.
+	 * @return #this.clauses
+	 */
+	int size() { return size; }
+
+	/**
+	 * Returns the number of axioms in this buffer.
+	 * @return #{i: this.clauses.inds | this.clauses[i] is an axiom}
+	 */
+	int axioms() { return axioms; }
+
+	/**
+	 * Returns true if the ith clause in this buffer is an axiom.
+	 * @requires 0 <= index < this.size()
+	 * @return this.clauses[index] is an axiom
+	 */
+	boolean axiom(int index) {
+		return (data.get(offsets[index]) & 1) == 0;
+	}
+
+	/**
+	 * Returns a reader positioned at the header of the ith clause in this buffer.
+	 * @requires 0 <= index < this.size()
+	 * @return a reader positioned at the header of the ith clause in this buffer
+	 */
+	Reader reader(int index) {
+		return new Reader(data, offsets[index]);
+	}
+
+	/**
+	 * Returns the number of bytes in the encoding of the ith clause.
+	 * @requires 0 <= index < this.size()
+	 * @return the number of bytes in the encoding of the ith clause
+	 */
+	int length(int index) {
+		return (index + 1 < size ? offsets[index + 1] : length) - offsets[index];
+	}
+
+	/**
+	 * Copies the encoding of the ith clause to the given position in the given buffer.
+	 * @requires 0 <= index < this.size()
+	 * @requires dst.capacity() - pos >= this.length(index)
+	 * @ensures writes the encoding of this.clauses[index] to dst, starting at pos
+	 */
+	void copy(int index, ByteBuffer dst, int pos) {
+		final ByteBuffer src = data.duplicate();
+		src.limit(offsets[index] + length(index)).position(offsets[index]);
+		final ByteBuffer out = dst.duplicate();
+		out.position(pos);
+		out.put(src);
+	}
+
+	/**
+	 * Appends the given axiom to this buffer.
+	 * @requires lits are sorted in the increasing order of absolute values
+	 * @ensures this.clauses' = this.clauses.add(lits)
+	 */
+	void addAxiom(int[] lits) {
+		ensureCapacity(5 * (lits.length + 1));
+		index(length);
+		length = putLiterals(data, length, lits);
+		axioms++;
+	}
+
+	/**
+	 * Appends a resolvent with the given antecedents to this buffer.
+	 * @requires all a: antes[int] | 0 <= a < this.size()
+	 * @ensures this.clauses' = this.clauses.add(resolvent(antes))
+	 */
+	void addResolvent(int[] antes) {
+		ensureCapacity(5 * (antes.length + 1));
+		final int index = size;
+		index(length);
+		length = putAntecedents(data, length, index, antes);
+	}
+
+	/**
+	 * Appends the clauses of the given buffer, starting with the clause at the given index,
+	 * to this buffer.  Since resolvents are encoded relative to their own position, the appended
+	 * resolvents keep pointing to the clauses at the same indices as in the source.
+	 * @requires 0 <= from <= src.size() and this.size() = from
+	 * @ensures this.clauses' = this.clauses + src.clauses[from..src.size())
+	 */
+	void append(TraceBuffer src, int from) {
+		for(int i = from, max = src.size(); i < max; i++) {
+			ensureCapacity(src.length(i));
+			if (src.axiom(i)) axioms++;
+			index(length);
+			src.copy(i, data, length);
+			length += src.length(i);
+		}
+	}
+
+	/**
+	 * Called by a prover before it streams its trace into this buffer, with the number
+	 * of bytes and clauses in the trace, so that the trace is stored without regrowing
+	 * this buffer.
+	 * @ensures this buffer has room for the given number of bytes and clauses past its current contents
+	 * @throws OutOfMemoryError  the trace does not fit into a single buffer
+	 */
+	void reserve(long bytes, int clauses) {
+		ensureCapacity(bytes);
+		if (offsets.length - size < clauses) {
+			offsets = Arrays.copyOf(offsets, size + clauses);
+		}
+	}
+
+	/**
+	 * Called by a prover to hand over the first <tt>length</tt> bytes of the last chunk
+	 * returned by this method, which must hold whole clauses encoded as described above.
+	 * Returns a chunk with room for at least <tt>required</tt> bytes, or null if
+	 * <tt>required</tt> is 0, signalling the end of the trace.
+	 * @requires length = 0 || the last chunk returned by this method holds length bytes of whole clauses
+	 * @ensures appends the clauses in the given chunk to this.clauses
+	 * @return required > 0 => a direct buffer with capacity >= required else null
+	 * @throws OutOfMemoryError  the trace does not fit into a single buffer
+	 */
+	ByteBuffer flush(int length, int required) {
+		if (length > 0) {
+			ensureCapacity(length);
+			final ByteBuffer src = chunk.duplicate();
+			src.limit(length).position(0);
+			final ByteBuffer out = data.duplicate();
+			out.position(this.length);
+			out.put(src);
+			// index the clauses in the chunk
+			for(int pos = this.length, end = this.length + length; pos < end; ) {
+				index(pos);
+				final Reader in = new Reader(data, pos);
+				final int header = in.next();
+				if ((header & 1) == 0) axioms++;
+				for(int i = header >>> 1; i > 0; i--) { in.next(); }
+				pos = in.position();
+			}
+			this.length += length;
+		}
+		if (required == 0) {
+			chunk = null;
+		} else if (chunk == null || chunk.capacity() < required) {
+			chunk = ByteBuffer.allocateDirect(StrictMath.max(CHUNK_SIZE, required));
+		}
+		return chunk;
+	}
+
+	/**
+	 * Records the given position as the offset of the next clause.
+	 * @ensures this.offsets'[this.size] = pos && this.size' = this.size + 1
+	 */
+	private void index(int pos) {
+		if (size == offsets.length) {
+			offsets = Arrays.copyOf(offsets, StrictMath.max(size + 1, size + (size >>> 1)));
+		}
+		offsets[size++] = pos;
+	}
+
+	/**
+	 * Grows this.data, if needed, so that it has room for at least the given number of bytes
+	 * past this.length.  The buffer grows by half of its capacity at a time, since the old and 
+	 * the new buffer are both live while the contents are copied.
+	 * @throws OutOfMemoryError  this.length + bytes > Integer.MAX_VALUE
+	 */
+	private void ensureCapacity(long bytes) {
+		final long required = length + bytes;
+		if (required > Integer.MAX_VALUE)
+			throw new OutOfMemoryError("resolution trace too large to pack: " + size + " clauses");
+		if (required > data.capacity()) {
+			final ByteBuffer grown = ByteBuffer.allocateDirect((int) StrictMath.min(Integer.MAX_VALUE,
+					StrictMath.max(required, data.capacity() + (data.capacity() >>> 1))));
+			final ByteBuffer src = data.duplicate();
+			src.limit(length).position(0);
+			grown.put(src);
+			data = grown;
+		}
+	}
+
+	/**
+	 * Writes the given value as an unsigned varint at the given position
+	 * in the given buffer, if the buffer is not null, and returns the position
+	 * just past the written value.
+	 * @ensures buf != null => writes v to buf starting at pos
+	 * @return pos + the number of bytes in the varint encoding of v
+	 */
+	static int putVarint(ByteBuffer buf, int pos, int v) {
+		while((v & ~0x7F) != 0) {
+			if (buf != null) buf.put(pos, (byte) ((v & 0x7F) | 0x80));
+			pos++;
+			v >>>= 7;
+		}
+		if (buf != null) buf.put(pos, (byte) v);
+		return pos + 1;
+	}
+
+	/**
+	 * Writes the given axiom literals at the given position in the given
+	 * buffer, if the buffer is not null, and returns the position just past
+	 * the written clause.
+	 * @requires lits are sorted in the increasing order of absolute values
+	 * @ensures buf != null => writes the encoding of lits to buf starting at pos
+	 * @return pos + the number of bytes in the encoding of lits
+	 */
+	static int putLiterals(ByteBuffer buf, int pos, int[] lits) {
+		pos = putVarint(buf, pos, lits.length << 1);
+		for(int i = 0, prev = 0; i < lits.length; i++) {
+			final int var = StrictMath.abs(lits[i]);
+			pos = putVarint(buf, pos, ((var - prev) << 1) | (lits[i] >>> 31));
+			prev = var;
+		}
+		return pos;
+	}
+
+	/**
+	 * Writes the given antecedents of the resolvent at the given index at the given
+	 * position in the given buffer, if the buffer is not null, and returns the position
+	 * just past the written clause.
+	 * @requires all a: antes[int] | a < index
+	 * @ensures buf != null => writes the encoding of antes to buf starting at pos
+	 * @return pos + the number of bytes in the encoding of antes
+	 */
+	static int putAntecedents(ByteBuffer buf, int pos, int index, int[] antes) {
+		pos = putVarint(buf, pos, (antes.length << 1) | 1);
+		for(int ante : antes) {
+			pos = putVarint(buf, pos, index - ante);
+		}
+		return pos;
+	}
+
+	/**
+	 * A cursor that decodes the varints in a buffer, starting at a given position.
+	 */
+	static final class Reader {
+		private final ByteBuffer buf;
+		private int pos;
+		/**
+		 * Constructs a reader that starts at the given position in the given buffer.
+		 */
+		Reader(ByteBuffer buf, int pos) {
+			this.buf = buf;
+			this.pos = pos;
+		}
+		/**
+		 * Returns the position of this reader.
+		 * @return the position of the next varint to be read
+		 */
+		int position() { return pos; }
+		/**
+		 * Decodes the varint at the current position and advances past it.
+		 * @return the varint at the current position
+		 */
+		int next() {
+			int ret = 0;
+			for(int shift = 0; ; shift += 7) {
+				final byte b = buf.get(pos++);
+				ret |= (b & 0x7F) << shift;
+				if (b >= 0) return ret;
+			}
+		}
+		/**
+		 * Decodes the clause header at the current position and advances past it.
+		 * @return the number of literals or antecedents in the clause whose header is at the current position
+		 */
+		int count() { return next() >>> 1; }
+	}
+}
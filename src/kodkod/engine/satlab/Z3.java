@@ -1,6 +1,7 @@
 package kodkod.engine.satlab;
 
 import java.lang.RuntimeException;
+import java.util.Arrays;
 import java.util.Stack;
 import java.util.HashMap;
 import com.microsoft.z3.Solver;
@@ -17,7 +18,7 @@ import com.microsoft.z3.Tactic;
 * A wrapper class that provides access to the basic functionality
 * of the Z3 solver from Microsoft Research.
 */
-final class Z3 implements CheckpointableSolver {
+final class Z3 implements CheckpointableSolver, InterruptibleSolver {
     private Solver solver;
     private Context context;
     private Tactic satTactic;
@@ -26,6 +27,8 @@ final class Z3 implements CheckpointableSolver {
     private int clauses;
     private Status last_status;
     private Model last_model;
+    private int[] last_assumptions;
+    private volatile boolean interrupted;
 
     private HashMap<Integer, BoolExpr> expressionCache;
     private Stack<Checkpoint> checkpoints;
@@ -75,6 +78,8 @@ final class Z3 implements CheckpointableSolver {
         this.clauses = 0;
         this.last_status = null;
         this.last_model = null;
+        this.last_assumptions = new int[0];
+        this.interrupted = false;
         checkpoints = new Stack<Checkpoint>();
     }
 
@@ -155,6 +160,7 @@ final class Z3 implements CheckpointableSolver {
     public boolean solve() {
         try {
             last_status = solver.Check();
+            last_assumptions = new int[0];
 
             if (last_status == Status.SATISFIABLE) {
                 last_model = solver.Model();
@@ -162,6 +168,8 @@ final class Z3 implements CheckpointableSolver {
             } else if (last_status == Status.UNSATISFIABLE) {
                 last_model = null;
                 return false;
+            } else if (interrupted) {
+                throw new SATAbortedException("The call to solve was interrupted.");
             } else {
                 throw new RuntimeException("Result was UNKNOWN. " + solver.ReasonUnknown());
             }
@@ -171,6 +179,99 @@ final class Z3 implements CheckpointableSolver {
 
     }
 
+    /**
+     * {@inheritDoc}
+     * @see kodkod.engine.satlab.SATSolver#solve(int[])
+     */
+    public boolean solve(int[] assumptions) {
+        if (assumptions.length == 0) {
+            return solve();
+        }
+        try {
+            BoolExpr[] literals = new BoolExpr[assumptions.length];
+
+            for (int i = 0; i < assumptions.length; i += 1) {
+                int lit = Math.abs(assumptions[i]);
+                if (lit == 0 || lit > vars) {
+                    throw new IllegalArgumentException("Illegal variable: " + lit);
+                }
+                literals[i] = getExpressionForLiteral(assumptions[i]);
+            }
+
+            last_status = solver.Check(literals);
+            last_assumptions = assumptions.clone();
+
+            if (last_status == Status.SATISFIABLE) {
+                last_model = solver.Model();
+                return true;
+            } else if (last_status == Status.UNSATISFIABLE) {
+                last_model = null;
+                return false;
+            } else if (interrupted) {
+                throw new SATAbortedException("The call to solve was interrupted.");
+            } else {
+                throw new RuntimeException("Result was UNKNOWN. " + solver.ReasonUnknown());
+            }
+        } catch (Z3Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * A call to solve that has not yet started may not notice the interruption,
+     * so callers should repeat this call until the call to solve has returned.
+     * @see kodkod.engine.satlab.InterruptibleSolver#interrupt()
+     */
+    public void interrupt() {
+        interrupted = true;
+        try {
+            context.Interrupt();
+        } catch (Z3Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see kodkod.engine.satlab.InterruptibleSolver#clearInterrupt()
+     */
+    public void clearInterrupt() {
+        interrupted = false;
+    }
+
+    /**
+     * {@inheritDoc}
+     * @see kodkod.engine.satlab.SATSolver#failedAssumptions()
+     */
+    public int[] failedAssumptions() {
+        if (last_status != Status.UNSATISFIABLE) {
+            throw new IllegalStateException();
+        }
+        if (last_assumptions.length == 0) {
+            return last_assumptions;
+        }
+        try {
+            Expr[] core = solver.UnsatCore();
+            int[] failed = new int[last_assumptions.length];
+            int size = 0;
+
+            for (int lit : last_assumptions) {
+                BoolExpr expr = getExpressionForLiteral(lit);
+                for (Expr e : core) {
+                    if (expr.equals(e)) {
+                        failed[size++] = lit;
+                        break;
+                    }
+                }
+            }
+
+            return Arrays.copyOf(failed, size);
+        } catch (Z3Exception e) {
+            throw new RuntimeException(e);
+        }
+    }
+
     /**
      * {@inheritDoc}
      * @see kodkod.engine.satlab.SATSolver#valueOf(int)
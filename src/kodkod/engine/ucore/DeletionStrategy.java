@@ -0,0 +1,181 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.ucore;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import kodkod.engine.fol2sat.TranslationLog;
+import kodkod.engine.fol2sat.Translator;
+import kodkod.engine.satlab.ReductionStrategy;
+import kodkod.engine.satlab.ResolutionTrace;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.IntTreeSet;
+import kodkod.util.ints.Ints;
+
+/**
+ * Deletion-based core extraction, with the candidate deletions tested in parallel.
+ * In each round, this strategy picks up to {@linkplain #threads() threads} root
+ * formulas in the current core that are not yet known to be necessary, and tests 
+ * the core without each of them on an independent prover.  A root whose removal 
+ * makes the core satisfiable is necessary, and it is never tried again.  Of the 
+ * reductions that remain unsatisfiable, the one with the smallest core is handed 
+ * back to the calling prover.  
+ * Roots that dropped out of the core are never tried, since the core only shrinks.
+ * 
+ * <p>If the strategy runs to completion, it guarantees the same logic-level 
+ * minimality as {@linkplain SCEStrategy}.  The number of rounds can be bounded with an
+ * iteration budget, however, in which case the minimization stops once the budget is 
+ * spent, and the resulting core is minimal only if no untried roots were left.</p>
+ * 
+ * <p>This implementation will work properly only on CNFs generated by the kodkod {@linkplain Translator}. </p>
+ * 
+ * @specfield budget: int // number of rounds left
+ * @specfield threads: int // number of deletions tested at once
+ * @specfield prover: SATFactory // factory for the independent provers
+ * @see SCEStrategy
+ * @see ParallelStrategy
+ */
+public final class DeletionStrategy implements ReductionStrategy {
+	private final ProverPool pool;
+	private final IntSet rootVars, necessary;
+	private int budget;
+	
+	/**
+	 * Constructs a deletion strategy that will use the given translation
+	 * log to relate the cnf clauses back to the logic constraints from 
+	 * which they were generated.  The strategy runs to completion, and it 
+	 * tests one deletion per available processor at a time on MiniSatProver instances.
+	 * @ensures this.budget' = Integer.MAX_VALUE && 
+	 *   this.threads' = Runtime.getRuntime().availableProcessors() && 
+	 *   this.prover' = SATFactory.MiniSatProver
+	 */
+	public DeletionStrategy(TranslationLog log) {
+		this(log, Integer.MAX_VALUE);
+	}
+	
+	/**
+	 * Constructs a deletion strategy that will use the given translation
+	 * log to relate the cnf clauses back to the logic constraints from 
+	 * which they were generated, and that will stop after the given number of
+	 * rounds.  The strategy tests one deletion per available processor at a time
+	 * on MiniSatProver instances.
+	 * @ensures this.budget' = budget && 
+	 *   this.threads' = Runtime.getRuntime().availableProcessors() && 
+	 *   this.prover' = SATFactory.MiniSatProver
+	 * @throws IllegalArgumentException  budget < 0
+	 */
+	public DeletionStrategy(TranslationLog log, int budget) {
+		this(log, budget, Runtime.getRuntime().availableProcessors(), SATFactory.MiniSatProver);
+	}
+	
+	/**
+	 * Constructs a deletion strategy that will use the given translation
+	 * log to relate the cnf clauses back to the logic constraints from 
+	 * which they were generated, that will stop after the given number of
+	 * rounds, and that will test up to the given number of deletions at a time 
+	 * on provers made by the given factory.
+	 * @ensures this.budget' = budget && this.threads' = threads && this.prover' = prover
+	 * @throws IllegalArgumentException  budget < 0 || threads < 1 || !prover.prover()
+	 */
+	public DeletionStrategy(TranslationLog log, int budget, int threads, SATFactory prover) {
+		if (budget < 0) throw new IllegalArgumentException("budget < 0: " + budget);
+		this.pool = new ProverPool(prover, threads);
+		this.rootVars = StrategyUtils.rootVars(log);
+		this.necessary = new IntTreeSet();
+		this.budget = budget;
+	}
+	
+	/**
+	 * Returns the number of rounds left in this.budget.
+	 * @return this.budget
+	 */
+	public int budget() { return budget; }
+	
+	/**
+	 * Returns the number of deletions that this strategy tests at once.
+	 * @return this.threads
+	 */
+	public int threads() { return pool.threads(); }
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.ReductionStrategy#next(kodkod.engine.satlab.ResolutionTrace)
+	 */
+	public IntSet next(ResolutionTrace trace) {
+		final IntSet relevantVars = StrategyUtils.coreTailUnits(trace);
+		relevantVars.retainAll(rootVars);
+		
+		while(budget > 0 && relevantVars.size() > 1) {
+			final IntSet candidates = new IntTreeSet();
+			for(IntIterator itr = relevantVars.iterator(); itr.hasNext() && candidates.size() < pool.threads(); ) {
+				final int var = itr.next();
+				if (!necessary.contains(var)) candidates.add(var);
+			}
+			if (candidates.isEmpty()) break; // every root in the core is necessary
+			budget--;
+			
+			final List<IntSet> reductions = new ArrayList<IntSet>(candidates.size());
+			final List<Callable<int[][]>> tasks = new ArrayList<Callable<int[][]>>(candidates.size());
+			for(IntIterator itr = candidates.iterator(); itr.hasNext(); ) {
+				final IntSet rest = new IntTreeSet(relevantVars);
+				rest.remove(itr.next());
+				// get all axioms corresponding to the clauses that
+				// form the translations of formulas identified by the remaining vars
+				final IntSet reduction = StrategyUtils.clausesFor(trace, rest);
+				reductions.add(reduction);
+				tasks.add(pool.coreTask(ProverPool.clauses(trace, reduction), null));
+			}
+			
+			final List<int[][]> cores = pool.run(tasks);
+			if (cores == null) break; // interrupted
+			final IntIterator itr = candidates.iterator();
+			for(int[][] core : cores) {
+				final int var = itr.next();
+				if (core == null) necessary.add(var);
+			}
+			
+			// the reduction with the smallest core is kept whole, since the
+			// clauses outside of its core may be needed for later deletions
+			final int best = ProverPool.smallest(cores);
+			if (best >= 0) {
+				final IntSet next = reductions.get(best);
+				assert !next.isEmpty() && !next.contains(trace.size()-1);
+				return next;
+			}
+		}
+		
+		budget = 0;
+		return Ints.EMPTY_SET;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "DeletionStrategy(budget=" + budget + ", threads=" + pool.threads() + ")";
+	}
+}
@@ -0,0 +1,114 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.ucore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+
+import kodkod.engine.satlab.ReductionStrategy;
+import kodkod.engine.satlab.ResolutionTrace;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.Ints;
+
+/**
+ * A strategy that minimizes an unsatisfiable core with several other strategies 
+ * at once.  The axioms of the first trace passed to {@linkplain #next(ResolutionTrace)}
+ * are loaded into one independent prover per strategy, and each prover is reduced with 
+ * its strategy on a separate thread.  The smallest of the resulting cores is
+ * then handed back to the calling prover, which confirms it with a single solve.
+ * The guarantees of this strategy are therefore those of the strategy whose core
+ * was the smallest.
+ * 
+ * <p>Strategies that depend on a {@linkplain kodkod.engine.fol2sat.TranslationLog log}, 
+ * such as {@linkplain RCEStrategy} or {@linkplain SCEStrategy}, will work properly 
+ * only on CNFs generated by the kodkod {@linkplain kodkod.engine.fol2sat.Translator}.</p>
+ * 
+ * @specfield strategies: seq ReductionStrategy
+ * @specfield prover: SATFactory // factory for the independent provers
+ * @see DeletionStrategy
+ */
+public final class ParallelStrategy implements ReductionStrategy {
+	private final ProverPool pool;
+	private final ReductionStrategy[] strategies;
+	private boolean done;
+	
+	/**
+	 * Constructs a parallel strategy that will use MiniSatProver instances
+	 * to minimize cores with the given strategies.
+	 * @requires no strategies[int].traces && strategies[int] are distinct
+	 * @ensures this.strategies' = strategies && this.prover' = SATFactory.MiniSatProver
+	 * @throws IllegalArgumentException  strategies.length = 0
+	 */
+	public ParallelStrategy(ReductionStrategy... strategies) {
+		this(SATFactory.MiniSatProver, strategies);
+	}
+	
+	/**
+	 * Constructs a parallel strategy that will use provers made by the 
+	 * given factory to minimize cores with the given strategies.
+	 * @requires no strategies[int].traces && strategies[int] are distinct
+	 * @ensures this.strategies' = strategies && this.prover' = prover
+	 * @throws IllegalArgumentException  strategies.length = 0 || !prover.prover()
+	 */
+	public ParallelStrategy(SATFactory prover, ReductionStrategy... strategies) {
+		if (strategies.length==0) throw new IllegalArgumentException("no strategies given");
+		this.pool = new ProverPool(prover, strategies.length);
+		this.strategies = strategies.clone();
+		this.done = false;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.engine.satlab.ReductionStrategy#next(kodkod.engine.satlab.ResolutionTrace)
+	 */
+	public IntSet next(ResolutionTrace trace) {
+		if (done) return Ints.EMPTY_SET; // the smallest core has been confirmed
+		done = true;
+		
+		// the provers get all axioms, not just the core, since the strategies
+		// may need the clauses that do not take part in the current core
+		final int[][] axioms = ProverPool.clauses(trace, trace.axioms());
+		final List<Callable<int[][]>> tasks = new ArrayList<Callable<int[][]>>(strategies.length);
+		for(ReductionStrategy strategy : strategies) {
+			tasks.add(pool.coreTask(axioms, strategy));
+		}
+		
+		final List<int[][]> cores = pool.run(tasks);
+		if (cores == null) return Ints.EMPTY_SET; // interrupted
+		final int best = ProverPool.smallest(cores);
+		if (best < 0) return Ints.EMPTY_SET; 
+		
+		final IntSet next = ProverPool.indices(trace, cores.get(best));
+		return next.size() < trace.axioms().size() ? next : Ints.EMPTY_SET;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#toString()
+	 */
+	public String toString() {
+		return "ParallelStrategy" + Arrays.toString(strategies);
+	}
+}
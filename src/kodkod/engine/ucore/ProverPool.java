@@ -0,0 +1,238 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.engine.ucore;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import kodkod.engine.satlab.Clause;
+import kodkod.engine.satlab.ReductionStrategy;
+import kodkod.engine.satlab.ResolutionTrace;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATProver;
+import kodkod.util.ints.IntBitSet;
+import kodkod.util.ints.IntIterator;
+import kodkod.util.ints.IntSet;
+
+/**
+ * Solves subsets of the axioms of a resolution trace on independent
+ * provers, in parallel.  Cores are exchanged between the provers and 
+ * the trace as arrays of clauses, which are mapped back onto the 
+ * trace by their literals.
+ * 
+ * @specfield factory: SATFactory // factory for the provers
+ * @specfield threads: int // maximum number of provers that run at once
+ * @invariant factory.prover() && threads > 0
+ */
+final class ProverPool {
+	/**
+	 * Creates daemon threads, so that an abandoned minimization does not
+	 * keep the virtual machine alive.
+	 */
+	private static final ThreadFactory DAEMONS = new ThreadFactory() {
+		private final ThreadFactory factory = Executors.defaultThreadFactory();
+		public Thread newThread(Runnable r) {
+			final Thread thread = factory.newThread(r);
+			thread.setDaemon(true);
+			return thread;
+		}
+	};
+	
+	private final SATFactory factory;
+	private final int threads;
+	
+	/**
+	 * Constructs a pool of at most the given number of provers made by the given factory.
+	 * @ensures this.factory' = factory && this.threads' = threads
+	 * @throws IllegalArgumentException  !factory.prover() || threads < 1
+	 */
+	ProverPool(SATFactory factory, int threads) {
+		if (!factory.prover()) throw new IllegalArgumentException(factory + " is not a prover");
+		if (threads < 1) throw new IllegalArgumentException("threads < 1: " + threads);
+		this.factory = factory;
+		this.threads = threads;
+	}
+	
+	/**
+	 * Returns this.threads.
+	 * @return this.threads
+	 */
+	int threads() { return threads; }
+	
+	/**
+	 * Returns the literals of the clauses at the given indices in the given trace.
+	 * @requires indices in trace.axioms()
+	 * @return { c: int[][] | #c = indices.size() and all i: [0..#c) | c[i] = trace.elts[indices[i]].literals } 
+	 */
+	static int[][] clauses(ResolutionTrace trace, IntSet indices) {
+		final int[][] ret = new int[indices.size()][];
+		final Iterator<Clause> itr = trace.iterator(indices);
+		for(int i = 0; itr.hasNext(); i++) {
+			ret[i] = itr.next().toArray();
+		}
+		return ret;
+	}
+	
+	/**
+	 * Returns the indices of the axioms in the given trace that have the same 
+	 * literals as the given clauses.
+	 * @requires all c: clauses[int] | some i: trace.axioms() | trace.elts[i].literals = c[int] 
+	 * @return { i: trace.axioms() | some c: clauses[int] | trace.elts[i].literals = c[int] } 
+	 */
+	static IntSet indices(ResolutionTrace trace, int[][] clauses) {
+		final IntSet axioms = trace.axioms();
+		final Map<Key, Integer> index = new HashMap<Key, Integer>(axioms.size()*4/3 + 1);
+		final Iterator<Clause> itr = trace.iterator(axioms);
+		for(IntIterator indices = axioms.iterator(); indices.hasNext(); ) {
+			index.put(new Key(itr.next().toArray()), indices.next());
+		}
+		final IntSet ret = new IntBitSet(axioms.max()+1);
+		for(int[] clause : clauses) {
+			final Integer i = index.get(new Key(clause.clone()));
+			assert i != null : "not an axiom: " + Arrays.toString(clause);
+			ret.add(i);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Returns the unsatisfiable core of the given clauses, minimized with the 
+	 * given strategy, if any, or null if the clauses are satisfiable.  The clauses
+	 * are solved on a fresh prover made by this.factory.
+	 * @requires strategy != null => no strategy.traces
+	 * @return the unsatisfiable core of the given clauses, or null if they are satisfiable
+	 */
+	int[][] core(int[][] clauses, ReductionStrategy strategy) {
+		final SATProver prover = (SATProver) factory.instance();
+		try {
+			int vars = 0;
+			for(int[] clause : clauses) {
+				for(int lit : clause) {
+					vars = StrictMath.max(vars, StrictMath.abs(lit));
+				}
+			}
+			prover.addVariables(vars);
+			for(int[] clause : clauses) {
+				prover.addClause(clause.clone());
+			}
+			if (prover.solve()) 
+				return null;
+			if (strategy != null) 
+				prover.reduce(strategy);
+			final ResolutionTrace proof = prover.proof();
+			return clauses(proof, proof.core());
+		} finally {
+			prover.free();
+		}
+	}
+	
+	/**
+	 * Returns a task that computes this.core(clauses, strategy).
+	 * @return a task that computes this.core(clauses, strategy)
+	 */
+	Callable<int[][]> coreTask(final int[][] clauses, final ReductionStrategy strategy) {
+		return new Callable<int[][]>() {
+			public int[][] call() {
+				return core(clauses, strategy);
+			}
+		};
+	}
+	
+	/**
+	 * Runs the given tasks on at most this.threads threads, and returns their 
+	 * results in the order of the tasks.  If the calling thread is interrupted,
+	 * the tasks are cancelled, the thread's interrupt status is restored, and
+	 * null is returned.
+	 * @return results of the given tasks, or null if the calling thread was interrupted
+	 * @throws RuntimeException | Error  one of the tasks failed with that throwable
+	 */
+	List<int[][]> run(List<Callable<int[][]>> tasks) {
+		final ExecutorService executor = Executors.newFixedThreadPool(StrictMath.min(threads, tasks.size()), DAEMONS);
+		try {
+			final List<Future<int[][]>> futures = executor.invokeAll(tasks);
+			final List<int[][]> ret = new ArrayList<int[][]>(futures.size());
+			for(Future<int[][]> future : futures) {
+				ret.add(future.get());
+			}
+			return ret;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return null;
+		} catch (ExecutionException e) {
+			final Throwable cause = e.getCause();
+			if (cause instanceof Error) 
+				throw (Error) cause;
+			else if (cause instanceof RuntimeException) 
+				throw (RuntimeException) cause;
+			else 
+				throw new IllegalStateException(cause);
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+	
+	/**
+	 * Returns the index of the smallest non-null core in the given list, 
+	 * or -1 if all are null.  Ties are broken in favor of the earlier core.
+	 * @return index of the smallest non-null core in the given list, or -1 if none
+	 */
+	static int smallest(List<int[][]> cores) {
+		int ret = -1;
+		for(int i = 0, size = cores.size(); i < size; i++) {
+			final int[][] core = cores.get(i);
+			if (core != null && (ret < 0 || core.length < cores.get(ret).length)) {
+				ret = i;
+			}
+		}
+		return ret;
+	}
+	
+	/**
+	 * A clause, compared by its literals.
+	 */
+	private static final class Key {
+		final int[] lits;
+		final int hash;
+		/**
+		 * Wraps the given literals, sorting them in place.
+		 */
+		Key(int[] lits) {
+			Arrays.sort(lits);
+			this.lits = lits;
+			this.hash = Arrays.hashCode(lits);
+		}
+		public int hashCode() { return hash; }
+		public boolean equals(Object o) {
+			return o instanceof Key && Arrays.equals(lits, ((Key) o).lits);
+		}
+	}
+}
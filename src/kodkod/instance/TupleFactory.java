@@ -27,6 +27,7 @@ import java.util.List;
 import kodkod.engine.CapacityExceededException;
 import kodkod.util.ints.IntSet;
 import kodkod.util.ints.Ints;
+import kodkod.util.ints.LongSet;
 
 
 /**
@@ -100,6 +101,19 @@ public final class TupleFactory {
 		return new IntTuple(arity, index);
 	}
 	
+	/**  
+     * Returns a tuple with the specified arity whose index in an arity-dimensional 
+     * space over this.universe is given by the index parameter.  Unlike {@link #tuple(int, int)},
+     * this method can create tuples whose indices do not fit into an int.
+     * 
+     * @return {t: Tuple | t.universe = this.universe && t.arity = arity && 
+     *                     index = sum({i : [0..arity) | universe.index(t.atoms[i]) * universe.size^(arity - 1 - i))}) }
+     * @throws IllegalArgumentException  arity < 1 || index < 0 || index >= universe.size^arity
+     */
+	public Tuple tuple(final int arity, final long index) {
+		return new IntTuple(arity, index);
+	}
+	
 	/**
 	 * Returns a set of all tuples of the given arity, drawn from this.universe.
 	 * @return { s: TupleSet | s.universe = this.universe && s.arity = arity && 
@@ -107,8 +121,7 @@ public final class TupleFactory {
 	 * @throws IllegalArgumentException  arity < 1                     
 	 */
 	public TupleSet allOf(int arity) {
-		return new TupleSet(universe, arity, 
-				                      0, ((int) Math.pow(base, arity)) - 1);
+		return new TupleSet(universe, arity, 0, capacity(arity) - 1);
 	}
 	
 	/**
@@ -143,7 +156,7 @@ public final class TupleFactory {
 		if (!first.universe().equals(universe))
 			throw new IllegalArgumentException("first.universe != this.universe");
 
-		final TupleSet ret = new TupleSet(universe, first.arity(), first.index(), first.index());
+		final TupleSet ret = new TupleSet(universe, first.arity(), first.longIndex(), first.longIndex());
 		for(Tuple tuple: rest) {
 			ret.add(tuple);
 		}
@@ -192,6 +205,21 @@ public final class TupleFactory {
 		}
 	}
 	
+	/**
+	 * Returns a set of the given arity that contains all tuples whose indices
+	 * are contained in the given long set.  The returned TupleSet is backed by a copy
+	 * of tupleIndices.  This method accepts sets of any arity, including those
+	 * whose capacity does not fit into an int.
+	 * @return {s: TupleSet | s.universe = this.universe && s.arity = arity &&
+	 *                        s.tuples = {t: Tuple | t.index() in tupleIndices} }
+	 * @throws NullPointerException  tupleIndices = null
+	 * @throws IllegalArgumentException  arity < 1
+	 * @throws IllegalArgumentException  tupleIndices.min() < 0 || tupleIndices.max() >= this.universe.size()^arity 
+	 */
+	public TupleSet setOf(int arity, LongSet tupleIndices) {
+		return new TupleSet(universe, arity, tupleIndices);
+	}
+	
 	/**
 	 * Returns an initially empty tuple set of the given arity, based on this.universe.
 	 * @return { s: TupleSet | s.universe = this.universe && s.arity = arity && no s.tuples }
@@ -219,7 +247,7 @@ public final class TupleFactory {
 			throw new IllegalArgumentException("from.arity!=to.arity");
 		if (!(from.universe().equals(universe)&&to.universe().equals(universe)))
 			throw new IllegalArgumentException("from.universe != this.universe || to.universe != this.universe");
-		return new TupleSet(universe, from.arity(), from.index(), to.index());
+		return new TupleSet(universe, from.arity(), from.longIndex(), to.longIndex());
 	}
 	
 	/**
@@ -255,16 +283,33 @@ public final class TupleFactory {
 		return ret;
 	}
 	
+	/**
+	 * Returns the number of tuples of the given arity drawn from this.universe,
+	 * or throws a CapacityExceededException if that number cannot be represented as a long.
+	 * @return this.universe.size() ^ arity
+	 * @throws CapacityExceededException if all tuples of the given arity 
+	 * drawn from this.universe cannot be represented as a long.
+	 */
+	long capacity(int arity) {
+		long capacity = 1;
+		for(int i = 0; i < arity; i++) {
+			if (capacity > Long.MAX_VALUE / base) {
+				throw new CapacityExceededException("Arity too large (" + arity + ") for a universe of size " + universe.size(), Ints.nCopies(arity, base));
+			}
+			capacity *= base;
+		}
+		return capacity;
+	}
+	
 	/**
 	 * Throws a CapacityExceededException if all tuples of the given arity 
-	 * drawn from this.universe cannot be represented as an integer.
+	 * drawn from this.universe cannot be represented as a long.  Tuple sets whose
+	 * capacity fits into an int are indexed by ints, and larger ones by longs.
 	 * @throws CapacityExceededException if all tuples of the given arity 
-	 * drawn from this.universe cannot be represented as an integer.
+	 * drawn from this.universe cannot be represented as a long.
 	 */
 	void checkCapacity(int arity) { 
-		if (StrictMath.pow(base,arity) > Integer.MAX_VALUE) {
-			throw new CapacityExceededException("Arity too large (" + arity + ") for a universe of size " + universe.size(), Ints.nCopies(arity, base));
-		}
+		capacity(arity);
 	}
 	
 	/**
@@ -278,6 +323,17 @@ public final class TupleFactory {
         return (tupleIndex / ((int) Math.pow(base, arity-1-column))) % base;
 	}
 	
+	/**
+	 * Projects the tuple with the specified long index and arity onto the 
+	 * specified column.    
+	 * @requires tupleIndex >= 0 && tupleIndex < this.universe.size() ^ arity
+	 * @return this.universe.index(this.tuple(arity, tupleIndex).atoms[i])
+	 */
+	int project(long tupleIndex, int arity, int column) {
+		if (column < 0 || column >= arity) throw new IndexOutOfBoundsException(column+"");
+        return (int) ((tupleIndex / capacity(arity-1-column)) % base);
+	}
+	
 	/**
 	 * An implementation of the Tuple interface that stores
 	 * only the tuple's arity and index, rather than the full
@@ -286,13 +342,14 @@ public final class TupleFactory {
 	 * 
 	 * @specfield universe: TupleFactory.this.universe
 	 * @specfield arity: int
-	 * @specfield index: int
+	 * @specfield index: long
 	 * @invariant arity >= 1 && 0 <= index < TupleFactory.this.base^arity
 	 * @invariant index = sum({i: [0..arity) | TupleFactory.this.universe.index(atoms[i]) * TupleFactory.this.base^(arity - 1 - i))
 	 * @author Emina Torlak
 	 */
 	private final class IntTuple extends Tuple {
-		private final int arity, index;
+		private final int arity;
+		private final long index;
 		
 		/**  
 	     * Constructs a tuple with the specified arity and index, whose atoms
@@ -302,9 +359,8 @@ public final class TupleFactory {
 	     *          this.index' = index 
 	     * @throws IllegalArgumentException  arity < 1 || index < 0 || index >= TupleFactory.this.base^arity
 	     */
-	    IntTuple(final int arity, final int index) {
-	    	checkCapacity(arity);
-	        if (arity < 1 || index < 0 || index >= Math.pow(base, arity)) {
+	    IntTuple(final int arity, final long index) {
+	        if (arity < 1 || index < 0 || index >= capacity(arity)) {
 	            throw new IllegalArgumentException("arity < 1 || index < 0 || index >= universe.size^arity");
 	        }
 	        this.arity = arity;
@@ -323,7 +379,7 @@ public final class TupleFactory {
 	    IntTuple(final Object... atoms) {
 	        this.arity = atoms.length;
 	        checkCapacity(arity);
-	        int tempIndex = 0, multiplier = 1;
+	        long tempIndex = 0, multiplier = 1;
 	        for (int i = arity - 1; i >= 0; i--) { 
 	            tempIndex += universe.index(atoms[i]) * multiplier;
 	            multiplier *= base;
@@ -344,7 +400,7 @@ public final class TupleFactory {
 	    	checkCapacity(arity);
 	    	if (arity < 1) throw new IllegalArgumentException("arity < 1");
 	    	this.arity = arity;
-	    	int tempIndex = 1;
+	    	long tempIndex = 1;
 			for (int i = 0; i < arity; i++) {
 				tempIndex = tempIndex*base + 1;
 			}
@@ -359,7 +415,14 @@ public final class TupleFactory {
 	    public int arity() { return arity; }
 	    
 	    /** {@inheritDoc} */
-	    public int index() { return index; }
+	    public int index() { 
+	    	if (index > Integer.MAX_VALUE) 
+	    		throw new CapacityExceededException("Index too large (" + index + ") for an int", Ints.nCopies(arity, base));
+	    	return (int) index; 
+	    }
+	    
+	    /** {@inheritDoc} */
+	    public long longIndex() { return index; }
 	    
 	    /** {@inheritDoc} */
 	    public Object atom(int i) {
@@ -368,14 +431,14 @@ public final class TupleFactory {
 	    
 	    /** {@inheritDoc} */
 	   public int atomIndex(int i) {
-		   return project(index,arity,i);
+		   return index <= Integer.MAX_VALUE ? project((int)index,arity,i) : project(index,arity,i);
 //	        if (i < 0 || i >= arity) throw new IndexOutOfBoundsException("i < 0 || i >= this.arity");
 //	        return (index / ((int) Math.pow(base, arity-1-i))) % base;
 	    }
 	    
 	    /** {@inheritDoc} */
 	    public boolean contains(Object atom) {
-	        for (int remainder = index, atomIndex = universe.index(atom); 
+	        for (long remainder = index, atomIndex = universe.index(atom); 
 	                 remainder > 0; remainder = remainder / base) {
 	            if (remainder % base == atomIndex) return true;
 	        }
@@ -386,7 +449,7 @@ public final class TupleFactory {
 	    public Tuple product(Tuple tuple) {
 	    	if (!universe.equals(tuple.universe())) throw new IllegalArgumentException("tuple.universe != this.universe");
 	        return new IntTuple(arity + tuple.arity(), 
-	        		                index * ((int)Math.pow(base, tuple.arity())) + tuple.index());
+	        		                index * capacity(tuple.arity()) + tuple.longIndex());
 	    }
 	}
 	
@@ -25,9 +25,13 @@ import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Iterator;
 
+import kodkod.engine.CapacityExceededException;
 import kodkod.util.ints.IntIterator;
 import kodkod.util.ints.IntSet;
 import kodkod.util.ints.Ints;
+import kodkod.util.ints.LongIterator;
+import kodkod.util.ints.LongSet;
+import kodkod.util.ints.LongTreeSet;
 
 
 /**
@@ -38,6 +42,11 @@ import kodkod.util.ints.Ints;
  * when passed null.  The iterator of a TupleSet returns tuples in the order of their
  * {@link kodkod.instance.Tuple#index() indeces}.  
  * 
+ * <p>A tuple set whose capacity fits into an int stores the indices of its 
+ * tuples in an {@link IntSet}.  Sets of higher arity over large universes, 
+ * whose capacity does not fit into an int, store them in a {@link LongSet} 
+ * instead; their indices are available only through the {@link #longIndexView()}.</p>
+ * 
  * @specfield tuples: set Tuple
  * @specfield universe: Universe
  * @specfield arity: int
@@ -49,7 +58,9 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	private final Universe universe;
 	private final int arity;
 	private final IntSet tuples;
+	private final LongSet longTuples;
 	private IntSet indexView = null;
+	private LongSet longIndexView = null;
 		
 	/**
 	 * Constructs an empty tuple set for storing tuples
@@ -61,10 +72,16 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	TupleSet(Universe universe, int arity) {
 		if (arity < 1) throw new IllegalArgumentException("arity < 1");
-		universe.factory().checkCapacity(arity);
+		final long capacity = universe.factory().capacity(arity);
 		this.universe = universe;
 		this.arity = arity;
-		tuples = Ints.bestSet(capacity());
+		if (capacity <= Integer.MAX_VALUE) {
+			tuples = Ints.bestSet((int) capacity);
+			longTuples = null;
+		} else {
+			tuples = null;
+			longTuples = new LongTreeSet();
+		}
 	}
 	
 	/**
@@ -80,12 +97,16 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 * @throws IndexOutOfBoundsException  fromIndex !in [0..toIndex] ||
 	 *                                     toIndex !in [0..universe.size()^arity - 1]
 	 */
-	TupleSet(Universe universe, int arity, int fromIndex, int toIndex) {
+	TupleSet(Universe universe, int arity, long fromIndex, long toIndex) {
 		this(universe,arity);
-		checkRange(toIndex, 0, capacity() - 1);
+		checkRange(toIndex, 0, longCapacity() - 1);
 		checkRange(fromIndex, 0, toIndex);
-		for(int i = fromIndex; i <= toIndex; i++) {
-			tuples.add(i);
+		if (tuples != null) {
+			for(int i = (int) fromIndex; i <= toIndex; i++) {
+				tuples.add(i);
+			}
+		} else {
+			((LongTreeSet) longTuples).addRange(fromIndex, toIndex);
 		}
 	}
 	
@@ -103,14 +124,60 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	TupleSet(Universe universe, int arity, IntSet tupleIndeces) {
 		if (arity < 1) throw new IllegalArgumentException("arity < 1");
-		universe.factory().checkCapacity(arity);
+		final long capacity = universe.factory().capacity(arity);
 		this.universe = universe;
 		this.arity = arity;
 		if (!tupleIndeces.isEmpty()) {
-			if (tupleIndeces.min()<0 || tupleIndeces.max() >= capacity())
+			if (tupleIndeces.min()<0 || tupleIndeces.max() >= capacity)
 				throw new IllegalArgumentException(tupleIndeces.min() + "<0 || " + tupleIndeces.max()+">="+universe.size()+"^"+arity);
 		}
-		tuples = tupleIndeces;
+		if (capacity <= Integer.MAX_VALUE) {
+			tuples = tupleIndeces;
+			longTuples = null;
+		} else {
+			tuples = null;
+			longTuples = new LongTreeSet(Ints.asLongSet(tupleIndeces));
+		}
+	}
+	
+	/**
+	 * Returns a set of the given arity that contains all tuples whose indeces
+	 * are contained in the given long set.  The returned set is backed by a copy of 
+	 * the given set.  
+	 * @return {s: TupleSet | s.universe = this.universe && s.arity = arity &&
+	 *                        s.tuples = {t: Tuple | t.index() in tupleIndeces} }
+	 * @throws NullPointerException  tupleIndeces = null
+	 * @throws IllegalArgumentException  arity < 1
+	 * @throws IllegalArgumentException  tupleIndeces.min() < 0 || tupleIndeces.max() >= this.universe.size()^arity 
+	 */
+	TupleSet(Universe universe, int arity, LongSet tupleIndeces) {
+		this(universe, arity);
+		if (!tupleIndeces.isEmpty()) {
+			if (tupleIndeces.min()<0 || tupleIndeces.max() >= longCapacity())
+				throw new IllegalArgumentException(tupleIndeces.min() + "<0 || " + tupleIndeces.max()+">="+universe.size()+"^"+arity);
+		}
+		if (tuples != null) {
+			for(LongIterator iter = tupleIndeces.iterator(); iter.hasNext(); ) {
+				tuples.add((int) iter.next());
+			}
+		} else {
+			longTuples.addAll(tupleIndeces);
+		}
+	}
+	
+	/**
+	 * Constructs a tuple set of the given arity that is backed by the given index set, 
+	 * if its capacity fits into an int, and by the given long index set otherwise.
+	 * @requires universe.size()^arity > Integer.MAX_VALUE <=> tupleIndeces = null 
+	 * @requires tupleIndeces in [0..universe.size()^arity) && longTupleIndeces in [0..universe.size()^arity)
+	 * @ensures this.universe' = universe && this.arity' = arity && 
+	 *          this.tuples' = {t: Tuple | t.index() in tupleIndeces + longTupleIndeces}
+	 */
+	private TupleSet(Universe universe, int arity, IntSet tupleIndeces, LongSet longTupleIndeces) {
+		this.universe = universe;
+		this.arity = arity;
+		this.tuples = tupleIndeces;
+		this.longTuples = tupleIndeces==null ? longTupleIndeces : null;
 	}
 	
 	/**
@@ -121,17 +188,19 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 		this.universe = original.universe;
 		this.arity = original.arity;
 		try {
-			this.tuples = original.tuples.clone();
+			this.tuples = original.tuples==null ? null : original.tuples.clone();
+			this.longTuples = original.longTuples==null ? null : original.longTuples.clone();
 		} catch (CloneNotSupportedException e) {
 			throw new InternalError(); // unreachable code
 		}
 		this.indexView = null;
+		this.longIndexView = null;
 	}
 	
 	/**
 	 * Throws an IndexOutOfBoundsException if index is not in [min..max]
 	 */
-	private final void checkRange(int index, int min, int max) {
+	private final void checkRange(long index, long min, long max) {
 		if (index < min || index > max)
 			throw new IndexOutOfBoundsException(index + " !in " + "[" + min + ".." + max + "]");
 	}
@@ -140,10 +209,39 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 * Returns the capacity of this set -- the maximum number of tuples
 	 * that it can hold, given its universe and arity.  
 	 * @return this.universe.size() ^ this.arity
+	 * @throws CapacityExceededException  this.universe.size() ^ this.arity > Integer.MAX_VALUE
 	 */
 	public final int capacity() {
+		if (tuples == null) throw capacityExceeded();
 		return (int) StrictMath.pow(universe.size(),arity);
 	}
+	
+	/**
+	 * Returns the capacity of this set as a long.  Unlike {@link #capacity()}, 
+	 * this method can be called on sets whose capacity does not fit into an int.
+	 * @return this.universe.size() ^ this.arity
+	 */
+	public final long longCapacity() {
+		return universe.factory().capacity(arity);
+	}
+	
+	/**
+	 * Returns true if this set is indexed by longs; that is, if its capacity 
+	 * does not fit into an int.
+	 * @return this.universe.size() ^ this.arity > Integer.MAX_VALUE
+	 */
+	public final boolean isLongIndexed() {
+		return tuples == null;
+	}
+	
+	/**
+	 * Returns a CapacityExceededException for an attempt to index this set with ints.
+	 * @return a CapacityExceededException for an attempt to index this set with ints.
+	 */
+	private CapacityExceededException capacityExceeded() {
+		return new CapacityExceededException("Arity too large (" + arity + ") for an int-indexed set over a universe of size " + 
+				universe.size(), Ints.nCopies(arity, universe.size()));
+	}
 
 	/**
 	 * Returns this.universe.
@@ -166,14 +264,31 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 * view is backed by this set, so changes to this set are
 	 * reflected in the index set. 
 	 * @return { s: IntSet | s.ints = {i: int | some t: this.tuples | t.index = i}
+	 * @throws CapacityExceededException  this.isLongIndexed()
 	 */
 	public IntSet indexView() {
+		if (tuples == null) throw capacityExceeded();
 		if (indexView==null) {
 			indexView = Ints.unmodifiableIntSet(tuples);
 		}
 		return indexView;
 	}
 	
+	/**
+	 * Returns an unmodifiable long set view of the tuples stored in this set.
+	 * Specifically, the returned set contains a long i iff this set contains a 
+	 * tuple with the index i.  The view is backed by this set, so changes to this 
+	 * set are reflected in the index set.  Unlike {@link #indexView()}, this method 
+	 * can be called on sets whose capacity does not fit into an int.
+	 * @return { s: LongSet | s.longs = {i: long | some t: this.tuples | t.index = i}
+	 */
+	public LongSet longIndexView() {
+		if (longIndexView==null) {
+			longIndexView = tuples==null ? Ints.unmodifiableLongSet(longTuples) : Ints.asLongSet(tuples);
+		}
+		return longIndexView;
+	}
+	
 	/**
 	 * Returns an unmodifiable view of the this tupleset.  This method allows modules to 
 	 * provide "read-only" access to internal tuple sets. Query operations on the returned set 
@@ -182,7 +297,7 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 * @return an unmodifiable view of the this tupleset
 	 */
 	public TupleSet unmodifiableView() {
-		return new TupleSet(universe,arity,indexView());
+		return tuples==null ? new TupleSet(universe,arity,null,longIndexView()) : new TupleSet(universe,arity,indexView());
 	}
 	
 	/**
@@ -198,7 +313,17 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 		if (!s.universe().equals(universe))
 			throw new IllegalArgumentException("s.universe != this.universe");
 		final TupleSet ret = new TupleSet(universe, arity+s.arity());
-		if (!s.isEmpty()) {
+		if (ret.tuples == null) {
+			if (!s.isEmpty()) {
+				final long mCapacity = s.longCapacity();
+				for(LongIterator indeces0 = longIndexView().iterator(); indeces0.hasNext(); ) {
+					long i0 = mCapacity * indeces0.next();
+					for(LongIterator indeces1 = s.longIndexView().iterator(); indeces1.hasNext(); ) {
+						ret.longTuples.add(i0 + indeces1.next());
+					}
+				}
+			}
+		} else if (!s.isEmpty()) {
 			final int mCapacity = (int) StrictMath.pow(universe.size(), s.arity);
 			for(IntIterator indeces0 = tuples.iterator(); indeces0.hasNext(); ) {
 				int i0 = mCapacity * indeces0.next();
@@ -222,8 +347,14 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 		}
 		final IntSet projection = Ints.bestSet(universe.size());
 		final TupleFactory factory = universe.factory();
-		for(IntIterator indexIter = tuples.iterator(); indexIter.hasNext();) {
-			projection.add(factory.project(indexIter.next(), arity, dimension));
+		if (tuples == null) {
+			for(LongIterator indexIter = longTuples.iterator(); indexIter.hasNext();) {
+				projection.add(factory.project(indexIter.next(), arity, dimension));
+			}
+		} else {
+			for(IntIterator indexIter = tuples.iterator(); indexIter.hasNext();) {
+				projection.add(factory.project(indexIter.next(), arity, dimension));
+			}
 		}
 		return new TupleSet(universe,1,projection);
 	}
@@ -243,6 +374,22 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public Iterator<Tuple> iterator() {
+		if (tuples == null) {
+			return new Iterator<Tuple>() {
+				LongIterator indexIter = longTuples.iterator();
+				public boolean hasNext() {
+					return indexIter.hasNext();
+				}
+
+				public Tuple next() {
+					return universe.factory().tuple(arity, indexIter.next());
+				}
+
+				public void remove() {
+					indexIter.remove();
+				}
+			};
+		}
 		return new Iterator<Tuple>() {
 			IntIterator indexIter = tuples.iterator();
 			public boolean hasNext() {
@@ -272,6 +419,19 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 		return t.index();
 	}
 	
+	/**
+	 * Returns the long index of the given tuple, if the tuple has the same
+	 * arity and universe as this.  Otherwise throws an IllegalArgumentException.
+	 * @return t.index
+	 * @throws IllegalArgumentException  t.arity != this.arity || t.universe != this.universe
+	 */
+	private final long extractLongIndex(Tuple t) {
+		if (t.arity() != arity || !t.universe().equals(universe)) {
+			throw new IllegalArgumentException("t.arity != this.arity || t.universe != this.universe");
+		}
+		return t.longIndex();
+	}
+	
 	/**
 	 * Returns true if this contains the given object.
 	 * @return o in this.tuples
@@ -279,15 +439,18 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public boolean contains(Object o) {
-		return tuples.contains(extractIndex((Tuple)o));
+		return tuples==null ? longTuples.contains(extractLongIndex((Tuple)o)) : tuples.contains(extractIndex((Tuple)o));
 	}
 	
 	/**
-	 * Returns the size of this tupleset.
-	 * @return #this.tuples
+	 * Returns the size of this tupleset, or Integer.MAX_VALUE if the
+	 * size does not fit into an int.
+	 * @return min(#this.tuples, Integer.MAX_VALUE)
 	 */
 	@Override
-	public int size() { return tuples.size(); }
+	public int size() { 
+		return tuples==null ? (int) StrictMath.min(longTuples.size(), Integer.MAX_VALUE) : tuples.size(); 
+	}
 	
 	/**
 	 * Removes all tuples from this tupleset.
@@ -295,7 +458,8 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public void clear() { 
-		tuples.clear(); 
+		if (tuples==null) longTuples.clear();
+		else tuples.clear(); 
 	}
 
 	/**
@@ -308,7 +472,7 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public boolean add(Tuple t) {
-		return tuples.add(extractIndex(t));
+		return tuples==null ? longTuples.add(extractLongIndex(t)) : tuples.add(extractIndex(t));
 	}
 
 	/**
@@ -320,7 +484,7 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public boolean remove(Object o) {
-		return tuples.remove(extractIndex((Tuple)o));
+		return tuples==null ? longTuples.remove(extractLongIndex((Tuple)o)) : tuples.remove(extractIndex((Tuple)o));
 	}
 	
 	/**
@@ -342,6 +506,24 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 		return null;
 	}
 	
+	/**
+	 * If c is not a TupleSet or it is a tupleset with a universe different than
+	 * this.universe, returns null.  Otherwise, returns the long tuples associated 
+	 * with the modifiable view of c. 
+	 * @requires this.isLongIndexed()
+	 * @return c in TupleSet && c.universe = this.universe && c.arity = this.arity => c.longTuples, null
+	 * @throws IllegalArgumentException  this.arity!=s.arity
+	 */
+	private LongSet extractLongTuples(Collection<?> c) {
+		if (c instanceof TupleSet) {
+			final TupleSet s = (TupleSet) c;
+			if (arity!=s.arity())
+				throw new IllegalArgumentException("this.arity!=c.arity");
+			return universe.equals(s.universe()) ? s.longTuples : null;
+		}
+		return null;
+	}
+	
 	/**
 	 * Returns true if this contains all tuples from c.  Otherwise returns false.
 	 * @return c.elements in this.tuples
@@ -349,6 +531,10 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public boolean containsAll(Collection<?> c) { 
+		if (tuples==null) {
+			final LongSet cTuples = extractLongTuples(c);
+			return cTuples==null ? super.containsAll(c) : longTuples.containsAll(cTuples);
+		}
 		final IntSet cTuples = extractTuples(c);
 		return cTuples==null ? super.containsAll(c) : tuples.containsAll(cTuples);
 	}
@@ -362,6 +548,10 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public boolean addAll(Collection<? extends Tuple> c) {
+		if (tuples==null) {
+			final LongSet cTuples = extractLongTuples(c);
+			return cTuples==null ? super.addAll(c) : longTuples.addAll(cTuples);
+		}
 		final IntSet cTuples = extractTuples(c);
 		return cTuples==null ? super.addAll(c) : tuples.addAll(cTuples);
 	}
@@ -375,6 +565,10 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public boolean removeAll(Collection<?> c) {
+		if (tuples==null) {
+			final LongSet cTuples = extractLongTuples(c);
+			return cTuples==null ? super.removeAll(c) : longTuples.removeAll(cTuples);
+		}
 		final IntSet cTuples = extractTuples(c);
 		return cTuples==null ? super.removeAll(c) : tuples.removeAll(cTuples);
 	}
@@ -388,6 +582,10 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public boolean retainAll(Collection<?> c) {
+		if (tuples==null) {
+			final LongSet cTuples = extractLongTuples(c);
+			return cTuples==null ? super.retainAll(c) : longTuples.retainAll(cTuples);
+		}
 		final IntSet cTuples = extractTuples(c);
 		return cTuples==null ? super.retainAll(c) : tuples.retainAll(cTuples);
 	}
@@ -403,7 +601,7 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 		if (o instanceof TupleSet) {
 			final TupleSet s = (TupleSet) o;
 			return arity==s.arity && universe.equals(s.universe) && 
-			       tuples.equals(s.tuples);
+			       (tuples==null ? longTuples.equals(s.longTuples) : tuples.equals(s.tuples));
 		}
 		return super.equals(o);
 	}
@@ -413,6 +611,6 @@ public final class TupleSet extends AbstractSet<Tuple> implements Cloneable {
 	 */
 	@Override
 	public int hashCode() { 
-		return tuples.hashCode();
+		return tuples==null ? longTuples.hashCode() : tuples.hashCode();
 	}
 }
@@ -90,6 +90,25 @@ public final class MetricPoint {
         return Formula.and(conjuncts);
     }
 
+    // All of the metrics must be at least as good, and the given one must be at least as good as the bound.
+    public Formula bisectionConstraints(Objective objective, int bound) {
+        if (!values.containsKey(objective)) {
+            throw new RuntimeException();
+        }
+        final List<Formula> conjuncts = new ArrayList<Formula>(values.size() + 1);
+        for (final Map.Entry<Objective,Integer> metricEntry : values.entrySet()) {
+            final Objective metric = metricEntry.getKey();
+            if (!metric.equals(objective)) {
+                conjuncts.add(metric.betterThanOrEqual(metricEntry.getValue().intValue()));
+            }
+        }
+        conjuncts.add(objective.betterThanOrEqual(bound));
+
+        logger.log(Level.FINE, "Bisecting on {0}", conjuncts.get(conjuncts.size() - 1).toString());
+
+        return Formula.and(conjuncts);
+    }
+
     public Formula objectiveImprovementConstraint(Objective objective) {
         if (!values.containsKey(objective)) {
             throw new RuntimeException();
@@ -9,11 +9,13 @@ public final class MultiObjectiveOptions implements Cloneable {
 	final Options kodkodOptions;
 	private boolean allSolutionsPerPoint = true;
   private AlgorithmFactory multiObjectiveAlgorithm = AlgorithmFactory.CGIA;
+  private int threads = Math.min(8, Runtime.getRuntime().availableProcessors());
 	
 	public MultiObjectiveOptions clone() {
 		final MultiObjectiveOptions c = new MultiObjectiveOptions(kodkodOptions);
 		c.setAllSolutionsPerPoint(allSolutionsPerPoint);
     c.setAlgorithm(multiObjectiveAlgorithm);
+    c.setThreads(threads);
 		return c;
 	}
 	
@@ -26,6 +28,8 @@ public final class MultiObjectiveOptions implements Cloneable {
 		b.append(allSolutionsPerPoint);
     b.append("\n algorithm: ");
     b.append(multiObjectiveAlgorithm);
+    b.append("\n threads: ");
+    b.append(threads);
 		return b.toString();
 	}
 	
@@ -91,4 +95,27 @@ public final class MultiObjectiveOptions implements Cloneable {
   public void setAlgorithm(AlgorithmFactory multiObjectiveAlgorithm) {
     this.multiObjectiveAlgorithm = multiObjectiveAlgorithm;
   }
+
+  /**
+   * Returns the number of worker threads used by the parallel
+   * multi-objective algorithms.  The default is the number of available
+   * processors, capped at 8.
+   * @return this.threads
+   */
+  public int getThreads() {
+    return threads;
+  }
+
+  /**
+   * Sets the number of worker threads used by the parallel
+   * multi-objective algorithms.
+   * @requires threads > 0
+   * @ensures this.threads' = threads
+   * @throws IllegalArgumentException  threads < 1
+   */
+  public void setThreads(int threads) {
+    if (threads < 1)
+      throw new IllegalArgumentException("threads < 1: " + threads);
+    this.threads = threads;
+  }
 }
@@ -37,4 +37,10 @@ public abstract class AlgorithmFactory {
       return new OverlappingGuidedImprovementAlgorithm("OGIA", options);
     }
   };
+
+  public static final AlgorithmFactory BGIA = new AlgorithmFactory() {
+    public MultiObjectiveAlgorithm instance(MultiObjectiveOptions options) {
+      return new BisectingGuidedImprovementAlgorithm("BGIA", options);
+    }
+  };
 }
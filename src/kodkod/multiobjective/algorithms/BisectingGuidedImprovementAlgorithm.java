@@ -0,0 +1,146 @@
+package kodkod.multiobjective.algorithms;
+
+import java.util.logging.Level;
+import java.util.logging.Logger;
+
+import kodkod.ast.Formula;
+import kodkod.engine.IncrementalSolver;
+import kodkod.engine.Solution;
+import kodkod.instance.Bounds;
+import kodkod.multiobjective.MetricPoint;
+import kodkod.multiobjective.MultiObjectiveOptions;
+import kodkod.multiobjective.MultiObjectiveProblem;
+import kodkod.multiobjective.Objective;
+import kodkod.multiobjective.concurrency.SolutionNotifier;
+import kodkod.multiobjective.statistics.StatKey;
+import kodkod.multiobjective.statistics.StepCounter;
+
+public final class BisectingGuidedImprovementAlgorithm extends MultiObjectiveAlgorithm {
+
+	// Bisection on an objective stops once at most this many of its values are left to try;
+	// the remaining ones are covered by regular improvement steps.
+	private static final long MIN_BISECTION_RANGE = 2;
+
+	// The number of improvement steps after which a climb bisects the objectives' ranges.
+	private static final int BISECTION_TRIGGER = 2;
+
+	public BisectingGuidedImprovementAlgorithm(final String desc, final MultiObjectiveOptions options) {
+		super(desc, options, Logger.getLogger(BisectingGuidedImprovementAlgorithm.class.toString()));
+	}
+
+	@Override
+	protected void multiObjectiveSolveImpl(final MultiObjectiveProblem problem, final SolutionNotifier notifier) {
+		// set the bit width
+		setBitWidth(problem.getBitWidth());
+
+		// for the evaluation we need a step counter
+		this.counter = new StepCounter();
+
+		// As in IGIA, the problem is translated once: the exclusion constraints are added to the
+		// solver permanently, while the bisection and improvement constraints are only assumed.
+		final IncrementalSolver solver = IncrementalSolver.solver(getOptions());
+		final Bounds noBounds = new Bounds(problem.getBounds().universe());
+
+		//begin, amongst others, start the timer
+		begin();
+
+		// Throw a dart and get a starting point.
+		Formula constraint = problem.getConstraints();
+		Solution solution = solver.solve(constraint, problem.getBounds());
+
+		incrementStats(solution, problem, constraint, true, null);
+		solveFirstStats(solution);
+		counter.countStep();
+
+		// While the current solution is satisfiable try to find a better one.
+		while (isSat(solution)) {
+			MetricPoint currentValues = null;
+			Solution previousSolution = null;
+			int improvements = 0;
+
+			// Work our way up to the pareto front.
+			while (isSat(solution)) {
+				currentValues = MetricPoint.measure(solution, problem.getObjectives(), getOptions());
+				logger.log(Level.FINE, "Found a solution. At time: {0}, Improving on {1}", new Object[] { Integer.valueOf((int)((System.currentTimeMillis()-startTime)/1000)),  currentValues.values() });
+
+				final Formula improvementConstraints = currentValues.parametrizedImprovementConstraints();
+
+				previousSolution = solution;
+				solution = solver.solveAssuming(improvementConstraints, noBounds);
+				incrementStats(solution, problem, improvementConstraints, false, improvementConstraints);
+
+				counter.countStep();
+
+				// A climb that keeps improving may still be far from the front, so jump towards it
+				// by bisecting the range of each objective in turn.  The improvement steps that
+				// follow cover what the bisection leaves, so a climb that starts near the front
+				// costs no more than it does in IGIA.
+				if (isSat(solution) && ++improvements == BISECTION_TRIGGER) {
+					solution = bisect(solver, problem, solution, noBounds);
+				}
+			}
+
+			// We can't find anything better, so the previous solution is a pareto point.
+			foundParetoPoint(currentValues);
+
+			if (!options.allSolutionsPerPoint()) {
+				tell(notifier, previousSolution, currentValues);
+			} else {
+				// magnifying glass
+				int solutionsFound = magnifier(problem, currentValues, notifier);
+				logger.log(Level.FINE, "Magnifying glass found {0} solution(s). At time: {1}", new Object[] {Integer.valueOf(solutionsFound), Integer.valueOf((int)((System.currentTimeMillis()-startTime)/1000))});
+			}
+
+			// Find another starting point.  The solver releases its resources once this call returns UNSAT.
+			constraint = currentValues.exclusionConstraint();
+			solution = solver.solve(constraint, noBounds);
+			incrementStats(solution, problem, constraint, false, null);
+
+			//count this step but first go to new index because it's a new base point
+			counter.nextIndex();
+			counter.countStep();
+		}
+		solver.free();
+		logger.log(Level.FINE, "All Pareto points found. At time: {0}", Integer.valueOf((int)(System.currentTimeMillis()-startTime)/1000));
+
+		end(notifier);
+		debugWriteStatistics();
+	}
+
+	// Returns a solution whose values are at least as good as those of the given one, and
+	// such that no objective can be improved by more than MIN_BISECTION_RANGE values without
+	// making another one worse than it was when its range was bisected.
+	private Solution bisect(final IncrementalSolver solver, final MultiObjectiveProblem problem, Solution solution, final Bounds noBounds) {
+		MetricPoint currentValues = MetricPoint.measure(solution, problem.getObjectives(), getOptions());
+		for (final Objective objective : problem.getObjectives()) {
+			// Scores grow as the objective improves, and the best value representable with the
+			// bit width scores one less than beyond.  The bound on the score is raised by doubling
+			// steps until it can no longer be met, and the range that is left is then bisected.
+			final long sign = objective.prefer(0, 1) < 0 ? -1 : 1;
+			long known = sign * currentValues.getValue(objective).intValue();
+			long beyond = (1L << (problem.getBitWidth() - 1)) + (sign < 0 ? 1 : 0);
+			long step = MIN_BISECTION_RANGE;
+			while (beyond - known > MIN_BISECTION_RANGE) {
+				final long bound = known + Math.min(step, (beyond - known) / 2);
+				final Formula bisectionConstraints = currentValues.bisectionConstraints(objective, (int) (sign * bound));
+
+				final Solution next = solver.solveAssuming(bisectionConstraints, noBounds);
+				incrementStats(next, problem, bisectionConstraints, false, bisectionConstraints);
+				counter.countStep();
+
+				if (isSat(next)) {
+					getStats().increment(StatKey.BISECTION_SAT_CALL);
+					solution = next;
+					currentValues = MetricPoint.measure(solution, problem.getObjectives(), getOptions());
+					known = sign * currentValues.getValue(objective).intValue();
+					step *= 2;
+					logger.log(Level.FINE, "Found a solution by bisection. At time: {0}, Improving on {1}", new Object[] { Integer.valueOf((int)((System.currentTimeMillis()-startTime)/1000)),  currentValues.values() });
+				} else {
+					getStats().increment(StatKey.BISECTION_UNSAT_CALL);
+					beyond = bound;
+				}
+			}
+		}
+		return solution;
+	}
+}
@@ -1,6 +1,5 @@
 package kodkod.multiobjective.algorithms;
 
-import java.util.Collection;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -74,9 +73,7 @@ public final class CheckpointedGuidedImprovementAlgorithm extends MultiObjective
 				tell(notifier, previousSolution, currentValues);
 			} else {
 				// magnifying glass				
-				final Collection<Formula> assignmentsConstraints = currentValues.assignmentConstraints();
-				assignmentsConstraints.add(problem.getConstraints());
-				int solutionsFound = magnifier(Formula.and(assignmentsConstraints), problem.getBounds(), currentValues, notifier);
+				int solutionsFound = magnifier(problem, currentValues, notifier);
 				logger.log(Level.FINE, "Magnifying glass found {0} solution(s). At time: {1}", new Object[] {Integer.valueOf(solutionsFound), Integer.valueOf((int)((System.currentTimeMillis()-startTime)/1000))});
 			}
 
@@ -1,7 +1,6 @@
 package kodkod.multiobjective.algorithms;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
@@ -76,9 +75,7 @@ public final class GuidedImprovementAlgorithm extends MultiObjectiveAlgorithm {
 				tell(n, sprev, currentValues);
 			} else {
 				// magnifying glass				
-				final Collection<Formula> assignmentsConstraints = currentValues.assignmentConstraints();
-				assignmentsConstraints.add(p.getConstraints());
-				int solutionsFound = magnifier(Formula.and(assignmentsConstraints), p.getBounds(), currentValues, n);
+				int solutionsFound = magnifier(p, currentValues, n);
 				logger.log(Level.FINE, "Magnifying glass found {0} solution(s). At time: {1}", new Object[] {Integer.valueOf(solutionsFound), Integer.valueOf((int)((System.currentTimeMillis()-startTime)/1000))});
 			}
 
@@ -1,8 +1,5 @@
 package kodkod.multiobjective.algorithms;
 
-import java.util.ArrayList;
-import java.util.Collection;
-import java.util.List;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -30,16 +27,17 @@ public final class IncrementalGuidedImprovementAlgorithm extends MultiObjectiveA
 		// for the evaluation we need a step counter
 		this.counter = new StepCounter();
 
-		IncrementalSolver solver = IncrementalSolver.solver(getOptions());
+		// A single incremental solver is used for the whole run: the exclusion constraints are
+		// added to it permanently, while the improvement constraints of each climb are only
+		// assumed for the call that uses them, so the problem is translated exactly once.
+		final IncrementalSolver solver = IncrementalSolver.solver(getOptions());
+		final Bounds noBounds = new Bounds(problem.getBounds().universe());
 
 		//begin, amongst others, start the timer
 		begin();
 		
-		final List<Formula> exclusionConstraints = new ArrayList<Formula>();
-		exclusionConstraints.add(problem.getConstraints());
-		
 		// Throw a dart and get a starting point.
-		Formula constraint = Formula.and(exclusionConstraints);
+		Formula constraint = problem.getConstraints();
 		Solution solution = solver.solve(constraint, problem.getBounds());
 		
 		incrementStats(solution, problem, constraint, true, null);
@@ -59,7 +57,7 @@ public final class IncrementalGuidedImprovementAlgorithm extends MultiObjectiveA
 				final Formula improvementConstraints = currentValues.parametrizedImprovementConstraints();
 				
 				previousSolution = solution;
-				solution = solver.solve(improvementConstraints, new Bounds(problem.getBounds().universe()));
+				solution = solver.solveAssuming(improvementConstraints, noBounds);
 				incrementStats(solution, problem, improvementConstraints, false, improvementConstraints);
 
 				counter.countStep();
@@ -68,31 +66,24 @@ public final class IncrementalGuidedImprovementAlgorithm extends MultiObjectiveA
 			// We can't find anything better, so the previous solution is a pareto point.
 			foundParetoPoint(currentValues);
 
-      // Free the solver's resources since we will be creating a new solver.
-			solver.free();
-
 			if (!options.allSolutionsPerPoint()) {
 				tell(notifier, previousSolution, currentValues);
 			} else {
 				// magnifying glass				
-				final Collection<Formula> assignmentsConstraints = currentValues.assignmentConstraints();
-				assignmentsConstraints.add(problem.getConstraints());
-				int solutionsFound = magnifier(Formula.and(assignmentsConstraints), problem.getBounds(), currentValues, notifier);
+				int solutionsFound = magnifier(problem, currentValues, notifier);
 				logger.log(Level.FINE, "Magnifying glass found {0} solution(s). At time: {1}", new Object[] {Integer.valueOf(solutionsFound), Integer.valueOf((int)((System.currentTimeMillis()-startTime)/1000))});
 			}
 
-			// Find another starting point.
-			solver = IncrementalSolver.solver(getOptions());
-			exclusionConstraints.add(currentValues.exclusionConstraint());
-			
-			constraint = Formula.and(exclusionConstraints);
-			solution = solver.solve(constraint, problem.getBounds());
+			// Find another starting point.  The solver releases its resources once this call returns UNSAT.
+			constraint = currentValues.exclusionConstraint();
+			solution = solver.solve(constraint, noBounds);
 			incrementStats(solution, problem, constraint, false, null);
 			
 			//count this step but first go to new index because it's a new base point
 			counter.nextIndex();
 			counter.countStep();
 		}
+		solver.free();
 		logger.log(Level.FINE, "All Pareto points found. At time: {0}", Integer.valueOf((int)(System.currentTimeMillis()-startTime)/1000));
 
 		end(notifier);
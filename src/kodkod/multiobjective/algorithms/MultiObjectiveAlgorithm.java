@@ -1,10 +1,15 @@
 package kodkod.multiobjective.algorithms;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
 import kodkod.ast.Formula;
+import kodkod.engine.IncrementalSolver;
 import kodkod.engine.Solution;
 import kodkod.engine.Solver;
 import kodkod.engine.config.Options;
@@ -24,6 +29,8 @@ public abstract class MultiObjectiveAlgorithm {
 	private final String desc;
 	private final Solver internalSolver;
 	private final Stats stats;
+	private final Queue<IncrementalSolver> magnifyingGlassSolverPool;
+	private MultiObjectiveProblem magnifiedProblem;
 
 	protected final long startTime;
 	protected final Logger logger;
@@ -35,6 +42,7 @@ public abstract class MultiObjectiveAlgorithm {
 		this.desc = desc;
 		this.internalSolver = new Solver(options.getKodkodOptions());
 		this.stats = new Stats(this.getClass().getName(), desc);
+		this.magnifyingGlassSolverPool = new ArrayDeque<IncrementalSolver>();
 		this.options = options;
 		this.startTime = System.currentTimeMillis();
 	}	
@@ -90,20 +98,56 @@ public abstract class MultiObjectiveAlgorithm {
 	}
 
 	protected void end(final SolutionNotifier notifier) {
+		freeMagnifyingGlassSolvers();
 		stats.end();
 		stats.checkForValidFinalState();
 		notifier.done();
 	}
 
-	protected int magnifier(final Formula formula, final Bounds bounds, final MetricPoint metricPoint, final SolutionNotifier notifier) {
-	    return magnifier(formula, bounds, metricPoint, notifier, internalSolver);
+	// Returns an int specifying the number of solutions found at the Pareto point.
+	// The problem's constraints are translated once, by the first magnifying glass that
+	// runs on the problem; the point's assignment constraints are then assumed, and retracted
+	// once all of its solutions have been found, so the next point can reuse the translation.
+	// Options that rule out incremental solving (translation logging, or a SAT solver that is not incremental)
+	// fall back to enumerating the solutions to the constraints and the assignment constraints from scratch.
+	protected int magnifier(final MultiObjectiveProblem problem, final MetricPoint metricPoint, final SolutionNotifier notifier) {
+		final Options kodkodOptions = internalSolver.options();
+		if (!kodkodOptions.solver().incremental() || kodkodOptions.logTranslation() > 0) {
+			final List<Formula> assignmentsConstraints = new ArrayList<Formula>(metricPoint.assignmentConstraints());
+			assignmentsConstraints.add(problem.getConstraints());
+			return magnifier(Formula.and(assignmentsConstraints), problem.getBounds(), metricPoint, notifier);
+		}
+		final IncrementalSolver solver = getMagnifyingGlassSolver(problem);
+		if (solver == null) {
+			return 0;
+		}
+		int numberSolutions = 0;
+		try {
+			final List<Formula> assignmentsConstraints = new ArrayList<Formula>(metricPoint.assignmentConstraints());
+			final Bounds bounds = new Bounds(problem.getBounds().universe());
+			for (final Iterator<Solution> i = solver.solveAllAssuming(assignmentsConstraints, bounds); i.hasNext(); ) {
+				final Solution solution = i.next();
+				if (isSat(solution)) {
+					stats.increment(StatKey.MAGNIFIER_SAT_CALL);
+					numberSolutions++;
+					tell(notifier, solution, metricPoint);
+				} else {
+					stats.increment(StatKey.MAGNIFIER_UNSAT_CALL);
+				}
+				// only the first solution at each point is charged for translating the assignment constraints
+				stats.increment(StatKey.MAGNIFIER_TIME, solution.stats().translationTime());
+				stats.increment(StatKey.MAGNIFIER_TIME, solution.stats().solvingTime());
+			}
+		} finally {
+			putBackMagnifyingGlassSolver(problem, solver);
+		}
+		return numberSolutions;
 	}
 
-	// Returns an int specifying the number of solutions found at the Pareto point
-	protected int magnifier(final Formula formula, final Bounds bounds, final MetricPoint metricPoint, final SolutionNotifier notifier, final Solver solver) {
+	private int magnifier(final Formula formula, final Bounds bounds, final MetricPoint metricPoint, final SolutionNotifier notifier) {
 		boolean isFirst = true;
 		int numberSolutions = 0;
-		for (final Iterator<Solution> i = solver.solveAll(formula, bounds); i.hasNext(); ) {
+		for (final Iterator<Solution> i = internalSolver.solveAll(formula, bounds); i.hasNext(); ) {
 			final Solution solution = i.next();
 			if (isSat(solution)) {
 				stats.increment(StatKey.MAGNIFIER_SAT_CALL);
@@ -122,6 +166,46 @@ public abstract class MultiObjectiveAlgorithm {
 		return numberSolutions;
 	}
 
+	// Returns a solver holding the translation of the problem's constraints, or null if they are unsatisfiable.
+	// Each thread that runs a magnifying glass at the same time gets a solver of its own.
+	private IncrementalSolver getMagnifyingGlassSolver(final MultiObjectiveProblem problem) {
+		synchronized (magnifyingGlassSolverPool) {
+			if (problem != magnifiedProblem) {
+				freeMagnifyingGlassSolvers();
+				magnifiedProblem = problem;
+			}
+			final IncrementalSolver pooled = magnifyingGlassSolverPool.poll();
+			if (pooled != null) {
+				return pooled;
+			}
+		}
+		final IncrementalSolver solver = IncrementalSolver.solver(internalSolver.options());
+		final Solution base = solver.solve(problem.getConstraints(), problem.getBounds());
+		stats.increment(StatKey.MAGNIFIER_TIME, base.stats().translationTime());
+		stats.increment(StatKey.MAGNIFIER_TIME, base.stats().solvingTime());
+		return isSat(base) ? solver : null;
+	}
+
+	private void putBackMagnifyingGlassSolver(final MultiObjectiveProblem problem, final IncrementalSolver solver) {
+		synchronized (magnifyingGlassSolverPool) {
+			if (problem == magnifiedProblem && solver.usable()) {
+				magnifyingGlassSolverPool.add(solver);
+				return;
+			}
+		}
+		solver.free();
+	}
+
+	private void freeMagnifyingGlassSolvers() {
+		synchronized (magnifyingGlassSolverPool) {
+			for (IncrementalSolver solver : magnifyingGlassSolverPool) {
+				solver.free();
+			}
+			magnifyingGlassSolverPool.clear();
+			magnifiedProblem = null;
+		}
+	}
+
 	protected void tell(final SolutionNotifier notifier, final Solution solution, final MetricPoint metricPoint) {
 		stats.increment(StatKey.OPTIMAL_SOLNS);
 		notifier.tell(solution, metricPoint);
@@ -212,6 +296,13 @@ public abstract class MultiObjectiveAlgorithm {
         sb.append(this.getStats().get(StatKey.REGULAR_UNSAT_TIME_TRANSLATION));
         sb.append("\n");
 
+        sb.append("\t# Bisection Sat Call: ");
+        sb.append(this.getStats().get(StatKey.BISECTION_SAT_CALL));
+        sb.append("\n");
+        sb.append("\t# Bisection Unsat Call: ");
+        sb.append(this.getStats().get(StatKey.BISECTION_UNSAT_CALL));
+        sb.append("\n");
+
         sb.append("\t# Magnifier Sat Call: ");
         sb.append(this.getStats().get(StatKey.MAGNIFIER_SAT_CALL));
         sb.append("\n");
@@ -1,7 +1,6 @@
 package kodkod.multiobjective.algorithms;
 
 import java.util.ArrayList;
-import java.util.Collection;
 import java.util.List;
 import java.util.Queue;
 import java.util.concurrent.ConcurrentLinkedQueue;
@@ -15,7 +14,6 @@ import java.util.logging.Logger;
 import kodkod.ast.Formula;
 import kodkod.engine.IncrementalSolver;
 import kodkod.engine.Solution;
-import kodkod.engine.Solver;
 import kodkod.instance.Bounds;
 import kodkod.multiobjective.MetricPoint;
 import kodkod.multiobjective.MultiObjectiveOptions;
@@ -26,31 +24,16 @@ import kodkod.multiobjective.statistics.StepCounter;
 
 public class OverlappingGuidedImprovementAlgorithm extends MultiObjectiveAlgorithm{
 
-    private final Queue<Solver> magnifyingGlassSolverPool;
     private final SolutionDeduplicator paretoPointDeduplicator;
     private Formula initialPointConstraint;
 
     public OverlappingGuidedImprovementAlgorithm(String desc, MultiObjectiveOptions options) {
         super(desc, options, Logger.getLogger(OverlappingGuidedImprovementAlgorithm.class.toString()));
 
-        magnifyingGlassSolverPool = new ConcurrentLinkedQueue<Solver>();
-        magnifyingGlassSolverPool.add(getSolver());
         paretoPointDeduplicator = new SolutionDeduplicator();
         initialPointConstraint = Formula.constant(true);
     }
 
-    private Solver getMagnifyingGlassSolver() {
-        Solver solverToReturn = magnifyingGlassSolverPool.poll();
-        if( solverToReturn == null ) {
-            solverToReturn = new Solver(options.getKodkodOptions());
-        }
-        return solverToReturn;
-    }
-
-    private void putBackMagnifyingGlassSolver(Solver solver) {
-        magnifyingGlassSolverPool.add(solver);
-    }
-
     private class SolverSolutionPair {
         public final IncrementalSolver solver;
         public final Solution solution;
@@ -133,14 +116,12 @@ public class OverlappingGuidedImprovementAlgorithm extends MultiObjectiveAlgorit
     }
 
     private class MagnifyingGlassSubtask implements Runnable {
-        private final Formula formula;
-        private final Bounds bounds;
+        private final MultiObjectiveProblem problem;
         private final MetricPoint metricPoint;
         private final SolutionNotifier notifier;
 
-        public MagnifyingGlassSubtask(final Formula formula, final Bounds bounds, final MetricPoint metricPoint, final SolutionNotifier notifier) {
-            this.formula = formula;
-            this.bounds = bounds;
+        public MagnifyingGlassSubtask(final MultiObjectiveProblem problem, final MetricPoint metricPoint, final SolutionNotifier notifier) {
+            this.problem = problem;
             this.metricPoint = metricPoint;
             this.notifier = notifier;
         }
@@ -148,9 +129,7 @@ public class OverlappingGuidedImprovementAlgorithm extends MultiObjectiveAlgorit
         @Override
         public void run() {
 
-            Solver solverToUse = getMagnifyingGlassSolver();
-            int solutionsFound = magnifier(formula, bounds, metricPoint, notifier, solverToUse);
-            putBackMagnifyingGlassSolver(solverToUse);
+            int solutionsFound = magnifier(problem, metricPoint, notifier);
 
             logger.log(Level.FINE, "Magnifying glass found {0} solution(s). At time: {1}", new Object[] {Integer.valueOf(solutionsFound), Integer.valueOf((int)((System.currentTimeMillis()-startTime)/1000))});
         }
@@ -219,10 +198,8 @@ public class OverlappingGuidedImprovementAlgorithm extends MultiObjectiveAlgorit
                         tell(notifier, previousSolution, currentValues);
                     } else {
                         // magnifying glass
-                        final Collection<Formula> assignmentsConstraints = currentValues.assignmentConstraints();
-                        assignmentsConstraints.add(problem.getConstraints());
                         // The values in currentValues will now be shared with its MagnifyingGlassSubtask. Therefore, these values should not be modified after this point.
-                        waitQueue.add( executorService.submit(new MagnifyingGlassSubtask(Formula.and(assignmentsConstraints), problem.getBounds(), currentValues, notifier)));
+                        waitQueue.add( executorService.submit(new MagnifyingGlassSubtask(problem, currentValues, notifier)));
                     }
                 } else {
                     // Temporary step counting for parallel GIAs.
@@ -8,16 +8,8 @@ import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.BlockingQueue;
-import java.util.concurrent.Callable;
-import java.util.concurrent.CompletionService;
 import java.util.concurrent.CountDownLatch;
-import java.util.concurrent.ExecutionException;
-import java.util.concurrent.ExecutorCompletionService;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.Future;
-import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ForkJoinPool;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 
@@ -36,6 +28,11 @@ import kodkod.multiobjective.statistics.StepCounter;
 
 public class PartitionedGuidedImprovementAlgorithm extends MultiObjectiveAlgorithm {
 
+    private ForkJoinPool threadPool;
+    private Objective[] objectiveOrder;
+    private CountDownLatch doneSignal;
+    private volatile Throwable failure;
+
     public PartitionedGuidedImprovementAlgorithm(String desc, MultiObjectiveOptions options) {
         super(desc, options, Logger.getLogger(PartitionedGuidedImprovementAlgorithm.class.toString()));
     }
@@ -87,9 +84,7 @@ public class PartitionedGuidedImprovementAlgorithm extends MultiObjectiveAlgorit
             tell(notifier, previousSolution, currentValues);
         } else {
             // magnifying glass
-            final Collection<Formula> assignmentsConstraints = currentValues.assignmentConstraints();
-            assignmentsConstraints.add(problem.getConstraints());
-            int solutionsFound = magnifier(Formula.and(assignmentsConstraints), problem.getBounds(), currentValues, notifier);
+            int solutionsFound = magnifier(problem, currentValues, notifier);
             logger.log(Level.FINE, "Magnifying glass on {0} found {1} solution(s). At time: {2}", new Object[] {currentValues.values(), Integer.valueOf(solutionsFound), Integer.valueOf((int)((System.currentTimeMillis()-startTime)/1000))});
         }
         exclusionConstraints.add(currentValues.exclusionConstraint());
@@ -98,53 +93,26 @@ public class PartitionedGuidedImprovementAlgorithm extends MultiObjectiveAlgorit
         // Otherwise, we're done
         if (problem.getObjectives().size() > 1) {
             // Create the thread pool
-            // Number of threads is MIN(user value, # cores)
-            // TODO: Make "user value" configurable
-            int poolSize = Math.min(8, Runtime.getRuntime().availableProcessors());
-            ExecutorService threadPool = Executors.newFixedThreadPool(poolSize);
+            // A work-stealing pool lets idle workers pick up the sub-partitions
+            // that busy tasks split off (see PartitionSearcherTask#run)
+            int poolSize = options.getThreads();
+            threadPool = new ForkJoinPool(poolSize, ForkJoinPool.defaultForkJoinWorkerThreadFactory, null, true);
+            failure = null;
             logger.log(Level.FINE, "Starting a thread pool with {0} threads", new Object[] { poolSize });
 
-            // Create all the tasks up front, adding them to an array
-            logger.log(Level.FINE, "Partitioning the problem space");
-            List<PartitionSearcherTask> tasks = new ArrayList<PartitionSearcherTask>();
-            // Task at index 0 doesn't exist; it's in an excluded region
-            // We only add null so all the tasks are added at the right index
-            tasks.add(null);
-
-            // Now we can split the search space based on the Pareto point and create new tasks
-            // For n metrics, we want all combinations of m_i <= M_i and m_i >= M_i where M_i is the current value
-            // To iterate over this, we map the bit_i of a bitset to metric_i
-            // Note that bit_0 is the least significant bit
-            // We skip 0 (the partition that is already dominated) and 2^n - 1 (the partition where we didn't find any solutions)
-            // Give each task a CountDownLatch so this thread can wait until all 2^n - 2 tasks have completed
-            int numObjectives = problem.getObjectives().size();
-
             // Convert the objective set into an array so we have a deterministic order
             // for mapping the bits in the bitset to objectives.
-            Objective[] objective_order = problem.getObjectives().toArray(new Objective[0]);
-
-            int maxMapping = (int) Math.pow(2, numObjectives) - 1;
-            CountDownLatch doneSignal = new CountDownLatch(maxMapping - 1);
-            for (int mapping = 1; mapping < maxMapping; mapping++) {
-                BitSet bitSet = BitSet.valueOf(new long[] { mapping });
-                tasks.add(new PartitionSearcherTask(mapping, problem, exclusionConstraints, currentValues.partitionConstraints(bitSet, objective_order), notifier, threadPool, doneSignal));
-            }
-
-            // Link up the dependencies
-            for (int mapping = 1; mapping < maxMapping; mapping++) {
-                PartitionSearcherTask task = tasks.get(mapping);
-                task.linkDependencies(tasks);
-            }
-
-            // Submit starting tasks (the ones without dependencies) to the thread pool
-            // Starting tasks are mapped to the ints with exactly one 0 bit
-            // So iterate over the bitset and clear one bit at a time
-            for (int bitIndex = 0; bitIndex < numObjectives; bitIndex++) {
-                BitSet bitSet = BitSet.valueOf(new long[] { maxMapping });
-                bitSet.clear(bitIndex);
-                int taskIndex = (int) bitSet.toLongArray()[0];
-                threadPool.submit(tasks.get(taskIndex));
-            }
+            objectiveOrder = problem.getObjectives().toArray(new Objective[0]);
+
+            // The root group completes once every partition (and every sub-partition split off
+            // by an idle-triggered split) has been searched
+            doneSignal = new CountDownLatch(1);
+            PartitionGroup root = new PartitionGroup(numberOfPartitions()) {
+                void done(Collection<Formula> exclusionConstraints) {
+                    doneSignal.countDown();
+                }
+            };
+            schedulePartitions(problem, currentValues, Formula.TRUE, exclusionConstraints, notifier, root);
 
             // Wait for all tasks to complete before shutting down the pool
             try {
@@ -152,8 +120,12 @@ public class PartitionedGuidedImprovementAlgorithm extends MultiObjectiveAlgorit
             } catch (InterruptedException e) {
                 e.printStackTrace();
                 throw new RuntimeException(e);
+            } finally {
+                threadPool.shutdown();
+            }
+            if (failure != null) {
+                throw new RuntimeException(failure);
             }
-            threadPool.shutdown();
         }
 
         logger.log(Level.FINE, "All Pareto points found. At time: {0}", Integer.valueOf((int)(System.currentTimeMillis()-startTime)/1000));
@@ -170,14 +142,114 @@ public class PartitionedGuidedImprovementAlgorithm extends MultiObjectiveAlgorit
         logger.log(Level.FINE, "Task {0}: Found Pareto point with values: {1}", new Object[] { taskID, metricpoint.values() });
     }
 
+    /**
+     * Returns the number of partitions searched around a Pareto point, 2^n - 2 for n objectives.
+     */
+    private int numberOfPartitions() {
+        return (int) Math.pow(2, objectiveOrder.length) - 2;
+    }
+
+    /**
+     * Returns true if the pool has a worker with nothing to do.
+     * Tasks waiting on their dependencies are not in the pool, so this is the
+     * case whenever there are fewer runnable partitions than threads.
+     */
+    private boolean hasIdleWorkers() {
+        return !threadPool.hasQueuedSubmissions() && threadPool.getQueuedTaskCount() == 0
+                && threadPool.getActiveThreadCount() < threadPool.getParallelism();
+    }
+
+    /**
+     * Records the failure of a task and releases the thread waiting on the pool.
+     */
+    private void fail(Throwable e) {
+        failure = e;
+        doneSignal.countDown();
+    }
+
+    /**
+     * Splits the region described by enclosingConstraints around the given Pareto point
+     * and submits the resulting partitions to the thread pool.  The given group is notified
+     * as each partition completes.
+     */
+    private void schedulePartitions(MultiObjectiveProblem problem, MetricPoint paretoPoint, Formula enclosingConstraints,
+            Collection<Formula> exclusionConstraints, SolutionNotifier notifier, PartitionGroup group) {
+        // Create all the tasks up front, adding them to an array
+        logger.log(Level.FINE, "Partitioning the problem space around {0}", paretoPoint.values());
+        List<PartitionSearcherTask> tasks = new ArrayList<PartitionSearcherTask>();
+        // Task at index 0 doesn't exist; it's in an excluded region
+        // We only add null so all the tasks are added at the right index
+        tasks.add(null);
+
+        // Now we can split the search space based on the Pareto point and create new tasks
+        // For n metrics, we want all combinations of m_i <= M_i and m_i >= M_i where M_i is the current value
+        // To iterate over this, we map the bit_i of a bitset to metric_i
+        // Note that bit_0 is the least significant bit
+        // We skip 0 (the partition that is already dominated) and 2^n - 1 (the partition where we didn't find any solutions)
+        int numObjectives = objectiveOrder.length;
+        int maxMapping = (int) Math.pow(2, numObjectives) - 1;
+        for (int mapping = 1; mapping < maxMapping; mapping++) {
+            BitSet bitSet = BitSet.valueOf(new long[] { mapping });
+            Formula partitionConstraints = enclosingConstraints.and(paretoPoint.partitionConstraints(bitSet, objectiveOrder));
+            tasks.add(new PartitionSearcherTask(mapping, problem, exclusionConstraints, partitionConstraints, notifier, group));
+        }
+
+        // Link up the dependencies
+        for (int mapping = 1; mapping < maxMapping; mapping++) {
+            PartitionSearcherTask task = tasks.get(mapping);
+            task.linkDependencies(tasks);
+        }
+
+        // Submit starting tasks (the ones without dependencies) to the thread pool
+        // Starting tasks are mapped to the ints with exactly one 0 bit
+        // So iterate over the bitset and clear one bit at a time
+        for (int bitIndex = 0; bitIndex < numObjectives; bitIndex++) {
+            BitSet bitSet = BitSet.valueOf(new long[] { maxMapping });
+            bitSet.clear(bitIndex);
+            int taskIndex = (int) bitSet.toLongArray()[0];
+            threadPool.execute(tasks.get(taskIndex));
+        }
+    }
+
+    /**
+     * A set of partitions that were split off around the same Pareto point.
+     * Collects the exclusion constraints of its members and is notified once
+     * all of them have completed.
+     */
+    private abstract static class PartitionGroup {
+        private final Set<Formula> exclusionConstraints = new HashSet<Formula>();
+        private int remaining;
+
+        PartitionGroup(int size) {
+            this.remaining = size;
+        }
+
+        // Called by each member of this group when it has completed
+        final void memberDone(Collection<Formula> exclusionConstraints) {
+            final boolean last;
+            synchronized (this) {
+                this.exclusionConstraints.addAll(exclusionConstraints);
+                last = (--remaining == 0);
+            }
+            if (last) {
+                done(this.exclusionConstraints);
+            }
+        }
+
+        /**
+         * Called once every member of this group has completed, with the union
+         * of their exclusion constraints.
+         */
+        abstract void done(Collection<Formula> exclusionConstraints);
+    }
+
     private class PartitionSearcherTask implements Runnable {
 
         private final int taskID;
         private final MultiObjectiveProblem problem;
         private Formula partitionConstraints;
         private final SolutionNotifier notifier;
-        private final ExecutorService threadPool;
-        private final CountDownLatch doneSignal;
+        private final PartitionGroup group;
 
         private Set<Formula> exclusionConstraints = new HashSet<Formula>();
         private List<PartitionSearcherTask> children = new ArrayList<PartitionSearcherTask>();
@@ -186,13 +258,12 @@ public class PartitionedGuidedImprovementAlgorithm extends MultiObjectiveAlgorit
         private boolean started = false;
         private boolean submitted = false;
 
-        public PartitionSearcherTask(int taskID, MultiObjectiveProblem problem, List<Formula> exclusionConstraints, Formula partitionConstraints, SolutionNotifier notifier, ExecutorService threadPool, CountDownLatch doneSignal) {
+        public PartitionSearcherTask(int taskID, MultiObjectiveProblem problem, Collection<Formula> exclusionConstraints, Formula partitionConstraints, SolutionNotifier notifier, PartitionGroup group) {
             this.taskID = taskID;
             this.problem = problem;
             this.partitionConstraints = partitionConstraints;
             this.notifier = notifier;
-            this.threadPool = threadPool;
-            this.doneSignal = doneSignal;
+            this.group = group;
             this.exclusionConstraints.addAll(exclusionConstraints);
         }
 
@@ -248,7 +319,7 @@ public class PartitionedGuidedImprovementAlgorithm extends MultiObjectiveAlgorit
             // If the parentDoneStatus map has no false values, then all dependencies are done
             // If this task has not been submitted, then submit it
             if (!parentDoneStatus.containsValue(false) && !submitted) {
-                threadPool.submit(this);
+                threadPool.execute(this);
                 submitted = true;
             } else if (!parentDoneStatus.containsValue(false) && submitted) {
                 // If we reach this point, it means the task has been submitted before it was notified
@@ -291,34 +362,52 @@ public class PartitionedGuidedImprovementAlgorithm extends MultiObjectiveAlgorit
                     tell(notifier, previousSolution, currentValues);
                 } else {
                     // magnifying glass
-                    final Collection<Formula> assignmentsConstraints = currentValues.assignmentConstraints();
-                    assignmentsConstraints.add(problem.getConstraints());
-                    int solutionsFound = magnifier(Formula.and(assignmentsConstraints), problem.getBounds(), currentValues, notifier);
+                    int solutionsFound = magnifier(problem, currentValues, notifier);
                     logger.log(Level.FINE, "Magnifying glass on {0} found {1} solution(s). At time: {2}", new Object[] {currentValues.values(), Integer.valueOf(solutionsFound), Integer.valueOf((int)((System.currentTimeMillis()-startTime)/1000))});
                 }
 
-                solver.rollback();
                 exclusionConstraints.add(currentValues.exclusionConstraint());
+
+                // If a worker is sitting idle, split the rest of this partition around the
+                // Pareto point we just found and let the pool search the pieces in parallel
+                if (hasIdleWorkers()) {
+                    solver.free();
+                    logger.log(Level.FINE, "Splitting Task {0}. At time: {1}", new Object[] { taskID, Integer.valueOf((int)((System.currentTimeMillis()-startTime)/1000)) });
+                    getStats().increment(StatKey.PARTITION_SPLITS);
+                    PartitionGroup subPartitions = new PartitionGroup(numberOfPartitions()) {
+                        void done(Collection<Formula> exclusionConstraints) {
+                            finish(exclusionConstraints);
+                        }
+                    };
+                    schedulePartitions(problem, currentValues, partitionConstraints, exclusionConstraints, notifier, subPartitions);
+                    return;
+                }
+
+                solver.rollback();
                 solution = solver.solve(currentValues.exclusionConstraint(), new Bounds(problem.getBounds().universe()));
                 incrementStats(solution, problem, constraint, false, null);
                 solver.checkpoint();
             }
+            solver.free();
 
             logger.log(Level.FINE, "Finishing Task {0}. At time: {1}", new Object[] { taskID, Integer.valueOf((int)((System.currentTimeMillis()-startTime)/1000)) });
+            finish(exclusionConstraints);
+          } catch (Throwable e) {
+            logger.log(Level.SEVERE, "Task failed.");
+            logger.log(Level.SEVERE, e.toString());
+            fail(e);
+          }
+        }
 
-            // Done searching in this partition, so pass this dependency to children and notify them
-            // Child will schedule itself if it's done
+        // Done searching in this partition, so pass this dependency to children and notify them
+        // Child will schedule itself if it's done
+        private void finish(Collection<Formula> exclusionConstraints) {
             for (PartitionSearcherTask child : children) {
                 child.notifyDone(taskID, exclusionConstraints);
             }
 
             // Signal that this task has completed
-            doneSignal.countDown();
-          } catch (Exception e) {
-            logger.log(Level.SEVERE, "Task failed.");
-            logger.log(Level.SEVERE, e.toString());
-            throw new RuntimeException(e);
-          }
+            group.memberDone(exclusionConstraints);
         }
     }
 }
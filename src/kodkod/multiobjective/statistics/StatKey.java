@@ -23,6 +23,11 @@ public enum StatKey {
 	OPTIMAL_SOLNS,
 	OPTIMAL_METRIC_POINTS,
 	
+	PARTITION_SPLITS,
+	
+	BISECTION_SAT_CALL,
+	BISECTION_UNSAT_CALL,
+	
 	BEGIN_TIME,
 	END_TIME,
 	DURATION, 
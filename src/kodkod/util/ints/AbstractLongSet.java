@@ -0,0 +1,176 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.util.ints;
+
+import java.util.NoSuchElementException;
+
+/**
+ * A skeletal implementation of the LongSet interface.  
+ */
+public abstract class AbstractLongSet implements LongSet {
+	
+	/**
+	 * Constructs an empty long set.
+	 * @ensures no this.longs'
+	 */
+	protected AbstractLongSet() {}
+	
+	/**
+	 * Throws a NoSuchElementException if this is an empty set.
+	 * @throws NoSuchElementException  this.isEmpty()
+	 */
+	final void checkNonEmpty() {
+		if  (isEmpty()) throw new NoSuchElementException("no this.longs");
+	}
+	
+	/**
+	 * Returns size()==0.
+	 * @return size()==0
+	 */
+	public boolean isEmpty() { return size()==0; }
+	
+	/**
+	 * Throws an UnsupportedOperationException.
+	 * @throws UnsupportedOperationException
+	 */
+	public boolean add(long i) { throw new UnsupportedOperationException(); }
+	
+	/**
+	 * Throws an UnsupportedOperationException.
+	 * @throws UnsupportedOperationException
+	 */
+	public boolean remove(long i) { throw new UnsupportedOperationException(); }
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.LongSet#containsAll(kodkod.util.ints.LongSet)
+	 */
+	public boolean containsAll(LongSet s) {
+		for(LongIterator iter = s.iterator(); iter.hasNext();) {
+			if (!contains(iter.next())) return false;
+		}
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.LongSet#addAll(kodkod.util.ints.LongSet)
+	 */
+	public boolean addAll(LongSet s) {
+		boolean modified = false;
+		for(LongIterator iter = s.iterator(); iter.hasNext();) {
+			if (add(iter.next())) modified = true;
+		}
+		return modified;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.LongSet#removeAll(kodkod.util.ints.LongSet)
+	 */
+	public boolean removeAll(LongSet s) {
+		boolean modified = false;
+		for(LongIterator iter = iterator(); iter.hasNext();) {
+			if (s.contains(iter.next())) {
+				iter.remove();
+				modified = true;
+			}
+		}
+		return modified;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.LongSet#retainAll(kodkod.util.ints.LongSet)
+	 */
+	public boolean retainAll(LongSet s) {
+		boolean modified = false;
+		for(LongIterator iter = iterator(); iter.hasNext();) {
+			if (!s.contains(iter.next())) {
+				iter.remove();
+				modified = true;
+			}
+		}
+		return modified;
+	}
+	
+	/**
+	 * Removes all elements from this set, using this.iterator().
+	 * @ensures no this.longs'
+	 */
+	public void clear() {
+		for(LongIterator iter = iterator(); iter.hasNext();) {
+			iter.next();
+			iter.remove();
+		}
+	}
+	
+	/**
+	 * Returns the result of calling super.clone().
+	 * @return the result of calling super.clone()
+	 * @see java.lang.Object#clone()
+	 */
+	public LongSet clone() throws CloneNotSupportedException {
+		return (LongSet) super.clone();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#equals(java.lang.Object)
+	 */
+	public boolean equals(Object o) {
+		if (o==this) return true;
+		else if (o instanceof LongSet) {
+			final LongSet s = (LongSet) o;
+			return size()==s.size() && containsAll(s);
+		} else return false;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see java.lang.Object#hashCode()
+	 */
+	public int hashCode() { 
+		int hash = 0;
+		for(LongIterator iter = iterator(); iter.hasNext();) {
+			final long i = iter.next();
+			hash += (int)(i ^ (i >>> 32));
+		}
+		return hash;
+	}
+	
+	/**
+	 * Returns a string representation of this long set.
+	 * @return a string representation of this long set.
+	 */
+	public String toString() {
+		final StringBuilder buf = new StringBuilder("{");
+		final LongIterator itr = iterator();
+		if (itr.hasNext()) buf.append(itr.next());
+		while(itr.hasNext()) {
+			buf.append(", ");
+			buf.append(itr.next());
+		}
+		buf.append("}");
+		return buf.toString();
+	}
+}
@@ -223,6 +223,37 @@ public final class Ints {
 		};
 	}
 	
+	/**
+	 * Returns an unmodifiable view of the specified long set. Query operations on the 
+	 * returned set "read through" to the specified set, and attempts to modify the returned 
+	 * set, whether direct or via its iterator, result in an UnsupportedOperationException.  
+	 * The clone() method of the returned set returns the result of calling s.clone().
+	 * @return an unmodifiable view of s
+	 * @throws NullPointerException  s = null
+	 */
+	public static LongSet unmodifiableLongSet(final LongSet s) {
+		if (s==null) 
+			throw new NullPointerException("s = null");
+		else if (s instanceof UnmodifiableLongSet || s instanceof LongView)
+			return s;
+		else 
+			return new UnmodifiableLongSet(s);
+	}
+	
+	/**
+	 * Returns an unmodifiable long set view of the specified int set.  Query operations 
+	 * on the returned set "read through" to the specified set, and attempts to modify the 
+	 * returned set result in an UnsupportedOperationException.  The clone() method of 
+	 * the returned set returns a {@link LongTreeSet} with the same elements.
+	 * @return { l: LongSet | l.longs = s.ints }
+	 * @throws NullPointerException  s = null
+	 */
+	public static LongSet asLongSet(final IntSet s) {
+		if (s==null) 
+			throw new NullPointerException("s = null");
+		return new LongView(s);
+	}
+	
 	/*-----------SEQUENCES-----------*/
 	
 	/**
@@ -481,6 +512,74 @@ public final class Ints {
 		public IntSet clone() throws CloneNotSupportedException { return s.clone(); }
 	}
 	
+	/**
+	 * An implementation of an unmodifiable LongSet view.
+	 */
+	private static final class UnmodifiableLongSet extends AbstractLongSet {
+		private final LongSet s;
+		
+		/**
+		 * Constructs an unmodifiable wrapper for the given long set.
+		 * @requires set != null
+		 */
+		UnmodifiableLongSet(LongSet set) {
+			this.s = set;
+		}
+		public long size() { return s.size(); }
+		public boolean contains(long i) { return s.contains(i); }
+		public long min() { return s.min(); }
+		public long max() { return s.max(); }
+		public LongIterator iterator() { 	
+			return new LongIterator() {
+				LongIterator iter = s.iterator();
+				public boolean hasNext() { return iter.hasNext(); }
+				public long next() { return iter.next(); }
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}	
+			};
+		}
+		public void clear() { throw new UnsupportedOperationException(); }
+		public boolean addAll(LongSet c) { throw new UnsupportedOperationException(); }
+		public boolean removeAll(LongSet c) { throw new UnsupportedOperationException(); }
+		public boolean retainAll(LongSet c) { throw new UnsupportedOperationException(); }
+		public LongSet clone() throws CloneNotSupportedException { return s.clone(); }
+	}
+	
+	/**
+	 * An implementation of an unmodifiable LongSet view of an IntSet.
+	 */
+	private static final class LongView extends AbstractLongSet {
+		private final IntSet s;
+		
+		/**
+		 * Constructs an unmodifiable long set view of the given intset.
+		 * @requires set != null
+		 */
+		LongView(IntSet set) {
+			this.s = set;
+		}
+		public long size() { return s.size(); }
+		public boolean contains(long i) { return i >= Integer.MIN_VALUE && i <= Integer.MAX_VALUE && s.contains((int)i); }
+		public long min() { return s.min(); }
+		public long max() { return s.max(); }
+		public LongIterator iterator() { 	
+			return new LongIterator() {
+				IntIterator iter = s.iterator();
+				public boolean hasNext() { return iter.hasNext(); }
+				public long next() { return iter.next(); }
+				public void remove() {
+					throw new UnsupportedOperationException();
+				}	
+			};
+		}
+		public void clear() { throw new UnsupportedOperationException(); }
+		public boolean addAll(LongSet c) { throw new UnsupportedOperationException(); }
+		public boolean removeAll(LongSet c) { throw new UnsupportedOperationException(); }
+		public boolean retainAll(LongSet c) { throw new UnsupportedOperationException(); }
+		public LongSet clone() { return new LongTreeSet(this); }
+	}
+	
 	/**
 	 * An implementation of an unmodifiable SparseSequence view.
 	 * @author Emina Torlak
@@ -0,0 +1,53 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.util.ints;
+
+
+/**
+ * An iterator over long primitives. 
+ */
+public interface LongIterator  {
+
+	/**
+	 * Returns true if this iteration has more elements.
+	 * @return true if this iteration has more elements.
+	 */
+	public abstract boolean hasNext();
+	
+	/**
+	 * Returns the next long in the iteration, if any.
+	 * Otherwise throws a NoSuchElementException.
+	 * @return the next element in the iteration
+	 * @throws java.util.NoSuchElementException  the iteration is empty. 
+	 */
+	public abstract long next();
+	
+	/**
+	 * Removes the last returned element from the underlying collection.
+	 * @ensures removes the last returned element from the underlying collection.
+	 * @throws UnsupportedOperationException  removal is not supported
+	 * @throws IllegalStateException  next() has not been called yet or remove()
+	 * has already been called since the last call to next().
+	 */
+	public abstract void remove();
+	
+}
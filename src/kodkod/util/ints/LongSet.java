@@ -0,0 +1,158 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.util.ints;
+
+
+/**
+ * A set of longs.  LongSets are used to index the tuples of relations whose 
+ * capacity, the number of tuples of a given arity over a universe, does not fit 
+ * into an int.  The iterators of a LongSet return its elements in the ascending 
+ * order.
+ * 
+ * @specfield longs: set long
+ * @see IntSet
+ */
+public interface LongSet extends Cloneable {
+	
+	/**
+	 * Returns the cardinality of this set.
+	 * @return #this.longs
+	 */
+	public abstract long size();
+	
+	/**
+	 * Returns true if this set has no elements; 
+	 * otherwise returns false.
+	 * @return no this.longs
+	 */
+	public abstract boolean isEmpty();
+	
+	/**
+	 * Returns true if i is in this set.
+	 * @return i in this.longs
+	 */
+	public abstract boolean contains(long i);
+	
+	/**
+	 * Returns the smallest element in this set.
+	 * Throws a NoSuchElementException if this set is empty.
+	 * @return min(this.longs)
+	 * @throws java.util.NoSuchElementException  no this.longs
+	 */
+	public abstract long min();
+	
+	/**
+	 * Returns the largest element in this set.
+	 * Throws a NoSuchElementException if this set is empty.
+	 * @return max(this.longs)
+	 * @throws java.util.NoSuchElementException  no this.longs
+	 */
+	public abstract long max();
+	
+	/**
+	 * Returns an iterator over the elements of this set, in the ascending order.
+	 * @return an iterator over the elements of this set, in the ascending order.
+	 */
+	public abstract LongIterator iterator();
+	
+	/**
+	 * Adds the given long to this set if not already present.
+	 * @ensures this.longs' = this.longs + i
+	 * @return i !in this.longs
+	 * @throws UnsupportedOperationException  this is an unmodifiable set
+	 */
+	public abstract boolean add(long i);
+	
+	/**
+	 * Removes the given long from this set if already present.
+	 * @ensures this.longs' = this.longs - i
+	 * @return i in this.longs
+	 * @throws UnsupportedOperationException  this is an unmodifiable set
+	 */
+	public abstract boolean remove(long i);
+	
+	/**
+	 * Returns true if this set contains all elements of the given set.
+	 * @return s.longs in this.longs
+	 * @throws NullPointerException  s = null
+	 */
+	public abstract boolean containsAll(LongSet s);
+	
+	/**
+	 * Adds all elements of the given set to this one.
+	 * @ensures this.longs' = this.longs + s.longs
+	 * @return this.longs' != this.longs
+	 * @throws NullPointerException  s = null
+	 * @throws UnsupportedOperationException  this is an unmodifiable set
+	 */
+	public abstract boolean addAll(LongSet s);
+	
+	/**
+	 * Removes all elements of the given set from this one.
+	 * @ensures this.longs' = this.longs - s.longs
+	 * @return this.longs' != this.longs
+	 * @throws NullPointerException  s = null
+	 * @throws UnsupportedOperationException  this is an unmodifiable set
+	 */
+	public abstract boolean removeAll(LongSet s);
+	
+	/**
+	 * Retains only the elements of this set that are also in the given set.
+	 * @ensures this.longs' = this.longs & s.longs
+	 * @return this.longs' != this.longs
+	 * @throws NullPointerException  s = null
+	 * @throws UnsupportedOperationException  this is an unmodifiable set
+	 */
+	public abstract boolean retainAll(LongSet s);
+	
+	/**
+	 * Removes all elements from this set. 
+	 * @ensures no this.longs'
+	 * @throws UnsupportedOperationException  this is an unmodifiable set
+	 */
+	public abstract void clear();
+	
+	/**
+	 * Returns a copy of this LongSet.  The copy is independent of this 
+	 * LongSet unless this is a singleton or an immutable set, in which case
+	 * clone() may return this.  
+	 * @return a copy of this LongSet.
+	 * @throws CloneNotSupportedException  this is not cloneable
+	 */
+	public abstract LongSet clone() throws CloneNotSupportedException;
+	
+	/**
+     * Compares the specified object with this set for equality. 
+     * Returns true if the specified object is also a LongSet, 
+     * the two sets have the same size, and every member of the 
+     * specified set is contained in this set.
+     * @return o instanceof LongSet and o.size() = this.size() and this.containsAll(o)
+     */
+	public abstract boolean equals(Object o);
+	
+	/**
+     * Returns the hash code value for this set, the sum of the hash codes 
+     * of the {@link Long} values of its elements.
+     * @return sum({i: this.longs | (int)(i ^ (i >>> 32)) })
+     */
+	public abstract int hashCode();
+}
@@ -0,0 +1,263 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.util.ints;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+
+/**
+ * A sparse sequence indexed by longs, based on a balanced binary
+ * search tree.  Long-indexed sequences store the entries of matrices whose
+ * capacity does not fit into an int; smaller matrices are stored in 
+ * {@link SparseSequence int-indexed sequences}.
+ * 
+ * @specfield entries: long -> lone V
+ */
+public final class LongTreeSequence<V> implements Iterable<LongIndexedEntry<V>>, Cloneable {
+	private TreeMap<Long, Entry<V>> tree;
+	
+	/**
+	 * Constructs an empty tree sequence.
+	 * @ensures no this.entries'
+	 */
+	public LongTreeSequence() {
+		tree = new TreeMap<Long, Entry<V>>();
+	}
+	
+	/**
+	 * Returns the number of entries in this sequence.
+	 * @return #this.entries
+	 */
+	public int size() { return tree.size(); }
+	
+	/**
+	 * Returns true if this sequence is empty; otherwise returns false.
+	 * @return no this.entries
+	 */
+	public boolean isEmpty() { return tree.isEmpty(); }
+	
+	/**
+	 * Removes all entries from this sequences.
+	 * @ensures no this.entries'
+	 */
+	public void clear() { tree.clear(); }
+	
+	/**
+	 * Puts the given value at the specified index.  If the 
+	 * sequence already mapped the index to a value, the 
+	 * previous value is replaced with the new one and returned.
+	 * @ensures this.entries' = this.entries + index->value
+	 * @return this.entries[index]
+	 */
+	public V put(long index, V value) {
+		final Entry<V> e = tree.get(index);
+		if (e == null) {
+			tree.put(index, new Entry<V>(index, value));
+			return null;
+		} else {
+			final V old = e.value;
+			e.value = value;
+			return old;
+		}
+	}
+	
+	/**
+	 * Returns the value to which this sequence maps the given
+	 * index.  If the index is not mapped, null is returned.
+	 * @return this.entries[index]
+	 */
+	public V get(long index) {
+		final Entry<V> e = tree.get(index);
+		return e == null ? null : e.value;
+	}
+	
+	/**
+	 * Removes the entry with the given index, if it exists, and
+	 * returns the value previously stored at the index.  If the
+	 * sequence had no previous mapping for the index, null is returned.
+	 * @ensures this.entries' = this.entries - index->E
+	 * @return this.entries[index]
+	 */
+	public V remove(long index) {
+		final Entry<V> e = tree.remove(index);
+		return e == null ? null : e.value;
+	}
+	
+	/**
+	 * Returns true if this sequence has an entry for the given index;
+	 * otherwise returns false.
+	 * @return some this.entries[index]
+	 */
+	public boolean containsIndex(long index) { return tree.containsKey(index); }
+	
+	/**
+	 * Returns the entry with the smallest index.  If the sequence
+	 * is empty, returns null.
+	 * @return {e: LongIndexedEntry | e.index = min(this.entries.V) && e.value = this.entries[e.index] }
+	 */
+	public LongIndexedEntry<V> first() { 
+		return tree.isEmpty() ? null : tree.firstEntry().getValue();
+	}
+	
+	/**
+	 * Returns the entry with the largest index.  If the sequence
+	 * is empty, returns null.
+	 * @return {e: LongIndexedEntry | e.index = max(this.entries.V) && e.value = this.entries[e.index] }
+	 */
+	public LongIndexedEntry<V> last() { 
+		return tree.isEmpty() ? null : tree.lastEntry().getValue();
+	}
+	
+	/**
+	 * Returns the entry whose index is the ceiling of the given index in this sequence.
+	 * If no such entry exists, returns null.
+	 * @return {e: LongIndexedEntry | e.index = min({i: this.entries.V | i >= index}) && e.value = this.entries[e.index] }
+	 */
+	public LongIndexedEntry<V> ceil(long index) {
+		final Map.Entry<Long, Entry<V>> e = tree.ceilingEntry(index);
+		return e == null ? null : e.getValue();
+	}
+	
+	/**
+	 * Returns the entry whose index is the floor of the given index in this sequence.
+	 * If no such entry exists, returns null.
+	 * @return {e: LongIndexedEntry | e.index = max({i: this.entries.V | i <= index}) && e.value = this.entries[e.index] }
+	 */
+	public LongIndexedEntry<V> floor(long index) {
+		final Map.Entry<Long, Entry<V>> e = tree.floorEntry(index);
+		return e == null ? null : e.getValue();
+	}
+	
+	/**
+	 * Returns an iterator over the entries in this sequence, 
+	 * in the ascending order of indeces.  Calling remove on the 
+	 * returned iterator removes the last returned entry from this sequence.
+	 * @return an iterator over this.entries starting at the entry with the smallest index
+	 */
+	public Iterator<LongIndexedEntry<V>> iterator() {
+		return iterator(tree.values());
+	}
+	
+	/**
+	 * Returns an iterator over the entries in this sequence
+	 * whose indeces are between from and to, inclusive, in the 
+	 * ascending order of indeces.  
+	 * @requires from <= to
+	 * @return an iterator over the entries in this sequence 
+	 * whose indeces are between from and to.
+	 */
+	public Iterator<LongIndexedEntry<V>> iterator(long from, long to) {
+		return iterator(tree.subMap(from, true, to, true).values());
+	}
+	
+	/**
+	 * Returns an iterator over the given entries.
+	 * @return an iterator over the given entries
+	 */
+	private static <V> Iterator<LongIndexedEntry<V>> iterator(Collection<Entry<V>> entries) {
+		final Iterator<Entry<V>> itr = entries.iterator();
+		return new Iterator<LongIndexedEntry<V>>() {
+			public boolean hasNext() { return itr.hasNext(); }
+			public LongIndexedEntry<V> next() { return itr.next(); }
+			public void remove() { itr.remove(); }
+		};
+	}
+	
+	/**
+	 * Returns a new set that contains the indices of the entries in this sequence.
+	 * @return { s: LongSet | s.longs = this.entries.V }
+	 */
+	public LongSet indices() {
+		final LongTreeSet ret = new LongTreeSet();
+		for(Long index : tree.keySet()) {
+			ret.add(index);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Returns a list of the values in this sequence, in the ascending order of 
+	 * their indices.
+	 * @return { l: List<V> | l.elems = this.entries[long] }
+	 */
+	public List<V> values() {
+		final List<V> ret = new ArrayList<V>(tree.size());
+		for(Entry<V> e : tree.values()) {
+			ret.add(e.value);
+		}
+		return ret;
+	}
+	
+	/**
+	 * Returns a copy of this sparse sequence.  The copy is independent of this 
+	 * sequence.
+	 * @return a copy of this sparse sequence.
+	 * @see java.lang.Object#clone()
+	 */
+	@SuppressWarnings("unchecked")
+	public LongTreeSequence<V> clone() {
+		try {
+			final LongTreeSequence<V> ret = (LongTreeSequence<V>) super.clone();
+			ret.tree = new TreeMap<Long, Entry<V>>();
+			for(Entry<V> e : tree.values()) {
+				ret.tree.put(e.index, new Entry<V>(e.index, e.value));
+			}
+			return ret;
+		} catch (CloneNotSupportedException e) {
+			throw new InternalError(); // unreachable code
+		}
+	}
+	
+	/**
+	 * Returns a string representation of this sequence.
+	 * @return a string representation of this sequence.
+	 */
+	public String toString() {
+		return tree.values().toString();
+	}
+	
+	/**
+	 * A mutable entry in a long-indexed tree sequence.
+	 * @specfield index: long
+	 * @specfield value: V
+	 */
+	private static final class Entry<V> implements LongIndexedEntry<V> {
+		final long index;
+		V value;
+		
+		Entry(long index, V value) {
+			this.index = index;
+			this.value = value;
+		}
+		
+		public long index() { return index; }
+		
+		public V value() { return value; }
+		
+		public String toString() { return index + "=" + value; }
+	}
+}
@@ -0,0 +1,243 @@
+/* 
+ * Kodkod -- Copyright (c) 2005-present, Emina Torlak
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in
+ * all copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN
+ * THE SOFTWARE.
+ */
+package kodkod.util.ints;
+
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.TreeMap;
+
+/**
+ * A set of longs, stored as a sorted map from the minimum of each maximal 
+ * range of consecutive elements to its maximum.  A tree set takes space 
+ * proportional to the number of ranges in it, so sets such as the indices of 
+ * all tuples of a given arity take constant space, regardless of their size.
+ * Membership tests and updates take time logarithmic in the number of ranges. 
+ * 
+ * @specfield longs: set long
+ */
+public final class LongTreeSet extends AbstractLongSet {
+	private TreeMap<Long,Long> ranges;
+	private long size;
+	
+	/**
+	 * Constructs an empty long set.
+	 * @ensures no this.longs'
+	 */
+	public LongTreeSet() {
+		this.ranges = new TreeMap<Long,Long>();
+		this.size = 0;
+	}
+	
+	/**
+	 * Constructs a long set that contains the elements of the given set.
+	 * @ensures this.longs' = s.longs
+	 * @throws NullPointerException  s = null
+	 */
+	public LongTreeSet(LongSet s) {
+		this();
+		addAll(s);
+	}
+	
+	/**
+	 * Returns the number of elements in the given range.
+	 * @return range.value - range.key + 1
+	 */
+	private static long size(Map.Entry<Long,Long> range) {
+		return range.getValue() - range.getKey() + 1;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.LongSet#size()
+	 */
+	public long size() { return size; }
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.LongSet#contains(long)
+	 */
+	public boolean contains(long i) {
+		final Map.Entry<Long,Long> range = ranges.floorEntry(i);
+		return range != null && range.getValue() >= i;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.LongSet#min()
+	 */
+	public long min() {
+		checkNonEmpty();
+		return ranges.firstKey();
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.LongSet#max()
+	 */
+	public long max() {
+		checkNonEmpty();
+		return ranges.lastEntry().getValue();
+	}
+	
+	/**
+	 * Adds all longs between min and max, inclusive, to this set.
+	 * @requires min <= max
+	 * @ensures this.longs' = this.longs + [min..max]
+	 * @return [min..max] !in this.longs
+	 */
+	public boolean addRange(long min, long max) {
+		assert min <= max;
+		final long oldSize = size;
+		final Map.Entry<Long,Long> floor = ranges.floorEntry(min);
+		if (floor != null && floor.getValue() >= min - 1) {
+			if (floor.getValue() >= max) return false;
+			min = floor.getKey();
+			ranges.remove(min);
+			size -= size(floor);
+		}
+		for(Map.Entry<Long,Long> next = ranges.ceilingEntry(min); 
+		    next != null && next.getKey() <= max + 1; next = ranges.ceilingEntry(min)) {
+			max = StrictMath.max(max, next.getValue());
+			ranges.remove(next.getKey());
+			size -= size(next);
+		}
+		ranges.put(min, max);
+		size += max - min + 1;
+		return size != oldSize;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.AbstractLongSet#add(long)
+	 */
+	@Override
+	public boolean add(long i) {
+		return addRange(i, i);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.AbstractLongSet#remove(long)
+	 */
+	@Override
+	public boolean remove(long i) {
+		final Map.Entry<Long,Long> range = ranges.floorEntry(i);
+		if (range == null || range.getValue() < i) return false;
+		final long min = range.getKey(), max = range.getValue();
+		if (min == i) ranges.remove(min);
+		else ranges.put(min, i - 1);
+		if (max > i) ranges.put(i + 1, max);
+		size--;
+		return true;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.AbstractLongSet#containsAll(kodkod.util.ints.LongSet)
+	 */
+	@Override
+	public boolean containsAll(LongSet s) {
+		if (s instanceof LongTreeSet) {
+			for(Map.Entry<Long,Long> range : ((LongTreeSet) s).ranges.entrySet()) {
+				final Map.Entry<Long,Long> floor = ranges.floorEntry(range.getKey());
+				if (floor == null || floor.getValue() < range.getValue()) return false;
+			}
+			return true;
+		}
+		return super.containsAll(s);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.AbstractLongSet#addAll(kodkod.util.ints.LongSet)
+	 */
+	@Override
+	public boolean addAll(LongSet s) {
+		if (s instanceof LongTreeSet) {
+			boolean modified = false;
+			for(Map.Entry<Long,Long> range : ((LongTreeSet) s).ranges.entrySet()) {
+				if (addRange(range.getKey(), range.getValue())) modified = true;
+			}
+			return modified;
+		}
+		return super.addAll(s);
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.AbstractLongSet#clear()
+	 */
+	@Override
+	public void clear() {
+		ranges.clear();
+		size = 0;
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.LongSet#iterator()
+	 */
+	public LongIterator iterator() {
+		return new LongIterator() {
+			Map.Entry<Long,Long> range = ranges.isEmpty() ? null : ranges.firstEntry();
+			long cursor = range == null ? 0 : range.getKey(), last;
+			boolean canRemove = false;
+			
+			public boolean hasNext() { return range != null; }
+			
+			public long next() {
+				if (range == null) throw new NoSuchElementException();
+				last = cursor;
+				if (cursor < range.getValue()) {
+					cursor++;
+				} else {
+					range = ranges.higherEntry(range.getValue());
+					if (range != null) cursor = range.getKey();
+				}
+				canRemove = true;
+				return last;
+			}
+			
+			public void remove() {
+				if (!canRemove) throw new IllegalStateException();
+				LongTreeSet.this.remove(last);
+				canRemove = false;
+				if (range != null) range = ranges.floorEntry(cursor);
+			}
+		};
+	}
+	
+	/**
+	 * {@inheritDoc}
+	 * @see kodkod.util.ints.AbstractLongSet#clone()
+	 */
+	@Override
+	public LongTreeSet clone() {
+		try {
+			final LongTreeSet ret = (LongTreeSet) super.clone();
+			ret.ranges = new TreeMap<Long,Long>(ranges);
+			return ret;
+		} catch (CloneNotSupportedException e) {
+			throw new InternalError(); // unreachable code
+		}
+	}
+}
@@ -6,7 +6,10 @@ import org.junit.runner.JUnitCore;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
-  kodkod.engine.satlab.TestSuite.class
+  kodkod.engine.satlab.TestSuite.class,
+  kodkod.engine.fol2sat.TestSuite.class,
+  kodkod.engine.bool.TestSuite.class,
+  kodkod.engine.ucore.TestSuite.class
 })
 public class TestSuite {
 }
@@ -0,0 +1,252 @@
+package kodkod.engine.bool;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+import java.util.Random;
+
+import kodkod.engine.config.Options;
+import kodkod.util.ints.IndexedEntry;
+import kodkod.util.ints.IntBitSet;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.Ints;
+
+@RunWith(JUnit4.class)
+public class BooleanMatrixTest {
+
+    private static final int VARS = 4;
+
+    BooleanFactory factory;
+    Random random;
+
+    @Before
+    public void setUp() {
+        factory = BooleanFactory.factory(VARS, new Options());
+        random = new Random(42);
+    }
+
+    // A pair of matrices with the same elements:  the first keeps its constants in a bitmap
+    // when they are dense enough and outnumber the gates, and the second holds every element
+    // in a range sequence.
+    private BooleanMatrix[] pair(Dimensions d, double trueDensity, int gates) {
+        final IntSet all = Ints.bestSet(d.capacity()), trues = Ints.bestSet(d.capacity());
+        final int[] at = new int[gates];
+        for (int g = 0; g < gates; g++) {
+            at[g] = random.nextInt(d.capacity());
+            all.add(at[g]);
+        }
+        for (int i = 0; i < d.capacity(); i++) {
+            if (random.nextDouble() < trueDensity && !all.contains(i)) {
+                trues.add(i);
+            }
+        }
+        all.addAll(trues);
+        final BooleanMatrix hybrid = factory.matrix(d, all, trues);
+        final BooleanMatrix plain = factory.matrix(d);
+        for (int i = 0; i < d.capacity(); i++) {
+            if (trues.contains(i)) {
+                plain.set(i, BooleanConstant.TRUE);
+            }
+        }
+        for (int i : at) {
+            BooleanValue v = factory.variable(1 + random.nextInt(VARS));
+            if (random.nextBoolean()) {
+                v = factory.and(v, factory.variable(1 + random.nextInt(VARS)).negation());
+            }
+            hybrid.set(i, v);
+            plain.set(i, v);
+        }
+        return new BooleanMatrix[] { hybrid, plain };
+    }
+
+    private static boolean eval(BooleanValue v, int assignment) {
+        if (v instanceof BooleanConstant) {
+            return ((BooleanConstant) v).booleanValue();
+        }
+        final BooleanFormula f = (BooleanFormula) v;
+        final Operator op = f.op();
+        if (op == Operator.VAR) {
+            return (assignment & (1 << (f.label() - 1))) != 0;
+        } else if (op == Operator.NOT) {
+            return !eval(f.input(0), assignment);
+        } else if (op == Operator.ITE) {
+            return eval(f.input(0), assignment) ? eval(f.input(1), assignment) : eval(f.input(2), assignment);
+        }
+        for (BooleanFormula in : f) {
+            if (eval(in, assignment) == (op == Operator.OR)) {
+                return op == Operator.OR;
+            }
+        }
+        return op == Operator.AND;
+    }
+
+    private static void assertEquivalent(BooleanMatrix expected, BooleanMatrix actual) {
+        assertEquals(expected.dimensions().capacity(), actual.dimensions().capacity());
+        for (int i = 0; i < expected.dimensions().capacity(); i++) {
+            for (int a = 0; a < (1 << VARS); a++) {
+                assertEquals("cell " + i, eval(expected.get(i), a), eval(actual.get(i), a));
+            }
+        }
+        int density = 0;
+        for (IndexedEntry<BooleanValue> e : actual) {
+            assertNotSame(BooleanConstant.FALSE, e.value());
+            assertSame(e.value(), actual.get(e.index()));
+            density++;
+        }
+        assertEquals(density, actual.density());
+    }
+
+    @Test
+    public void binaryOperationsMatchPlainMatrices() {
+        for (int n : new int[] { 3, 13, 70 }) {
+            final Dimensions d = Dimensions.square(n, 2);
+            for (int round = 0; round < 5; round++) {
+                final BooleanMatrix[] m0 = pair(d, 0.4, n), m1 = pair(d, 0.4, n);
+                assertEquivalent(m0[1], m0[0]);
+                assertEquivalent(m0[1].and(m1[1]), m0[0].and(m1[0]));
+                assertEquivalent(m0[1].or(m1[1]), m0[0].or(m1[0]));
+                assertEquivalent(m0[1].dot(m1[1]), m0[0].dot(m1[0]));
+                assertEquivalent(m0[1].transpose(), m0[0].transpose());
+            }
+        }
+    }
+
+    @Test
+    public void crossMatchesPlainMatrices() {
+        for (int n : new int[] { 5, 13, 70 }) {
+            final Dimensions d = Dimensions.square(n, 1);
+            final BooleanMatrix[] m0 = pair(d, 0.5, 3), m1 = pair(Dimensions.square(n, 2), 0.5, 3);
+            assertEquivalent(m0[1].cross(m1[1]), m0[0].cross(m1[0]));
+            assertEquivalent(m1[1].cross(m0[1]), m1[0].cross(m0[0]));
+        }
+    }
+
+    @Test
+    public void gateHeavyOperandsMatchPlainMatrices() {
+        final Dimensions d = Dimensions.square(20, 2);
+        final BooleanMatrix[] sparse = pair(d, 0.5, 20), heavy = pair(d, 0.05, 300);
+        assertEquivalent(sparse[1].and(heavy[1]), sparse[0].and(heavy[0]));
+        assertEquivalent(heavy[1].or(sparse[1]), heavy[0].or(sparse[0]));
+        assertEquivalent(heavy[1].dot(sparse[1]), heavy[0].dot(sparse[0]));
+        assertEquivalent(sparse[1].or(heavy[1], sparse[1]), sparse[0].or(heavy[0], sparse[0]));
+        assertEquivalent(sparse[1].and(sparse[1], heavy[1]), sparse[0].and(sparse[0], heavy[0]));
+    }
+
+    @Test
+    public void hybridSequencesAreOnlyChosenForSparseGates() {
+        assertTrue(HybridSequence.dense(640, 10, 0));
+        assertTrue(HybridSequence.dense(640, 10, 80));
+        assertFalse(HybridSequence.dense(640, 10, 81));
+        assertFalse(HybridSequence.dense(640, 9, 0));
+        assertFalse(HybridSequence.dense(640, 0, 0));
+
+        final HybridSequence s = new HybridSequence(640);
+        for (int i = 0; i < 10; i++) {
+            s.setTrue(630 + i);
+        }
+        assertTrue(s.dense());
+        for (int i = 0; i <= 80; i++) {
+            s.put(i, factory.variable(1));
+        }
+        assertFalse(s.dense());
+    }
+
+    @Test
+    public void closureMatchesPlainMatrices() {
+        for (int n : new int[] { 4, 13, 70 }) {
+            final Dimensions d = Dimensions.square(n, 2);
+            final BooleanMatrix[] constant = pair(d, 1.5 / n, 0), mixed = pair(d, 1.5 / n, 3);
+            assertEquivalent(constant[1].closure(), constant[0].closure());
+            assertEquivalent(mixed[1].closure(), mixed[0].closure());
+        }
+    }
+
+    @Test
+    public void closureEncodingsAgree() {
+        for (int n : new int[] { 4, 9 }) {
+            final Dimensions d = Dimensions.square(n, 2);
+            BooleanMatrix expected = null;
+            for (Options.ClosureEncoding encoding : Options.ClosureEncoding.values()) {
+                final Options options = new Options();
+                options.setClosureEncoding(encoding);
+                factory = BooleanFactory.factory(VARS, options);
+                random = new Random(n);
+                // a sparse layered graph, so some atoms have empty rows or columns
+                final BooleanMatrix m = pair(d, 0.1, 2 * n)[1];
+                for (int i = n / 2; i < n; i++) {
+                    for (int j = 0; j < n; j++) {
+                        m.set(i * n + j, BooleanConstant.FALSE);
+                    }
+                }
+                m.set(n / 2 - 1, factory.variable(1));
+                final BooleanMatrix closure = m.closure();
+                if (expected == null) {
+                    expected = closure;
+                } else {
+                    assertEquivalent(expected, closure);
+                }
+            }
+        }
+    }
+
+    @Test
+    public void hybridSequencesIterateInOrder() {
+        final HybridSequence s = new HybridSequence(200);
+        final BooleanValue v = factory.variable(1);
+        for (int i = 0; i < 200; i += 3) {
+            s.put(i, BooleanConstant.TRUE);
+        }
+        for (int i = 1; i < 200; i += 7) {
+            s.put(i, v);
+        }
+        assertSame(BooleanConstant.TRUE, s.put(3, v));
+        assertSame(v, s.put(1, BooleanConstant.TRUE));
+
+        int last = -1, size = 0;
+        for (IndexedEntry<BooleanValue> e : s) {
+            assertTrue(e.index() > last);
+            assertSame(s.get(e.index()), e.value());
+            last = e.index();
+            size++;
+        }
+        assertEquals(s.size(), size);
+
+        last = Integer.MAX_VALUE;
+        for (Iterator<IndexedEntry<BooleanValue>> itr = s.iterator(150, 20); itr.hasNext();) {
+            final IndexedEntry<BooleanValue> e = itr.next();
+            assertTrue(e.index() < last && e.index() >= 20 && e.index() <= 150);
+            last = e.index();
+            if (e.index() % 2 == 0) {
+                itr.remove();
+            }
+        }
+        for (int i = 20; i <= 150; i += 2) {
+            assertFalse(s.containsIndex(i));
+        }
+        assertEquals(s.indices().size(), s.size());
+    }
+
+    @Test
+    public void rangesAreCopiedAcrossWords() {
+        final IntBitSet expected = new IntBitSet(300);
+        final HybridSequence src = new HybridSequence(300), dst = new HybridSequence(300);
+        for (int i = 0; i < 300; i++) {
+            if (random.nextBoolean()) {
+                src.setTrue(i);
+            }
+        }
+        for (int i = 0; i < 130; i++) {
+            if (src.isTrue(i + 5)) {
+                expected.add(i + 141);
+            }
+        }
+        dst.orRange(141, src, 5, 130);
+        for (int i = 0; i < 300; i++) {
+            assertEquals("bit " + i, expected.contains(i), dst.isTrue(i));
+        }
+        assertEquals(expected.size(), dst.size());
+    }
+}
@@ -0,0 +1,13 @@
+package kodkod.engine.bool;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runner.JUnitCore;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+  kodkod.engine.bool.BooleanMatrixTest.class,
+  kodkod.engine.bool.UnaryCounterIntTest.class
+})
+public class TestSuite {
+}
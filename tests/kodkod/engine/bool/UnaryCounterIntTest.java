@@ -0,0 +1,259 @@
+package kodkod.engine.bool;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import kodkod.ast.Formula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.IntExpression;
+import kodkod.ast.Relation;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.config.Options;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+@RunWith(JUnit4.class)
+public class UnaryCounterIntTest {
+
+    private static final int VARS = 7;
+
+    // counts of up to 7 are counters at bitwidth 4, but partly two's complement at bitwidth 3
+    private static final int[] BITWIDTHS = { 3, 4 };
+
+
+    private static BooleanFactory factory(Options.IntEncoding encoding, int bitwidth) {
+        final Options options = new Options();
+        options.setIntEncoding(encoding);
+        options.setBitwidth(bitwidth);
+        return BooleanFactory.factory(VARS, options);
+    }
+
+    private static final int ASSIGNMENTS = 1 << VARS;
+
+    // truth tables of circuits, indexed by assignment
+    private final Map<BooleanValue, BitSet> tables = new IdentityHashMap<BooleanValue, BitSet>();
+
+    private BitSet table(BooleanValue v) {
+        BitSet ret = tables.get(v);
+        if (ret != null) {
+            return ret;
+        }
+        ret = new BitSet(ASSIGNMENTS);
+        if (v == BooleanConstant.TRUE) {
+            ret.set(0, ASSIGNMENTS);
+        } else if (v != BooleanConstant.FALSE) {
+            final BooleanFormula f = (BooleanFormula) v;
+            final Operator op = f.op();
+            if (op == Operator.VAR) {
+                for (int a = 0; a < ASSIGNMENTS; a++) {
+                    ret.set(a, (a & (1 << (f.label() - 1))) != 0);
+                }
+            } else if (op == Operator.NOT) {
+                ret.or(table(f.input(0)));
+                ret.flip(0, ASSIGNMENTS);
+            } else if (op == Operator.ITE) {
+                final BitSet otherwise = (BitSet) table(f.input(0)).clone();
+                otherwise.flip(0, ASSIGNMENTS);
+                otherwise.and(table(f.input(2)));
+                ret.or(table(f.input(0)));
+                ret.and(table(f.input(1)));
+                ret.or(otherwise);
+            } else {
+                if (op == Operator.AND) {
+                    ret.set(0, ASSIGNMENTS);
+                }
+                for (BooleanFormula in : f) {
+                    if (op == Operator.AND) {
+                        ret.and(table(in));
+                    } else {
+                        ret.or(table(in));
+                    }
+                }
+            }
+        }
+        tables.put(v, ret);
+        return ret;
+    }
+
+    private int eval(Int i, int assignment) {
+        final List<BooleanValue> bits = i.twosComplementBits();
+        int ret = 0;
+        for (int b = 0; b < bits.size(); b++) {
+            if (table(bits.get(b)).get(assignment)) {
+                ret += b == bits.size() - 1 ? -1 << b : 1 << b;
+            }
+        }
+        return ret;
+    }
+
+    private static List<BooleanValue> vars(BooleanFactory factory, int from, int to) {
+        final List<BooleanValue> ret = new ArrayList<BooleanValue>();
+        for (int i = from; i <= to; i++) {
+            ret.add(factory.variable(i));
+        }
+        return ret;
+    }
+
+    // the same integers in both factories:  counts, weighted sums, choices and constants
+    private static List<Int> ints(BooleanFactory f) {
+        final List<Int> ret = new ArrayList<Int>();
+        ret.add(f.sum(vars(f, 1, VARS)));
+        ret.add(f.sum(vars(f, 1, 2)));
+        ret.add(f.sum(vars(f, 3, 6)));
+        ret.add(f.integer(2, f.variable(1)).plus(f.integer(3, f.variable(2))).plus(f.integer(-1, f.variable(3))));
+        ret.add(f.sum(vars(f, 1, 3)).plus(f.integer(2)));
+        ret.add(f.sum(vars(f, 4, VARS)).plus(f.sum(vars(f, 1, 2)), f.integer(1, f.variable(3))));
+        ret.add(f.sum(vars(f, 2, 4)).choice(f.variable(5), f.integer(0)));
+        ret.add(f.sum(vars(f, 2, 4)).choice(f.variable(1), f.sum(vars(f, 5, VARS))));
+        ret.add(f.integer(3));
+        ret.add(f.integer(-2));
+        return ret;
+    }
+
+    private void assertSameValues(String msg, Int expected, Int actual) {
+        for (int a = 0; a < ASSIGNMENTS; a++) {
+            assertEquals(msg + " @ " + a, eval(expected, a), eval(actual, a));
+        }
+    }
+
+    private void assertSameValues(String msg, BooleanValue expected, BooleanValue actual) {
+        assertEquals(msg, table(expected), table(actual));
+    }
+
+    @Test
+    public void sumsAreCounters() {
+        final BooleanFactory counters = factory(Options.IntEncoding.UNARY_COUNTERS, 4);
+        final BooleanFactory binary = factory(Options.IntEncoding.TWOSCOMPLEMENT, 4);
+        assertTrue(counters.sum(vars(counters, 1, VARS)) instanceof UnaryCounterInt);
+        assertTrue(binary.sum(vars(binary, 1, VARS)) instanceof TwosComplementInt);
+        // a count that could overflow is computed in two's complement
+        final BooleanFactory narrow = factory(Options.IntEncoding.UNARY_COUNTERS, 3);
+        assertTrue(narrow.sum(vars(narrow, 1, VARS)) instanceof TwosComplementInt);
+    }
+
+    @Test
+    public void valuesMatchTwosComplement() {
+        for (int bitwidth : BITWIDTHS) {
+            final List<Int> expected = ints(factory(Options.IntEncoding.TWOSCOMPLEMENT, bitwidth));
+            final List<Int> actual = ints(factory(Options.IntEncoding.UNARY_COUNTERS, bitwidth));
+            for (int i = 0; i < expected.size(); i++) {
+                assertSameValues("int " + i + " @ " + bitwidth, expected.get(i), actual.get(i));
+            }
+        }
+    }
+
+    @Test
+    public void comparisonsMatchTwosComplement() {
+        for (int bitwidth : BITWIDTHS) {
+            final BooleanFactory binary = factory(Options.IntEncoding.TWOSCOMPLEMENT, bitwidth);
+            final BooleanFactory counters = factory(Options.IntEncoding.UNARY_COUNTERS, bitwidth);
+            final List<Int> expected = ints(binary), actual = ints(counters);
+            for (int c = -5; c <= 5; c++) {
+                expected.add(binary.integer(c));
+                actual.add(counters.integer(c));
+            }
+            for (int i = 0; i < expected.size(); i++) {
+                for (int j = 0; j < expected.size(); j++) {
+                    final Int e0 = expected.get(i), e1 = expected.get(j), a0 = actual.get(i), a1 = actual.get(j);
+                    final String msg = i + " ? " + j + " @ " + bitwidth;
+                    assertSameValues(msg + " eq", e0.eq(e1), a0.eq(a1));
+                    assertSameValues(msg + " lt", e0.lt(e1), a0.lt(a1));
+                    assertSameValues(msg + " lte", e0.lte(e1), a0.lte(a1));
+                    assertSameValues(msg + " gt", e0.gt(e1), a0.gt(a1));
+                    assertSameValues(msg + " gte", e0.gte(e1), a0.gte(a1));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void arithmeticMatchesTwosComplement() {
+        final BooleanFactory binary = factory(Options.IntEncoding.TWOSCOMPLEMENT, 4);
+        final BooleanFactory counters = factory(Options.IntEncoding.UNARY_COUNTERS, 4);
+        final List<Int> expected = ints(binary), actual = ints(counters);
+        for (int i = 0; i < expected.size(); i++) {
+            for (int j = 0; j < expected.size(); j++) {
+                final Int e0 = expected.get(i), e1 = expected.get(j), a0 = actual.get(i), a1 = actual.get(j);
+                final String msg = i + " ? " + j;
+                assertSameValues(msg + " plus", e0.plus(e1), a0.plus(a1));
+                assertSameValues(msg + " minus", e0.minus(e1), a0.minus(a1));
+                assertSameValues(msg + " multiply", e0.multiply(e1), a0.multiply(a1));
+                assertSameValues(msg + " divide", e0.divide(e1), a0.divide(a1));
+                assertSameValues(msg + " xor", e0.xor(e1), a0.xor(a1));
+                assertSameValues(msg + " shl", e0.shl(e1), a0.shl(a1));
+                assertSameValues(msg + " choice", e0.choice(binary.variable(VARS), e1),
+                        a0.choice(counters.variable(VARS), a1));
+            }
+            assertSameValues(i + " negate", expected.get(i).negate(), actual.get(i).negate());
+            assertSameValues(i + " abs", expected.get(i).abs(), actual.get(i).abs());
+        }
+    }
+
+    @Test
+    public void constantsAreFolded() {
+        final BooleanFactory counters = factory(Options.IntEncoding.UNARY_COUNTERS, 3);
+        final Int count = counters.sum(vars(counters, 1, 4)).choice(BooleanConstant.FALSE, counters.integer(0));
+        assertTrue(count.isConstant());
+        assertEquals(0, count.value());
+        final Int wrapped = counters.integer(5, BooleanConstant.TRUE);
+        assertTrue(wrapped.isConstant());
+        assertEquals(-3, wrapped.value());
+    }
+
+    @Test
+    public void tighteningBoundsBuildsNoGates() {
+        final BooleanFactory f = factory(Options.IntEncoding.UNARY_COUNTERS, 8);
+        final Int count = f.sum(vars(f, 1, VARS));
+        count.lt(f.integer(VARS));
+        final int gates = f.maxFormula();
+        for (int c = -1; c <= VARS + 1; c++) {
+            final Int rebuilt = f.sum(vars(f, 1, VARS));
+            final BooleanValue lt = rebuilt.lt(f.integer(c)), gte = rebuilt.gte(f.integer(c));
+            assertSame(lt, gte.negation());
+            assertSame(lt, count.lt(f.integer(c)));
+        }
+        assertEquals(gates, f.maxFormula());
+    }
+
+    @Test
+    public void solutionsMatchTwosComplement() {
+        final Relation a = Relation.unary("A"), b = Relation.unary("B");
+        final List<String> atoms = new ArrayList<String>();
+        for (int i = 0; i < 6; i++) {
+            atoms.add("n" + i);
+        }
+        final Universe universe = new Universe(atoms);
+        final TupleFactory t = universe.factory();
+        final Bounds bounds = new Bounds(universe);
+        bounds.bound(a, t.allOf(1));
+        bounds.bound(b, t.allOf(1));
+        final IntExpression objective = IntExpression.plus(a.count(), b.count());
+        final Formula[] formulas = {
+            objective.gt(IntConstant.constant(9)),
+            objective.gt(IntConstant.constant(7)).and(a.intersection(b).no()),
+            objective.eq(IntConstant.constant(12)),
+            a.count().lt(b.count()).and(objective.gte(IntConstant.constant(11))),
+            IntConstant.constant(3).gt(a.count()).and(a.count().gt(b.count()))
+        };
+        for (Formula formula : formulas) {
+            for (int bitwidth : new int[] { 4, 5 }) {
+                final Solver solver = new Solver();
+                solver.options().setBitwidth(bitwidth);
+                final Solution expected = solver.solve(formula, bounds);
+                solver.options().setIntEncoding(Options.IntEncoding.UNARY_COUNTERS);
+                final Solution actual = solver.solve(formula, bounds);
+                assertEquals(formula + " @ " + bitwidth, expected.sat(), actual.sat());
+            }
+        }
+    }
+}
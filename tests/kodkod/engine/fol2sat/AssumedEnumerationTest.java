@@ -0,0 +1,96 @@
+package kodkod.engine.fol2sat;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.List;
+
+import kodkod.ast.Formula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.Relation;
+import kodkod.engine.IncrementalSolver;
+import kodkod.engine.Solution;
+import kodkod.engine.config.Options;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+@RunWith(JUnit4.class)
+public class AssumedEnumerationTest {
+
+    Universe universe;
+    TupleFactory factory;
+    Options options;
+    Relation node, pick;
+
+    @Before
+    public void setUp() {
+        universe = new Universe("n0", "n1", "n2", "n3");
+        factory = universe.factory();
+        options = new Options();
+        options.setSolver(SATFactory.DefaultSAT4J);
+        node = Relation.unary("node");
+        pick = Relation.unary("pick");
+    }
+
+    private Bounds base() {
+        final Bounds b = new Bounds(universe);
+        b.boundExactly(node, factory.allOf(1));
+        b.bound(pick, factory.allOf(1));
+        return b;
+    }
+
+    private Formula picks(int count) {
+        return pick.count().eq(IntConstant.constant(count));
+    }
+
+    // returns the solutions, the last of which must be the only unsatisfiable one
+    private List<Solution> enumerate(IncrementalSolver solver, Formula assumed) {
+        final List<Solution> solutions = new ArrayList<Solution>();
+        for (Iterator<Solution> sols = solver.solveAllAssuming(Collections.singletonList(assumed), new Bounds(universe)); sols.hasNext(); ) {
+            solutions.add(sols.next());
+        }
+        for (int i = 0; i < solutions.size() - 1; i++) {
+            assertTrue(solutions.get(i).sat());
+        }
+        assertFalse(solutions.get(solutions.size() - 1).sat());
+        return solutions;
+    }
+
+    @Test
+    public void assumedFormulasAndBlockingClausesAreRetracted() {
+        options.setSymmetryBreaking(0);
+        final IncrementalSolver solver = IncrementalSolver.solver(options);
+        assertTrue(solver.solve(pick.some(), base()).sat());
+        assertEquals(5, enumerate(solver, picks(1)).size());
+        assertEquals(7, enumerate(solver, picks(2)).size());
+        // the solutions blocked by the first enumeration are available again
+        assertEquals(5, enumerate(solver, picks(1)).size());
+        assertTrue(solver.solveAssuming(picks(3), new Bounds(universe)).sat());
+        assertTrue(solver.usable());
+    }
+
+    @Test
+    public void isomorphicSolutionsAreSkipped() {
+        final IncrementalSolver solver = IncrementalSolver.solver(options);
+        assertTrue(solver.solve(pick.some(), base()).sat());
+        assertEquals(2, enumerate(solver, picks(2)).size());
+    }
+
+    @Test
+    public void inconsistentAssumptionsLeaveTheSolverUsable() {
+        final IncrementalSolver solver = IncrementalSolver.solver(options);
+        final Formula none = pick.no();
+        assertTrue(solver.solve(pick.some(), base()).sat());
+        assertEquals(1, enumerate(solver, none).size());
+        assertEquals(Collections.singleton(none), solver.failedAssumptions());
+        assertTrue(solver.usable());
+        assertEquals(2, enumerate(solver, picks(4)).size());
+    }
+}
@@ -0,0 +1,103 @@
+package kodkod.engine.fol2sat;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.Evaluator;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.Statistics;
+import kodkod.engine.config.Options;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+@RunWith(JUnit4.class)
+public class FOL2BoolCacheTest {
+
+    static final int SIZE = 6;
+
+    Relation node, r, s;
+    Variable x, y;
+    Bounds bounds;
+
+    @Before
+    public void setUp() {
+        final String[] atoms = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            atoms[i] = "n" + i;
+        }
+        final Universe universe = new Universe((Object[]) atoms);
+        final TupleFactory factory = universe.factory();
+        node = Relation.unary("node");
+        r = Relation.binary("r");
+        s = Relation.binary("s");
+        x = Variable.unary("x");
+        y = Variable.unary("y");
+        bounds = new Bounds(universe);
+        bounds.boundExactly(node, factory.allOf(1));
+        bounds.bound(r, factory.allOf(2));
+        bounds.bound(s, factory.allOf(2));
+    }
+
+    // all x, y: node | (q implies some x.s) and (q or x = y), where q = some y.r is shared
+    private Formula shared() {
+        final Formula q = y.join(r).some();
+        return q.implies(x.join(s).some()).and(q.or(x.eq(y))).forAll(x.oneOf(node).and(y.oneOf(node)));
+    }
+
+    private Solver solver() {
+        final Solver solver = new Solver();
+        solver.options().setSolver(SATFactory.DefaultSAT4J);
+        return solver;
+    }
+
+    @Test
+    public void alternatingBindingsAreMemoized() {
+        final Statistics stats = solver().solve(shared(), bounds).stats();
+        // q is translated once for each binding of y, rather than once for each binding of x and y
+        assertTrue(stats.memoMisses() < SIZE * SIZE);
+        assertTrue(stats.memoHits() > SIZE * SIZE);
+    }
+
+    @Test
+    public void memoizedTranslationsAreSound() {
+        final Formula formula = shared().and(r.some()).and(s.no().not());
+        int count = 0;
+        for (Iterator<Solution> sols = solver().solveAll(formula, bounds); sols.hasNext() && count < 20; ) {
+            final Solution sol = sols.next();
+            if (!sol.sat()) break;
+            assertTrue(new Evaluator(sol.instance()).evaluate(formula));
+            count++;
+        }
+        assertEquals(20, count);
+    }
+
+    @Test
+    public void parallelTranslationsAreCounted() {
+        final Formula formula = shared().and(shared());
+        final Solver solver = solver();
+        final Statistics sequential = solver.solve(formula, bounds).stats();
+        solver.options().setTranslationThreads(2);
+        final Statistics parallel = solver.solve(formula, bounds).stats();
+        assertTrue(sequential.memoHits() > 0);
+        assertTrue(parallel.memoHits() > 0);
+    }
+
+    @Test
+    public void statisticsReportTheCache() {
+        final Options options = new Options();
+        options.setSolver(SATFactory.DefaultSAT4J);
+        final Translation.Whole transl = Translator.translate(shared(), bounds, options);
+        assertTrue(transl.memoHits() > 0);
+        assertTrue(transl.memoMisses() > 0);
+    }
+}
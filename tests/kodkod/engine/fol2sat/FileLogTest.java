@@ -0,0 +1,136 @@
+package kodkod.engine.fol2sat;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Node;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.config.Options;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.IntTreeSet;
+
+@RunWith(JUnit4.class)
+public class FileLogTest {
+
+    TranslationLog log;
+
+    @Before
+    public void setUp() {
+        final Universe universe = new Universe("a0", "a1", "a2", "a3");
+        final TupleFactory factory = universe.factory();
+        final Relation r = Relation.binary("r");
+        final Relation s = Relation.unary("s");
+        final Bounds bounds = new Bounds(universe);
+        bounds.bound(r, factory.allOf(2));
+        bounds.bound(s, factory.allOf(1));
+
+        final Variable x = Variable.unary("x"), y = Variable.unary("y");
+        final Formula formula = Formula.and(
+                x.join(r).some().forAll(x.oneOf(s)),
+                x.product(y).in(r).implies(y.product(x).in(r)).forAll(x.oneOf(s).and(y.oneOf(s))),
+                s.some(),
+                r.in(s.product(s)));
+
+        final Options options = new Options();
+        options.setSolver(SATFactory.DefaultSAT4J);
+        options.setLogTranslation(2);
+        log = Translator.translate(formula, bounds, options).log();
+    }
+
+    private static String describe(TranslationRecord record) {
+        return record.translated() + " " + record.literal() + " " + record.env();
+    }
+
+    private static List<String> replay(TranslationLog log, RecordFilter filter) {
+        final List<String> ret = new ArrayList<String>();
+        for (Iterator<TranslationRecord> itr = log.replay(filter); itr.hasNext();) {
+            ret.add(describe(itr.next()));
+        }
+        return ret;
+    }
+
+    @Test
+    public void variableFilterMatchesFullReplay() {
+        final IntSet all = new IntTreeSet();
+        for (Iterator<TranslationRecord> itr = log.replay(); itr.hasNext();) {
+            all.add(StrictMath.abs(itr.next().literal()));
+        }
+        assertTrue(all.size() > 2);
+
+        final IntSet vars = new IntTreeSet();
+        int i = 0;
+        for (int var : all.toArray()) {
+            if (i++ % 2 == 0) {
+                vars.add(var);
+            }
+        }
+        final List<String> expected = new ArrayList<String>();
+        for (Iterator<TranslationRecord> itr = log.replay(); itr.hasNext();) {
+            final TranslationRecord record = itr.next();
+            if (vars.contains(StrictMath.abs(record.literal()))) {
+                expected.add(describe(record));
+            }
+        }
+        assertFalse(expected.isEmpty());
+        assertEquals(expected, replay(log, new VariableFilter(vars)));
+        assertEquals(replay(log, RecordFilter.ALL), replay(log, new VariableFilter(all)));
+    }
+
+    @Test
+    public void variableFilterSubclassesRestrictResults() {
+        final IntSet all = new IntTreeSet();
+        for (Iterator<TranslationRecord> itr = log.replay(); itr.hasNext();) {
+            all.add(StrictMath.abs(itr.next().literal()));
+        }
+        final RecordFilter closed = new VariableFilter(all) {
+            public boolean accept(Node node, Formula translated, int literal, Map<Variable, TupleSet> env) {
+                return env.isEmpty() && super.accept(node, translated, literal, env);
+            }
+        };
+        final List<String> expected = new ArrayList<String>();
+        for (Iterator<TranslationRecord> itr = log.replay(); itr.hasNext();) {
+            final TranslationRecord record = itr.next();
+            if (record.env().isEmpty()) {
+                expected.add(describe(record));
+            }
+        }
+        assertEquals(expected, replay(log, closed));
+    }
+
+    @Test
+    public void recordsOfDifferentLengthsReplayInPlace() {
+        // records take 8 bytes plus 4 per free variable, so a misread offset garbles the rest of the log
+        final boolean[] lengths = new boolean[3];
+        for (Iterator<TranslationRecord> itr = log.replay(); itr.hasNext();) {
+            final TranslationRecord record = itr.next();
+            assertTrue(record.literal() != 0);
+            for (TupleSet value : record.env().values()) {
+                assertEquals(1, value.size());
+                assertEquals(1, value.arity());
+            }
+            lengths[record.env().size()] = true;
+        }
+        assertTrue(lengths[0] && lengths[1] && lengths[2]);
+    }
+
+    @Test
+    public void unknownVariablesMatchNothing() {
+        final IntSet vars = new IntTreeSet();
+        vars.add(Integer.MAX_VALUE - 1);
+        assertFalse(log.replay(new VariableFilter(vars)).hasNext());
+    }
+}
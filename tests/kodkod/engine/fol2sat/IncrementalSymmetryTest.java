@@ -0,0 +1,116 @@
+package kodkod.engine.fol2sat;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assert.*;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.engine.IncrementalSolver;
+import kodkod.engine.Solution;
+import kodkod.engine.config.Options;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+
+@RunWith(JUnit4.class)
+public class IncrementalSymmetryTest {
+
+    Universe universe;
+    TupleFactory factory;
+    Options options;
+    Relation node, pick;
+
+    @Before
+    public void setUp() {
+        universe = new Universe("n0", "n1", "n2", "n3", "n4");
+        factory = universe.factory();
+        options = new Options();
+        options.setSolver(SATFactory.DefaultSAT4J);
+        node = Relation.unary("node");
+        pick = Relation.unary("pick");
+    }
+
+    // All atoms are interchangeable, and exactly one of them is picked.
+    private Bounds base() {
+        final Bounds b = new Bounds(universe);
+        b.boundExactly(node, factory.allOf(1));
+        b.bound(pick, factory.allOf(1));
+        return b;
+    }
+
+    private Bounds single(Relation r, String atom) {
+        final Bounds b = new Bounds(universe);
+        b.boundExactly(r, factory.setOf(atom));
+        return b;
+    }
+
+    @Test
+    public void symmetryBreakingPredicateIsGuarded() {
+        final Translation.Incremental transl = Translator.translateIncremental(pick.one(), base(), options);
+        assertTrue(transl.sbpGuard() != 0);
+        assertEquals(1, transl.sbpSymmetries().size());
+        assertTrue(transl.symmetries().isEmpty());
+        assertTrue(transl.cnf().solve(new int[] { transl.sbpGuard() }));
+    }
+
+    @Test
+    public void refinedClassesGetNewPredicate() {
+        final Translation.Incremental transl = Translator.translateIncremental(pick.one(), base(), options);
+        final int guard = transl.sbpGuard();
+        final Relation first = Relation.unary("first");
+        final Translation.Incremental updated = Translator.translateIncremental(pick.in(first), single(first, "n0"), transl);
+        assertTrue(updated.sbpGuard() != guard);
+        assertEquals(2, updated.sbpSymmetries().size());
+        assertTrue(updated.sbpSymmetries().contains(factory.setOf("n1", "n2", "n3", "n4").indexView()));
+        assertFalse(updated.cnf().solve(new int[] { guard }));
+        assertTrue(updated.cnf().solve(new int[] { updated.sbpGuard() }));
+    }
+
+    @Test
+    public void splittingClassesPreservesSatisfiability() {
+        // whichever end of the class the first predicate favors, the split must not lose models
+        for (String atom : new String[] { "n0", "n4" }) {
+            final IncrementalSolver solver = IncrementalSolver.solver(options);
+            assertTrue(solver.solve(pick.one(), base()).sat());
+            final Relation chosen = Relation.unary("chosen");
+            final Solution sol = solver.solve(pick.eq(chosen), single(chosen, atom));
+            assertTrue(sol.sat());
+            final TupleSet picked = sol.instance().tuples(pick);
+            assertEquals(factory.setOf(atom), picked);
+            solver.free();
+        }
+    }
+
+    @Test
+    public void splittingClassesUnderAssumptionsPreservesSatisfiability() {
+        for (String atom : new String[] { "n0", "n4" }) {
+            final IncrementalSolver solver = IncrementalSolver.solver(options);
+            assertTrue(solver.solve(pick.one(), base()).sat());
+            final Relation chosen = Relation.unary("chosen");
+            final Solution sol = solver.solveAssuming(pick.eq(chosen), single(chosen, atom));
+            assertTrue(sol.sat());
+            assertEquals(factory.setOf(atom), sol.instance().tuples(pick));
+            final Relation other = Relation.unary("other");
+            assertFalse(solver.solveAssuming(pick.eq(other).and(pick.eq(chosen)), single(other, atom.equals("n0") ? "n4" : "n0")).sat());
+            assertTrue(solver.usable());
+            solver.free();
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void totalOrdersMustNotBeSplit() {
+        final Relation next = Relation.binary("next"), first = Relation.unary("first"), last = Relation.unary("last");
+        final Bounds b = base();
+        b.bound(next, factory.allOf(2));
+        b.bound(first, factory.allOf(1));
+        b.bound(last, factory.allOf(1));
+        final Translation.Incremental transl = Translator.translateIncremental(
+                Formula.and(next.totalOrder(node, first, last), pick.one()), b, options);
+        final Relation chosen = Relation.unary("chosen");
+        Translator.translateIncremental(pick.eq(chosen), single(chosen, "n2"), transl);
+    }
+}
@@ -0,0 +1,182 @@
+package kodkod.engine.fol2sat;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+import java.util.List;
+
+import kodkod.ast.Formula;
+import kodkod.ast.QuantifiedFormula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.Evaluator;
+import kodkod.engine.IncrementalSolver;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.config.Options;
+import kodkod.engine.config.Options.Instantiation;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+@RunWith(JUnit4.class)
+public class LazyInstantiationTest {
+
+    static final int SIZE = 8;
+
+    TupleFactory factory;
+    Relation node, edge, marked;
+    Variable x, y, z;
+    Bounds bounds;
+
+    @Before
+    public void setUp() {
+        final String[] atoms = new String[SIZE];
+        for (int i = 0; i < SIZE; i++) {
+            atoms[i] = "n" + i;
+        }
+        final Universe universe = new Universe((Object[]) atoms);
+        factory = universe.factory();
+        node = Relation.unary("node");
+        edge = Relation.binary("edge");
+        marked = Relation.unary("marked");
+        x = Variable.unary("x");
+        y = Variable.unary("y");
+        z = Variable.unary("z");
+        bounds = new Bounds(universe);
+        bounds.boundExactly(node, factory.allOf(1));
+        bounds.bound(edge, factory.allOf(2));
+        bounds.bound(marked, factory.allOf(1));
+    }
+
+    private Formula transitive() {
+        return x.product(y).in(edge).and(y.product(z).in(edge)).implies(x.product(z).in(edge))
+                .forAll(x.oneOf(node).and(y.oneOf(node)).and(z.oneOf(node)));
+    }
+
+    private Solution solve(Formula formula, Instantiation instantiation) {
+        final Solver solver = new Solver();
+        solver.options().setSolver(SATFactory.DefaultSAT4J);
+        solver.options().setInstantiation(instantiation);
+        return solver.solve(formula, bounds);
+    }
+
+    @Test
+    public void lazySolutionsSatisfyTheFormula() {
+        // a transitive relation with a cycle through three nodes, which forces some instances to matter
+        final Formula cycle = x.product(y).in(edge).and(y.product(z).in(edge)).and(z.product(x).in(edge))
+                .and(x.eq(y).not()).and(y.eq(z).not()).and(x.eq(z).not())
+                .forSome(x.oneOf(node).and(y.oneOf(node)).and(z.oneOf(node)));
+        final Formula formula = transitive().and(cycle);
+        final Solution eager = solve(formula, Instantiation.EAGER), lazy = solve(formula, Instantiation.LAZY);
+        assertTrue(eager.sat());
+        assertTrue(lazy.sat());
+        assertTrue(new Evaluator(lazy.instance()).evaluate(formula));
+        assertTrue(lazy.stats().variables() < eager.stats().variables());
+    }
+
+    @Test
+    public void lazyInstantiationPreservesUnsatisfiability() {
+        // an irreflexive, transitive relation with a cycle
+        final Formula formula = transitive()
+                .and(x.product(x).in(edge).not().forAll(x.oneOf(node)))
+                .and(x.join(edge).some().forAll(x.oneOf(node)));
+        assertFalse(solve(formula, Instantiation.EAGER).sat());
+        assertFalse(solve(formula, Instantiation.LAZY).sat());
+    }
+
+    @Test
+    public void trivialTranslationsAreInstantiated() {
+        final Formula formula = x.in(marked).forAll(x.oneOf(node));
+        final Solution lazy = solve(formula, Instantiation.LAZY);
+        assertTrue(lazy.sat());
+        assertEquals(SIZE, lazy.instance().tuples(marked).size());
+    }
+
+    @Test
+    public void lazyFormulasConstrainLaterSolutions() {
+        final Options options = new Options();
+        options.setSolver(SATFactory.DefaultSAT4J);
+        options.setInstantiation(Instantiation.LAZY);
+        final IncrementalSolver solver = IncrementalSolver.solver(options);
+        final Formula marking = x.in(marked).implies(x.join(edge).in(marked)).forAll(x.oneOf(node));
+        assertTrue(solver.solve(marking.and(marked.some()), bounds).sat());
+        final Relation root = Relation.unary("root");
+        final Bounds more = new Bounds(bounds.universe());
+        more.bound(root, factory.allOf(1));
+        final Formula reach = root.one().and(root.in(marked)).and(root.join(edge).some());
+        final Solution sol = solver.solve(reach, more);
+        assertTrue(sol.sat());
+        assertTrue(new Evaluator(sol.instance()).evaluate(marking.and(reach)));
+        solver.free();
+    }
+
+    @Test
+    public void counterexamplesAreViolatedBindings() {
+        final Instance instance = new Instance(bounds.universe());
+        instance.add(node, factory.allOf(1));
+        instance.add(marked, factory.setOf("n1", "n3"));
+        final QuantifiedFormula formula = (QuantifiedFormula) x.in(marked).forAll(x.oneOf(node));
+        final List<int[]> violated = Translator.counterexamples(formula, instance, new Options(), SIZE);
+        assertEquals(SIZE - 2, violated.size());
+        assertEquals(0, violated.get(0)[0]);
+        assertEquals(2, violated.get(1)[0]);
+        assertEquals(3, Translator.counterexamples(formula, instance, new Options(), 3).size());
+    }
+
+    @Test
+    public void counterexamplesFallBackToCircuitsForWideTuples() {
+        // 1300^3 > Integer.MAX_VALUE, so the ternary products cannot be evaluated directly
+        final String[] atoms = new String[1300];
+        for (int i = 0; i < atoms.length; i++) {
+            atoms[i] = "n" + i;
+        }
+        final Universe universe = new Universe((Object[]) atoms);
+        final TupleFactory f = universe.factory();
+        final Instance instance = new Instance(universe);
+        instance.add(node, f.allOf(1));
+        instance.add(marked, f.setOf("n0", "n2"));
+        final QuantifiedFormula formula = (QuantifiedFormula) x.product(x).product(x)
+                .in(marked.product(marked).product(marked)).forAll(x.oneOf(node));
+        final List<int[]> violated = Translator.counterexamples(formula, instance, new Options(), 3);
+        assertEquals(3, violated.size());
+        assertEquals(1, violated.get(0)[0]);
+        assertEquals(3, violated.get(1)[0]);
+        assertEquals(4, violated.get(2)[0]);
+        assertEquals(atoms.length - 2, Translator.counterexamples(formula, instance, new Options(), atoms.length).size());
+    }
+
+    @Test
+    public void solveAllInstantiatesEagerly() {
+        final Bounds marking = new Bounds(bounds.universe());
+        marking.boundExactly(node, factory.allOf(1));
+        marking.bound(marked, factory.allOf(1));
+        // either every node is marked or none is
+        final Formula formula = x.in(marked).implies(y.in(marked)).forAll(x.oneOf(node).and(y.oneOf(node)));
+        final Solver solver = new Solver();
+        solver.options().setSolver(SATFactory.DefaultSAT4J);
+        solver.options().setInstantiation(Instantiation.LAZY);
+        int solutions = 0;
+        for (Iterator<Solution> sols = solver.solveAll(formula, marking); sols.hasNext(); ) {
+            final Solution sol = sols.next();
+            if (sol.sat()) {
+                solutions++;
+                assertTrue(new Evaluator(sol.instance()).evaluate(formula));
+            }
+        }
+        assertEquals(2, solutions);
+    }
+
+    @Test
+    public void eagerInstantiationIsTheDefault() {
+        assertEquals(Instantiation.EAGER, new Options().instantiation());
+        final Options options = new Options();
+        options.setInstantiation(Instantiation.LAZY);
+        assertEquals(Instantiation.LAZY, options.clone().instantiation());
+    }
+}
@@ -0,0 +1,144 @@
+package kodkod.engine.fol2sat;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.Relation;
+import kodkod.engine.CapacityExceededException;
+import kodkod.engine.Evaluator;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.bool.BooleanMatrix;
+import kodkod.engine.bool.Dimensions;
+import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
+import kodkod.instance.Tuple;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+import kodkod.util.ints.LongTreeSet;
+
+@RunWith(JUnit4.class)
+public class LongIndexTest {
+
+    // 1300^3 > Integer.MAX_VALUE, so ternary tuples need long indices
+    private static final int ATOMS = 1300;
+
+    Universe universe;
+    TupleFactory factory;
+
+    @Before
+    public void setUp() {
+        final List<String> atoms = new ArrayList<String>(ATOMS);
+        for (int i = 0; i < ATOMS; i++) {
+            atoms.add("n" + i);
+        }
+        universe = new Universe(atoms);
+        factory = universe.factory();
+    }
+
+    private Tuple tuple(int a0, int a1, int a2) {
+        return factory.tuple("n" + a0, "n" + a1, "n" + a2);
+    }
+
+    @Test
+    public void tuplesHaveLongIndices() {
+        final Tuple last = tuple(ATOMS - 1, ATOMS - 1, ATOMS - 1);
+        assertEquals((long) ATOMS * ATOMS * ATOMS - 1, last.longIndex());
+        assertEquals(last, factory.tuple(3, last.longIndex()));
+        assertEquals("n" + (ATOMS - 1), last.atom(1));
+        try {
+            last.index();
+            fail();
+        } catch (CapacityExceededException e) {
+            // expected
+        }
+        final Tuple first = tuple(0, 0, 1);
+        assertEquals(1, first.index());
+        assertEquals(first, factory.tuple(3, 1L));
+    }
+
+    @Test
+    public void tupleSetsHaveLongIndices() {
+        final TupleSet set = factory.noneOf(3);
+        assertTrue(set.isLongIndexed());
+        set.add(tuple(1299, 5, 7));
+        set.add(tuple(2, 3, 4));
+        set.add(tuple(1299, 5, 7));
+        assertEquals(2, set.size());
+        assertTrue(set.contains(tuple(2, 3, 4)));
+        assertFalse(set.contains(tuple(4, 3, 2)));
+
+        final TupleSet heads = set.project(0);
+        assertFalse(heads.isLongIndexed());
+        assertEquals(factory.setOf("n2", "n1299"), heads);
+
+        final TupleSet product = factory.setOf("n0", "n1").product(factory.allOf(2));
+        assertTrue(product.isLongIndexed());
+        assertEquals(2L * ATOMS * ATOMS, product.longIndexView().size());
+        assertTrue(product.contains(tuple(1, 1299, 1299)));
+
+        final LongTreeSet indices = new LongTreeSet(set.longIndexView());
+        assertEquals(set, factory.setOf(3, indices));
+        set.remove(tuple(1299, 5, 7));
+        assertEquals(1, set.size());
+        assertFalse(set.equals(factory.setOf(3, indices)));
+        try {
+            set.indexView();
+            fail();
+        } catch (CapacityExceededException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void matricesHaveLongIndices() {
+        final Dimensions dims = Dimensions.square(ATOMS, 3);
+        assertTrue(dims.isLongIndexed());
+        assertEquals((long) ATOMS * ATOMS * ATOMS, dims.longCapacity());
+        assertFalse(Dimensions.square(ATOMS, 2).isLongIndexed());
+    }
+
+    @Test
+    public void solvesLongIndexedProblems() {
+        final Relation r = Relation.ternary("r"), s = Relation.unary("s");
+        final Bounds bounds = new Bounds(universe);
+        final TupleSet upper = factory.noneOf(3);
+        for (int i = 0; i < 10; i++) {
+            upper.add(tuple(ATOMS - 1 - i, i, ATOMS - 1));
+            upper.add(tuple(i, ATOMS - 1 - i, 0));
+        }
+        bounds.bound(r, factory.setOf(tuple(ATOMS - 1, 0, ATOMS - 1)), upper);
+        bounds.bound(s, factory.allOf(1));
+
+        final Expression heads = r.join(Expression.UNIV).join(Expression.UNIV);
+        final Formula formula = Formula.and(
+                r.join(s).join(s).some(),
+                heads.in(s),
+                r.join(Expression.UNIV).count().gte(IntConstant.constant(3)),
+                r.project(IntConstant.constant(2), IntConstant.constant(0)).some());
+
+        final Solver solver = new Solver();
+        final Solution sol = solver.solve(formula, bounds);
+        assertTrue(sol.sat());
+        final Instance instance = sol.instance();
+        final TupleSet rValue = instance.tuples(r);
+        assertTrue(rValue.isLongIndexed());
+        assertTrue(upper.containsAll(rValue));
+        assertTrue(rValue.contains(tuple(ATOMS - 1, 0, ATOMS - 1)));
+        assertTrue(new Evaluator(instance).evaluate(formula));
+        assertEquals(rValue, new Evaluator(instance).evaluate(r));
+
+        final BooleanMatrix m = Translator.evaluate(r, instance, solver.options());
+        assertEquals(rValue.size(), m.density());
+        assertEquals(rValue.longIndexView(), m.longDenseIndices());
+    }
+}
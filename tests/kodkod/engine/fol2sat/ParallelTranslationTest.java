@@ -0,0 +1,209 @@
+package kodkod.engine.fol2sat;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.Evaluator;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+@RunWith(JUnit4.class)
+public class ParallelTranslationTest {
+
+    Formula formula;
+    Bounds bounds;
+
+    // Pigeons nest in holes, one pigeon per hole, and are linked in an acyclic chain.
+    private void pigeonhole(int pigeons, int holes) {
+        final List<String> atoms = new ArrayList<String>();
+        for (int i = 0; i < pigeons; i++) {
+            atoms.add("p" + i);
+        }
+        for (int i = 0; i < holes; i++) {
+            atoms.add("h" + i);
+        }
+        final Universe universe = new Universe(atoms);
+        final TupleFactory factory = universe.factory();
+        final Relation pigeon = Relation.unary("Pigeon");
+        final Relation hole = Relation.unary("Hole");
+        final Relation nest = Relation.binary("nest");
+        final Relation next = Relation.binary("next");
+
+        bounds = new Bounds(universe);
+        bounds.boundExactly(pigeon, factory.range(factory.tuple("p0"), factory.tuple("p" + (pigeons - 1))));
+        bounds.boundExactly(hole, factory.range(factory.tuple("h0"), factory.tuple("h" + (holes - 1))));
+        bounds.bound(nest, bounds.upperBound(pigeon).product(bounds.upperBound(hole)));
+        bounds.bound(next, bounds.upperBound(pigeon).product(bounds.upperBound(pigeon)));
+
+        final Variable p = Variable.unary("p"), q = Variable.unary("q");
+        formula = Formula.and(
+                nest.function(pigeon, hole),
+                p.join(nest).intersection(q.join(nest)).no().forAll(p.oneOf(pigeon).and(q.oneOf(pigeon.difference(p)))),
+                p.join(next).lone().forAll(p.oneOf(pigeon)),
+                next.closure().intersection(Expression.IDEN).no());
+    }
+
+    private Solution solve(int threads) {
+        return solve(threads, 0);
+    }
+
+    private Solution solve(int threads, int grain) {
+        final Solver solver = new Solver();
+        solver.options().setSolver(SATFactory.DefaultSAT4J);
+        solver.options().setTranslationThreads(threads);
+        solver.options().setGroundingGrain(grain);
+        return solver.solve(formula, bounds);
+    }
+
+    @Test
+    public void parallelTranslationShouldFindModel() {
+        pigeonhole(5, 5);
+        final Solution solution = solve(4);
+        assertTrue(solution.sat());
+        assertTrue(new Evaluator(solution.instance()).evaluate(formula));
+    }
+
+    @Test
+    public void parallelTranslationShouldPreserveUnsatisfiability() {
+        pigeonhole(5, 4);
+        assertFalse(solve(1).sat());
+        assertFalse(solve(4).sat());
+    }
+
+    @Test
+    public void parallelTranslationShouldNotDependOnThreadCount() {
+        pigeonhole(6, 6);
+        final Solution one = solve(1), two = solve(2), eight = solve(8);
+        assertEquals(two.stats().primaryVariables(), eight.stats().primaryVariables());
+        assertEquals(two.stats().variables(), eight.stats().variables());
+        assertEquals(two.stats().clauses(), eight.stats().clauses());
+        // the sequential translation is the reference.  adopting the forked circuits may 
+        // simplify them differently, so only the primary variables and the solutions must agree.
+        assertEquals(one.stats().primaryVariables(), two.stats().primaryVariables());
+        assertEquals(one.sat(), two.sat());
+    }
+
+    @Test
+    public void parallelTranslationShouldFindTheSequentialSolutions() {
+        pigeonhole(4, 4);
+        final Set<String> sequential = solveAll(1, 0);
+        assertFalse(sequential.isEmpty());
+        assertEquals(sequential, solveAll(2, 0));
+        assertEquals(sequential, solveAll(4, 0));
+        assertEquals(sequential, solveAll(4, 1));
+    }
+
+    // returns the instances of all solutions, without symmetry breaking
+    private Set<String> solveAll(int threads, int grain) {
+        final Solver solver = new Solver();
+        solver.options().setSolver(SATFactory.DefaultSAT4J);
+        solver.options().setSymmetryBreaking(0);
+        solver.options().setTranslationThreads(threads);
+        solver.options().setGroundingGrain(grain);
+        final Set<String> instances = new HashSet<String>();
+        for (Iterator<Solution> sols = solver.solveAll(formula, bounds); sols.hasNext(); ) {
+            final Solution sol = sols.next();
+            if (sol.sat()) {
+                assertTrue(instances.add(sol.instance().relationTuples().toString()));
+            }
+        }
+        return instances;
+    }
+
+    @Test
+    public void splitGroundingShouldFindModel() {
+        pigeonhole(7, 7);
+        formula = formula.and(pigeonsHaveSuccessors());
+        final Solution solution = solve(4, 2);
+        assertTrue(solution.sat());
+        assertTrue(new Evaluator(solution.instance()).evaluate(formula));
+    }
+
+    @Test
+    public void splitGroundingShouldPreserveUnsatisfiability() {
+        pigeonhole(6, 5);
+        assertFalse(solve(1).sat());
+        assertFalse(solve(4, 1).sat());
+        assertFalse(solve(4, 4).sat());
+    }
+
+    @Test
+    public void splitGroundingShouldNotDependOnThreadCount() {
+        pigeonhole(7, 7);
+        final Solution two = solve(2, 3), eight = solve(8, 3);
+        assertEquals(two.stats().variables(), eight.stats().variables());
+        assertEquals(two.stats().clauses(), eight.stats().clauses());
+    }
+
+    @Test
+    public void splitGroundingShouldApplyToSingleQuantifiers() {
+        pigeonhole(7, 7);
+        formula = pigeonsHaveSuccessors();
+        final Solution split = solve(4, 2);
+        assertTrue(split.sat());
+        assertTrue(new Evaluator(split.instance()).evaluate(formula));
+        formula = pigeonsHaveFreshSuccessors();
+        final Solution unsplit = solve(1);
+        assertFalse(unsplit.sat());
+        assertEquals(unsplit.sat(), solve(4, 2).sat());
+    }
+
+    // some pigeon has a successor, which is itself followed by another pigeon
+    private Formula pigeonsHaveSuccessors() {
+        final Relation pigeon = relation("Pigeon");
+        final Relation next = relation("next");
+        final Variable p = Variable.unary("p");
+        return p.join(next).join(next).some().forSome(p.oneOf(pigeon));
+    }
+
+    // every pigeon has a successor among the pigeons and cannot reach itself, which finitely many pigeons cannot satisfy
+    private Formula pigeonsHaveFreshSuccessors() {
+        final Relation pigeon = relation("Pigeon");
+        final Relation next = relation("next");
+        final Variable p = Variable.unary("p");
+        return p.join(next).intersection(pigeon).some().and(p.in(p.join(next.closure())).not()).forAll(p.oneOf(pigeon));
+    }
+
+    private Relation relation(String name) {
+        for (Relation r : bounds.relations()) {
+            if (r.name().equals(name)) return r;
+        }
+        throw new IllegalArgumentException(name);
+    }
+
+    @Test
+    public void negativeGrainShouldThrowException() {
+        try {
+            new Solver().options().setGroundingGrain(-1);
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void nonPositiveThreadCountShouldThrowException() {
+        try {
+            new Solver().options().setTranslationThreads(0);
+
+            // Shouldn't reach here.
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+}
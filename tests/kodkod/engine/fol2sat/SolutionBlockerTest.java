@@ -0,0 +1,135 @@
+package kodkod.engine.fol2sat;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.engine.Evaluator;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.config.Options.Blocking;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.Instance;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+@RunWith(JUnit4.class)
+public class SolutionBlockerTest {
+
+    Universe universe;
+    TupleFactory factory;
+    Relation r, s;
+    Bounds bounds;
+
+    @Before
+    public void setUp() {
+        universe = new Universe("a0", "a1", "a2");
+        factory = universe.factory();
+        r = Relation.unary("r");
+        s = Relation.unary("s");
+        bounds = new Bounds(universe);
+        bounds.bound(r, factory.allOf(1));
+        bounds.bound(s, factory.allOf(1));
+    }
+
+    private List<Instance> enumerate(Formula formula, Blocking blocking) {
+        return enumerate(formula, blocking, null);
+    }
+
+    private List<Instance> enumerate(Formula formula, Blocking blocking, TranslationCache cache) {
+        final Solver solver = new Solver();
+        solver.options().setSolver(SATFactory.DefaultSAT4J);
+        solver.options().setSymmetryBreaking(0);
+        solver.options().setBlocking(blocking);
+        solver.options().setTranslationCache(cache);
+        final List<Instance> instances = new ArrayList<Instance>();
+        for (Iterator<Solution> sols = solver.solveAll(formula, bounds); sols.hasNext(); ) {
+            final Solution sol = sols.next();
+            if (sol.sat()) instances.add(sol.instance());
+        }
+        return instances;
+    }
+
+    @Test
+    public void modelsAreAllEnumerated() {
+        // 7 non-empty values of r, with any value of s
+        assertEquals(56, enumerate(r.some().and(s.in(s)), Blocking.MODEL).size());
+    }
+
+    @Test
+    public void implicantsSkipDontCares() {
+        final Formula formula = r.some().and(s.in(s));
+        final List<Instance> instances = enumerate(formula, Blocking.IMPLICANT);
+        // s is never needed, and one tuple of r is enough
+        assertEquals(3, instances.size());
+        for (Instance instance : instances) {
+            assertTrue(new Evaluator(instance).evaluate(formula));
+        }
+    }
+
+    @Test
+    public void implicantsCoverAllSolutions() {
+        // each solution must agree with r0 on the single tuple of r; no solution may be lost
+        final Formula formula = r.one().and(s.eq(r).not());
+        final List<Instance> instances = enumerate(formula, Blocking.IMPLICANT);
+        final List<Instance> models = enumerate(formula, Blocking.MODEL);
+        assertEquals(21, models.size());
+        assertTrue(instances.size() >= 3 && instances.size() < models.size());
+        for (Instance model : models) {
+            boolean covered = false;
+            for (Instance instance : instances) {
+                covered |= model.tuples(r).equals(instance.tuples(r));
+            }
+            assertTrue(covered);
+        }
+    }
+
+    @Test
+    public void orbitsSkipIsomorphicSolutions() {
+        assertEquals(3, enumerate(r.one(), Blocking.MODEL).size());
+        assertEquals(3, enumerate(r.one(), Blocking.IMPLICANT).size());
+        assertEquals(1, enumerate(r.one(), Blocking.ORBIT).size());
+        final Formula subset = r.some().and(r.in(s));
+        final int orbits = enumerate(subset, Blocking.ORBIT).size();
+        assertTrue(orbits > 0 && orbits < enumerate(subset, Blocking.IMPLICANT).size());
+    }
+
+    @Test
+    public void unsatisfiableFormulasHaveNoSolutions() {
+        for (Blocking blocking : Blocking.values()) {
+            assertTrue(enumerate(r.some().and(r.no()), blocking).isEmpty());
+        }
+    }
+
+    @Test
+    public void implicantsSurviveCacheMisses() throws IOException {
+        final File directory = Files.createTempDirectory("kodkod-cache").toFile();
+        try {
+            final TranslationCache cache = new TranslationCache(8, directory);
+            final Formula formula = r.some().and(s.in(s));
+            // the first translation is a miss, and its circuit is used for blocking
+            assertEquals(3, enumerate(formula, Blocking.IMPLICANT, cache).size());
+            assertEquals(1, cache.misses());
+            assertEquals(0, cache.hits());
+        } finally {
+            final File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    file.delete();
+                }
+            }
+            directory.delete();
+        }
+    }
+}
@@ -0,0 +1,115 @@
+package kodkod.engine.fol2sat;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+import java.util.List;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.config.Options;
+import kodkod.engine.config.Options.SymmetryPredicate;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+@RunWith(JUnit4.class)
+public class SymmetryPredicateTest {
+
+    Universe universe;
+    TupleFactory factory;
+    Relation pair;
+
+    @Before
+    public void setUp() {
+        universe = new Universe("a1", "a2", "b1", "b2");
+        factory = universe.factory();
+        pair = Relation.binary("pair");
+    }
+
+    // The partition of these bounds is discrete, but exchanging a1 with a2
+    // and b1 with b2 at the same time preserves them.
+    private Bounds pairs() {
+        final Bounds b = new Bounds(universe);
+        b.bound(pair, factory.setOf(factory.tuple("a1", "b1"), factory.tuple("a2", "b2")));
+        return b;
+    }
+
+    private int count(Formula formula, Bounds bounds, SymmetryPredicate predicate) {
+        final Solver solver = new Solver();
+        solver.options().setSolver(SATFactory.DefaultSAT4J);
+        solver.options().setSymmetryPredicate(predicate);
+        int count = 0;
+        for (Iterator<Solution> sols = solver.solveAll(formula, bounds); sols.hasNext(); ) {
+            if (sols.next().sat()) count++;
+        }
+        return count;
+    }
+
+    @Test
+    public void detectsSimultaneousExchanges() {
+        final Bounds b = pairs();
+        final List<int[]> generators = AutomorphismDetector.generators(b, SymmetryDetector.partition(b));
+        assertEquals(1, generators.size());
+        final int[] perm = generators.get(0);
+        assertEquals(1, perm[0]);
+        assertEquals(0, perm[1]);
+        assertEquals(3, perm[2]);
+        assertEquals(2, perm[3]);
+    }
+
+    @Test
+    public void fixedAtomsAreNotMoved() {
+        final Bounds b = pairs();
+        b.boundExactly(Relation.unary("first"), factory.setOf("a1"));
+        assertTrue(AutomorphismDetector.generators(b, SymmetryDetector.partition(b)).isEmpty());
+    }
+
+    @Test
+    public void automorphismsRemoveIsomorphicSolutions() {
+        assertEquals(3, count(pair.some(), pairs(), SymmetryPredicate.LEX_LEADER));
+        assertEquals(3, count(pair.some(), pairs(), SymmetryPredicate.SHATTER));
+        assertEquals(2, count(pair.some(), pairs(), SymmetryPredicate.AUTOMORPHISMS));
+        assertEquals(1, count(pair.one(), pairs(), SymmetryPredicate.AUTOMORPHISMS));
+    }
+
+    @Test
+    public void compactPredicatesAreEquivalent() {
+        // an irreflexive relation over five interchangeable nodes, with an edge out of every node
+        final Universe u = new Universe("n0", "n1", "n2", "n3", "n4");
+        final TupleFactory f = u.factory();
+        final Relation node = Relation.unary("node"), edge = Relation.binary("edge");
+        final Variable x = Variable.unary("x");
+        final Bounds b = new Bounds(u);
+        b.boundExactly(node, f.allOf(1));
+        b.bound(edge, f.allOf(2));
+        final Formula formula = edge.intersection(Relation.IDEN).no()
+                .and(x.join(edge).some().forAll(x.oneOf(node)))
+                .and(edge.count().lte(kodkod.ast.IntConstant.constant(6)));
+
+        final int lex = count(formula, b, SymmetryPredicate.LEX_LEADER);
+        assertTrue(lex > 0);
+        assertEquals(lex, count(formula, b, SymmetryPredicate.SHATTER));
+        assertEquals(lex, count(formula, b, SymmetryPredicate.AUTOMORPHISMS));
+
+        final Solver solver = new Solver();
+        solver.options().setSolver(SATFactory.DefaultSAT4J);
+        final int lexClauses = solver.solve(formula, b).stats().clauses();
+        solver.options().setSymmetryPredicate(SymmetryPredicate.SHATTER);
+        assertTrue(solver.solve(formula, b).stats().clauses() < lexClauses);
+    }
+
+    @Test
+    public void optionsAreCopied() {
+        final Options options = new Options();
+        options.setSymmetryPredicate(SymmetryPredicate.AUTOMORPHISMS);
+        assertEquals(SymmetryPredicate.AUTOMORPHISMS, options.clone().symmetryPredicate());
+    }
+}
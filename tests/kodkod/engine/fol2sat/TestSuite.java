@@ -0,0 +1,22 @@
+package kodkod.engine.fol2sat;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runner.JUnitCore;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+  kodkod.engine.fol2sat.TranslationCacheTest.class,
+  kodkod.engine.fol2sat.ParallelTranslationTest.class,
+  kodkod.engine.fol2sat.TupleEvaluatorTest.class,
+  kodkod.engine.fol2sat.LongIndexTest.class,
+  kodkod.engine.fol2sat.FileLogTest.class,
+  kodkod.engine.fol2sat.IncrementalSymmetryTest.class,
+  kodkod.engine.fol2sat.SymmetryPredicateTest.class,
+  kodkod.engine.fol2sat.SolutionBlockerTest.class,
+  kodkod.engine.fol2sat.FOL2BoolCacheTest.class,
+  kodkod.engine.fol2sat.LazyInstantiationTest.class,
+  kodkod.engine.fol2sat.AssumedEnumerationTest.class
+})
+public class TestSuite {
+}
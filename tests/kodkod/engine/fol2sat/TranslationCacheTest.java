@@ -0,0 +1,170 @@
+package kodkod.engine.fol2sat;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import kodkod.ast.Formula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.Evaluator;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+@RunWith(JUnit4.class)
+public class TranslationCacheTest {
+
+    File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("kodkod-cache").toFile();
+    }
+
+    @After
+    public void cleanup() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    // A freshly constructed problem: every node has a successor, some node is its own
+    // successor's successor, and there are at most maxEdges edges.
+    private static final class Problem {
+        final Formula formula;
+        final Bounds bounds;
+
+        Problem(int nodes, int maxEdges) {
+            final List<String> atoms = new ArrayList<String>(nodes);
+            for (int i = 0; i < nodes; i++) {
+                atoms.add("n" + i);
+            }
+            final Universe universe = new Universe(atoms);
+            final TupleFactory factory = universe.factory();
+            final Relation node = Relation.unary("Node");
+            final Relation next = Relation.binary("next");
+            final Variable x = Variable.unary("x");
+
+            bounds = new Bounds(universe);
+            bounds.boundExactly(node, factory.allOf(1));
+            bounds.bound(next, factory.allOf(2));
+
+            formula = next.function(node, node)
+                    .and(x.join(next).join(next).eq(x).and(x.join(next).eq(x).not()).forSome(x.oneOf(node)))
+                    .and(next.count().lte(IntConstant.constant(maxEdges)));
+        }
+    }
+
+    private static Solution solve(Problem p, TranslationCache cache) {
+        final Solver solver = new Solver();
+        solver.options().setSolver(SATFactory.DefaultSAT4J);
+        solver.options().setBitwidth(5);
+        solver.options().setTranslationCache(cache);
+        return solver.solve(p.formula, p.bounds);
+    }
+
+    private static void assertModel(Problem p, Solution s) {
+        assertTrue(s.sat());
+        assertTrue(new Evaluator(s.instance()).evaluate(p.formula));
+    }
+
+    @Test
+    public void structurallyEqualProblemsShareTranslation() {
+        final TranslationCache cache = new TranslationCache(8);
+        final Problem first = new Problem(4, 4);
+        assertModel(first, solve(first, cache));
+        assertEquals(0, cache.hits());
+        assertEquals(1, cache.misses());
+
+        final Problem second = new Problem(4, 4);
+        assertModel(second, solve(second, cache));
+        assertEquals(1, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void differentProblemsShouldMiss() {
+        final TranslationCache cache = new TranslationCache(8);
+        solve(new Problem(4, 4), cache);
+        solve(new Problem(5, 5), cache);
+        assertEquals(0, cache.hits());
+        assertEquals(2, cache.misses());
+    }
+
+    @Test
+    public void unsatisfiableProblemsStayUnsatisfiable() {
+        final TranslationCache cache = new TranslationCache(8);
+        assertFalse(solve(new Problem(4, 3), cache).sat());
+        assertFalse(solve(new Problem(4, 3), cache).sat());
+        assertEquals(1, cache.hits());
+    }
+
+    @Test
+    public void leastRecentlyUsedTranslationIsEvicted() {
+        final TranslationCache cache = new TranslationCache(1);
+        solve(new Problem(4, 4), cache);
+        solve(new Problem(5, 5), cache);
+        solve(new Problem(4, 4), cache);
+        assertEquals(0, cache.hits());
+        assertEquals(3, cache.misses());
+    }
+
+    @Test
+    public void translationsSurviveOnDisk() {
+        solve(new Problem(4, 4), new TranslationCache(8, directory));
+
+        final TranslationCache cache = new TranslationCache(0, directory);
+        final Problem p = new Problem(4, 4);
+        assertModel(p, solve(p, cache));
+        assertEquals(1, cache.hits());
+        assertEquals(0, cache.misses());
+    }
+
+    @Test
+    public void corruptFilesAreMisses() throws IOException {
+        solve(new Problem(4, 4), new TranslationCache(8, directory));
+        for (File file : directory.listFiles()) {
+            final FileOutputStream out = new FileOutputStream(file);
+            out.write(new byte[] { 1, 2, 3 });
+            out.close();
+        }
+
+        final TranslationCache cache = new TranslationCache(8, directory);
+        final Problem p = new Problem(4, 4);
+        assertModel(p, solve(p, cache));
+        assertEquals(0, cache.hits());
+        assertEquals(1, cache.misses());
+    }
+
+    @Test
+    public void loggedTranslationsAreNotCached() {
+        final TranslationCache cache = new TranslationCache(8);
+        final Solver solver = new Solver();
+        solver.options().setSolver(SATFactory.DefaultSAT4J);
+        solver.options().setBitwidth(5);
+        solver.options().setLogTranslation(1);
+        solver.options().setTranslationCache(cache);
+        final Problem p = new Problem(4, 4);
+        solver.solve(p.formula, p.bounds);
+        solver.solve(p.formula, p.bounds);
+        assertEquals(0, cache.hits());
+        assertEquals(0, cache.misses());
+    }
+}
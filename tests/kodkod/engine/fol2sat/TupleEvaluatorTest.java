@@ -0,0 +1,236 @@
+package kodkod.engine.fol2sat;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import kodkod.ast.Decls;
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.IntExpression;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.ast.operator.IntOperator;
+import kodkod.engine.Evaluator;
+import kodkod.engine.config.Options;
+import kodkod.instance.Instance;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.TupleSet;
+import kodkod.instance.Universe;
+
+@RunWith(JUnit4.class)
+public class TupleEvaluatorTest {
+
+    private static final int NODES = 5;
+
+    final Relation a = Relation.unary("A"), b = Relation.unary("B");
+    final Relation r = Relation.binary("r"), s = Relation.binary("s");
+    final Relation t = Relation.ternary("t");
+    final Variable x = Variable.unary("x"), y = Variable.unary("y");
+
+    Universe universe;
+    Options options;
+
+    @Before
+    public void setUp() {
+        final List<Object> atoms = new ArrayList<Object>();
+        for (int i = 0; i < NODES; i++) {
+            atoms.add("n" + i);
+        }
+        // one more integer than the bitwidth can represent, so that some values wrap around
+        for (int i = -4; i <= 4; i++) {
+            atoms.add(i);
+        }
+        universe = new Universe(atoms);
+        options = new Options();
+        options.setBitwidth(3);
+    }
+
+    private TupleSet random(Random random, int arity, double density) {
+        final TupleFactory f = universe.factory();
+        final TupleSet ret = f.noneOf(arity);
+        for (int i = 0, max = f.allOf(arity).size(); i < max; i++) {
+            if (random.nextDouble() < density) {
+                ret.add(f.tuple(arity, i));
+            }
+        }
+        return ret;
+    }
+
+    private Instance instance(long seed) {
+        final Random random = new Random(seed);
+        final TupleFactory f = universe.factory();
+        final Instance instance = new Instance(universe);
+        instance.add(a, random(random, 1, 0.5));
+        instance.add(b, random(random, 1, 0.3));
+        instance.add(r, random(random, 2, 0.15));
+        instance.add(s, random(random, 2, 0.05));
+        instance.add(t, random(random, 3, 0.01));
+        for (int i = -4; i <= 4; i++) {
+            instance.add(i, f.setOf(i));
+        }
+        return instance;
+    }
+
+    private List<Expression> expressions() {
+        final List<Expression> ret = new ArrayList<Expression>();
+        ret.add(a.union(b));
+        ret.add(a.intersection(b));
+        ret.add(a.difference(b));
+        ret.add(r.override(s));
+        ret.add(Expression.override(r, s, r.transpose()));
+        ret.add(a.override(b));
+        ret.add(a.join(r));
+        ret.add(r.join(s));
+        ret.add(r.join(t));
+        ret.add(t.join(r));
+        ret.add(t.join(a));
+        ret.add(a.product(b));
+        ret.add(Expression.product(a, r, b));
+        ret.add(Expression.union(a, b, Expression.INTS));
+        ret.add(Expression.intersection(r, s.transpose(), Expression.IDEN.union(r)));
+        ret.add(r.transpose());
+        ret.add(r.closure());
+        ret.add(r.union(s).reflexiveClosure());
+        ret.add(Expression.IDEN.difference(r));
+        ret.add(Expression.UNIV.difference(a));
+        ret.add(Expression.NONE.union(b));
+        ret.add(x.join(r).in(y.join(r)).comprehension(x.oneOf(a).and(y.oneOf(b))));
+        ret.add(x.join(r).some().comprehension(x.oneOf(Expression.UNIV)));
+        ret.add(a.some().thenElse(r, s));
+        ret.add(r.in(s).thenElse(r, s));
+        ret.add(t.project(IntConstant.constant(2), IntConstant.constant(0)));
+        ret.add(t.project(IntConstant.constant(1), IntConstant.constant(3)));
+        ret.add(r.project(a.count().modulo(IntConstant.constant(2)), IntConstant.constant(1)));
+        ret.add(r.count().toExpression());
+        ret.add(a.count().minus(b.count()).toBitset());
+        ret.add(IntConstant.constant(4).toExpression());
+        ret.add(a.sum().toBitset());
+        return ret;
+    }
+
+    private List<IntExpression> intExpressions() {
+        final List<IntExpression> base = new ArrayList<IntExpression>();
+        base.add(IntConstant.constant(0));
+        base.add(IntConstant.constant(3));
+        base.add(IntConstant.constant(-4));
+        base.add(IntConstant.constant(9));
+        base.add(a.count());
+        base.add(r.count());
+        base.add(a.sum());
+        base.add(Expression.INTS.difference(a).sum());
+        base.add(x.join(r).count().sum(x.oneOf(a)));
+
+        final List<IntExpression> ret = new ArrayList<IntExpression>(base);
+        for (IntExpression e : base) {
+            ret.add(e.negate());
+            ret.add(e.not());
+            ret.add(e.abs());
+            ret.add(e.signum());
+            ret.add(b.some().thenElse(e, e.plus(IntConstant.constant(1))));
+            for (IntExpression f : base) {
+                for (IntOperator op : new IntOperator[] { IntOperator.PLUS, IntOperator.MINUS, IntOperator.MULTIPLY,
+                        IntOperator.DIVIDE, IntOperator.MODULO, IntOperator.AND, IntOperator.OR, IntOperator.XOR,
+                        IntOperator.SHL, IntOperator.SHR, IntOperator.SHA }) {
+                    ret.add(e.compose(op, f));
+                }
+            }
+        }
+        ret.add(IntExpression.plus(a.count(), r.count(), s.count(), b.sum()));
+        ret.add(IntExpression.multiply(a.count(), r.count(), b.count()));
+        return ret;
+    }
+
+    private List<Formula> formulas() {
+        final List<Formula> ret = new ArrayList<Formula>();
+        for (Expression e : expressions()) {
+            ret.add(e.some());
+            ret.add(e.one());
+            ret.add(e.lone());
+            ret.add(e.no());
+        }
+        ret.add(r.in(s));
+        ret.add(s.in(r));
+        ret.add(r.closure().eq(r));
+        ret.add(r.function(a, b));
+        ret.add(r.partialFunction(a, b));
+        ret.add(r.acyclic());
+        ret.add(s.acyclic());
+        ret.add(x.join(r).some().forAll(x.oneOf(a)));
+        ret.add(x.join(r).in(y.join(s)).forSome(x.oneOf(a).and(y.oneOf(x.join(r)))));
+        ret.add(x.join(r).count().gt(y.join(r).count()).forAll(y.oneOf(b)).forSome(x.oneOf(a)));
+        ret.add(x.sum().lt(IntConstant.constant(2)).forAll(x.oneOf(Expression.INTS)));
+        ret.add(a.some().implies(b.some()));
+        ret.add(a.some().iff(r.some()));
+        ret.add(a.some().and(b.no()).or(r.in(s)).not());
+        ret.add(Formula.or(a.no(), b.no(), r.no(), s.some()));
+        ret.add(Formula.and(a.some(), b.some(), r.some()));
+        ret.add(a.count().eq(b.count()));
+        ret.add(a.count().lte(r.count()));
+        ret.add(a.count().gte(IntConstant.constant(4)));
+        ret.add(Formula.TRUE.and(Formula.FALSE.not()));
+        return ret;
+    }
+
+    @Test
+    public void expressionsAgreeWithCircuits() {
+        for (long seed = 0; seed < 20; seed++) {
+            final Instance instance = instance(seed);
+            final Evaluator circuits = new Evaluator(instance, options, Evaluator.Engine.CIRCUITS);
+            final Evaluator tuples = new Evaluator(instance, options);
+            for (Expression e : expressions()) {
+                assertEquals(e.toString(), circuits.evaluate(e), tuples.evaluate(e));
+            }
+        }
+    }
+
+    @Test
+    public void intExpressionsAgreeWithCircuits() {
+        for (long seed = 0; seed < 10; seed++) {
+            final Instance instance = instance(seed);
+            final Evaluator circuits = new Evaluator(instance, options, Evaluator.Engine.CIRCUITS);
+            final Evaluator tuples = new Evaluator(instance, options);
+            for (IntExpression e : intExpressions()) {
+                assertEquals(e.toString(), circuits.evaluate(e), tuples.evaluate(e));
+            }
+        }
+    }
+
+    @Test
+    public void formulasAgreeWithCircuits() {
+        for (long seed = 0; seed < 20; seed++) {
+            final Instance instance = instance(seed);
+            final Evaluator circuits = new Evaluator(instance, options, Evaluator.Engine.CIRCUITS);
+            final Evaluator tuples = new Evaluator(instance, options);
+            for (Formula f : formulas()) {
+                assertEquals(f.toString(), circuits.evaluate(f), tuples.evaluate(f));
+            }
+        }
+    }
+
+    @Test
+    public void returnedTuplesAreModifiable() {
+        final Instance instance = instance(0);
+        final TupleSet value = new Evaluator(instance, options).evaluate(r);
+        value.add(universe.factory().tuple("n0", "n0"));
+        value.clear();
+        assertFalse(instance.tuples(r).isEmpty());
+    }
+
+    @Test(expected = UnboundLeafException.class)
+    public void unboundRelationsAreReported() {
+        new Evaluator(instance(0), options).evaluate(Relation.unary("unbound").some());
+    }
+
+    @Test(expected = HigherOrderDeclException.class)
+    public void higherOrderDeclarationsAreReported() {
+        final Decls decls = x.setOf(a);
+        new Evaluator(instance(0), options).evaluate(x.some().forAll(decls));
+    }
+}
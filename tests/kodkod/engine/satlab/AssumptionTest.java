@@ -0,0 +1,100 @@
+package kodkod.engine.satlab;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assume.*;
+import static org.junit.Assert.*;
+
+import java.util.Arrays;
+
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+
+@RunWith(JUnit4.class)
+public class AssumptionTest {
+
+    SATSolver solver;
+
+    @After
+    public void cleanup() {
+        if (solver != null) {
+            solver.free();
+            solver = null;
+        }
+    }
+
+    private void setUp(SATFactory factory) {
+        assumeTrue(SATFactory.available(factory));
+        solver = factory.instance();
+        // 1 => 2, 2 => !3, and 4 is unconstrained
+        solver.addVariables(4);
+        solver.addClause(new int[]{-1, 2});
+        solver.addClause(new int[]{-2, -3});
+    }
+
+    // Solves under assumptions that are consistent, inconsistent, and consistent again.
+    private void solveUnderAssumptions(SATFactory factory) {
+        setUp(factory);
+
+        assertTrue(solver.solve(new int[]{1}));
+        assertTrue(solver.valueOf(2));
+
+        assertFalse(solver.solve(new int[]{4, 1, 3}));
+        final int[] failed = solver.failedAssumptions();
+        Arrays.sort(failed);
+        assertArrayEquals(new int[]{1, 3}, failed);
+
+        // The assumptions are not retained.
+        assertTrue(solver.solve());
+        assertTrue(solver.solve(new int[]{3}));
+        assertFalse(solver.valueOf(1));
+    }
+
+    @Test
+    public void sat4j() {
+        solveUnderAssumptions(SATFactory.DefaultSAT4J);
+    }
+
+    @Test
+    public void miniSat() {
+        solveUnderAssumptions(SATFactory.MiniSat);
+    }
+
+    @Test
+    public void miniSatProver() {
+        solveUnderAssumptions(SATFactory.MiniSatProver);
+    }
+
+    @Test
+    public void glucose() {
+        solveUnderAssumptions(SATFactory.Glucose);
+    }
+
+    @Test
+    public void cryptoMiniSat() {
+        solveUnderAssumptions(SATFactory.CryptoMiniSat);
+    }
+
+    @Test
+    public void failedAssumptionsWithoutAssumptionsAreEmpty() {
+        setUp(SATFactory.DefaultSAT4J);
+        solver.addClause(new int[]{1});
+        solver.addClause(new int[]{3});
+        assertFalse(solver.solve(new int[]{4}));
+        assertEquals(0, solver.failedAssumptions().length);
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void failedAssumptionsAfterSatShouldThrowException() {
+        setUp(SATFactory.DefaultSAT4J);
+        assertTrue(solver.solve(new int[]{1}));
+        solver.failedAssumptions();
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void lingelingRejectsAssumptions() {
+        setUp(SATFactory.Lingeling);
+        solver.solve(new int[]{1});
+    }
+}
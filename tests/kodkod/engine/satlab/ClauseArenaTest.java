@@ -0,0 +1,122 @@
+package kodkod.engine.satlab;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import kodkod.ast.Expression;
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+@RunWith(JUnit4.class)
+public class ClauseArenaTest {
+
+    SATSolver solver;
+
+    @Before
+    public void setUp() {
+        solver = SATFactory.MiniSat.instance();
+    }
+
+    @After
+    public void cleanup() {
+        if (solver != null) {
+            solver.free();
+            solver = null;
+        }
+    }
+
+    // Adds the clauses stating that p pigeons sit in h holes, one pigeon per hole,
+    // flushing the arena whenever it fills up.
+    private void pigeonhole(int p, int h, ClauseArena arena) {
+        final BatchedSolver batched = (BatchedSolver) solver;
+        solver.addVariables(p * h);
+        for (int i = 0; i < p; i++) {
+            int[] clause = new int[h];
+            for (int j = 0; j < h; j++) {
+                clause[j] = i * h + j + 1;
+            }
+            add(batched, arena, clause);
+        }
+        for (int j = 0; j < h; j++) {
+            for (int a = 0; a < p; a++) {
+                for (int b = a + 1; b < p; b++) {
+                    add(batched, arena, new int[]{-(a * h + j + 1), -(b * h + j + 1)});
+                }
+            }
+        }
+        batched.addClauses(arena);
+    }
+
+    private static void add(BatchedSolver solver, ClauseArena arena, int[] clause) {
+        if (!arena.add(clause)) {
+            solver.addClauses(arena);
+            assertTrue(arena.add(clause));
+        }
+    }
+
+    @Test
+    public void arenaHoldsClausesUntilFull() {
+        final ClauseArena arena = new ClauseArena(6);
+        assertTrue(arena.isEmpty());
+        assertTrue(arena.add(new int[]{1, -2}));
+        assertTrue(arena.add(new int[]{}));
+        assertFalse(arena.add(new int[]{3, 4}));
+        assertTrue(arena.add(new int[]{3}));
+        assertThat(arena.size(), is(3));
+        assertFalse(arena.add(new int[]{}));
+        arena.clear();
+        assertTrue(arena.isEmpty());
+        assertTrue(arena.add(new int[]{1, 2, 3, 4, 5}));
+    }
+
+    @Test
+    public void batchedPigeonholes() {
+        pigeonhole(5, 5, new ClauseArena(7));
+
+        assertThat(solver.numberOfVariables(), is(25));
+        assertThat(solver.numberOfClauses(), is(5 + 5 * 10));
+        assertTrue(solver.solve());
+
+        // Take away the last hole.
+        final ClauseArena arena = new ClauseArena();
+        for (int i = 0; i < 5; i++) {
+            arena.add(new int[]{-(i * 5 + 5)});
+        }
+        ((BatchedSolver) solver).addClauses(arena);
+        assertTrue(arena.isEmpty());
+        assertFalse(solver.solve());
+    }
+
+    @Test
+    public void translationsAgreeWithUnbatchedSolvers() {
+        final Relation r = Relation.binary("r");
+        final Variable x = Variable.unary("x"), y = Variable.unary("y");
+        final Universe universe = new Universe("a", "b", "c", "d", "e", "f");
+        final TupleFactory f = universe.factory();
+        final Bounds bounds = new Bounds(universe);
+        bounds.bound(r, f.allOf(2));
+        final Formula[] formulas = {
+            Formula.and(r.function(Expression.UNIV, Expression.UNIV), r.acyclic().not()),
+            Formula.and(r.acyclic(), x.join(r).some().forAll(x.oneOf(Expression.UNIV))),
+            Formula.and(x.join(r).one().forAll(x.oneOf(Expression.UNIV)), r.join(y).no().forSome(y.oneOf(Expression.UNIV)),
+                    r.transpose().in(r), r.intersection(Expression.IDEN).no())
+        };
+        for (Formula formula : formulas) {
+            final Solver batched = new Solver(), plain = new Solver();
+            batched.options().setSolver(SATFactory.MiniSat);
+            plain.options().setSolver(SATFactory.DefaultSAT4J);
+            final Solution expected = plain.solve(formula, bounds), actual = batched.solve(formula, bounds);
+            assertEquals(formula.toString(), expected.sat(), actual.sat());
+            assertEquals(formula.toString(), expected.stats().clauses(), actual.stats().clauses());
+        }
+    }
+}
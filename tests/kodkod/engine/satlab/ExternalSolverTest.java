@@ -0,0 +1,210 @@
+package kodkod.engine.satlab;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assume.*;
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.Charset;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+@RunWith(JUnit4.class)
+public class ExternalSolverTest {
+
+    static final Charset ASCII = Charset.forName("US-ASCII");
+
+    File directory;
+
+    @Before
+    public void setUp() throws IOException {
+        directory = Files.createTempDirectory("kodkod-external").toFile();
+    }
+
+    @After
+    public void cleanup() {
+        final File[] files = directory.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        directory.delete();
+    }
+
+    // Returns an unrun solver with the given number of variables that has parsed the given output.
+    private static ExternalSolver parse(int vars, String output) throws IOException {
+        final ExternalSolver solver = new ExternalSolver("stub", null, false);
+        solver.addVariables(vars);
+        solver.parse(new ExternalSolver.LineReader(new ByteArrayInputStream(output.getBytes(ASCII))));
+        return solver;
+    }
+
+    // Returns the outcome of the last call to solve or parse, or null if it is not known.
+    private static Boolean outcome(SATSolver solver) {
+        try {
+            solver.valueOf(1);
+            return Boolean.TRUE;
+        } catch (IllegalStateException e) {
+            try {
+                solver.failedAssumptions();
+                return Boolean.FALSE;
+            } catch (IllegalStateException e2) {
+                return null;
+            }
+        }
+    }
+
+    private static void assertModel(SATSolver solver, boolean... values) {
+        for (int i = 0; i < values.length; i++) {
+            assertEquals("variable " + (i + 1), values[i], solver.valueOf(i + 1));
+        }
+    }
+
+    private static void assertInvalid(int vars, String output) throws IOException {
+        try {
+            parse(vars, output);
+            fail(output);
+        } catch (SATAbortedException e) {
+            // expected
+        }
+    }
+
+    @Test
+    public void malformedOutcomesAreRejected() throws IOException {
+        assertInvalid(1, "s SATISFIABLE maybe\n");
+        assertInvalid(1, "s UNKNOWN\n");
+        assertInvalid(1, "s SAT\n");
+        assertInvalid(1, "s\n");
+        // lines that merely start with s or v are comments
+        assertNull(outcome(parse(1, "sat\nvalues 1 2 3\n")));
+        assertEquals(Boolean.TRUE, outcome(parse(1, "  s   satisfiable \r\n")));
+        assertEquals(Boolean.FALSE, outcome(parse(1, "c done\ns UNSATISFIABLE")));
+    }
+
+    @Test
+    public void overflowingLiteralsAreRejected() throws IOException {
+        for (String literal : new String[] { "2147483648", "-2147483648", "99999999999" }) {
+            try {
+                parse(1, "s SATISFIABLE\nv " + literal + " 0\n");
+                fail(literal);
+            } catch (NumberFormatException e) {
+                // expected
+            }
+        }
+        // literals that fit into an int but not into this solver
+        assertInvalid(2, "s SATISFIABLE\nv 1 -2147483647 0\n");
+        assertInvalid(2, "s SATISFIABLE\nv 1 3 0\n");
+    }
+
+    @Test(expected = NumberFormatException.class)
+    public void danglingSignsAreRejected() throws IOException {
+        parse(2, "s SATISFIABLE\nv 1 - 0\n");
+    }
+
+    @Test
+    public void variableLinesMaySpanSeveralLines() throws IOException {
+        final ExternalSolver solver = parse(4, "c comment\ns SATISFIABLE\nv 1 -2\nv\t3\r\nv -4 0\n");
+        assertEquals(Boolean.TRUE, outcome(solver));
+        assertModel(solver, true, false, true, false);
+
+        final StringBuilder wide = new StringBuilder("s SATISFIABLE\nv");
+        final boolean[] values = new boolean[500];
+        for (int i = 1; i <= values.length; i++) {
+            values[i - 1] = i % 3 == 0;
+            wide.append(' ').append(values[i - 1] ? i : -i);
+        }
+        assertModel(parse(values.length, wide.append(" 0").toString()), values);
+    }
+
+    @Test
+    public void trailingZeroEndsTheModel() throws IOException {
+        // anything after the terminating zero is ignored, but only once the outcome is known
+        final ExternalSolver solver = parse(2, "v 1 0\ns SATISFIABLE\nv -1 2 0\nv 7 x\n");
+        assertModel(solver, false, true);
+        assertInvalid(2, "s SATISFIABLE\nv 1 0 2\n");
+    }
+
+    // Writes a stub solver that records its input in the given file and reports the given output.
+    private File stub(String name, File input, String... output) throws IOException {
+        final List<String> script = new ArrayList<String>();
+        script.add("#!/bin/sh");
+        script.add("cat \"$@\" > '" + input.getAbsolutePath() + "'");
+        script.addAll(Arrays.asList(output));
+        final File stub = new File(directory, name);
+        Files.write(stub.toPath(), script, ASCII);
+        assumeTrue(stub.setExecutable(true));
+        return stub;
+    }
+
+    // Returns the lines of the given file, without trailing whitespace.
+    private static List<String> lines(File file) throws IOException {
+        final List<String> lines = new ArrayList<String>();
+        for (String line : Files.readAllLines(file.toPath(), ASCII)) {
+            lines.add(line.replaceAll("\\s+$", ""));
+        }
+        return lines;
+    }
+
+    // Solves (1 | -2) & (2 | 3) & -3 with the given stub, passing the cnf in the given file or, if null, through a pipe.
+    private static SATSolver solve(File stub, File cnf) {
+        final SATSolver solver = cnf == null ?
+                SATFactory.externalPipeFactory(stub.getAbsolutePath()).instance() :
+                SATFactory.externalFactory(stub.getAbsolutePath(), cnf.getAbsolutePath()).instance();
+        solver.addVariables(3);
+        solver.addClause(new int[] { 1, -2 });
+        solver.addClause(new int[] { 2, 3 });
+        solver.addClause(new int[] { -3 });
+        assertTrue(solver.solve());
+        return solver;
+    }
+
+    @Test
+    public void filesAndPipesFeedTheSameCnf() throws IOException {
+        assumeTrue(new File("/bin/sh").canExecute());
+        final File input = new File(directory, "input");
+        final File stub = stub("stub.sh", input, "echo 'c stub'", "echo 's SATISFIABLE'", "echo 'v 1 2'", "echo 'v -3 0'");
+        final List<String> expected = Arrays.asList("p cnf 3 3", "1 -2 0", "2 3 0", "-3 0");
+
+        final SATSolver piped = solve(stub, null);
+        assertModel(piped, true, true, false);
+        assertEquals(expected, lines(input));
+        piped.free();
+
+        final SATSolver filed = solve(stub, new File(directory, "problem.cnf"));
+        assertModel(filed, true, true, false);
+        assertEquals(expected, lines(input));
+        filed.free();
+    }
+
+    @Test
+    public void solverIsDestroyedWhenItsOutputIsInvalid() throws IOException, InterruptedException {
+        assumeTrue(new File("/bin/sh").canExecute() && new File("/proc/self").exists());
+        final File input = new File(directory, "input");
+        final File pid = new File(directory, "pid");
+        final File stub = stub("hang.sh", input, "echo $$ > '" + pid.getAbsolutePath() + "'",
+                "echo 's MAYBE'", "exec sleep 60");
+        final SATSolver solver = SATFactory.externalFactory(stub.getAbsolutePath(), null).instance();
+        solver.addVariables(1);
+        solver.addClause(new int[] { 1 });
+        try {
+            solver.solve();
+            fail();
+        } catch (SATAbortedException e) {
+            // expected
+        } finally {
+            solver.free();
+        }
+        final File process = new File("/proc/" + Files.readAllLines(pid.toPath(), ASCII).get(0).trim());
+        for (int i = 0; i < 100 && process.exists(); i++) {
+            Thread.sleep(50);
+        }
+        assertFalse(process.exists());
+    }
+}
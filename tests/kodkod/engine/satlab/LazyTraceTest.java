@@ -0,0 +1,193 @@
+package kodkod.engine.satlab;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assert.*;
+
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+
+import kodkod.util.ints.IntSet;
+import kodkod.util.ints.IntTreeSet;
+import kodkod.util.ints.Ints;
+
+@RunWith(JUnit4.class)
+public class LazyTraceTest {
+
+    LazyTrace trace;
+
+    // Returns a raw trace whose first axioms clauses are axioms and the rest resolvents.
+    private static TraceBuffer raw(int axioms, int[]... clauses) {
+        final TraceBuffer raw = new TraceBuffer();
+        for (int i = 0; i < clauses.length; i++) {
+            if (i < axioms) {
+                raw.addAxiom(clauses[i]);
+            } else {
+                raw.addResolvent(clauses[i]);
+            }
+        }
+        return raw;
+    }
+
+    // 0..4 are axioms, 5..8 resolvents; 7 is not reachable from the conflict
+    private static TraceBuffer raw() {
+        return raw(5,
+            new int[] { 1, 2 }, new int[] { -1, 2 }, new int[] { -2, 3 }, new int[] { -2, -3 }, new int[] { 1, 3 },
+            new int[] { 0, 1 }, new int[] { 2, 3 }, new int[] { 4, 3 }, new int[] { 5, 6 });
+    }
+
+    @Before
+    public void setUp() {
+        trace = new LazyTrace(raw());
+    }
+
+    private static IntSet set(int... ints) {
+        final IntSet ret = new IntTreeSet();
+        for (int i : ints) {
+            ret.add(i);
+        }
+        return ret;
+    }
+
+    private static void assertLiterals(int[] expected, Clause clause) {
+        assertArrayEquals(expected, clause.toArray());
+        assertEquals(expected.length, clause.size());
+    }
+
+    @Test
+    public void unreachableResolventsAreDropped() {
+        assertEquals(8, trace.size());
+        assertEquals(set(0, 1, 2, 3), trace.core());
+        assertEquals(set(0, 1, 2, 3, 4), trace.axioms());
+        assertEquals(set(5, 6, 7), trace.resolvents());
+    }
+
+    @Test
+    public void literalsAreUnpackedAndResolved() {
+        assertLiterals(new int[] { 1, 2 }, trace.get(0));
+        assertLiterals(new int[] { -2, -3 }, trace.get(3));
+        assertLiterals(new int[] { 2 }, trace.get(5));
+        assertLiterals(new int[] { -2 }, trace.get(6));
+        assertLiterals(new int[] {}, trace.get(7));
+
+        final Clause conflict = trace.get(7);
+        assertEquals(2, conflict.numberOfAntecedents());
+        final Iterator<Clause> antes = conflict.antecedents();
+        assertLiterals(new int[] { 2 }, antes.next());
+        assertLiterals(new int[] { -2 }, antes.next());
+        assertFalse(antes.hasNext());
+
+        int i = 0;
+        for (Iterator<Clause> itr = trace.iterator(trace.core()); itr.hasNext(); i++) {
+            assertEquals(0, itr.next().numberOfAntecedents());
+        }
+        assertEquals(4, i);
+    }
+
+    @Test
+    public void largeLiteralsArePacked() {
+        final int[] big = { -1, 127, -128, 70000, -(1 << 30), Integer.MAX_VALUE };
+        final LazyTrace packed = new LazyTrace(raw(2, big, new int[] { 1 }, new int[] { 0, 1 }));
+        assertLiterals(big, packed.get(0));
+        assertEquals(Integer.MAX_VALUE, packed.get(0).maxVariable());
+        assertLiterals(new int[] { 127, -128, 70000, -(1 << 30), Integer.MAX_VALUE }, packed.get(2));
+    }
+
+    @Test
+    public void passesFollowAntecedents() {
+        assertEquals(set(0, 1, 2, 3, 5, 6, 7), trace.reachable(set(7)));
+        assertEquals(set(0, 1, 5), trace.reachable(set(5)));
+        assertEquals(set(0, 5, 7), trace.backwardReachable(set(0)));
+        assertEquals(set(4), trace.backwardReachable(set(4)));
+        assertEquals(set(0, 1, 5), trace.learnable(set(0, 1)));
+        assertEquals(set(0, 1, 2, 3, 5, 6, 7), trace.learnable(set(0, 1, 2, 3)));
+        assertEquals(set(0, 1, 2, 3, 5, 6), trace.directlyLearnable(set(0, 1, 2, 3)));
+        assertEquals(Ints.EMPTY_SET, trace.learnable(Ints.EMPTY_SET));
+    }
+
+    @Test
+    public void subtracesAreReconstructed() {
+        // solving original[0, 1, 2, 3, 5] again, with 5 becoming the 4th clause
+        final int[] unrecorded = {};
+        final TraceBuffer partial = raw(5, unrecorded, unrecorded, unrecorded, unrecorded, unrecorded,
+            new int[] { 2, 3 }, new int[] { 4, 5 });
+        final LazyTrace sub = new LazyTrace(trace, set(0, 1, 2, 3, 5), partial);
+        assertEquals(7, sub.size());
+        assertEquals(set(0, 1, 2, 3), sub.axioms());
+        assertEquals(set(0, 1, 2, 3), sub.core());
+        assertLiterals(new int[] { -1, 2 }, sub.get(1));
+        assertLiterals(new int[] { 2 }, sub.get(4));
+        assertEquals(2, sub.get(4).numberOfAntecedents());
+        assertLiterals(new int[] {}, sub.get(6));
+        assertEquals(set(0, 4, 6), sub.backwardReachable(set(0)));
+    }
+
+    @Test
+    public void interleavedAxiomsArePackedFirst() {
+        // the axioms { -2, 3 } and { -2, -3 } were added after the resolvent { 2 } was learned
+        final TraceBuffer raw = new TraceBuffer();
+        raw.addAxiom(new int[] { 1, 2 });
+        raw.addAxiom(new int[] { -1, 2 });
+        raw.addResolvent(new int[] { 0, 1 });
+        raw.addAxiom(new int[] { -2, 3 });
+        raw.addAxiom(new int[] { -2, -3 });
+        raw.addResolvent(new int[] { 3, 4 });
+        raw.addResolvent(new int[] { 2, 5 });
+        final LazyTrace packed = new LazyTrace(raw);
+        assertEquals(set(0, 1, 2, 3), packed.axioms());
+        assertEquals(set(0, 1, 2, 3), packed.core());
+        assertLiterals(new int[] { -2, 3 }, packed.get(2));
+        assertLiterals(new int[] { 2 }, packed.get(4));
+        assertLiterals(new int[] { -2 }, packed.get(5));
+        assertLiterals(new int[] {}, packed.get(6));
+        assertEquals(set(2, 3, 5), packed.reachable(set(5)));
+    }
+
+    @Test
+    public void emptyAxiomIsItsOwnCore() {
+        final TraceBuffer raw = raw(2, new int[] { 1, 2 }, new int[] { -1, 2 }, new int[] { 0, 1 });
+        raw.addAxiom(new int[] {});
+        final LazyTrace trivial = new LazyTrace(raw);
+        assertEquals(3, trivial.size());
+        assertEquals(set(2), trivial.core());
+        assertEquals(Ints.EMPTY_SET, trivial.resolvents());
+        assertLiterals(new int[] {}, trivial.get(2));
+    }
+
+    // Writes the given unsigned values as single-byte varints.
+    private static int put(ByteBuffer chunk, int pos, int... values) {
+        for (int v : values) {
+            assertTrue(v < 0x80);
+            chunk.put(pos++, (byte) v);
+        }
+        return pos;
+    }
+
+    @Test
+    public void chunksAreAppendedAndIndexed() {
+        // streams raw() as a prover would, two chunks at a time
+        final TraceBuffer raw = new TraceBuffer();
+        ByteBuffer chunk = raw.flush(0, 1);
+        int pos = put(chunk, 0, 2 << 1, 1 << 1, 1 << 1);            // { 1, 2 }
+        pos = put(chunk, pos, 2 << 1, 1 << 1 | 1, 1 << 1);          // { -1, 2 }
+        chunk = raw.flush(pos, 1);
+        assertEquals(2, raw.size());
+        pos = put(chunk, 0, 2 << 1, 2 << 1 | 1, 1 << 1);            // { -2, 3 }
+        pos = put(chunk, pos, 2 << 1, 2 << 1 | 1, 1 << 1 | 1);      // { -2, -3 }
+        pos = put(chunk, pos, 2 << 1, 1 << 1, 2 << 1);              // { 1, 3 }
+        chunk = raw.flush(pos, TraceBuffer.CHUNK_SIZE + 1);
+        assertTrue(chunk.capacity() > TraceBuffer.CHUNK_SIZE);
+        pos = put(chunk, 0, 2 << 1 | 1, 5, 4);                      // { 0, 1 }
+        pos = put(chunk, pos, 2 << 1 | 1, 4, 3);                    // { 2, 3 }
+        pos = put(chunk, pos, 2 << 1 | 1, 3, 4);                    // { 4, 3 }
+        pos = put(chunk, pos, 2 << 1 | 1, 3, 2);                    // { 5, 6 }
+        assertNull(raw.flush(pos, 0));
+        assertEquals(9, raw.size());
+        assertEquals(5, raw.axioms());
+
+        final LazyTrace streamed = new LazyTrace(raw);
+        assertEquals(trace.toString(), streamed.toString());
+        assertEquals(trace.core(), streamed.core());
+    }
+}
@@ -0,0 +1,118 @@
+package kodkod.engine.satlab;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.*;
+
+import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
+
+@RunWith(JUnit4.class)
+public class PortfolioTest {
+
+    SATSolver solver;
+
+    @Before
+    public void setUp() {
+        solver = SATFactory.portfolio(SATFactory.DefaultSAT4J, SATFactory.LightSAT4J).instance();
+    }
+
+    @After
+    public void cleanup() {
+        if (solver != null) {
+            solver.free();
+            solver = null;
+        }
+    }
+
+    // Adds the clauses stating that p pigeons sit in h holes, one pigeon per hole.
+    private void pigeonhole(int p, int h) {
+        solver.addVariables(p * h);
+        for (int i = 0; i < p; i++) {
+            int[] clause = new int[h];
+            for (int j = 0; j < h; j++) {
+                clause[j] = i * h + j + 1;
+            }
+            solver.addClause(clause);
+        }
+        for (int j = 0; j < h; j++) {
+            for (int a = 0; a < p; a++) {
+                for (int b = a + 1; b < p; b++) {
+                    solver.addClause(new int[]{-(a * h + j + 1), -(b * h + j + 1)});
+                }
+            }
+        }
+    }
+
+    @Test
+    public void emptyPortfolioShouldThrowException() {
+        try {
+            SATFactory.portfolio();
+
+            // Shouldn't reach here.
+            fail();
+        } catch (IllegalArgumentException e) {
+        }
+    }
+
+    @Test
+    public void incremental() {
+        assertTrue(SATFactory.portfolio(SATFactory.DefaultSAT4J, SATFactory.MiniSat).incremental());
+        assertFalse(SATFactory.portfolio(SATFactory.DefaultSAT4J, SATFactory.Lingeling).incremental());
+    }
+
+    @Test
+    public void pigeonholes() {
+        pigeonhole(5, 5);
+
+        assertThat(solver.numberOfVariables(), is(25));
+        assertThat(solver.numberOfClauses(), is(5 + 5 * 10));
+        assertTrue(solver.solve());
+
+        for (int i = 0; i < 5; i++) {
+            int holes = 0;
+            for (int j = 0; j < 5; j++) {
+                holes += solver.valueOf(i * 5 + j + 1) ? 1 : 0;
+            }
+            assertThat(holes, is(not(0)));
+        }
+
+        // Take away the last hole.
+        for (int i = 0; i < 5; i++) {
+            solver.addClause(new int[]{-(i * 5 + 5)});
+        }
+        assertFalse(solver.solve());
+    }
+
+    @Test
+    public void solveUnderAssumptions() {
+        solver.addVariables(4);
+        solver.addClause(new int[]{-1, 2});
+        solver.addClause(new int[]{-2, -3});
+
+        assertTrue(solver.solve(new int[]{1}));
+        assertThat(solver.valueOf(2), is(true));
+
+        assertFalse(solver.solve(new int[]{4, 1, 3}));
+        int[] failed = solver.failedAssumptions();
+        java.util.Arrays.sort(failed);
+        assertArrayEquals(new int[]{1, 3}, failed);
+
+        // The assumptions are not retained.
+        assertTrue(solver.solve());
+    }
+
+    @Test
+    public void valueOfBeforeSolveShouldThrowException() {
+        solver.addVariables(1);
+        try {
+            solver.valueOf(1);
+
+            // Shouldn't reach here.
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+}
@@ -6,7 +6,12 @@ import org.junit.runner.JUnitCore;
 
 @RunWith(Suite.class)
 @Suite.SuiteClasses({
-  kodkod.engine.satlab.Z3Test.class
+  kodkod.engine.satlab.Z3Test.class,
+  kodkod.engine.satlab.AssumptionTest.class,
+  kodkod.engine.satlab.PortfolioTest.class,
+  kodkod.engine.satlab.ClauseArenaTest.class,
+  kodkod.engine.satlab.LazyTraceTest.class,
+  kodkod.engine.satlab.ExternalSolverTest.class
 })
 public class TestSuite {
 }
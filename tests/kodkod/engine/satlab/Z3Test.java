@@ -341,6 +341,49 @@ public class Z3Test {
         }
     }
 
+    @Test
+    public void solveUnderAssumptions() {
+        solver.addVariables(3);
+        solver.addClause(new int[]{-1, 2});
+        solver.addClause(new int[]{-2, -3});
+
+        assertTrue(solver.solve(new int[]{1}));
+        assertThat(solver.valueOf(2), is(true));
+
+        assertFalse(solver.solve(new int[]{1, 3}));
+
+        // The assumptions are not retained.
+        assertTrue(solver.solve());
+        assertTrue(solver.solve(new int[]{3}));
+        assertThat(solver.valueOf(1), is(false));
+    }
+
+    @Test
+    public void failedAssumptions() {
+        solver.addVariables(4);
+        solver.addClause(new int[]{-1, 2});
+        solver.addClause(new int[]{-2, -3});
+
+        assertFalse(solver.solve(new int[]{4, 1, 3}));
+
+        int[] failed = solver.failedAssumptions();
+        java.util.Arrays.sort(failed);
+        assertArrayEquals(new int[]{1, 3}, failed);
+    }
+
+    @Test
+    public void failedAssumptionsAfterSatShouldThrowException() {
+        solver.addVariables(1);
+        solver.solve(new int[]{1});
+        try {
+            solver.failedAssumptions();
+
+            // Shouldn't reach here.
+            fail();
+        } catch (IllegalStateException e) {
+        }
+    }
+
     @Test
     public void basicCheckpointing() {
         solver.addVariables(1);
@@ -0,0 +1,113 @@
+package kodkod.engine.ucore;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.junit.Assume.*;
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.ast.Variable;
+import kodkod.engine.Proof;
+import kodkod.engine.Solution;
+import kodkod.engine.Solver;
+import kodkod.engine.fol2sat.TranslationLog;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+
+@RunWith(JUnit4.class)
+public class ParallelStrategyTest {
+
+    Solver solver;
+    Bounds bounds;
+    List<Formula> formulas;
+
+    @Before
+    public void setUp() {
+        assumeTrue(SATFactory.available(SATFactory.MiniSatProver));
+        solver = new Solver();
+        solver.options().setSolver(SATFactory.MiniSatProver);
+        solver.options().setLogTranslation(1);
+
+        final Relation a = Relation.unary("a"), b = Relation.unary("b"), r = Relation.binary("r");
+        final Universe universe = new Universe("a0", "a1", "a2", "a3", "a4", "b0", "b1", "b2", "b3");
+        final TupleFactory f = universe.factory();
+        bounds = new Bounds(universe);
+        bounds.boundExactly(a, f.range(f.tuple("a0"), f.tuple("a4")));
+        bounds.boundExactly(b, f.range(f.tuple("b0"), f.tuple("b3")));
+        bounds.bound(r, bounds.upperBound(a).product(bounds.upperBound(b)));
+        // five pigeons in four holes, with redundant ways of saying that every pigeon has a hole
+        final Variable x = Variable.unary("x");
+        formulas = new ArrayList<Formula>();
+        formulas.add(x.join(r).some().forAll(x.oneOf(a)));
+        formulas.add(r.join(b).eq(a));
+        formulas.add(r.function(a, b));
+        formulas.add(r.join(x).lone().forAll(x.oneOf(b)));
+        formulas.add(r.some());
+        formulas.add(x.join(r).lone().forAll(x.oneOf(a)));
+    }
+
+    private Proof proof() {
+        final Solution sol = solver.solve(Formula.and(formulas), bounds);
+        assertEquals(Solution.Outcome.UNSATISFIABLE, sol.outcome());
+        return sol.proof();
+    }
+
+    // the core is unsatisfiable, and it becomes satisfiable without any one of its formulas
+    private void assertIrreducible(Set<Formula> core) {
+        assertFalse(solver.solve(Formula.and(core), bounds).sat());
+        for (Formula f : core) {
+            final List<Formula> rest = new ArrayList<Formula>(core);
+            rest.remove(f);
+            assertTrue(f.toString(), solver.solve(Formula.and(rest), bounds).sat());
+        }
+    }
+
+    @Test
+    public void parallelStrategiesFindSmallestCore() {
+        final Proof proof = proof();
+        final int size = proof.highLevelCore().size();
+        final TranslationLog log = proof.log();
+        proof.minimize(new ParallelStrategy(new RCEStrategy(log), new SCEStrategy(log), new NCEStrategy(log)));
+        final Set<Formula> core = proof.highLevelCore().keySet();
+        assertIrreducible(core);
+        assertTrue(core.size() < size);
+
+        final Proof sequential = proof();
+        sequential.minimize(new SCEStrategy(sequential.log()));
+        assertTrue(core.size() <= sequential.highLevelCore().size());
+    }
+
+    @Test
+    public void deletionFindsIrreducibleCore() {
+        for (int threads = 1; threads <= 3; threads++) {
+            final Proof proof = proof();
+            final DeletionStrategy strategy = new DeletionStrategy(proof.log(), Integer.MAX_VALUE, threads, SATFactory.MiniSatProver);
+            proof.minimize(strategy);
+            assertIrreducible(proof.highLevelCore().keySet());
+            assertEquals(0, strategy.budget());
+        }
+    }
+
+    @Test
+    public void deletionStopsWhenBudgetIsSpent() {
+        final Proof unreduced = proof();
+        final int size = unreduced.highLevelCore().size();
+
+        final Proof proof = proof();
+        proof.minimize(new DeletionStrategy(proof.log(), 0));
+        assertEquals(size, proof.highLevelCore().size());
+
+        final Proof once = proof();
+        once.minimize(new DeletionStrategy(once.log(), 1, 1, SATFactory.MiniSatProver));
+        assertTrue(once.highLevelCore().size() < size);
+        assertFalse(solver.solve(Formula.and(once.highLevelCore().keySet()), bounds).sat());
+    }
+}
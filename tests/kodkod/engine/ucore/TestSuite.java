@@ -0,0 +1,12 @@
+package kodkod.engine.ucore;
+
+import org.junit.runner.RunWith;
+import org.junit.runners.Suite;
+import org.junit.runner.JUnitCore;
+
+@RunWith(Suite.class)
+@Suite.SuiteClasses({
+  kodkod.engine.ucore.ParallelStrategyTest.class
+})
+public class TestSuite {
+}
@@ -0,0 +1,90 @@
+package kodkod.multiobjective.Benchmarks;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import kodkod.engine.Solution;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.multiobjective.MeasuredSolution;
+import kodkod.multiobjective.MetricPoint;
+import kodkod.multiobjective.MultiObjectiveOptions;
+import kodkod.multiobjective.Testmodels.MooProblem;
+import kodkod.multiobjective.Testmodels.items_12_metrics_3;
+import kodkod.multiobjective.Testmodels.rooks_3_metrics_2;
+import kodkod.multiobjective.algorithms.PartitionedGuidedImprovementAlgorithm;
+import kodkod.multiobjective.concurrency.SolutionNotifier;
+import kodkod.multiobjective.statistics.StatKey;
+import kodkod.multiobjective.statistics.Stats;
+
+/**
+ * Measures how the wall time of {@link PartitionedGuidedImprovementAlgorithm}
+ * scales with the number of worker threads on the test models.
+ *
+ * <p>Usage: {@code PGIAScalingBenchmark [maxThreads [repetitions]]}.  The thread
+ * count is doubled from 1 up to maxThreads (default: available processors), and
+ * each configuration is run the given number of times (default: 3).  One
+ * tab-separated line is printed per configuration with the median wall time.</p>
+ */
+public final class PGIAScalingBenchmark {
+
+	private PGIAScalingBenchmark() {}
+
+	private static MooProblem[] problems() {
+		return new MooProblem[] { new rooks_3_metrics_2(), new items_12_metrics_3() };
+	}
+
+	private static long run(MooProblem moo, int threads, Stats[] lastStats) {
+		final MultiObjectiveOptions o = new MultiObjectiveOptions();
+		o.getKodkodOptions().setSolver(SATFactory.MiniSat);
+		o.getKodkodOptions().setSymmetryBreaking(20);
+		o.setAllSolutionsPerPoint(false);
+		o.setThreads(threads);
+
+		final PartitionedGuidedImprovementAlgorithm pgia = new PartitionedGuidedImprovementAlgorithm("PGIA", o);
+		final SolutionNotifier notifier = new SolutionNotifier() {
+			public void tell(MeasuredSolution s) {}
+			public void tell(Solution s, MetricPoint values) {}
+			public void exception(Throwable e) {
+				throw new RuntimeException(e);
+			}
+			public void done() {}
+		};
+
+		final long start = System.currentTimeMillis();
+		pgia.multiObjectiveSolve(moo.getProblem(), notifier);
+		final long end = System.currentTimeMillis();
+		lastStats[0] = pgia.getStats();
+		return end - start;
+	}
+
+	public static void main(String[] args) {
+		final int maxThreads = args.length > 0 ? Integer.parseInt(args[0]) : Runtime.getRuntime().availableProcessors();
+		final int repetitions = args.length > 1 ? Integer.parseInt(args[1]) : 3;
+
+		System.out.println("problem\tthreads\tmedian_ms\tpareto_points\tsat_calls\tsplits");
+		for (MooProblem moo : problems()) {
+			// warm up the JIT so the single-threaded baseline is not penalized
+			run(moo, 1, new Stats[1]);
+
+			final List<Integer> threadCounts = new ArrayList<Integer>();
+			for (int threads = 1; threads < maxThreads; threads *= 2) {
+				threadCounts.add(threads);
+			}
+			threadCounts.add(maxThreads);
+
+			for (int threads : threadCounts) {
+				final long[] times = new long[repetitions];
+				final Stats[] stats = new Stats[1];
+				for (int i = 0; i < repetitions; i++) {
+					times[i] = run(moo, threads, stats);
+				}
+				Arrays.sort(times);
+				System.out.println(moo.getClass().getSimpleName() + "\t" + threads + "\t" + times[repetitions / 2] + "\t"
+						+ stats[0].get(StatKey.OPTIMAL_METRIC_POINTS) + "\t"
+						+ (stats[0].get(StatKey.REGULAR_SAT_CALL) + stats[0].get(StatKey.REGULAR_UNSAT_CALL)) + "\t"
+						+ stats[0].get(StatKey.PARTITION_SPLITS));
+			}
+		}
+	}
+}
@@ -0,0 +1,233 @@
+package kodkod.multiobjective.EndtoEnd;
+
+import org.junit.*;
+import org.junit.runner.RunWith;
+import org.junit.runners.JUnit4;
+import static org.hamcrest.CoreMatchers.*;
+import static org.junit.Assert.assertThat;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.Vector;
+import kodkod.ast.Formula;
+import kodkod.ast.IntConstant;
+import kodkod.ast.Relation;
+import kodkod.engine.*;
+import kodkod.engine.satlab.SATFactory;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+import kodkod.multiobjective.Testmodels.MooProblem;
+import kodkod.multiobjective.Testmodels.items_12_metrics_3;
+import kodkod.multiobjective.Testmodels.rooks_3_metrics_2;
+import kodkod.multiobjective.*;
+import kodkod.multiobjective.algorithms.*;
+import kodkod.multiobjective.concurrency.*;
+import kodkod.multiobjective.statistics.StatKey;
+
+@RunWith(JUnit4.class)
+public class BGIASmallEndToEndTest {
+	/*Fields*/
+	private MooProblem moo_problem;
+	
+	/*
+	 * This test is a translation of rooks_3_metrics_2.als
+	 */
+
+	@Before
+	public void setUp() {
+		moo_problem = new rooks_3_metrics_2();
+	}
+
+	@Test
+	public void WithSymmetryBreaking() {
+		MultiObjectiveProblem problem = moo_problem.getProblem();
+		BisectingGuidedImprovementAlgorithm bgia = new BisectingGuidedImprovementAlgorithm("asdf", new MultiObjectiveOptions());
+		bgia.getOptions().setSolver(SATFactory.DefaultSAT4J);
+		bgia.getOptions().setSymmetryBreaking(1000);
+
+		SolutionNotifier notifier = new SolutionNotifier() {
+			List<MeasuredSolution> solutions = new Vector<MeasuredSolution>();
+
+			public void tell(final MeasuredSolution s) {
+				solutions.add(s);
+			}
+
+			public void tell(Solution s, MetricPoint values) {
+				tell(new MeasuredSolution(s, values));
+			}
+
+	      	public void exception(Throwable e) {
+	        	throw new RuntimeException(e);
+	      	}
+
+			public void done() {
+				// There should be a single solution.
+				assertThat(solutions.size(), is(1));
+
+				MeasuredSolution solution = solutions.get(0);
+				MetricPoint mp = solution.getValues();
+
+				// objective 0 should have value 6
+				assertThat(mp.getValue((Objective)moo_problem.getObjectives().toArray()[0]), is(6));
+
+				// objective 1 should have value 7
+				assertThat(mp.getValue((Objective)moo_problem.getObjectives().toArray()[1]), is(7));
+			}
+		};
+
+		bgia.multiObjectiveSolve(problem, notifier);
+	}
+
+	@Test
+	public void WithoutSymmetryBreaking() {
+		MultiObjectiveProblem problem = moo_problem.getProblem();
+		BisectingGuidedImprovementAlgorithm bgia = new BisectingGuidedImprovementAlgorithm("asdf", new MultiObjectiveOptions());
+		bgia.getOptions().setSolver(SATFactory.DefaultSAT4J);
+		bgia.getOptions().setSymmetryBreaking(0);
+
+		SolutionNotifier notifier = new SolutionNotifier() {
+			List<MeasuredSolution> solutions = new Vector<MeasuredSolution>();
+
+			public void tell(final MeasuredSolution s) {
+				solutions.add(s);
+			}
+
+			public void tell(Solution s, MetricPoint values) {
+				tell(new MeasuredSolution(s, values));
+			}
+
+      public void exception(Throwable e) {
+        throw new RuntimeException(e);
+      }
+
+			public void done() {
+				// There should be 6 solutions, 1 for each permutation of rook
+				// positions.
+				assertThat(solutions.size(), is(6));
+
+				// Each solution should have the same metric values.
+				for (MeasuredSolution solution : solutions) {
+					MetricPoint mp = solution.getValues();
+
+					// objective 0 should have value 6
+					assertThat(mp.getValue((Objective)moo_problem.getObjectives().toArray()[0]), is(6));
+
+					// objective 1 should have value 7
+					assertThat(mp.getValue((Objective)moo_problem.getObjectives().toArray()[1]), is(7));
+				}
+			}
+		};
+
+		bgia.multiObjectiveSolve(problem, notifier);
+	}
+
+	@Test
+	public void ManyParetoPoints() {
+		MultiObjectiveProblem problem = new items_12_metrics_3().getProblem();
+		BisectingGuidedImprovementAlgorithm bgia = new BisectingGuidedImprovementAlgorithm("asdf", new MultiObjectiveOptions());
+		bgia.getOptions().setSolver(SATFactory.DefaultSAT4J);
+		bgia.getOptions().setSymmetryBreaking(1000);
+
+		SolutionNotifier notifier = new SolutionNotifier() {
+			List<MeasuredSolution> solutions = new Vector<MeasuredSolution>();
+
+			public void tell(final MeasuredSolution s) {
+				solutions.add(s);
+			}
+
+			public void tell(Solution s, MetricPoint values) {
+				tell(new MeasuredSolution(s, values));
+			}
+
+      public void exception(Throwable e) {
+        throw new RuntimeException(e);
+      }
+
+			public void done() {
+				// Bisection may skip over dominated points, but each of the 25 points
+				// on the front must still be found exactly once.
+				Set<List<Integer>> points = new HashSet<List<Integer>>();
+				for (MeasuredSolution solution : solutions) {
+					points.add(solution.getValues().values());
+				}
+				assertThat(solutions.size(), is(25));
+				assertThat(points.size(), is(25));
+			}
+		};
+
+		bgia.multiObjectiveSolve(problem, notifier);
+		assertThat(bgia.getStats().get(StatKey.BISECTION_SAT_CALL) + bgia.getStats().get(StatKey.BISECTION_UNSAT_CALL) > 0, is(true));
+	}
+
+	/*
+	 * Chooses at most 36 out of 48 items, half of which are in A and half in B, so as to
+	 * minimize both #(A - chosen) and #(B - chosen).  Every point on the front spends the whole
+	 * budget, so the values of the two objectives add up to 12.  Both objectives are minimized,
+	 * and the bit width leaves room for values down to -64, so each bisection has to double its
+	 * steps before it overshoots the front and then bisects what is left.
+	 */
+	private static MultiObjectiveProblem wideBudget() {
+		final List<String> atoms = new ArrayList<String>(48);
+		for (int i = 0; i < 48; i++) {
+			atoms.add("i" + i);
+		}
+		final Universe universe = new Universe(atoms);
+		final TupleFactory f = universe.factory();
+		final Relation a = Relation.unary("A"), b = Relation.unary("B"), chosen = Relation.unary("chosen");
+		final Bounds bounds = new Bounds(universe);
+		bounds.boundExactly(a, f.range(f.tuple("i0"), f.tuple("i23")));
+		bounds.boundExactly(b, f.range(f.tuple("i24"), f.tuple("i47")));
+		bounds.bound(chosen, f.allOf(1));
+
+		final TreeSet<Objective> objectives = new TreeSet<Objective>();
+		objectives.add(Objective.newMinObjective("minimize[#(A - chosen)]", a.difference(chosen).count()));
+		objectives.add(Objective.newMinObjective("minimize[#(B - chosen)]", b.difference(chosen).count()));
+
+		final Formula formula = chosen.count().lte(IntConstant.constant(36));
+		return new MultiObjectiveProblem(bounds, 7, formula, objectives);
+	}
+
+	@Test
+	public void WideObjectiveRanges() {
+		final MultiObjectiveProblem problem = wideBudget();
+		BisectingGuidedImprovementAlgorithm bgia = new BisectingGuidedImprovementAlgorithm("asdf", new MultiObjectiveOptions());
+		bgia.getOptions().setSolver(SATFactory.DefaultSAT4J);
+		bgia.getOptions().setSymmetryBreaking(1000);
+
+		final List<MetricPoint> points = new Vector<MetricPoint>();
+		SolutionNotifier notifier = new SolutionNotifier() {
+			public void tell(final MeasuredSolution s) {
+				points.add(s.getValues());
+			}
+
+			public void tell(Solution s, MetricPoint values) {
+				points.add(values);
+			}
+
+			public void exception(Throwable e) {
+				throw new RuntimeException(e);
+			}
+
+			public void done() {}
+		};
+
+		bgia.multiObjectiveSolve(problem, notifier);
+
+		// The front is {(k, 12 - k) | 0 <= k <= 12}, and each point is found exactly once.
+		Set<Integer> found = new HashSet<Integer>();
+		for (MetricPoint point : points) {
+			List<Integer> values = point.values();
+			assertThat(values.get(0) + values.get(1), is(12));
+			assertThat(found.add(values.get(0)), is(true));
+		}
+		assertThat(found.size(), is(13));
+
+		// Some bisection bounds were met, which doubles the step, and some were not, which halves the range.
+		assertThat(bgia.getStats().get(StatKey.BISECTION_SAT_CALL) > 0, is(true));
+		assertThat(bgia.getStats().get(StatKey.BISECTION_UNSAT_CALL) > 0, is(true));
+	}
+}
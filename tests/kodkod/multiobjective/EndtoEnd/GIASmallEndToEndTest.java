@@ -10,6 +10,7 @@ import java.util.List;
 import java.util.Vector;
 import kodkod.engine.*;
 import kodkod.engine.satlab.SATFactory;
+import kodkod.engine.satlab.SATSolver;
 import kodkod.multiobjective.Testmodels.MooProblem;
 import kodkod.multiobjective.Testmodels.rooks_3_metrics_2;
 import kodkod.multiobjective.*;
@@ -112,4 +113,97 @@ public class GIASmallEndToEndTest {
 
 		gia.multiObjectiveSolve(problem, notifier);
 	}
+
+	@Test
+	public void WithTranslationLogging() {
+		// Translation logging rules out incremental solving, so the magnifying glass
+		// enumerates the solutions at each point from scratch.
+		MultiObjectiveProblem problem = moo_problem.getProblem();
+		GuidedImprovementAlgorithm gia = new GuidedImprovementAlgorithm("asdf", new MultiObjectiveOptions());
+		gia.getOptions().setSolver(SATFactory.DefaultSAT4J);
+		gia.getOptions().setSymmetryBreaking(0);
+		gia.getOptions().setLogTranslation(1);
+
+		SolutionNotifier notifier = new SolutionNotifier() {
+			List<MeasuredSolution> solutions = new Vector<MeasuredSolution>();
+
+			public void tell(final MeasuredSolution s) {
+				solutions.add(s);
+			}
+
+			public void tell(Solution s, MetricPoint values) {
+				tell(new MeasuredSolution(s, values));
+			}
+
+      public void exception(Throwable e) {
+        throw new RuntimeException(e);
+      }
+
+			public void done() {
+				// There should be 6 solutions, 1 for each permutation of rook
+				// positions.
+				assertThat(solutions.size(), is(6));
+
+				// Each solution should have the same metric values.
+				for (MeasuredSolution solution : solutions) {
+					MetricPoint mp = solution.getValues();
+
+					// objective 0 should have value 6
+					assertThat(mp.getValue((Objective)moo_problem.getObjectives().toArray()[0]), is(6));
+
+					// objective 1 should have value 7
+					assertThat(mp.getValue((Objective)moo_problem.getObjectives().toArray()[1]), is(7));
+				}
+			}
+		};
+
+		gia.multiObjectiveSolve(problem, notifier);
+	}
+
+	@Test
+	public void WithNonIncrementalSolver() {
+		MultiObjectiveProblem problem = moo_problem.getProblem();
+		MultiObjectiveOptions options = new MultiObjectiveOptions();
+		options.setAllSolutionsPerPoint(false);
+		GuidedImprovementAlgorithm gia = new GuidedImprovementAlgorithm("asdf", options);
+		gia.getOptions().setSolver(new SATFactory() {
+			public SATSolver instance() {
+				return SATFactory.DefaultSAT4J.instance();
+			}
+			public boolean incremental() { return false; }
+		});
+		gia.getOptions().setSymmetryBreaking(1000);
+
+		SolutionNotifier notifier = new SolutionNotifier() {
+			List<MeasuredSolution> solutions = new Vector<MeasuredSolution>();
+
+			public void tell(final MeasuredSolution s) {
+				solutions.add(s);
+			}
+
+			public void tell(Solution s, MetricPoint values) {
+				tell(new MeasuredSolution(s, values));
+			}
+
+      public void exception(Throwable e) {
+        throw new RuntimeException(e);
+      }
+
+			public void done() {
+				// There should be a single solution.
+				assertThat(solutions.size(), is(1));
+
+				MeasuredSolution solution = solutions.get(0);
+				MetricPoint mp = solution.getValues();
+
+				// objective 0 should have value 6
+				assertThat(mp.getValue((Objective)moo_problem.getObjectives().toArray()[0]), is(6));
+
+				// objective 1 should have value 7
+				assertThat(mp.getValue((Objective)moo_problem.getObjectives().toArray()[1]), is(7));
+			}
+		};
+
+		gia.multiObjectiveSolve(problem, notifier);
+	}
 }
@@ -6,11 +6,14 @@ import org.junit.runners.JUnit4;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
 import kodkod.engine.*;
 import kodkod.engine.satlab.SATFactory;
 import kodkod.multiobjective.Testmodels.MooProblem;
+import kodkod.multiobjective.Testmodels.items_12_metrics_3;
 import kodkod.multiobjective.Testmodels.rooks_3_metrics_2;
 import kodkod.multiobjective.*;
 import kodkod.multiobjective.algorithms.*;
@@ -112,4 +115,41 @@ public class IGIASmallEndToEndTest {
 
 		igia.multiObjectiveSolve(problem, notifier);
 	}
+
+	@Test
+	public void ManyParetoPoints() {
+		MultiObjectiveProblem problem = new items_12_metrics_3().getProblem();
+		IncrementalGuidedImprovementAlgorithm igia = new IncrementalGuidedImprovementAlgorithm("asdf", new MultiObjectiveOptions());
+		igia.getOptions().setSolver(SATFactory.DefaultSAT4J);
+		igia.getOptions().setSymmetryBreaking(1000);
+
+		SolutionNotifier notifier = new SolutionNotifier() {
+			List<MeasuredSolution> solutions = new Vector<MeasuredSolution>();
+
+			public void tell(final MeasuredSolution s) {
+				solutions.add(s);
+			}
+
+			public void tell(Solution s, MetricPoint values) {
+				tell(new MeasuredSolution(s, values));
+			}
+
+      public void exception(Throwable e) {
+        throw new RuntimeException(e);
+      }
+
+			public void done() {
+				// The same solver is used for every climb, so each of the 25 points
+				// on the front must still be found exactly once.
+				Set<List<Integer>> points = new HashSet<List<Integer>>();
+				for (MeasuredSolution solution : solutions) {
+					points.add(solution.getValues().values());
+				}
+				assertThat(solutions.size(), is(25));
+				assertThat(points.size(), is(25));
+			}
+		};
+
+		igia.multiObjectiveSolve(problem, notifier);
+	}
 }
@@ -6,15 +6,19 @@ import org.junit.runners.JUnit4;
 import static org.hamcrest.CoreMatchers.*;
 import static org.junit.Assert.assertThat;
 
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 import java.util.Vector;
 import kodkod.engine.*;
 import kodkod.engine.satlab.SATFactory;
 import kodkod.multiobjective.Testmodels.MooProblem;
+import kodkod.multiobjective.Testmodels.items_12_metrics_3;
 import kodkod.multiobjective.Testmodels.rooks_3_metrics_2;
 import kodkod.multiobjective.*;
 import kodkod.multiobjective.algorithms.*;
 import kodkod.multiobjective.concurrency.*;
+import kodkod.multiobjective.statistics.StatKey;
 
 @RunWith(JUnit4.class)
 public class PGIASmallEndToEndTest {
@@ -118,4 +122,89 @@ public class PGIASmallEndToEndTest {
 
 		pgia.multiObjectiveSolve(problem, notifier);
 	}
+
+	@Test
+	public void ManyParetoPointsOnSeveralThreads() {
+		MultiObjectiveProblem problem = new items_12_metrics_3().getProblem();
+
+    MultiObjectiveOptions o = new MultiObjectiveOptions();
+    o.getKodkodOptions().setSolver(SATFactory.MiniSat);
+    o.getKodkodOptions().setSymmetryBreaking(1000);
+    o.setThreads(4);
+
+		PartitionedGuidedImprovementAlgorithm pgia = new PartitionedGuidedImprovementAlgorithm("asdf", o);
+
+		SolutionNotifier notifier = new SolutionNotifier() {
+			List<MeasuredSolution> solutions = new Vector<MeasuredSolution>();
+
+			public void tell(final MeasuredSolution s) {
+				solutions.add(s);
+			}
+
+			public void tell(Solution s, MetricPoint values) {
+				tell(new MeasuredSolution(s, values));
+			}
+
+      public void exception(Throwable e) {
+        throw new RuntimeException(e);
+      }
+
+			public void done() {
+				// The front has 25 points, each found exactly once no matter
+				// how the partitions were split between threads.
+				Set<List<Integer>> points = new HashSet<List<Integer>>();
+				for (MeasuredSolution solution : solutions) {
+					points.add(solution.getValues().values());
+				}
+				assertThat(solutions.size(), is(25));
+				assertThat(points.size(), is(25));
+			}
+		};
+
+		pgia.multiObjectiveSolve(problem, notifier);
+	}
+
+	@Test
+	public void SplitsPartitionsForIdleThreads() {
+		MultiObjectiveProblem problem = new items_12_metrics_3().getProblem();
+
+    MultiObjectiveOptions o = new MultiObjectiveOptions();
+    o.getKodkodOptions().setSolver(SATFactory.MiniSat);
+    o.getKodkodOptions().setSymmetryBreaking(1000);
+    // Three objectives give six partitions, only three of which can start
+    // right away, so the remaining workers are idle until a partition is split.
+    o.setThreads(8);
+
+		PartitionedGuidedImprovementAlgorithm pgia = new PartitionedGuidedImprovementAlgorithm("asdf", o);
+
+		SolutionNotifier notifier = new SolutionNotifier() {
+			List<MeasuredSolution> solutions = new Vector<MeasuredSolution>();
+
+			public void tell(final MeasuredSolution s) {
+				solutions.add(s);
+			}
+
+			public void tell(Solution s, MetricPoint values) {
+				tell(new MeasuredSolution(s, values));
+			}
+
+      public void exception(Throwable e) {
+        throw new RuntimeException(e);
+      }
+
+			public void done() {
+				// Splitting must neither lose nor repeat points on the front.
+				Set<List<Integer>> points = new HashSet<List<Integer>>();
+				for (MeasuredSolution solution : solutions) {
+					points.add(solution.getValues().values());
+				}
+				assertThat(solutions.size(), is(25));
+				assertThat(points.size(), is(25));
+			}
+		};
+
+		pgia.multiObjectiveSolve(problem, notifier);
+
+		assertThat(pgia.getStats().get(StatKey.PARTITION_SPLITS) > 0, is(true));
+	}
 }
@@ -0,0 +1,84 @@
+package kodkod.multiobjective.Testmodels;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeSet;
+
+import kodkod.ast.Formula;
+import kodkod.ast.Relation;
+import kodkod.instance.Bounds;
+import kodkod.instance.TupleFactory;
+import kodkod.instance.Universe;
+import kodkod.multiobjective.MultiObjectiveProblem;
+import kodkod.multiobjective.Objective;
+
+/*
+ * Selects a subset of 12 items against three competing objectives:
+ *   maximize #(chosen & A), maximize #((Item - chosen) & B), maximize #(chosen & C)
+ * where A = {i0..i7}, B = {i4..i11} and C = {i8..i11}.
+ * Items i0..i3 are always chosen on the front; i4..i7 trade the first objective
+ * against the second, and i8..i11 trade the second against the third.  The
+ * Pareto front has 25 points.
+ */
+public class items_12_metrics_3 implements MooProblem {
+	private Bounds bounds;
+	private TreeSet<Objective> objectives;
+	private Formula formula;
+	private MultiObjectiveProblem problem;
+
+	public items_12_metrics_3() {
+		final List<String> atoms = new ArrayList<String>(12);
+		for (int i = 0; i < 12; i++) {
+			atoms.add("i" + i);
+		}
+		final Universe universe = new Universe(atoms);
+		final TupleFactory factory = universe.factory();
+
+		final Relation item = Relation.unary("Item");
+		final Relation a = Relation.unary("A");
+		final Relation b = Relation.unary("B");
+		final Relation c = Relation.unary("C");
+		final Relation chosen = Relation.unary("chosen");
+
+		bounds = new Bounds(universe);
+		bounds.boundExactly(item, factory.allOf(1));
+		bounds.boundExactly(a, factory.range(factory.tuple("i0"), factory.tuple("i7")));
+		bounds.boundExactly(b, factory.range(factory.tuple("i4"), factory.tuple("i11")));
+		bounds.boundExactly(c, factory.range(factory.tuple("i8"), factory.tuple("i11")));
+		bounds.bound(chosen, factory.allOf(1));
+
+		formula = chosen.in(item);
+
+		objectives = new TreeSet<Objective>();
+		objectives.add(Objective.newMaxObjective("maximize[#(chosen & A)]", chosen.intersection(a).count()));
+		objectives.add(Objective.newMaxObjective("maximize[#((Item - chosen) & B)]", item.difference(chosen).intersection(b).count()));
+		objectives.add(Objective.newMaxObjective("maximize[#(chosen & C)]", chosen.intersection(c).count()));
+
+		problem = new MultiObjectiveProblem(bounds, getBitWidth(), formula, objectives);
+	}
+
+	@Override
+	public Bounds getBounds() {
+		return this.bounds;
+	}
+
+	@Override
+	public TreeSet<Objective> getObjectives() {
+		return this.objectives;
+	}
+
+	@Override
+	public Formula getFormula() {
+		return this.formula;
+	}
+
+	@Override
+	public int getBitWidth() {
+		return 5;
+	}
+
+	@Override
+	public MultiObjectiveProblem getProblem() {
+		return this.problem;
+	}
+}